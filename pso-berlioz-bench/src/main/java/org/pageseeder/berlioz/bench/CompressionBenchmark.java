@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.util.CharsetUtils;
+import org.pageseeder.berlioz.util.CompressedOutputStream;
+import org.pageseeder.berlioz.util.ResourceCompressor;
+
+/**
+ * Compares the compression of a response using a new <code>GZIPOutputStream</code> with the
+ * pooled deflaters, either buffered or streamed to the output.
+ *
+ * <p>The <code>bytes</code> counter reports the number of uncompressed bytes per second; use
+ * <code>-prof gc</code> to report the allocations per response (<code>gc.alloc.rate.norm</code>).
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+  private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+  /**
+   * The size of the response in characters.
+   */
+  @Param({"4096", "65536", "1048576"})
+  public int size;
+
+  /**
+   * The content encoding.
+   */
+  @Param({"gzip", "deflate"})
+  public String encoding;
+
+  /**
+   * The compression level.
+   */
+  @Param({"-1", "1"})
+  public int level;
+
+  private String content;
+
+  @Setup
+  public void setup() {
+    this.content = Synthetic.html(this.size);
+  }
+
+  /**
+   * Counts the number of uncompressed bytes per second.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.bytes = 0;
+    }
+  }
+
+  /**
+   * How responses were compressed before pooled deflaters (GZip only).
+   */
+  @Benchmark
+  public byte[] legacy(Counters counters) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(this.content.length());
+    GZIPOutputStream compressor = new GZIPOutputStream(os);
+    Writer w = new OutputStreamWriter(compressor, UTF8);
+    w.write(this.content.toString());
+    w.close();
+    counters.bytes += this.size;
+    return os.toByteArray();
+  }
+
+  /**
+   * Compressed in a buffer, when the content length is required.
+   */
+  @Benchmark
+  public byte[] buffered(Counters counters) {
+    byte[] compressed = ResourceCompressor.compress(this.content, UTF8, this.encoding, this.level);
+    counters.bytes += this.size;
+    return compressed;
+  }
+
+  /**
+   * Compressed straight to the output.
+   */
+  @Benchmark
+  public long streamed(Counters counters) throws IOException {
+    CountingOutputStream out = new CountingOutputStream();
+    CompressedOutputStream compressor = CompressedOutputStream.newInstance(out, this.encoding, this.level);
+    CharsetUtils.write(this.content, UTF8, compressor);
+    compressor.finish();
+    counters.bytes += this.size;
+    return out.count;
+  }
+
+  /**
+   * Discards the bytes but counts them, like a servlet output stream which is not buffered.
+   */
+  private static final class CountingOutputStream extends OutputStream {
+
+    private long count = 0;
+
+    @Override
+    public void write(int b) {
+      this.count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      this.count += len;
+    }
+  }
+
+  /**
+   * Generates HTML resembling a typical Berlioz response.
+   */
+  static final class Synthetic {
+
+    private Synthetic() {
+    }
+
+    /**
+     * @param size The approximate number of characters
+     *
+     * @return the HTML content
+     */
+    static String html(int size) {
+      StringBuilder html = new StringBuilder(size + 256);
+      html.append("<!DOCTYPE html><html><head><title>Benchmark</title></head><body>\n");
+      for (int i = 0; html.length() < size; i++) {
+        html.append("<div class=\"item\" id=\"item-").append(i).append("\">");
+        html.append("<h2>Item ").append(i).append("</h2>");
+        html.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, item ").append(i * 31 % 997).append(".</p>");
+        html.append("</div>\n");
+      }
+      html.append("</body></html>");
+      return html.toString();
+    }
+  }
+
+}
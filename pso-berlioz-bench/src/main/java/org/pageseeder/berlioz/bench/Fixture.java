@@ -0,0 +1,369 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.content.ContentGenerator;
+import org.pageseeder.berlioz.content.ServiceLoader;
+import org.pageseeder.berlioz.servlet.BerliozServlet;
+import org.pageseeder.mock.servlet.MockHttpServletRequest;
+import org.pageseeder.mock.servlet.MockHttpServletResponse;
+import org.pageseeder.mock.servlet.MockServletConfig;
+
+/**
+ * Creates a synthetic Berlioz application to run the benchmarks against.
+ *
+ * <p>The application is created in a temporary folder with a services configuration of the
+ * requested size, each service using the {@link SampleGenerator} by default, and simple XSLT style
+ * sheets producing HTML or JSON.
+ *
+ * @author Christophe Lauret
+ */
+final class Fixture {
+
+  /**
+   * A style sheet producing HTML from the content of the generators.
+   */
+  private static final String XSLT = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>\n"
+      + "<xsl:output method='html' encoding='utf-8' media-type='text/html'/>\n"
+      + "<xsl:template match='/root'><html><head><title><xsl:value-of select='header/service'/></title></head>"
+      + "<body><xsl:apply-templates select='content/items/item'/></body></html></xsl:template>\n"
+      + "<xsl:template match='item'><div id='{@id}' class='{@type}'><h2><xsl:value-of select='title'/></h2>"
+      + "<p><xsl:value-of select='description'/></p></div></xsl:template>\n"
+      + "</xsl:stylesheet>";
+
+  /**
+   * A style sheet producing JSON from the content of the generators.
+   */
+  private static final String JSON_XSLT = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+      + " xmlns:json='http://pageseeder.org/JSON' exclude-result-prefixes='json'>\n"
+      + "<xsl:output method='xml' encoding='utf-8' media-type='application/json'/>\n"
+      + "<xsl:template match='/root'><root><xsl:apply-templates select='content'/></root></xsl:template>\n"
+      + "<xsl:template match='content'><xsl:element name='{@name}'><xsl:apply-templates select='items'/></xsl:element></xsl:template>\n"
+      + "<xsl:template match='items'><items count='{@count}'><json:array json:name='item'>"
+      + "<xsl:apply-templates select='item'/></json:array></items></xsl:template>\n"
+      + "<xsl:template match='item'><item id='{@id}' type='{@type}' title='{title}' description='{description}'/></xsl:template>\n"
+      + "</xsl:stylesheet>";
+
+  /**
+   * The shapes of the URI patterns of the services.
+   */
+  private static final String[] SHAPES = {
+      "/m%d/r%d",
+      "/m%d/r%d/{id}",
+      "/m%d/r%d/{id}/edit",
+      "/m%d/r%d/{+path}",
+      "/api/m%d/r%d/{id}",
+  };
+
+  private Fixture() {
+  }
+
+  /**
+   * Creates a Web application folder with the specified number of services.
+   *
+   * @param services   The number of services
+   * @param items      The number of items returned by each generator
+   * @param properties The global settings
+   *
+   * @return the <code>WEB-INF</code> folder
+   *
+   * @throws IOException If the files could not be written
+   */
+  static File webinf(int services, int items, Map<String, String> properties) throws IOException {
+    return webinf(services, items, properties, SampleGenerator.class);
+  }
+
+  /**
+   * Creates a Web application folder with the specified number of services using the specified
+   * generator.
+   *
+   * @param services   The number of services
+   * @param items      The number of items returned by each generator
+   * @param properties The global settings
+   * @param generator  The class of generator used by each service
+   *
+   * @return the <code>WEB-INF</code> folder
+   *
+   * @throws IOException If the files could not be written
+   */
+  static File webinf(int services, int items, Map<String, String> properties, Class<? extends ContentGenerator> generator)
+      throws IOException {
+    Path root = Files.createTempDirectory("berlioz-bench");
+    Path webinf = Files.createDirectories(root.resolve("WEB-INF"));
+    Path config = Files.createDirectories(webinf.resolve("config"));
+    Path xslt = Files.createDirectories(webinf.resolve("xslt"));
+    StringBuilder props = new StringBuilder();
+    for (Entry<String, String> p : properties.entrySet()) {
+      props.append(p.getKey()).append('=').append(p.getValue()).append('\n');
+    }
+    write(config.resolve("config-default.properties"), props);
+    write(config.resolve("services.xml"), services(services, items, generator));
+    write(xslt.resolve("global.xsl"), XSLT);
+    write(xslt.resolve("json.xsl"), JSON_XSLT);
+    root.toFile().deleteOnExit();
+    return webinf.toFile();
+  }
+
+  /**
+   * Sets up Berlioz for the specified application and load the services.
+   *
+   * @param webinf The <code>WEB-INF</code> folder
+   *
+   * @throws BerliozException If the services could not be loaded
+   */
+  static void setup(File webinf) throws BerliozException {
+    GlobalSettings.setup(webinf);
+    GlobalSettings.load();
+    ServiceLoader loader = ServiceLoader.getInstance();
+    loader.clear();
+    loader.load();
+  }
+
+  /**
+   * Creates a servlet configuration for the specified application using the global XSLT style sheet.
+   *
+   * @param webinf The <code>WEB-INF</code> folder
+   *
+   * @return the servlet configuration
+   */
+  static ServletConfig config(File webinf) {
+    return config(webinf, "/xslt/global.xsl");
+  }
+
+  /**
+   * Creates a servlet configuration for the specified application.
+   *
+   * @param webinf     The <code>WEB-INF</code> folder
+   * @param stylesheet The path to the XSLT style sheet from the <code>WEB-INF</code> folder
+   *
+   * @return the servlet configuration
+   */
+  static ServletConfig config(File webinf, String stylesheet) {
+    String root = webinf.getParentFile().getAbsolutePath();
+    ServletContext context = (ServletContext)Proxy.newProxyInstance(Fixture.class.getClassLoader(),
+        new Class<?>[]{ ServletContext.class }, (proxy, method, args) -> "getRealPath".equals(method.getName())? root : null);
+    MockServletConfig config = new MockServletConfig() {
+      @Override
+      public ServletContext getServletContext() {
+        return context;
+      }
+    };
+    config.setInitParameter("stylesheet", stylesheet);
+    return config;
+  }
+
+  /**
+   * Creates and initialises a Berlioz servlet for the specified application.
+   *
+   * @param webinf The <code>WEB-INF</code> folder
+   *
+   * @return the servlet
+   *
+   * @throws ServletException If the servlet could not be initialised
+   */
+  static BerliozServlet servlet(File webinf) throws ServletException {
+    return servlet(webinf, "/xslt/global.xsl");
+  }
+
+  /**
+   * Creates and initialises a Berlioz servlet for the specified application.
+   *
+   * @param webinf     The <code>WEB-INF</code> folder
+   * @param stylesheet The path to the XSLT style sheet from the <code>WEB-INF</code> folder
+   *
+   * @return the servlet
+   *
+   * @throws ServletException If the servlet could not be initialised
+   */
+  static BerliozServlet servlet(File webinf, String stylesheet) throws ServletException {
+    BerliozServlet servlet = new BerliozServlet();
+    servlet.init(config(webinf, stylesheet));
+    return servlet;
+  }
+
+  /**
+   * Returns Berlioz paths matching the services of the synthetic application.
+   *
+   * @param services The number of services
+   * @param size     The number of paths to generate
+   *
+   * @return the paths
+   */
+  static String[] paths(int services, int size) {
+    Random random = new Random(42);
+    String[] paths = new String[size];
+    for (int i = 0; i < size; i++) {
+      int r = random.nextInt(services);
+      String template = SHAPES[r % SHAPES.length]
+          .replace("{id}", Integer.toString(random.nextInt(1000)))
+          .replace("{+path}", "a/b/c");
+      paths[i] = String.format(template, r / 50, r);
+    }
+    return paths;
+  }
+
+  /**
+   * Creates a GET request for the specified path as if the servlet was mapped to "*.html".
+   *
+   * @param path     The Berlioz path
+   * @param encoding The accepted encoding (may be <code>null</code>)
+   *
+   * @return a new request
+   */
+  static MockHttpServletRequest request(String path, String encoding) {
+    String servletPath = path + ".html";
+    MockHttpServletRequest req = new MockHttpServletRequest(URI.create("http://localhost:8080"+servletPath), "GET") {
+      @Override
+      public String getServletPath() {
+        return servletPath;
+      }
+      @Override
+      public String getContextPath() {
+        return "";
+      }
+      @Override
+      public long getDateHeader(String name) {
+        return -1;
+      }
+    };
+    if (encoding != null) {
+      req.setHeader("Accept-Encoding", encoding);
+    }
+    return req;
+  }
+
+  /**
+   * Creates a response discarding its content.
+   *
+   * @return a new response
+   */
+  static MockHttpServletResponse response() {
+    ServletOutputStream out = new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+      }
+      @Override
+      public void write(byte[] b, int off, int len) {
+      }
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+      @Override
+      public void setWriteListener(WriteListener listener) {
+      }
+    };
+    PrintWriter writer = new PrintWriter(new NullWriter());
+    return new MockHttpServletResponse() {
+      @Override
+      public ServletOutputStream getOutputStream() {
+        return out;
+      }
+      @Override
+      public PrintWriter getWriter() {
+        return writer;
+      }
+    };
+  }
+
+  /**
+   * @return an output stream discarding all the data
+   */
+  static OutputStream nullOutputStream() {
+    return new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+      @Override
+      public void write(byte[] b, int off, int len) {
+      }
+    };
+  }
+
+  /**
+   * Generates a services configuration with one service for each synthetic URI pattern.
+   *
+   * @param count     The number of services
+   * @param items     The number of items returned by each generator
+   * @param generator The class of generator used by each service
+   *
+   * @return The services configuration
+   */
+  private static String services(int count, int items, Class<? extends ContentGenerator> generator) {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version='1.0' encoding='utf-8'?>\n");
+    xml.append("<!DOCTYPE service-config PUBLIC '-//Berlioz//DTD::Services 1.0//EN' 'https://pageseeder.org/schema/berlioz/services-1.0.dtd'>\n");
+    xml.append("<service-config version='1.0'>\n<services group='bench'>\n");
+    for (int i = 0; i < count; i++) {
+      xml.append("<service id='s").append(i).append("' method='get'>");
+      xml.append("<url pattern='").append(String.format(SHAPES[i % SHAPES.length], i / 50, i)).append("'/>");
+      xml.append("<generator class='").append(generator.getName()).append("' name='items'>");
+      xml.append("<parameter name='items' value='").append(items).append("'/>");
+      xml.append("</generator></service>\n");
+    }
+    xml.append("</services>\n</service-config>\n");
+    return xml.toString();
+  }
+
+  private static void write(Path path, CharSequence content) throws IOException {
+    Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * A writer discarding all the data.
+   */
+  private static final class NullWriter extends Writer {
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
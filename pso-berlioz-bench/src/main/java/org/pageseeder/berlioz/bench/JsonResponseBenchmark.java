@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.servlet.BerliozServlet;
+import org.pageseeder.mock.servlet.MockHttpServletRequest;
+import org.pageseeder.mock.servlet.MockHttpServletResponse;
+
+/**
+ * Compares the two ways a JSON response can be produced for an API service whose generators
+ * use the universal API: XML transformed to JSON by an XSLT style sheet, or JSON written directly
+ * by the generators.
+ *
+ * <p>Both go through the full request pipeline of the servlet, the JSON is written directly when
+ * the request prefers <code>application/json</code>.
+ *
+ * <p>Use the GC profiler (<code>-prof gc</code>) to compare the allocations.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonResponseBenchmark {
+
+  /**
+   * The number of items returned by the generator.
+   */
+  @Param({"10", "100", "1000"})
+  public int items;
+
+  /**
+   * The accepted encoding ("identity" for no compression).
+   */
+  @Param({"identity", "gzip"})
+  public String encoding;
+
+  private BerliozServlet servlet;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, ServletException, BerliozException {
+    File webinf = Fixture.webinf(1, this.items, Collections.emptyMap(), UniversalSampleGenerator.class);
+    Fixture.setup(webinf);
+    this.servlet = Fixture.servlet(webinf, "/xslt/json.xsl");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.servlet.destroy();
+  }
+
+  @Benchmark
+  public int xslt() throws IOException, ServletException {
+    return get(Fixture.request("/m0/r0", this.encoding));
+  }
+
+  @Benchmark
+  public int direct() throws IOException, ServletException {
+    MockHttpServletRequest req = Fixture.request("/m0/r0", this.encoding);
+    req.setHeader("Accept", "application/json");
+    return get(req);
+  }
+
+  private int get(MockHttpServletRequest req) throws IOException, ServletException {
+    MockHttpServletResponse res = Fixture.response();
+    this.servlet.doGet(req, res);
+    return res.getStatus();
+  }
+
+}
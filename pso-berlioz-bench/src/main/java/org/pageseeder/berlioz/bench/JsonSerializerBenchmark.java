@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.aeson.JSONSerializer;
+import org.pageseeder.berlioz.aeson.JSONWriterFactory;
+import org.pageseeder.berlioz.xml.XmlAppendable;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Measures the conversion of XML to JSON with the Aeson serializer.
+ *
+ * <p>The same parser is reused so that the benchmark reports the cost of the serializer and
+ * the parsing rather than the creation of the parser.
+ *
+ * <p>The typed XML maps elements to string and number properties so that the text of elements
+ * is serialized as values. Each benchmark is run with the writer selected by the factory and with
+ * the built-in writer.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializerBenchmark {
+
+  /**
+   * The number of items in the XML.
+   */
+  @Param({"10", "1000"})
+  public int items;
+
+  /**
+   * Whether to use the built-in JSON writer instead of the one selected by the factory.
+   */
+  @Param({"false", "true"})
+  public boolean builtin;
+
+  private String xml;
+
+  private String typedXml;
+
+  private SAXParser parser;
+
+  @Setup
+  public void setup() throws ParserConfigurationException, SAXException {
+    StringBuilder out = new StringBuilder();
+    XmlAppendable<StringBuilder> xml = new XmlAppendable<>(out);
+    xml.openElement("items", true);
+    xml.attribute("xmlns:json", JSONSerializer.NS_URI);
+    xml.attribute("count", this.items);
+    xml.openElement("json:array", true);
+    xml.attribute("json:name", "item");
+    for (int i = 0; i < this.items; i++) {
+      xml.openElement("item", true);
+      xml.attribute("id", i);
+      xml.attribute("type", i % 3 == 0? "document" : "folder");
+      xml.element("title", "Item #"+i+" & <friends>");
+      xml.element("description", "A short description of the item used to fill the page with some text.");
+      xml.closeElement();
+    }
+    xml.closeElement();
+    xml.closeElement();
+    this.xml = out.toString();
+    out.setLength(0);
+    xml.openElement("items", true);
+    xml.attribute("xmlns:json", JSONSerializer.NS_URI);
+    xml.attribute("json:number", "count id size");
+    xml.attribute("json:string", "title description");
+    xml.attribute("count", this.items);
+    xml.openElement("json:array", true);
+    xml.attribute("json:name", "item");
+    for (int i = 0; i < this.items; i++) {
+      xml.openElement("item", true);
+      xml.attribute("id", i);
+      xml.attribute("type", i % 3 == 0? "document" : "folder");
+      xml.element("title", "Item #"+i+" & <friends>");
+      xml.element("description", "A short description of the item used to fill the page with some text.");
+      xml.element("size", Integer.toString(i * 1024));
+      xml.closeElement();
+    }
+    xml.closeElement();
+    xml.closeElement();
+    this.typedXml = out.toString();
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    this.parser = factory.newSAXParser();
+  }
+
+  @Benchmark
+  public String serialize() throws IOException, SAXException {
+    StringWriter json = new StringWriter(this.xml.length());
+    this.parser.reset();
+    this.parser.parse(new InputSource(new StringReader(this.xml)), newSerializer(json));
+    return json.toString();
+  }
+
+  @Benchmark
+  public String serializeTyped() throws IOException, SAXException {
+    StringWriter json = new StringWriter(this.typedXml.length());
+    this.parser.reset();
+    this.parser.parse(new InputSource(new StringReader(this.typedXml)), newSerializer(json));
+    return json.toString();
+  }
+
+  private JSONSerializer newSerializer(StringWriter json) {
+    return this.builtin? new JSONSerializer(JSONWriterFactory.newBuiltinInstance(json)) : new JSONSerializer(json);
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.bundler.CSSMin;
+import org.pageseeder.berlioz.bundler.JSMin;
+import org.pageseeder.berlioz.bundler.ParsingException;
+
+/**
+ * Measures the CSS and JavaScript minimizers used by the bundler.
+ *
+ * <p>The <code>css</code> benchmark measures the legacy CSS minimizer loading the whole style
+ * sheet in memory, <code>cssStreaming</code> the single pass minimizer used by the bundler.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinifierBenchmark {
+
+  /**
+   * The approximate size of the source in characters.
+   */
+  @Param({"4096", "65536"})
+  public int size;
+
+  private String css;
+
+  private byte[] js;
+
+  @Setup
+  public void setup() {
+    this.css = Synthetic.css(this.size);
+    this.js = Synthetic.js(this.size).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public String css() {
+    StringWriter min = new StringWriter(this.size);
+    CSSMin.minimize(new StringReader(this.css), new PrintWriter(min));
+    return min.toString();
+  }
+
+  @Benchmark
+  public byte[] cssStreaming() {
+    ByteArrayOutputStream min = new ByteArrayOutputStream(this.size);
+    CSSMin.minimize(new StringReader(this.css), min);
+    return min.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] js() throws IOException, ParsingException {
+    ByteArrayOutputStream min = new ByteArrayOutputStream(this.size);
+    new JSMin(new ByteArrayInputStream(this.js), min).jsmin();
+    return min.toByteArray();
+  }
+
+  /**
+   * Generates style sheets and scripts resembling hand-written sources.
+   */
+  static final class Synthetic {
+
+    private Synthetic() {
+    }
+
+    /**
+     * @param size The approximate size of the style sheet
+     *
+     * @return a style sheet with comments, selectors, shorthand properties and colors
+     */
+    static String css(int size) {
+      StringBuilder css = new StringBuilder(size + 256);
+      for (int i = 0; css.length() < size; i++) {
+        css.append("/* Component ").append(i).append(" */\n");
+        css.append(".block-").append(i).append(" > .element, .block-").append(i).append(":hover {\n");
+        css.append("  margin: 0px 0px 0px 0px;\n");
+        css.append("  padding: 10px 20px 10px 20px;\n");
+        css.append("  color: #FFFFFF;\n");
+        css.append("  background: url(\"images/bg-").append(i % 10).append(".png\") no-repeat;\n");
+        css.append("  font-weight: bold;\n");
+        css.append("}\n\n");
+      }
+      return css.toString();
+    }
+
+    /**
+     * @param size The approximate size of the script
+     *
+     * @return a script with comments, functions, strings and regular expressions
+     */
+    static String js(int size) {
+      StringBuilder js = new StringBuilder(size + 256);
+      for (int i = 0; js.length() < size; i++) {
+        js.append("/**\n * Function ").append(i).append("\n */\n");
+        js.append("function handler").append(i).append("(event, options) {\n");
+        js.append("  // Ignore events without a target\n");
+        js.append("  if (event.target == null) return false;\n");
+        js.append("  var label = 'Item ' + ").append(i).append(" + \" clicked\";\n");
+        js.append("  var clean = label.replace(/\\s+/g, ' ');\n");
+        js.append("  for (var i = 0; i < options.length; i++) {\n");
+        js.append("    options[i].value = clean + i;\n");
+        js.append("  }\n");
+        js.append("  return true;\n");
+        js.append("}\n\n");
+      }
+      return js.toString();
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.MatchingService;
+import org.pageseeder.berlioz.content.ServiceLoader;
+import org.pageseeder.berlioz.content.ServiceRegistry;
+import org.pageseeder.berlioz.http.HttpMethod;
+
+/**
+ * Measures the lookup of the matching service in the service registry for applications with
+ * increasing numbers of services.
+ *
+ * <p>Unlike the {@link RoutingBenchmark}, the services are loaded from a services configuration
+ * and include the lookup by HTTP method and the creation of the matching service.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryBenchmark {
+
+  /**
+   * The number of services in the application.
+   */
+  @Param({"10", "100", "1000", "10000"})
+  public int services;
+
+  private ServiceRegistry registry;
+
+  private String[] paths;
+
+  private int next = 0;
+
+  @Setup
+  public void setup() throws IOException, BerliozException {
+    File webinf = Fixture.webinf(this.services, 1, Collections.emptyMap());
+    Fixture.setup(webinf);
+    this.registry = ServiceLoader.getInstance().getDefaultRegistry().snapshot();
+    this.paths = Fixture.paths(this.services, 256);
+  }
+
+  @Benchmark
+  public MatchingService get() {
+    String path = this.paths[this.next];
+    this.next = (this.next + 1) % this.paths.length;
+    return this.registry.get(path, HttpMethod.GET);
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.MatchingService;
+import org.pageseeder.berlioz.content.ServiceLoader;
+import org.pageseeder.berlioz.http.HttpMethod;
+import org.pageseeder.berlioz.servlet.BerliozConfig;
+import org.pageseeder.berlioz.servlet.XMLResponse;
+import org.pageseeder.berlioz.servlet.XSLTransformResult;
+import org.pageseeder.berlioz.servlet.XSLTransformer;
+import org.pageseeder.mock.servlet.MockHttpServletRequest;
+
+/**
+ * Measures the two main stages of a response separately: the generation of the XML content by
+ * the generators of the service and its transformation by the XSLT style sheet.
+ *
+ * <p>The sample generator is cacheable, so when the fragment cache is enabled its content is
+ * only generated once.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+  /**
+   * The number of items returned by the generator.
+   */
+  @Param({"10", "100", "1000"})
+  public int items;
+
+  /**
+   * The budget of the generator fragment cache in kilobytes (0 to disable).
+   */
+  @Param({"0", "4096"})
+  public int fragmentCache;
+
+  private BerliozConfig config;
+
+  private MatchingService match;
+
+  private XSLTransformer transformer;
+
+  private MockHttpServletRequest req;
+
+  private String content;
+
+  @Setup
+  public void setup() throws IOException, BerliozException {
+    Map<String, String> properties = Collections.singletonMap("berlioz.generator.fragment-cache", Integer.toString(this.fragmentCache));
+    File webinf = Fixture.webinf(1, this.items, properties);
+    Fixture.setup(webinf);
+    this.config = BerliozConfig.newConfig(Fixture.config(webinf));
+    this.match = ServiceLoader.getInstance().getDefaultRegistry().get("/m0/r0", HttpMethod.GET);
+    this.transformer = this.config.getTransformer(this.match.service());
+    this.req = Fixture.request("/m0/r0", null);
+    this.content = new XMLResponse(this.req, Fixture.response(), this.config, this.match, false).generate();
+  }
+
+  @Benchmark
+  public String generate() throws IOException {
+    XMLResponse xml = new XMLResponse(this.req, Fixture.response(), this.config, this.match, false);
+    return xml.generate();
+  }
+
+  @Benchmark
+  public int generateBuffer() throws IOException {
+    XMLResponse xml = new XMLResponse(this.req, Fixture.response(), this.config, this.match, false);
+    return xml.generateBuffer().length();
+  }
+
+  @Benchmark
+  public CharSequence transform() {
+    XSLTransformResult result = this.transformer.transform(this.content, this.req, this.match.service());
+    return result.content();
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.furi.URIPattern;
+import org.pageseeder.berlioz.furi.URIPatternIndex;
+import org.pageseeder.berlioz.furi.URIResolveResult;
+import org.pageseeder.berlioz.furi.URIResolver;
+import org.pageseeder.berlioz.furi.URIResolver.MatchRule;
+
+/**
+ * Compares the linear scan of URI patterns with the URI pattern index.
+ *
+ * <p>Each iteration finds the best pattern for a URL and resolves its variables which
+ * is what the service registry does for every request.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+  /**
+   * The number of URI patterns to match against.
+   */
+  @Param({"10", "100", "1000", "10000"})
+  public int patterns;
+
+  private List<URIPattern> list;
+
+  private URIPatternIndex index;
+
+  private String[] urls;
+
+  private int next = 0;
+
+  @Setup
+  public void setup() {
+    this.list = Synthetic.patterns(this.patterns);
+    this.index = new URIPatternIndex(this.list);
+    this.urls = Synthetic.urls(this.patterns, 256);
+  }
+
+  @Benchmark
+  public URIResolveResult linear() {
+    URIResolver resolver = new URIResolver(nextURL());
+    URIPattern p = resolver.find(this.list, MatchRule.BEST_MATCH);
+    return p != null ? resolver.resolve(p) : null;
+  }
+
+  @Benchmark
+  public URIResolveResult index() {
+    return this.index.resolve(nextURL());
+  }
+
+  private String nextURL() {
+    String url = this.urls[this.next];
+    this.next = (this.next + 1) % this.urls.length;
+    return url;
+  }
+
+  /**
+   * Generates synthetic URI patterns and URLs resembling a typical Berlioz application.
+   */
+  static final class Synthetic {
+
+    private static final String[] SHAPES = {
+        "/m%d/r%d.html",
+        "/m%d/r%d/{id}.html",
+        "/m%d/r%d/{id}/edit.html",
+        "/m%d/r%d/{+path}",
+        "/m%d-{name}/r%d.json",
+        "/api/m%d/r%d/{id}",
+        "/api/m%d/r%d{?q,page}",
+    };
+
+    private Synthetic() {
+    }
+
+    /**
+     * @param count The number of patterns to generate
+     *
+     * @return the list of URI patterns
+     */
+    static List<URIPattern> patterns(int count) {
+      List<URIPattern> patterns = new ArrayList<>(count);
+      patterns.add(new URIPattern("/{+path}"));
+      for (int i = 1; i < count; i++) {
+        patterns.add(new URIPattern(String.format(SHAPES[i % SHAPES.length], i / 50, i)));
+      }
+      return patterns;
+    }
+
+    /**
+     * @param count The number of patterns generated
+     * @param size  The number of URLs to generate
+     *
+     * @return URLs matching or not matching the patterns
+     */
+    static String[] urls(int count, int size) {
+      Random random = new Random(42);
+      String[] urls = new String[size];
+      for (int i = 0; i < size; i++) {
+        int r = 1 + random.nextInt(Math.max(1, count - 1));
+        String template = SHAPES[r % SHAPES.length]
+            .replace("{id}", Integer.toString(random.nextInt(1000)))
+            .replace("{+path}", "a/b/c.html")
+            .replace("{name}", "n")
+            .replace("{?q,page}", "?q=x");
+        urls[i] = String.format(template, r / 50, r);
+      }
+      return urls;
+    }
+  }
+
+}
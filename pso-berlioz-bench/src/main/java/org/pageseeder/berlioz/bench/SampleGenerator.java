@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.IOException;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.Cacheable;
+import org.pageseeder.berlioz.content.ContentGenerator;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+/**
+ * A generator returning a list of items similar to a typical search or listing page.
+ *
+ * <p>The number of items is specified by the "items" parameter.
+ *
+ * <p>This generator is cacheable, its etag only depends on the number of items.
+ *
+ * @author Christophe Lauret
+ */
+public final class SampleGenerator implements ContentGenerator, Cacheable {
+
+  @Override
+  public String getETag(ContentRequest req) {
+    return "items-"+req.getIntParameter("items", 10);
+  }
+
+  @Override
+  public void process(ContentRequest req, XMLWriter xml) throws BerliozException, IOException {
+    int items = req.getIntParameter("items", 10);
+    xml.openElement("items", true);
+    xml.attribute("count", items);
+    for (int i = 0; i < items; i++) {
+      xml.openElement("item", true);
+      xml.attribute("id", i);
+      xml.attribute("type", i % 3 == 0? "document" : "folder");
+      xml.element("title", "Item #"+i+" & <friends>");
+      xml.element("description", "A short description of the item used to fill the page with some text.");
+      xml.closeElement();
+    }
+    xml.closeElement();
+  }
+
+}
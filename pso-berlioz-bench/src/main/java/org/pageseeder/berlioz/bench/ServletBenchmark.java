@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.BerliozOption;
+import org.pageseeder.berlioz.servlet.BerliozServlet;
+import org.pageseeder.mock.servlet.MockHttpServletRequest;
+import org.pageseeder.mock.servlet.MockHttpServletResponse;
+
+/**
+ * Measures the full request pipeline of the Berlioz servlet from the routing of the request to
+ * the compressed output of the transformed response.
+ *
+ * <p>The requests are sent directly to a servlet initialised with the mock servlet configuration
+ * of a synthetic application; the response content is discarded.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServletBenchmark {
+
+  /**
+   * The number of services in the application.
+   */
+  @Param({"10", "1000"})
+  public int services;
+
+  /**
+   * The number of items returned by each generator.
+   */
+  @Param({"20"})
+  public int items;
+
+  /**
+   * Whether the XSLT output is streamed to the response.
+   */
+  @Param({"false", "true"})
+  public boolean streaming;
+
+  /**
+   * The accepted encoding ("identity" for no compression).
+   */
+  @Param({"identity", "gzip"})
+  public String encoding;
+
+  private BerliozServlet servlet;
+
+  private String[] paths;
+
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, ServletException, BerliozException {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(BerliozOption.XSLT_STREAMING.property(), Boolean.toString(this.streaming));
+    File webinf = Fixture.webinf(this.services, this.items, properties);
+    Fixture.setup(webinf);
+    this.servlet = Fixture.servlet(webinf);
+    this.paths = Fixture.paths(this.services, 256);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.servlet.destroy();
+  }
+
+  @Benchmark
+  public int get() throws IOException, ServletException {
+    MockHttpServletRequest req = Fixture.request(nextPath(), this.encoding);
+    MockHttpServletResponse res = Fixture.response();
+    this.servlet.doGet(req, res);
+    return res.getStatus();
+  }
+
+  private String nextPath() {
+    String path = this.paths[this.next];
+    this.next = (this.next + 1) % this.paths.length;
+    return path;
+  }
+
+}
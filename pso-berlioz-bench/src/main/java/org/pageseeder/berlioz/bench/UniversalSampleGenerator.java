@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import org.pageseeder.berlioz.content.Cacheable;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.berlioz.content.UniversalContentGenerator;
+import org.pageseeder.berlioz.output.UniversalWriter;
+import org.pageseeder.berlioz.output.UniversalWriter.ContextOption;
+import org.pageseeder.berlioz.output.UniversalWriter.FieldOption;
+
+/**
+ * The same list of items as the {@link SampleGenerator} written using the universal API.
+ *
+ * <p>The number of items is specified by the "items" parameter.
+ *
+ * <p>This generator is cacheable, its etag only depends on the number of items.
+ *
+ * @author Christophe Lauret
+ */
+public final class UniversalSampleGenerator implements UniversalContentGenerator, Cacheable {
+
+  @Override
+  public String getETag(ContentRequest req) {
+    return "items-"+req.getIntParameter("items", 10);
+  }
+
+  @Override
+  public void process(ContentRequest req, UniversalWriter out) {
+    int items = req.getIntParameter("items", 10);
+    out.startObject("items");
+    out.field("count", items);
+    out.startArray("item", ContextOption.JSON_ONLY);
+    for (int i = 0; i < items; i++) {
+      out.startObject("item");
+      out.field("id", i);
+      out.field("type", i % 3 == 0? "document" : "folder");
+      out.field("title", "Item #"+i+" & <friends>", FieldOption.XML_ELEMENT);
+      out.field("description", "A short description of the item used to fill the page with some text.", FieldOption.XML_ELEMENT);
+      out.endObject();
+    }
+    out.endArray();
+    out.endObject();
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.xml.XmlAppendable;
+import org.pageseeder.berlioz.xml.XmlByteWriter;
+import org.pageseeder.berlioz.xml.XmlStringBuilder;
+import org.pageseeder.berlioz.xml.XmlWriter;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+/**
+ * Compares the Berlioz <code>XmlAppendable</code> with the <code>XMLStringWriter</code> used by
+ * generators to write the same list of items.
+ *
+ * <p>Since the XML eventually goes to the response as UTF-8, the <code>*Bytes</code> benchmarks
+ * include the encoding to compare with the <code>XmlByteWriter</code>.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlAppendableBenchmark {
+
+  /**
+   * The number of items to write.
+   */
+  @Param({"10", "1000"})
+  public int items;
+
+  private String[] titles;
+
+  private final OutputStream out = Fixture.nullOutputStream();
+
+  private final XmlByteWriter reused = new XmlByteWriter();
+
+  @Setup
+  public void setup() {
+    this.titles = new String[this.items];
+    for (int i = 0; i < this.items; i++) {
+      this.titles[i] = "Item #"+i+" & <friends>";
+    }
+  }
+
+  @Benchmark
+  public String appendable() {
+    StringBuilder out = new StringBuilder(this.items * 128);
+    XmlAppendable<StringBuilder> xml = new XmlAppendable<>(out);
+    xml.openElement("items", true);
+    xml.attribute("count", this.items);
+    for (int i = 0; i < this.items; i++) {
+      xml.openElement("item", true);
+      xml.attribute("id", i);
+      xml.attribute("type", i % 3 == 0? "document" : "folder");
+      xml.element("title", this.titles[i]);
+      xml.element("description", "A short description of the item used to fill the page with some text.");
+      xml.closeElement();
+    }
+    xml.closeElement();
+    return out.toString();
+  }
+
+  @Benchmark
+  public String stringBuilder() {
+    XmlStringBuilder xml = new XmlStringBuilder();
+    write(xml);
+    return xml.toString();
+  }
+
+  @Benchmark
+  public byte[] appendableBytes() {
+    StringBuilder out = new StringBuilder(this.items * 128);
+    write(new XmlAppendable<>(out));
+    return out.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public byte[] stringBuilderBytes() {
+    XmlStringBuilder xml = new XmlStringBuilder();
+    write(xml);
+    return xml.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public byte[] byteWriter() {
+    XmlByteWriter xml = new XmlByteWriter(this.items * 128);
+    write(xml);
+    return xml.toByteArray();
+  }
+
+  @Benchmark
+  public int byteWriterReused() throws IOException {
+    XmlByteWriter xml = this.reused;
+    xml.reset();
+    write(xml);
+    xml.writeTo(this.out);
+    return xml.size();
+  }
+
+  @Benchmark
+  public String xmlwriter() throws IOException {
+    XMLWriter xml = new XMLStringWriter(NamespaceAware.No);
+    xml.openElement("items", true);
+    xml.attribute("count", this.items);
+    for (int i = 0; i < this.items; i++) {
+      xml.openElement("item", true);
+      xml.attribute("id", i);
+      xml.attribute("type", i % 3 == 0? "document" : "folder");
+      xml.element("title", this.titles[i]);
+      xml.element("description", "A short description of the item used to fill the page with some text.");
+      xml.closeElement();
+    }
+    xml.closeElement();
+    return xml.toString();
+  }
+
+  private void write(XmlWriter xml) {
+    xml.openElement("items", true);
+    xml.attribute("count", this.items);
+    for (int i = 0; i < this.items; i++) {
+      xml.openElement("item", true);
+      xml.attribute("id", i);
+      xml.attribute("type", i % 3 == 0? "document" : "folder");
+      xml.element("title", this.titles[i]);
+      xml.element("description", "A short description of the item used to fill the page with some text.");
+      xml.closeElement();
+    }
+    xml.closeElement();
+  }
+
+}
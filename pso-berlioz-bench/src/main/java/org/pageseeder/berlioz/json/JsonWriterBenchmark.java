@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.json;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pageseeder.berlioz.json.Json.JsonProvider;
+
+/**
+ * Compares the JSON writers for each JSON provider supported by Berlioz.
+ *
+ * <p>This benchmark is in the same package as the JSON writers so that each provider can be
+ * selected regardless of the libraries available on the classpath.
+ *
+ * @author Christophe Lauret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonWriterBenchmark {
+
+  /**
+   * The JSON provider.
+   */
+  @Param({"JACKSON", "GSON", "JSONP", "BUILTIN"})
+  public String provider;
+
+  /**
+   * The number of items to write.
+   */
+  @Param({"10", "1000"})
+  public int items;
+
+  private JsonProvider json;
+
+  private String[] titles;
+
+  @Setup
+  public void setup() {
+    this.json = JsonProvider.valueOf(this.provider);
+    this.titles = new String[this.items];
+    for (int i = 0; i < this.items; i++) {
+      this.titles[i] = "Item #"+i+" \"quoted\"\t& <friends>";
+    }
+  }
+
+  @Benchmark
+  public String write() {
+    StringWriter out = new StringWriter(this.items * 128);
+    JsonWriter json = this.json.newWriter(out);
+    json.startObject();
+    json.field("count", this.items);
+    json.startArray("items");
+    for (int i = 0; i < this.items; i++) {
+      json.startObject();
+      json.field("id", i);
+      json.field("type", i % 3 == 0? "document" : "folder");
+      json.field("title", this.titles[i]);
+      json.field("score", i / 7.0);
+      json.field("public", i % 2 == 0);
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+    json.close();
+    return out.toString();
+  }
+
+}
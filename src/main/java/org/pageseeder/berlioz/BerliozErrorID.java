@@ -85,7 +85,12 @@ package org.pageseeder.berlioz;
   /**
    * Multiple errors were thrown by a generator.
    */
-  GENERATOR_ERROR_MULTIPLE;
+  GENERATOR_ERROR_MULTIPLE,
+
+  /**
+   * A generator did not complete within the allocated time.
+   */
+  GENERATOR_TIMEOUT;
 
   /**
    * Returns a string representation of this error code.
@@ -22,7 +22,7 @@ package org.pageseeder.berlioz;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.10.3
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.8.4
  */
 public enum BerliozOption {
@@ -31,16 +31,16 @@ public enum BerliozOption {
    * A boolean global property to indicate whether Berlioz should enable HTTP compression.
    *
    * <p>If set to <code>true</code>, Berlioz will compress the content of the response using Gzip
-   * and set the HTTP headers <code>Content-Encoding</code>, <code>Vary</code> and possibly
+   * or Deflate and set the HTTP headers <code>Content-Encoding</code>, <code>Vary</code> and possibly
    * <code>Etag</code> appropriately.
    *
    * <p>Berlioz will not compress the response content if it is not considered compressible or if
-   * the client does not accept response compressed with GZip.
+   * the client does not accept response compressed with GZip or Deflate.
    *
    * <p>When HTTP compression is enabled and possible, the headers are modified as:
    * <pre>
    *   Vary: Accept-Encoding
-   *   Content-Length: <i>[Length of compressed content]</i>
+   *   Content-Length: <i>[Length of compressed content, only if known]</i>
    *   Content-Encoding: gzip
    *   Etag: "<i>[Uncompressed etag]</i>-gzip"
    * </pre>
@@ -71,6 +71,26 @@ public enum BerliozOption {
    */
   HTTP_COMPRESSION("berlioz.http.compression", Boolean.TRUE),
 
+  /**
+   * An integer global option to specify the compression level used for HTTP compression.
+   *
+   * <p>The level ranges from <code>1</code> (fastest) to <code>9</code> (best compression);
+   * <code>-1</code> uses the default compression level of the deflater. Invalid values are
+   * ignored.
+   *
+   * <h3>Property</h3>
+   * <table summary="HTTP compression level usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.http.compression-level</code></td>
+   *     <td><code>-1</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  HTTP_COMPRESSION_LEVEL("berlioz.http.compression-level", Integer.valueOf(-1)),
+
   /**
    * A boolean global option to indicate whether HTTP POST requests for which there is no specific
    * service should be processed as a GET request.
@@ -165,6 +185,27 @@ public enum BerliozOption {
    */
   HTTP_SERVICE_HEADER("berlioz.http.service-header", Boolean.FALSE),
 
+  /**
+   * An integer global option to specify the maximum amount of memory in kilobytes that can be used
+   * to keep the output of cacheable services in memory.
+   *
+   * <p>When enabled, the transformed output of cacheable services is reused for as long as its
+   * Etag is unchanged, so that neither the generators nor the XSLT transformation are invoked.
+   * A value of <code>0</code> disables the response cache.
+   *
+   * <h3>Property</h3>
+   * <table summary="HTTP response cache usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.http.response-cache</code></td>
+   *     <td><code>0</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  HTTP_RESPONSE_CACHE("berlioz.http.response-cache", Integer.valueOf(0)),
+
   /**
    * A boolean global option to indicate whether Berlioz should use its own error handler when
    * an error occurs.
@@ -235,6 +276,119 @@ public enum BerliozOption {
    */
   PROFILE("berlioz.profile", Boolean.FALSE),
 
+  /**
+   * A boolean global option to indicate whether the generators of a service should be invoked
+   * concurrently.
+   *
+   * <p>When enabled, the generators of a service are invoked in parallel using a bounded pool of
+   * threads and their output is assembled in the order they are declared, so that the XML is the
+   * same as when they are invoked sequentially.
+   *
+   * <p>This option can be overridden for each service using the <code>parallel</code> attribute
+   * in the service configuration. Only generators which do not depend on each other and do not
+   * rely on thread-bound state should be invoked in parallel.
+   *
+   * <h3>Property</h3>
+   * <table summary="Parallel generators usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.generator.parallel</code></td>
+   *     <td><code>false</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  GENERATOR_PARALLEL("berlioz.generator.parallel", Boolean.FALSE),
+
+  /**
+   * An integer global option to specify the maximum number of threads used to invoke generators
+   * concurrently.
+   *
+   * <h3>Property</h3>
+   * <table summary="Generator threads usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.generator.threads</code></td>
+   *     <td><code>8</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  GENERATOR_THREADS("berlioz.generator.threads", Integer.valueOf(8)),
+
+  /**
+   * An integer global option to specify the default time in milliseconds after which Berlioz stops
+   * waiting for a generator.
+   *
+   * <p>When a generator times out, its content is replaced by a <code>berlioz-exception</code>
+   * element and its status is set to <code>504</code>. A value of <code>0</code> disables the
+   * timeout.
+   *
+   * <p>This option can be overridden for each generator using the <code>timeout</code> attribute
+   * in the service configuration.
+   *
+   * <h3>Property</h3>
+   * <table summary="Generator timeout usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.generator.timeout</code></td>
+   *     <td><code>0</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  GENERATOR_TIMEOUT("berlioz.generator.timeout", Integer.valueOf(0)),
+
+  /**
+   * An integer global option to specify the maximum amount of memory in kilobytes that can be used
+   * to keep the content rendered by cacheable generators in memory.
+   *
+   * <p>When enabled, the content of a cacheable generator is reused for as long as its Etag and
+   * the parameters of its request are unchanged, even if the rest of the page has changed.
+   * A value of <code>0</code> disables the fragment cache.
+   *
+   * <p>Generators can opt out using the <code>fragment-cache="false"</code> attribute in the
+   * service configuration.
+   *
+   * <h3>Property</h3>
+   * <table summary="Generator fragment cache usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.generator.fragment-cache</code></td>
+   *     <td><code>0</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  GENERATOR_FRAGMENT_CACHE("berlioz.generator.fragment-cache", Integer.valueOf(0)),
+
+  /**
+   * An integer global option to specify the maximum amount of memory in kilobytes that can be used
+   * to keep the XML of the files copied by <code>XMLCopy</code> in memory.
+   *
+   * <p>When enabled, a file is only parsed again when its length or last modified date has
+   * changed; otherwise the XML checked during the first copy is written directly. Since changes
+   * to external entities, or changes which keep the same length within the precision of the
+   * last modified date, are not detected, the cache should only be enabled for files which
+   * rarely change. A value of <code>0</code> disables the cache.
+   *
+   * <h3>Property</h3>
+   * <table summary="XML copy cache usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.xml.copy-cache</code></td>
+   *     <td><code>0</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  XML_COPY_CACHE("berlioz.xml.copy-cache", Integer.valueOf(0)),
+
   /**
    * A boolean global option to indicate whether to enable the caching of XSLT templates.
    *
@@ -259,6 +413,78 @@ public enum BerliozOption {
    */
   XSLT_CACHE("berlioz.xslt.cache", Boolean.TRUE),
 
+  /**
+   * A boolean global option to indicate whether the XML content should be streamed into the XSLT
+   * transformer and the results of the transformation streamed to the client.
+   *
+   * <p>When enabled, the XML produced by the generators is reported to the XSLT transformer as
+   * SAX events instead of being serialized and parsed again, and the output is written directly
+   * to the response instead of being buffered.
+   *
+   * <p>The response is still buffered for <code>HEAD</code> requests, services without XSLT and
+   * templates which cannot be streamed. Since nothing is written until all generators have
+   * completed, redirects and errors are handled in the same way. However, if the XSLT
+   * transformation fails after the response has been committed, the error cannot be displayed.
+   *
+   * <h3>Property</h3>
+   * <table summary="XSLT streaming usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.xslt.streaming</code></td>
+   *     <td><code>false</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  XSLT_STREAMING("berlioz.xslt.streaming", Boolean.FALSE),
+
+  /**
+   * An integer global option to specify the maximum number of transformers that can be reused for
+   * each cached XSLT templates.
+   *
+   * <p>When all the transformers of the pool are in use, a transformation waits for one to be
+   * released. A value of <code>0</code> sets the size to twice the number of processors.
+   *
+   * <h3>Property</h3>
+   * <table summary="XSLT pool size usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.xslt.pool-size</code></td>
+   *     <td><code>0</code></td>
+   *   </tr>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  XSLT_POOL_SIZE("berlioz.xslt.pool-size", Integer.valueOf(0)),
+
+  /**
+   * An integer global option to specify the interval in seconds after which Berlioz checks
+   * whether the services files have changed.
+   *
+   * <p>Only the files which have changed are loaded again. A value of <code>0</code> disables
+   * the check, the services are then only reloaded using the control parameters.
+   *
+   * <h3>Property</h3>
+   * <table summary="Services check interval usage">
+   *   <tr><th>Name</th><th>Value</th></tr>
+   *   <tr>
+   *     <td><code>berlioz.services.check-interval</code></td>
+   *     <td><code>0</code></td>
+   *   </tr>
+   * </table>
+   *
+   * <h3>Recommended values</h3>
+   * <table summary="Services check interval recommended value">
+   *   <tr><th>Development</th><th>Production</th></tr>
+   *   <tbody><tr><td><code>2</code></td><td><code>0</code></td></tr></tbody>
+   * </table>
+   *
+   * @since Berlioz 0.13.0
+   */
+  SERVICES_CHECK_INTERVAL("berlioz.services.check-interval", Integer.valueOf(0)),
+
   /**
    * Indicates the version of the XML header format  berlioz should use.
    *
@@ -436,6 +662,20 @@ public enum BerliozOption {
     return this._default.getClass() == Boolean.class;
   }
 
+  /**
+   * Indicates whether the type of this property is an integer.
+   *
+   * <p>Implementation note: this is based on the class of the default value.
+   *
+   * @return <code>true</code> if this property is of type integer;
+   *         <code>false</code> otherwise.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public boolean isInteger() {
+    return this._default.getClass() == Integer.class;
+  }
+
   /**
    * Returns the same as the <code>property()</code> method.
    *
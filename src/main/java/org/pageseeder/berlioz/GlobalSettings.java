@@ -21,7 +21,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -29,8 +28,8 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.xml.XMLConfig;
@@ -73,7 +72,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.3
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.6
  */
 public final class GlobalSettings {
@@ -131,10 +130,15 @@ public final class GlobalSettings {
    */
   private static volatile @Nullable Map<String, Properties> nodes;
 
+  /**
+   * The values of the Berlioz options for the global properties.
+   */
+  private static volatile @Nullable OptionSnapshot options;
+
   /**
    * The list of listeners to invoke when the global settings have been reloaded.
    */
-  private static final List<ConfigListener> LISTENERS = new ArrayList<>();
+  private static final List<ConfigListener> LISTENERS = new CopyOnWriteArrayList<>();
 
   // Constructor
   // ---------------------------------------------------------------------------------
@@ -286,7 +290,7 @@ public final class GlobalSettings {
    * @throws IllegalStateException If this class has not been setup properly.
    */
   public static String get(BerliozOption option) throws IllegalStateException {
-    return get(option.property(), option.defaultTo().toString());
+    return options().get(option);
   }
 
   /**
@@ -306,12 +310,54 @@ public final class GlobalSettings {
    * @throws NullPointerException     If the specified option is <code>null</code>.
    */
   public static boolean has(BerliozOption option) {
-    Objects.requireNonNull(option, "No Berlioz option specified");
-    @Nullable String value = ensureSettings().get(option.property());
-    Object def = option.defaultTo();
-    if (option.isBoolean()) return value != null? Boolean.parseBoolean(value) : (Boolean) def;
-    else
-      throw new IllegalArgumentException("Trying to get non-boolean option '"+option.property()+"' as boolean.");
+    return options().has(option);
+  }
+
+  /**
+   * Returns the integer value of the property for the specified Berlioz option.
+   *
+   * <p>Returns the <code>default</code> value if the property is not found, defined or is not
+   * a valid integer.
+   *
+   * <p>If the properties file has not been loaded, this method will invoke the {@link #load()}
+   * method.
+   *
+   * @param option the name of the property
+   *
+   * @return the integer value of the specified option.
+   *
+   * @throws IllegalStateException    If this class has not been setup properly.
+   * @throws IllegalArgumentException If the option is not an integer option.
+   * @throws NullPointerException     If the specified option is <code>null</code>.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static int getInt(BerliozOption option) {
+    return options().getInt(option);
+  }
+
+  /**
+   * Returns the values of all the Berlioz options for the current settings.
+   *
+   * <p>The snapshot is immutable and replaced each time the settings are loaded, code which
+   * needs several options can use the same snapshot to get consistent values.
+   *
+   * <p>If the properties file has not been loaded, this method will invoke the {@link #load()}
+   * method.
+   *
+   * @return the values of the Berlioz options.
+   *
+   * @throws IllegalStateException If this class has not been setup properly.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static OptionSnapshot options() {
+    OptionSnapshot o = options;
+    if (o == null) {
+      load();
+      o = options;
+    }
+    return o != null? o : OptionSnapshot.DEFAULTS;
   }
 
   /**
@@ -646,6 +692,7 @@ public final class GlobalSettings {
       // Reset after loading
       settings = properties;
       nodes = new Hashtable<>();
+      options = new OptionSnapshot(properties);
     }
 
     // Notify the listeners
@@ -666,6 +713,8 @@ public final class GlobalSettings {
   /**
    * Add a listener to invoke when the settings are being loaded or reloaded.
    *
+   * <p>When the listener is invoked, the new {@link #options()} are already available.
+   *
    * @param listener The listener to register.
    */
   @Beta
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An immutable snapshot of the values of all the Berlioz options.
+ *
+ * <p>The values are parsed once when the global settings are loaded, so that options can be
+ * read on every request without any lookup or parsing.
+ *
+ * <p>Use {@link GlobalSettings#options()} to get the snapshot for the current settings; a new
+ * snapshot is created each time the settings are loaded.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class OptionSnapshot {
+
+  /**
+   * A snapshot with the default value of each option.
+   */
+  static final OptionSnapshot DEFAULTS = new OptionSnapshot(Collections.emptyMap());
+
+  /**
+   * The string values of the options by ordinal.
+   */
+  private final String[] _values;
+
+  /**
+   * The boolean values of the boolean options by ordinal.
+   */
+  private final boolean[] _booleans;
+
+  /**
+   * The integer values of the integer options by ordinal.
+   */
+  private final int[] _ints;
+
+  /**
+   * Creates a snapshot from the specified settings.
+   *
+   * @param settings The global settings.
+   */
+  OptionSnapshot(Map<String, String> settings) {
+    BerliozOption[] options = BerliozOption.values();
+    this._values = new String[options.length];
+    this._booleans = new boolean[options.length];
+    this._ints = new int[options.length];
+    for (BerliozOption option : options) {
+      int i = option.ordinal();
+      @Nullable String value = settings.get(option.property());
+      Object def = option.defaultTo();
+      this._values[i] = value != null? value : def.toString();
+      if (option.isBoolean()) {
+        this._booleans[i] = value != null? Boolean.parseBoolean(value) : ((Boolean)def).booleanValue();
+      } else if (option.isInteger()) {
+        this._ints[i] = toInt(value, ((Integer)def).intValue());
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the specified option.
+   *
+   * @param option The Berlioz option
+   *
+   * @return the value of the option or its default value
+   *
+   * @throws NullPointerException If the specified option is <code>null</code>.
+   */
+  public String get(BerliozOption option) {
+    return this._values[option.ordinal()];
+  }
+
+  /**
+   * Indicates whether the specified boolean option is enabled.
+   *
+   * @param option The Berlioz option
+   *
+   * @return whether the specified option is set to <code>true</code> or not.
+   *
+   * @throws IllegalArgumentException If the option is not a boolean option.
+   * @throws NullPointerException     If the specified option is <code>null</code>.
+   */
+  public boolean has(BerliozOption option) {
+    Objects.requireNonNull(option, "No Berlioz option specified");
+    if (!option.isBoolean())
+      throw new IllegalArgumentException("Trying to get non-boolean option '"+option.property()+"' as boolean.");
+    return this._booleans[option.ordinal()];
+  }
+
+  /**
+   * Returns the value of the specified integer option.
+   *
+   * @param option The Berlioz option
+   *
+   * @return the integer value of the option or its default value if it is not a valid integer.
+   *
+   * @throws IllegalArgumentException If the option is not an integer option.
+   * @throws NullPointerException     If the specified option is <code>null</code>.
+   */
+  public int getInt(BerliozOption option) {
+    Objects.requireNonNull(option, "No Berlioz option specified");
+    if (!option.isInteger())
+      throw new IllegalArgumentException("Trying to get non-integer option '"+option.property()+"' as integer.");
+    return this._ints[option.ordinal()];
+  }
+
+  /**
+   * @param value The value to parse
+   * @param def   The default value
+   *
+   * @return the integer value or the default value if the value is not a valid integer.
+   */
+  private static int toInt(@Nullable String value, int def) {
+    if (value == null) return def;
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException ex) {
+      return def;
+    }
+  }
+
+}
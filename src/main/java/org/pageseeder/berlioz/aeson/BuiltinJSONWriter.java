@@ -16,20 +16,49 @@
 package org.pageseeder.berlioz.aeson;
 
 import java.io.PrintWriter;
+import java.util.Arrays;
 
 /**
- * An implementation of a JSON Writer backed by
+ * An implementation of a JSON Writer backed by a print writer.
+ *
+ * <p>The JSON is escaped into an internal character buffer which is written to the print writer
+ * when it is full, when the top-level value is complete or when the writer is closed, so that
+ * the print writer is not invoked for every character.
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 final class BuiltinJSONWriter implements JSONWriter {
 
+  /**
+   * The size of the internal buffer.
+   */
+  private static final int BUFFER_SIZE = 1024;
+
+  /**
+   * Hexadecimal digits for escaped control characters.
+   */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
 
   private final PrintWriter _json;
 
+  /**
+   * The characters which have not been written to the print writer yet.
+   */
+  private final char[] _buffer = new char[BUFFER_SIZE];
+
+  /**
+   * Scratch buffer for the digits of long values.
+   */
+  private final char[] _digits = new char[19];
+
+  /**
+   * The number of characters in the buffer.
+   */
+  private int position = 0;
+
   private boolean first = true;
 
   private char[] c = new char[32];
@@ -42,52 +71,54 @@ final class BuiltinJSONWriter implements JSONWriter {
 
   @Override
   public JSONWriter startArray(String name) {
-    this.c[++this.level]=']';
+    push(']');
     maybeAppendComma(true);
     appendJSONString(name);
-    this._json.append(':');
-    this._json.append('[');
+    append(':');
+    append('[');
     return this;
   }
 
   @Override
   public JSONWriter startArray() {
-    this.c[++this.level]=']';
+    push(']');
     maybeAppendComma(true);
-    this._json.append('[');
+    append('[');
     return this;
   }
 
   @Override
   public JSONWriter startObject(String name) {
-    this.c[++this.level]='}';
+    push('}');
     maybeAppendComma(true);
     appendJSONString(name);
-    this._json.append(':');
-    this._json.append('{');
+    append(':');
+    append('{');
     return this;
   }
 
   @Override
   public JSONWriter startObject() {
-    this.c[++this.level]='}';
+    push('}');
     maybeAppendComma(true);
-    this._json.append('{');
+    append('{');
     return this;
   }
 
   @Override
   public JSONWriter end() {
     if (this.level < 0) throw new IllegalStateException("Nothing to end!");
-    this._json.append(this.c[this.level--]);
+    append(this.c[this.level--]);
     this.first = false;
+    done();
     return this;
   }
 
   @Override
   public JSONWriter writeNull() {
     maybeAppendComma(false);
-    this._json.append("null");
+    append("null");
+    done();
     return this;
   }
 
@@ -95,8 +126,8 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter writeNull(String name) {
     maybeAppendComma(false);
     appendJSONString(name);
-    this._json.append(':');
-    this._json.append("null");
+    append(':');
+    append("null");
     return this;
   }
 
@@ -104,6 +135,7 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter value(double number) {
     maybeAppendComma(false);
     appendJSONDouble(number);
+    done();
     return this;
   }
 
@@ -111,6 +143,7 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter value(long number) {
     maybeAppendComma(false);
     appendJSONLong(number);
+    done();
     return this;
   }
 
@@ -118,6 +151,15 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter value(String value) {
     maybeAppendComma(false);
     appendJSONString(value);
+    done();
+    return this;
+  }
+
+  @Override
+  public JSONWriter value(CharSequence value) {
+    maybeAppendComma(false);
+    appendJSONString(value);
+    done();
     return this;
   }
 
@@ -125,6 +167,7 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter value(boolean value) {
     maybeAppendComma(false);
     appendJSONBoolean(value);
+    done();
     return this;
   }
 
@@ -132,7 +175,16 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter property(String name, String value) {
     maybeAppendComma(false);
     appendJSONString(name);
-    this._json.append(':');
+    append(':');
+    appendJSONString(value);
+    return this;
+  }
+
+  @Override
+  public JSONWriter property(String name, CharSequence value) {
+    maybeAppendComma(false);
+    appendJSONString(name);
+    append(':');
     appendJSONString(value);
     return this;
   }
@@ -141,7 +193,7 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter property(String name, boolean value) {
     maybeAppendComma(false);
     appendJSONString(name);
-    this._json.append(':');
+    append(':');
     appendJSONBoolean(value);
     return this;
   }
@@ -150,7 +202,7 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter property(String name, double value) {
     maybeAppendComma(false);
     appendJSONString(name);
-    this._json.append(':');
+    append(':');
     appendJSONDouble(value);
     return this;
   }
@@ -159,69 +211,149 @@ final class BuiltinJSONWriter implements JSONWriter {
   public JSONWriter property(String name, long value) {
     maybeAppendComma(false);
     appendJSONString(name);
-    this._json.append(':');
+    append(':');
     appendJSONLong(value);
     return this;
   }
 
   @Override
   public void close() {
+    flushBuffer();
     this._json.close();
   }
 
-  private void appendJSONString(String s) {
-    this._json.append('"');
+  private void appendJSONString(CharSequence s) {
+    append('"');
     final int _length = s.length();
     for (int i = 0; i < _length; i++) {
       char c = s.charAt(i);
       switch (c) {
         case '\n':
-          this._json.append('\\').append('n');
+          append('\\');
+          append('n');
           break;
         case '\r':
-          this._json.append('\\').append('r');
+          append('\\');
+          append('r');
           break;
         case '\t':
-          this._json.append('\\').append('t');
+          append('\\');
+          append('t');
           break;
         case '"':
-          this._json.append('\\').append('"');
+          append('\\');
+          append('"');
           break;
         case '\\':
-          this._json.append('\\').append('\\');
+          append('\\');
+          append('\\');
+          break;
+        case '\b':
+          append('\\');
+          append('b');
+          break;
+        case '\f':
+          append('\\');
+          append('f');
           break;
         default:
-          if (c < 0x10) {
-            this._json.append("\\u000").append(Integer.toHexString(c));
-          } else if (c < 0x20) {
-            this._json.append("\\u00").append(Integer.toHexString(c));
+          if (c < 0x20) {
+            append("\\u00");
+            append(HEX[c >> 4]);
+            append(HEX[c & 0xF]);
           } else {
-            this._json.append(c);
+            append(c);
           }
       }
     }
-    this._json.append('"');
+    append('"');
   }
 
   private void appendJSONLong(long number) {
-    this._json.append(Long.toString(number));
+    if (number == Long.MIN_VALUE) {
+      append(Long.toString(number));
+      return;
+    }
+    long n = number;
+    if (n < 0) {
+      append('-');
+      n = -n;
+    }
+    // Write the digits backwards into the scratch buffer
+    int i = this._digits.length;
+    do {
+      this._digits[--i] = (char)('0' + n % 10);
+      n /= 10;
+    } while (n > 0);
+    while (i < this._digits.length) {
+      append(this._digits[i++]);
+    }
   }
 
   private void appendJSONDouble(double number) {
-    this._json.append(Double.toString(number));
+    append(Double.toString(number));
   }
 
   private void appendJSONBoolean(boolean b) {
-    this._json.append(Boolean.toString(b));
+    append(b? "true" : "false");
   }
 
   private void maybeAppendComma(boolean newcontext) {
-    if (this.first) {
-      if (!newcontext) {
-        this.first = false;
-      }
+    if (!this.first) {
+      append(',');
+    }
+    // The first member of a new context must not be preceded by a comma
+    this.first = newcontext;
+  }
+
+  /**
+   * Pushes the character ending the new context onto the stack, growing it if necessary.
+   *
+   * @param end The character ending the context.
+   */
+  private void push(char end) {
+    if (++this.level == this.c.length) {
+      this.c = Arrays.copyOf(this.c, this.c.length * 2);
+    }
+    this.c[this.level] = end;
+  }
+
+  private void append(char c) {
+    if (this.position == this._buffer.length) {
+      flushBuffer();
+    }
+    this._buffer[this.position++] = c;
+  }
+
+  private void append(String s) {
+    final int _length = s.length();
+    if (this.position + _length > this._buffer.length) {
+      flushBuffer();
+    }
+    if (_length > this._buffer.length) {
+      this._json.write(s);
     } else {
-      this._json.append(',');
+      s.getChars(0, _length, this._buffer, this.position);
+      this.position += _length;
+    }
+  }
+
+  /**
+   * Writes the buffer to the print writer if the top-level value is complete.
+   */
+  private void done() {
+    if (this.level < 0) {
+      flushBuffer();
+    }
+  }
+
+  /**
+   * Writes the content of the buffer to the print writer.
+   */
+  private void flushBuffer() {
+    if (this.position > 0) {
+      this._json.write(this._buffer, 0, this.position);
+      this.position = 0;
     }
   }
 
@@ -30,13 +30,16 @@ import javax.xml.transform.stream.StreamResult;
 /**
  * A Result implementation automatically writing out JSON.
  *
+ * <p>The JSON is always written using the built-in writer (see
+ * {@link JSONWriterFactory#newBuiltinInstance(Writer)}) which streams the text of properties
+ * directly to the output, even when the JSON Processing API is available.
  *
  * @see <a href="http://tools.ietf.org/html/rfc4627">The application/json Media Type for
  *  JavaScript Object Notation (JSON)</a>
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public class JSONResult extends SAXResult implements Result {
@@ -47,7 +50,7 @@ public class JSONResult extends SAXResult implements Result {
    * <p>transformation results will go to <code>System.out</code>.
    */
   public JSONResult() {
-    super(new JSONSerializer());
+    super(new JSONSerializer(JSONWriterFactory.newBuiltinInstance(System.out)));
   }
 
   /**
@@ -56,7 +59,7 @@ public class JSONResult extends SAXResult implements Result {
    * @param out A valid OutputStream.
    */
   public JSONResult(OutputStream out) {
-    super(new JSONSerializer(out));
+    super(new JSONSerializer(JSONWriterFactory.newBuiltinInstance(out)));
   }
 
   /**
@@ -68,7 +71,7 @@ public class JSONResult extends SAXResult implements Result {
    * @param writer A valid character stream.
    */
   public JSONResult(Writer writer) {
-    super(new JSONSerializer(writer));
+    super(new JSONSerializer(JSONWriterFactory.newBuiltinInstance(writer)));
   }
 
   // Static helpers
@@ -36,9 +36,14 @@ import org.xml.sax.helpers.DefaultHandler;
  * <p>When used as part of a <code>SAXResult</code>, it is preferable to use the dedicated
  * <code>JSONResult</code> class.
  *
+ * <p>By default, the JSON is written using the writer selected by the {@link JSONWriterFactory}.
+ * When constructed with the built-in writer (see {@link JSONWriterFactory#newBuiltinInstance(Writer)}),
+ * the text of properties is escaped directly from a reusable buffer into the output without being
+ * copied to a string unless it must be converted to a number or boolean.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class JSONSerializer extends DefaultHandler implements ContentHandler {
@@ -98,6 +103,20 @@ public final class JSONSerializer extends DefaultHandler implements ContentHandl
     this.json = JSONWriterFactory.newInstance(writer);
   }
 
+  /**
+   * Construct a JSONSerializer using the specified JSON writer.
+   *
+   * <p>Use this constructor with {@link JSONWriterFactory#newBuiltinInstance(Writer)} to always
+   * use the built-in writer, which streams the text of properties without copying it.
+   *
+   * @param json The JSON writer to use.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public JSONSerializer(JSONWriter json) {
+    this.json = json;
+  }
+
   // Content Handler implementations
   // =============================================================================================
 
@@ -152,9 +171,8 @@ public final class JSONSerializer extends DefaultHandler implements ContentHandl
 
           // A property
           String name = this.state.isContext(JSONContext.OBJECT)? wasName : null;
-          String value = this.buffer.toString();
           JSONType type = this.state.getType(localName);
-          writeProperty(name, value, type);
+          writeProperty(name, this.buffer, type);
           this.buffer.setLength(0);
 
         } else {
@@ -361,16 +379,16 @@ public final class JSONSerializer extends DefaultHandler implements ContentHandl
    * Write the property
    *
    * @param name  The name of the property (may be <code>null</code>)
-   * @param value The value of the property
+   * @param value The value of the property (copied only if it is not a string)
    * @param type  The type of property
    */
-  private void writeProperty(@Nullable String name, String value, JSONType type) {
+  private void writeProperty(@Nullable String name, CharSequence value, JSONType type) {
     switch (type) {
       case NUMBER:
-        asNumber(name, value);
+        asNumber(name, value.toString());
         break;
       case BOOLEAN:
-        asBoolean(name, value);
+        asBoolean(name, value.toString());
         break;
       case NULL:
         asNull(name);
@@ -457,7 +475,7 @@ public final class JSONSerializer extends DefaultHandler implements ContentHandl
    * @param name  The JSON name to write (may be <code>null</code>)
    * @param value The JSON value to write.
    */
-  private void asString(@Nullable String name, String value) {
+  private void asString(@Nullable String name, CharSequence value) {
     if (name != null) {
       this.json.property(name, value);
     } else {
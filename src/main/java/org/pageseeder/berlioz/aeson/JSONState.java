@@ -15,9 +15,8 @@
  */
 package org.pageseeder.berlioz.aeson;
 
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,9 +29,12 @@ import org.xml.sax.Attributes;
  * <p>Note: there is no reason to expose this class as public since it is
  * primarily used by the serializer.
  *
+ * <p>The state is kept in parallel arrays indexed by depth so that pushing and popping a state
+ * does not allocate; an element shares the type map of its parent unless its attributes change it.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 final class JSONState {
@@ -47,28 +49,36 @@ final class JSONState {
    */
   public enum JSONContext { ROOT, OBJECT, ARRAY, NULL, VALUE }
 
+  /**
+   * The initial capacity of the state arrays.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
   /**
    * Keeps track of the context.
    */
-  private final Deque<JSONContext> context = new ArrayDeque<>();
+  private JSONContext[] contexts = new JSONContext[INITIAL_CAPACITY];
 
   /**
    * Maintains instructions for the JSON serialization at each level of the structure.
    */
-  private final Deque<JSONTypeMap> types = new ArrayDeque<>();
+  private JSONTypeMap[] types = new JSONTypeMap[INITIAL_CAPACITY];
 
   /**
    * Keeps track of the name of the current context.
    */
-  private final Deque<String> names = new ArrayDeque<>();
+  private String[] names = new String[INITIAL_CAPACITY];
+
+  /**
+   * The index of the current state (-1 when there is no state).
+   */
+  private int depth = -1;
 
   /**
    * Initialise the state with the ROOT context.
    */
   public void pushState() {
-    this.context.push(JSONContext.ROOT);
-    this.types.push(JSONTypeMap.EMPTY);
-    this.names.push("");
+    push(JSONContext.ROOT, JSONTypeMap.EMPTY, "");
   }
 
   /**
@@ -79,28 +89,27 @@ final class JSONState {
    * @param name    The name of the context.
    */
   public void pushState(JSONContext context, Attributes atts, @Nullable String name) {
-    this.context.push(context);
     JSONTypeMap map = JSONTypeMap.make(currentTypeMap(), atts);
-    this.types.push(map);
-    this.names.push(name != null? name : "");
+    push(context, map, name != null? name : "");
   }
 
   /**
    * Remove all objects from state.
    */
   public void popState() {
-    this.context.pop();
-    this.types.pop();
-    this.names.pop();
+    if (this.depth < 0) throw new IllegalStateException("No JSON state!");
+    // Release the references so that they can be garbage collected
+    this.types[this.depth] = null;
+    this.names[this.depth] = null;
+    this.depth--;
   }
 
   /**
    * @return the current context.
    */
   public JSONContext currentContext() {
-    JSONContext c = this.context.peek();
-    if (c == null) throw new IllegalStateException("No JSON context!");
-    return c;
+    if (this.depth < 0) throw new IllegalStateException("No JSON context!");
+    return this.contexts[this.depth];
   }
 
   /**
@@ -118,18 +127,36 @@ final class JSONState {
    * @return the name of the current context.
    */
   public String currentName() {
-    String name = this.names.peek();
-    if (name == null) throw new IllegalStateException("No JSON name");
-    return name;
+    if (this.depth < 0) throw new IllegalStateException("No JSON name");
+    return this.names[this.depth];
   }
 
   /**
    * @return the name of the current context.
    */
   private JSONTypeMap currentTypeMap() {
-    JSONTypeMap type = this.types.peek();
-    if (type == null) throw new IllegalStateException("No JSON type map");
-    return type;
+    if (this.depth < 0) throw new IllegalStateException("No JSON type map");
+    return this.types[this.depth];
+  }
+
+  /**
+   * Pushes the specified state, growing the arrays if necessary.
+   *
+   * @param context The new context.
+   * @param map     The type map for the context.
+   * @param name    The name of the context.
+   */
+  private void push(JSONContext context, JSONTypeMap map, String name) {
+    int index = ++this.depth;
+    if (index == this.contexts.length) {
+      int capacity = index * 2;
+      this.contexts = Arrays.copyOf(this.contexts, capacity);
+      this.types = Arrays.copyOf(this.types, capacity);
+      this.names = Arrays.copyOf(this.names, capacity);
+    }
+    this.contexts[index] = context;
+    this.types[index] = map;
+    this.names[index] = name;
   }
 
   /**
@@ -206,6 +233,8 @@ final class JSONState {
      * @return the updated map or the inherited one if no attributes changed the types.
      */
     public static JSONTypeMap make(JSONTypeMap inherited, Attributes atts) {
+      // Most elements have no attributes
+      if (atts.getLength() == 0) return inherited;
       JSONTypeMap current = inherited;
       String toBoolean = atts.getValue(JSONSerializer.NS_URI, "boolean");
       String toNumber = atts.getValue(JSONSerializer.NS_URI, "number");
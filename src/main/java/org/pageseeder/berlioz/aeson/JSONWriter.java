@@ -28,7 +28,7 @@ import java.io.Closeable;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public interface JSONWriter extends Closeable {
@@ -108,6 +108,20 @@ public interface JSONWriter extends Closeable {
    */
   JSONWriter value(String number);
 
+  /**
+   * Writes the specified characters as a JSON string within the current array context.
+   *
+   * <p>Implementations should override this method to avoid creating a string.
+   *
+   * @param value the value to write.
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JSONWriter value(CharSequence value) {
+    return value(value.toString());
+  }
+
   /**
    * Writes the specified value as a JSON value within the current array context.
    *
@@ -125,6 +139,21 @@ public interface JSONWriter extends Closeable {
    */
   JSONWriter property(String name, String value);
 
+  /**
+   * Writes a JSON name/string value pair in the current object context.
+   *
+   * <p>Implementations should override this method to avoid creating a string.
+   *
+   * @param name a name in the JSON name/value pair to be written in current JSON object
+   * @param value a value in the JSON name/value pair to be written in current JSON object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JSONWriter property(String name, CharSequence value) {
+    return property(name, value.toString());
+  }
+
   /**
    * Writes a JSON name/boolean value pair in the current object context.
    *
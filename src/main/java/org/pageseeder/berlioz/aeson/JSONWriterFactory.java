@@ -16,8 +16,10 @@
 package org.pageseeder.berlioz.aeson;
 
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,9 +28,11 @@ import org.slf4j.LoggerFactory;
  * This factory method will try to find the most suitable <code>JSONEmitter</code> implementation
  * to write JSON.
  *
+ * <p>The JSON written to a byte stream is always encoded as UTF-8.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.9.32
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class JSONWriterFactory {
@@ -62,7 +66,7 @@ public final class JSONWriterFactory {
       init();
     }
     if (status == 1) return J2EEJSONWriter.newInstance(out);
-    else return new BuiltinJSONWriter(new PrintWriter(out));
+    else return newBuiltinInstance(out);
   }
 
   /**
@@ -77,6 +81,38 @@ public final class JSONWriterFactory {
       init();
     }
     if (status == 1) return J2EEJSONWriter.newInstance(writer);
+    return newBuiltinInstance(writer);
+  }
+
+  /**
+   * Returns the built-in JSON writer regardless of whether the JSON Processing API is available.
+   *
+   * <p>The built-in writer accepts the text of properties as characters without copying it to
+   * a string, which is faster when serializing large documents.
+   *
+   * @param out The stream receiving the JSON output encoded as UTF-8.
+   *
+   * @return The built-in JSON writer.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static JSONWriter newBuiltinInstance(OutputStream out) {
+    return new BuiltinJSONWriter(new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Returns the built-in JSON writer regardless of whether the JSON Processing API is available.
+   *
+   * <p>The built-in writer accepts the text of properties as characters without copying it to
+   * a string, which is faster when serializing large documents.
+   *
+   * @param writer The writer receiving the JSON output.
+   *
+   * @return The built-in JSON writer.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static JSONWriter newBuiltinInstance(Writer writer) {
     return new BuiltinJSONWriter(new PrintWriter(writer));
   }
 
@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.pageseeder.berlioz.GlobalSettings;
@@ -36,7 +37,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class BundleConfig implements Serializable {
@@ -80,6 +81,9 @@ public final class BundleConfig implements Serializable {
   /** Where the bundled styles should be located. */
   private static final String DEFAULT_BUNDLED_STYLES = "/style/_/";
 
+  /** How often in seconds bundle files are checked when they cannot be watched. */
+  private static final int DEFAULT_CHECK_INTERVAL = 1;
+
   // Class attributes
   // ----------------------------------------------------------------------------------------------
 
@@ -118,16 +122,29 @@ public final class BundleConfig implements Serializable {
    */
   private final WebBundleTool _bundler;
 
+  /**
+   * The index of fresh bundles.
+   */
+  private final BundleIndex _index;
+
+  /**
+   * Whether to wait for stale bundles to be rebuilt rather than using their previous version.
+   */
+  private final boolean _wait;
+
   /**
    * Create a new config - use factory method instead.
    */
-  private BundleConfig(List<BundleDefinition> definitions, BundleType type, boolean minimize, String location, File root) {
+  private BundleConfig(List<BundleDefinition> definitions, BundleType type, boolean minimize, String location, File root,
+      BundleIndex index, boolean wait) {
     this._definitions = definitions;
     this._type = type;
     this._minimize = minimize;
     this._location = location;
     this._root = root;
     this._bundler = initBundler();
+    this._index = index;
+    this._wait = wait;
   }
 
   /**
@@ -180,6 +197,21 @@ public final class BundleConfig implements Serializable {
     return this._bundler;
   }
 
+  /**
+   * @return The index of fresh bundles.
+   */
+  BundleIndex index() {
+    return this._index;
+  }
+
+  /**
+   * @return <code>true</code> to wait for stale bundles to be rebuilt;
+   *         <code>false</code> to use their previous version while they are rebuilt.
+   */
+  boolean waitForBuild() {
+    return this._wait;
+  }
+
   /**
    * @param service The service.
    * @return the list of bundles for this service
@@ -204,9 +236,9 @@ public final class BundleConfig implements Serializable {
     List<BundleInstance> instances = getInstances(service);
     long lastModified = 0L;
     for (BundleInstance instance : instances) {
-      File bundle = instance.getBundleFile(this);
-      if (bundle != null && bundle.lastModified() > lastModified) {
-        lastModified = bundle.lastModified();
+      BundleIndex.Entry entry = instance.getEntry(this);
+      if (entry.lastModified() > lastModified) {
+        lastModified = entry.lastModified();
       }
     }
     return lastModified;
@@ -259,6 +291,9 @@ public final class BundleConfig implements Serializable {
     Map<String, BundleDefinition> defaults = BundleType.JS == type? DEFAULT_JS_BUNDLE : DEFAULT_CSS_BUNDLE;
     List<BundleDefinition> definitions = loadDefinitions(names, "berlioz."+lctype+"bundler.bundles.", defaults);
     boolean minimize = GlobalSettings.get("berlioz."+lctype+"bundler.minimize", true);
+    boolean watch = GlobalSettings.get("berlioz."+lctype+"bundler.watch", true);
+    int interval = GlobalSettings.get("berlioz."+lctype+"bundler.check-interval", DEFAULT_CHECK_INTERVAL);
+    boolean wait = GlobalSettings.get("berlioz."+lctype+"bundler.wait", true);
 
     // Create the bundle store
     String defaultLocation = getDefaultLocation(type);
@@ -269,12 +304,13 @@ public final class BundleConfig implements Serializable {
     }
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Loading bundle config:{} ({}) => {}", name, type, names);
-      LOGGER.debug("Bundler settings minimize:{} location:{}", minimize, location);
+      LOGGER.debug("Bundler settings minimize:{} location:{} watch:{} wait:{}", minimize, location, watch, wait);
       for (BundleDefinition d : definitions) {
         LOGGER.debug("Bundle definition:{} -> {} ({})", d.name(), d.filename(), d.paths());
       }
     }
-    return new BundleConfig(definitions, type, minimize, location, root);
+    BundleIndex index = new BundleIndex(watch, TimeUnit.SECONDS.toMillis(interval));
+    return new BundleConfig(definitions, type, minimize, location, root, index, wait);
   }
 
   // private helpers
@@ -283,9 +319,13 @@ public final class BundleConfig implements Serializable {
   private WebBundleTool initBundler() {
     // Initialise the bundler
     WebBundleTool bundler = new WebBundleTool(new File(this._root, this._location));
+    String lctype = this._type.name().toLowerCase();
+    bundler.setPrecompress(GlobalSettings.get("berlioz."+lctype+"bundler.gzip", false));
     if (this._type == BundleType.CSS) {
       int threshold = GlobalSettings.get("berlioz.cssbundler.datauris.threshold", 4096);
       bundler.setDataURIThreshold(threshold);
+    } else {
+      bundler.setSourceMaps(GlobalSettings.get("berlioz.jsbundler.sourcemap", false));
     }
     return bundler;
   }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pool of threads used to build the bundles and minimize their files in parallel.
+ *
+ * <p>The pool is created on first use with the number of threads specified by the
+ * <code>berlioz.bundler.threads</code> property (the number of processors by default).
+ *
+ * <p>A fork-join pool is used so that a build waiting for the files of its bundle to be minimized
+ * does not starve the pool.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class BundleExecutor {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundleExecutor.class);
+
+  /**
+   * The executor service (lazily created).
+   */
+  private static volatile @Nullable ExecutorService executor = null;
+
+  /** Utility class */
+  private BundleExecutor() {
+  }
+
+  /**
+   * Shuts down the pool of bundler threads.
+   *
+   * <p>Builds already submitted will complete but no new build will be accepted; a new pool is
+   * created if a build is submitted afterwards.
+   */
+  static synchronized void shutdown() {
+    ExecutorService service = executor;
+    if (service != null) {
+      LOGGER.info("Shutting down bundler threads");
+      service.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * @return the executor, creating it if necessary.
+   */
+  static ExecutorService get() {
+    ExecutorService service = executor;
+    if (service == null) {
+      synchronized (BundleExecutor.class) {
+        service = executor;
+        if (service == null) {
+          int threads = Math.max(1, GlobalSettings.get("berlioz.bundler.threads", Runtime.getRuntime().availableProcessors()));
+          LOGGER.info("Starting {} bundler threads", threads);
+          executor = service = new ForkJoinPool(threads, BundleExecutor::newThread, null, false);
+        }
+      }
+    }
+    return service;
+  }
+
+  /**
+   * Creates daemon threads with a recognizable name.
+   *
+   * @param pool The pool the thread belongs to
+   *
+   * @return a new worker thread
+   */
+  private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+    thread.setName("berlioz-bundler-"+thread.getPoolIndex());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An index of the bundle files which are known to be fresh.
+ *
+ * <p>Each entry records the bundle file produced for a bundle instance with all the files it
+ * depends on: the files listed in the bundle definition (whether they exist or not), the
+ * files imported by styles and the bundle file itself.
+ *
+ * <p>Entries are invalidated by the {@link BundleWatcher} as soon as any of these files changes so
+ * that looking up a fresh bundle does not require any access to the file system. If the files
+ * cannot be watched, entries are checked against a fingerprint of their files, at most once per
+ * check interval.
+ *
+ * <p>Stale entries are kept until they are replaced so that the previous version of a bundle can
+ * be used while it is rebuilt; only one rebuild runs at a time for each bundle instance.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class BundleIndex {
+
+  /**
+   * The fresh entries by key.
+   */
+  private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+
+  /**
+   * The rebuilds in progress by key.
+   */
+  private final Map<String, CompletableFuture<Entry>> _builds = new ConcurrentHashMap<>();
+
+  /**
+   * Whether to watch the files for changes.
+   */
+  private final boolean _watch;
+
+  /**
+   * The minimum interval in milliseconds between checks of entries which are not watched.
+   */
+  private final long _interval;
+
+  /**
+   * @param watch    Whether to watch the files for changes
+   * @param interval The minimum interval in milliseconds between checks when files are not watched.
+   */
+  BundleIndex(boolean watch, long interval) {
+    this._watch = watch;
+    this._interval = interval;
+  }
+
+  /**
+   * Returns the entry for the specified key if it is still fresh.
+   *
+   * @param key The key for the bundle instance
+   *
+   * @return the fresh entry or <code>null</code> if no entry or the entry is stale.
+   */
+  @Nullable Entry get(String key) {
+    Entry entry = this._entries.get(key);
+    if (entry == null) return null;
+    if (!entry.watched && !entry.stale) {
+      long now = System.currentTimeMillis();
+      if (now - entry.checked >= this._interval) {
+        if (fingerprintPaths(entry.sources()) != entry._fingerprint) {
+          entry.invalidate();
+        }
+        entry.checked = now;
+      }
+    }
+    return entry.stale? null : entry;
+  }
+
+  /**
+   * Returns the last entry for the specified key whether it is fresh or not.
+   *
+   * @param key The key for the bundle instance
+   *
+   * @return the last entry or <code>null</code> if the bundle was never built.
+   */
+  @Nullable Entry previous(String key) {
+    return this._entries.get(key);
+  }
+
+  /**
+   * Rebuilds the entry for the specified key using the bundler threads unless it is already
+   * being rebuilt.
+   *
+   * @param key   The key for the bundle instance
+   * @param build Builds the bundle and puts the new entry in this index
+   *
+   * @return the new rebuild or the rebuild in progress.
+   */
+  CompletableFuture<Entry> rebuild(String key, Supplier<Entry> build) {
+    CompletableFuture<Entry> future = new CompletableFuture<>();
+    CompletableFuture<Entry> existing = this._builds.putIfAbsent(key, future);
+    if (existing != null) return existing;
+    try {
+      BundleExecutor.get().execute(() -> {
+        try {
+          future.complete(build.get());
+        } catch (RuntimeException ex) {
+          future.completeExceptionally(ex);
+        } finally {
+          this._builds.remove(key, future);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      this._builds.remove(key, future);
+      future.completeExceptionally(ex);
+    }
+    return future;
+  }
+
+  /**
+   * Adds a new entry for the specified bundle.
+   *
+   * <p>The fingerprint of the files must be computed before the bundle is built so that any
+   * change to the files during the build is detected.
+   *
+   * @param key         The key for the bundle instance
+   * @param files       The files in the bundle definition
+   * @param imports     The files imported by the files in the bundle
+   * @param bundle      The bundle file (<code>null</code> if there was nothing to bundle)
+   * @param fingerprint The fingerprint of the files in the bundle definition before the bundle was built
+   *
+   * @return the new entry
+   */
+  Entry put(String key, List<File> files, List<File> imports, @Nullable File bundle, long fingerprint) {
+    List<File> sources = new ArrayList<>(files.size()+imports.size());
+    sources.addAll(files);
+    sources.addAll(imports);
+    List<Path> paths = new ArrayList<>(sources.size()+1);
+    for (File f : sources) {
+      paths.add(f.toPath().toAbsolutePath().normalize());
+    }
+    if (bundle != null) {
+      paths.add(bundle.toPath().toAbsolutePath().normalize());
+    }
+    Entry entry = new Entry(paths, sources.size(), bundle, bundle != null? bundle.lastModified() : 0L, fingerprint(sources));
+    BundleWatcher watcher = this._watch? BundleWatcher.get() : null;
+    if (watcher != null) {
+      entry.watched = watcher.register(entry);
+      if (!entry.watched) {
+        watcher.unregister(entry);
+      }
+    }
+    // Changes made while the bundle was built or before the files were watched
+    if (fingerprint(files) != fingerprint) {
+      entry.invalidate();
+    }
+    entry.checked = System.currentTimeMillis();
+    Entry previous = this._entries.put(key, entry);
+    if (previous != null && watcher != null) {
+      watcher.unregister(previous);
+    }
+    return entry;
+  }
+
+  /**
+   * Invalidates all the entries in this index.
+   */
+  void clear() {
+    BundleWatcher watcher = this._watch? BundleWatcher.get() : null;
+    for (Entry entry : this._entries.values()) {
+      entry.invalidate();
+      if (watcher != null) {
+        watcher.unregister(entry);
+      }
+    }
+    this._entries.clear();
+  }
+
+  /**
+   * Computes a fingerprint of the specified files based on their length and last modified date.
+   *
+   * @param files The files
+   *
+   * @return The corresponding fingerprint
+   */
+  static long fingerprint(List<File> files) {
+    long fingerprint = 1;
+    for (File f : files) {
+      fingerprint = 31 * fingerprint + f.lastModified();
+      fingerprint = 31 * fingerprint + f.length();
+    }
+    return fingerprint;
+  }
+
+  /**
+   * @param paths The paths to the files
+   *
+   * @return The corresponding fingerprint
+   */
+  private static long fingerprintPaths(List<Path> paths) {
+    List<File> files = new ArrayList<>(paths.size());
+    for (Path p : paths) {
+      files.add(p.toFile());
+    }
+    return fingerprint(files);
+  }
+
+  /**
+   * A bundle file with the files it depends on.
+   */
+  static final class Entry {
+
+    /**
+     * The paths to the files the bundle depends on, the bundle file is last.
+     */
+    private final List<Path> _paths;
+
+    /**
+     * The number of source files (excluding the bundle file).
+     */
+    private final int _sources;
+
+    /**
+     * The bundle file.
+     */
+    private final @Nullable File _file;
+
+    /**
+     * The last modified date of the bundle file when the entry was created.
+     */
+    private final long _lastModified;
+
+    /**
+     * The fingerprint of the files the bundle depends on.
+     */
+    private final long _fingerprint;
+
+    /**
+     * Whether the files are watched.
+     */
+    volatile boolean watched = false;
+
+    /**
+     * Whether this entry is stale.
+     */
+    volatile boolean stale = false;
+
+    /**
+     * When the files were last checked.
+     */
+    volatile long checked = 0;
+
+    Entry(List<Path> paths, int sources, @Nullable File file, long lastModified, long fingerprint) {
+      this._paths = Collections.unmodifiableList(paths);
+      this._sources = sources;
+      this._file = file;
+      this._lastModified = lastModified;
+      this._fingerprint = fingerprint;
+    }
+
+    /**
+     * @return The bundle file or <code>null</code> if there was nothing to bundle.
+     */
+    @Nullable File file() {
+      return this._file;
+    }
+
+    /**
+     * @return The last modified date of the bundle file when the entry was created.
+     */
+    long lastModified() {
+      return this._lastModified;
+    }
+
+    /**
+     * @return The paths to the files the bundle depends on including the bundle itself.
+     */
+    List<Path> paths() {
+      return this._paths;
+    }
+
+    /**
+     * @return The paths to the files the bundle depends on excluding the bundle itself.
+     */
+    List<Path> sources() {
+      return this._paths.subList(0, this._sources);
+    }
+
+    /**
+     * Indicates whether this entry depends on the specified file or directory.
+     *
+     * @param changed The path to the file or directory which changed
+     *
+     * @return <code>true</code> if any of the files is or is inside the changed path.
+     */
+    boolean dependsOn(Path changed) {
+      for (Path p : this._paths) {
+        if (p.startsWith(changed)) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Marks this entry as stale.
+     */
+    void invalidate() {
+      this.stale = true;
+    }
+
+  }
+
+}
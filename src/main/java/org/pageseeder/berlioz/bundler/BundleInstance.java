@@ -19,11 +19,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.content.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Represents an actual instance of a bundle.
@@ -32,7 +37,7 @@ import org.pageseeder.berlioz.content.Service;
  *
  * @author christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 final class BundleInstance implements Serializable {
@@ -40,6 +45,11 @@ final class BundleInstance implements Serializable {
   /** As per requirement for Serializable. */
   private static final long serialVersionUID = -4507097239658105026L;
 
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundleInstance.class);
+
   /**
    * The name of this instance, "global", the name of a group or service.
    */
@@ -55,6 +65,11 @@ final class BundleInstance implements Serializable {
    */
   private final File[] _files;
 
+  /**
+   * The key for this instance in the bundle index.
+   */
+  private final String _key;
+
   /**
    * Creates the list of paths
    *
@@ -69,6 +84,7 @@ final class BundleInstance implements Serializable {
     for (int i = 0; i < this._paths.length; i++) {
       this._files[i] = new File(root, this._paths[i]);
     }
+    this._key = name+'-'+WebBundle.id(Arrays.asList(this._files));
   }
 
   /**
@@ -78,6 +94,13 @@ final class BundleInstance implements Serializable {
     return this._name;
   }
 
+  /**
+   * @return The key for this instance in the bundle index.
+   */
+  String key() {
+    return this._key;
+  }
+
   /**
    * Return the bundle file for this instance.
    *
@@ -85,9 +108,66 @@ final class BundleInstance implements Serializable {
    * @return the corresponding file or <code>null</code> if an error occurred
    */
   public @Nullable File getBundleFile(BundleConfig config) {
+    return getEntry(config).file();
+  }
+
+  /**
+   * Returns the entry for this instance from the bundle index, building the bundle if the
+   * entry is missing or stale.
+   *
+   * <p>The bundle is built by the bundler threads; unless the configuration requires to wait
+   * for the build, the previous entry is returned while a stale bundle is rebuilt.
+   *
+   * @param config the bundle configuration
+   * @return the corresponding entry in the bundle index
+   */
+  BundleIndex.Entry getEntry(BundleConfig config) {
+    BundleIndex index = config.index();
+    BundleIndex.Entry entry = index.get(this._key);
+    if (entry != null) return entry;
+    CompletableFuture<BundleIndex.Entry> build = index.rebuild(this._key, () -> build(config));
+    if (!config.waitForBuild()) {
+      BundleIndex.Entry previous = index.previous(this._key);
+      if (previous != null && !build.isDone()) {
+        File file = previous.file();
+        if (file == null || file.exists()) return previous;
+      }
+    }
+    try {
+      return build.join();
+    } catch (CompletionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      throw ex;
+    }
+  }
+
+  /**
+   * Builds the bundle for this instance in the background unless it is already fresh.
+   *
+   * @param config the bundle configuration
+   * @return the entry in the bundle index once the bundle has been built
+   */
+  CompletableFuture<BundleIndex.Entry> warmup(BundleConfig config) {
+    BundleIndex index = config.index();
+    BundleIndex.Entry entry = index.get(this._key);
+    if (entry != null) return CompletableFuture.completedFuture(entry);
+    return index.rebuild(this._key, () -> build(config));
+  }
+
+  /**
+   * Builds the bundle for this instance and puts the new entry in the bundle index.
+   *
+   * @param config the bundle configuration
+   * @return the new entry in the bundle index
+   */
+  private BundleIndex.Entry build(BundleConfig config) {
+    List<File> candidates = Arrays.asList(this._files);
+    long fingerprint = BundleIndex.fingerprint(candidates);
     List<File> files = listExistingFiles();
     WebBundleTool bundler = config.bundler();
     File bundle = null;
+    boolean failed = false;
     try {
       if (config.type() == BundleType.JS) {
         bundle = bundler.bundleScripts(files, this._name, config.minimize());
@@ -95,9 +175,15 @@ final class BundleInstance implements Serializable {
         bundle = bundler.bundleStyles(files, this._name, config.minimize());
       }
     } catch (IOException ex) {
-      // TODO Report something!
+      LOGGER.warn("Unable to bundle {}: {}", this._name, ex.getMessage());
+      failed = true;
+    }
+    BundleIndex.Entry entry = config.index().put(this._key, candidates, bundler.getImports(files), bundle, fingerprint);
+    // Try again next time
+    if (failed) {
+      entry.invalidate();
     }
-    return bundle;
+    return entry;
   }
 
   /**
@@ -0,0 +1,592 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.util.CompressedOutputStream;
+import org.pageseeder.berlioz.util.MD5;
+import org.pageseeder.berlioz.util.ResourceCompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent store of bundle files named after their content.
+ *
+ * <p>Each bundle file is named after a hash of its content so that the same content always
+ * produces the same file and a file never changes once it has been written.
+ *
+ * <p>A manifest in the bundles directory maps the fingerprint of the source files of a bundle
+ * (paths, lengths and last modified dates) to its bundle file so that bundles can be reused after
+ * a restart or by other nodes sharing the same directory. The manifest keeps the last
+ * {@value #MAX_VERSIONS} versions of each bundle.
+ *
+ * <p>Bundle files can be stored with a GZip compressed companion <code>[bundle].gz</code> so that
+ * they can be served without being compressed on every request.
+ *
+ * <p>Bundle files which are no longer referenced by the manifest are deleted once they are older
+ * than the grace period, at most {@value #MAX_COLLECT} files at a time.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class BundleStore {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundleStore.class);
+
+  /**
+   * The name of the manifest file.
+   */
+  static final String MANIFEST = "bundles.manifest";
+
+  /**
+   * The number of versions kept in the manifest for each bundle.
+   */
+  static final int MAX_VERSIONS = 2;
+
+  /**
+   * The maximum number of files deleted each time orphaned files are collected.
+   */
+  static final int MAX_COLLECT = 100;
+
+  /**
+   * How long orphaned files are kept by default (pages may still refer to them).
+   */
+  private static final long DEFAULT_GRACE = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * The minimum interval between collections of orphaned files.
+   */
+  private static final long COLLECT_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+  /**
+   * Matches the files which can be collected: bundle files named after their content with their
+   * source maps and compressed companions, bundle files named after the date and etag (previous
+   * versions) and temporary files.
+   */
+  private static final Pattern COLLECTABLE = Pattern.compile(
+        ".+-[0-9a-f]{16}(\\.min)?\\.(js|css)(\\.map|\\.gz)?"
+      + "|.+-\\d{4}-\\d{2}-\\d{2}-[0-9a-f]{8}(\\.min)?\\.(js|css)"
+      + "|\\..+\\.tmp");
+
+  /**
+   * The directory where the bundles are stored.
+   */
+  private final File _dir;
+
+  /**
+   * The manifest file.
+   */
+  private final Path _manifest;
+
+  /**
+   * How long orphaned files are kept.
+   */
+  private final long _grace;
+
+  /**
+   * The entries in the manifest by key.
+   */
+  private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+
+  /**
+   * The stamp of the manifest when it was last loaded or saved.
+   */
+  private volatile long loaded = -1;
+
+  /**
+   * When the orphaned files were last collected.
+   */
+  private volatile long collected = 0;
+
+  /**
+   * Whether to write a GZip compressed companion for each bundle file.
+   */
+  private volatile boolean compress = false;
+
+  /**
+   * Creates a store for the specified directory and load its manifest.
+   *
+   * @param dir The directory where the bundles are stored.
+   */
+  BundleStore(File dir) {
+    this(dir, DEFAULT_GRACE);
+  }
+
+  /**
+   * Creates a store for the specified directory and load its manifest.
+   *
+   * @param dir   The directory where the bundles are stored.
+   * @param grace How long in milliseconds orphaned files are kept.
+   */
+  BundleStore(File dir, long grace) {
+    this._dir = dir;
+    this._manifest = dir.toPath().resolve(MANIFEST);
+    this._grace = grace;
+    reload();
+  }
+
+  /**
+   * Sets whether to write a GZip compressed companion <code>[bundle].gz</code> for each bundle file.
+   *
+   * @param compress <code>true</code> to write compressed companions.
+   */
+  void setCompression(boolean compress) {
+    this.compress = compress;
+  }
+
+  /**
+   * Computes the key of a bundle from its source files.
+   *
+   * @param name     The name of the bundle
+   * @param files    The files to bundle
+   * @param minimize Whether the bundle is minimized
+   *
+   * @return The key of the bundle in this store.
+   */
+  String key(String name, List<File> files, boolean minimize) {
+    StringBuilder key = new StringBuilder(name).append(minimize? "+min" : "");
+    for (File f : files) {
+      key.append('|').append(relativize(f)).append('$').append(f.length()).append('%').append(f.lastModified());
+    }
+    return MD5.hash(key.toString());
+  }
+
+  /**
+   * Returns the entry for the specified key if its bundle file exists and none of the files it
+   * imports has changed.
+   *
+   * @param key The key of the bundle
+   *
+   * @return The entry or <code>null</code>.
+   */
+  @Nullable Entry get(String key) {
+    Entry entry = this._entries.get(key);
+    if (entry == null) {
+      // The bundle may have been built by another node
+      if (stamp() == this.loaded) return null;
+      reload();
+      entry = this._entries.get(key);
+      if (entry == null) return null;
+    }
+    if (!entry.file().exists() || BundleIndex.fingerprint(entry.imports()) != entry._fingerprint) return null;
+    return entry;
+  }
+
+  /**
+   * Returns the most recent entry for the specified bundle.
+   *
+   * @param id The ID of the bundle (see {@link WebBundle#id(List)})
+   *
+   * @return The most recent entry or <code>null</code>.
+   */
+  @Nullable Entry latest(String id) {
+    Entry latest = null;
+    for (Entry entry : this._entries.values()) {
+      if (entry._id.equals(id) && (latest == null || entry._created > latest._created)) {
+        latest = entry;
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * Stores the content of a bundle and records it in the manifest.
+   *
+   * <p>The file is only written if no file with the same content exists. The compressed companion
+   * is written if it is missing and compression is enabled.
+   *
+   * @param key       The key of the bundle
+   * @param bundle    The bundle
+   * @param extension The extension of the bundle file (including the dot)
+   * @param content   The content of the bundle
+   *
+   * @return The entry for the bundle
+   *
+   * @throws IOException If the bundle file or manifest could not be written
+   */
+  Entry put(String key, WebBundle bundle, @Nullable String extension, byte[] content) throws IOException {
+    return put(key, bundle, extension, content, null);
+  }
+
+  /**
+   * Stores the content of a bundle with its source map and records it in the manifest.
+   *
+   * <p>The source map is written next to the bundle file as <code>[bundle].map</code> and the
+   * bundle file ends with a comment referencing it. Since the comment includes the name of the
+   * file, the bundle file is named after its content with an empty reference.
+   *
+   * @param key       The key of the bundle
+   * @param bundle    The bundle
+   * @param extension The extension of the bundle file (including the dot)
+   * @param content   The content of the bundle
+   * @param map       The source map for the bundle (may be <code>null</code>)
+   *
+   * @return The entry for the bundle
+   *
+   * @throws IOException If the bundle file, source map or manifest could not be written
+   */
+  Entry put(String key, WebBundle bundle, @Nullable String extension, byte[] content, @Nullable SourceMap map) throws IOException {
+    String filename = filename(bundle.name(), extension, bundle.isMinimized(), map != null? append(content, SourceMap.comment("")) : content);
+    File file = new File(this._dir, filename);
+    byte[] data = map != null? append(content, SourceMap.comment(filename+".map")) : content;
+    if (!file.exists()) {
+      if (map != null) {
+        write(new File(this._dir, filename+".map").toPath(), map.toJSON(filename).getBytes(StandardCharsets.UTF_8));
+      }
+      write(file.toPath(), data);
+    }
+    File gz = new File(this._dir, filename+".gz");
+    if (this.compress && !gz.exists()) {
+      write(gz.toPath(), ResourceCompressor.compress(data, CompressedOutputStream.GZIP, Deflater.BEST_COMPRESSION));
+    }
+    List<File> imports = bundle.imports();
+    Entry entry = new Entry(key, bundle.id(), System.currentTimeMillis(), file, imports, BundleIndex.fingerprint(imports));
+    this._entries.put(key, entry);
+    save();
+    if (System.currentTimeMillis() - this.collected > COLLECT_INTERVAL) {
+      collectInBackground();
+    }
+    return entry;
+  }
+
+  /**
+   * Deletes the bundle files which are not referenced by the manifest and older than the grace
+   * period.
+   *
+   * @return the number of files deleted.
+   */
+  int collect() {
+    this.collected = System.currentTimeMillis();
+    File[] files = this._dir.listFiles();
+    if (files == null) return 0;
+    Set<String> referenced = new HashSet<>();
+    for (Entry entry : this._entries.values()) {
+      referenced.add(entry.file().getName());
+    }
+    long expiry = System.currentTimeMillis() - this._grace;
+    int deleted = 0;
+    for (File f : files) {
+      if (deleted >= MAX_COLLECT) {
+        break;
+      }
+      String name = f.getName();
+      String bundle = name.endsWith(".map")? name.substring(0, name.length()-4)
+          : name.endsWith(".gz")? name.substring(0, name.length()-3) : name;
+      if (!referenced.contains(bundle) && COLLECTABLE.matcher(name).matches()
+          && f.isFile() && f.lastModified() < expiry) {
+        if (f.delete()) {
+          deleted++;
+        }
+      }
+    }
+    if (deleted > 0) {
+      LOGGER.info("Deleted {} orphaned bundle files from {}", deleted, this._dir);
+    }
+    return deleted;
+  }
+
+  /**
+   * Returns the name of the bundle file for the specified content.
+   *
+   * <p>The filename is: <code>[name]-[hash].[extension]</code>.
+   * <p>Or <code>[name]-[hash].min.[extension]</code> if minimized.
+   *
+   * @param name      The name of the bundle
+   * @param extension The extension of the bundle file (including the dot)
+   * @param minimized Whether the bundle is minimized
+   * @param content   The content of the bundle
+   *
+   * @return the filename of the bundle.
+   */
+  static String filename(String name, @Nullable String extension, boolean minimized, byte[] content) {
+    StringBuilder filename = new StringBuilder(name);
+    filename.append('-').append(MD5.hash(content), 0, 16);
+    if (minimized) {
+      filename.append(".min");
+    }
+    if (extension != null) {
+      filename.append(extension);
+    }
+    return filename.toString();
+  }
+
+  // Private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Collects the orphaned files using the bundler threads.
+   */
+  private void collectInBackground() {
+    this.collected = System.currentTimeMillis();
+    try {
+      BundleExecutor.get().execute(this::collect);
+    } catch (RejectedExecutionException ex) {
+      LOGGER.debug("Unable to collect orphaned bundle files: {}", ex.getMessage());
+    }
+  }
+
+  /**
+   * Loads the entries from the manifest, keeping the entries which are already known.
+   */
+  private synchronized void reload() {
+    long stamp = stamp();
+    try (BufferedReader reader = Files.newBufferedReader(this._manifest, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      while (line != null) {
+        Entry entry = parse(line);
+        if (entry != null) {
+          this._entries.putIfAbsent(entry._key, entry);
+        }
+        line = reader.readLine();
+      }
+    } catch (NoSuchFileException ex) {
+      // No manifest yet
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to read bundle manifest {}: {}", this._manifest, ex.getMessage());
+    }
+    this.loaded = stamp;
+  }
+
+  /**
+   * Saves the manifest keeping only the most recent versions of each bundle.
+   *
+   * <p>Entries saved by other nodes since the manifest was loaded are merged.
+   *
+   * @throws IOException If the manifest could not be written
+   */
+  private synchronized void save() throws IOException {
+    if (stamp() != this.loaded) {
+      reload();
+    }
+    // Only keep the most recent versions of each bundle
+    Map<String, List<Entry>> versions = new HashMap<>();
+    for (Entry entry : this._entries.values()) {
+      versions.computeIfAbsent(entry._id, id -> new ArrayList<>()).add(entry);
+    }
+    List<Entry> kept = new ArrayList<>(this._entries.size());
+    for (List<Entry> entries : versions.values()) {
+      entries.sort(Comparator.comparingLong((Entry e) -> e._created).reversed());
+      for (int i = 0; i < entries.size(); i++) {
+        if (i < MAX_VERSIONS) {
+          kept.add(entries.get(i));
+        } else {
+          this._entries.remove(entries.get(i)._key, entries.get(i));
+        }
+      }
+    }
+    kept.sort(Comparator.comparingLong((Entry e) -> e._created));
+    StringBuilder manifest = new StringBuilder();
+    for (Entry entry : kept) {
+      format(entry, manifest);
+    }
+    write(this._manifest, manifest.toString().getBytes(StandardCharsets.UTF_8));
+    this.loaded = stamp();
+  }
+
+  /**
+   * @return a stamp based on the last modified date and length of the manifest to detect changes by other nodes.
+   */
+  private long stamp() {
+    File manifest = this._manifest.toFile();
+    return manifest.lastModified() * 31 + manifest.length();
+  }
+
+  /**
+   * Formats an entry as a line of the manifest.
+   *
+   * <p>Each line contains the key, bundle ID, creation date, bundle file and fingerprint of the
+   * imported files followed by the imported files separated by tabs; paths are relative to the
+   * bundles directory.
+   *
+   * @param entry The entry to format
+   * @param out   Where the line goes to
+   */
+  private void format(Entry entry, StringBuilder out) {
+    out.append(entry._key).append('\t');
+    out.append(entry._id).append('\t');
+    out.append(entry._created).append('\t');
+    out.append(entry.file().getName()).append('\t');
+    out.append(entry._fingerprint);
+    for (File f : entry.imports()) {
+      out.append('\t').append(relativize(f));
+    }
+    out.append('\n');
+  }
+
+  /**
+   * Parses a line of the manifest.
+   *
+   * @param line The line to parse
+   *
+   * @return the corresponding entry or <code>null</code> if the line is invalid.
+   */
+  private @Nullable Entry parse(String line) {
+    String[] fields = line.split("\t");
+    if (fields.length < 5) return null;
+    try {
+      long created = Long.parseLong(fields[2]);
+      long fingerprint = Long.parseLong(fields[4]);
+      List<File> imports = new ArrayList<>(fields.length - 5);
+      for (int i = 5; i < fields.length; i++) {
+        imports.add(this._dir.toPath().resolve(fields[i]).normalize().toFile());
+      }
+      return new Entry(fields[0], fields[1], created, new File(this._dir, fields[3]), imports, fingerprint);
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * @param file A source file
+   *
+   * @return the path to the file relative to the bundles directory.
+   */
+  String relativize(File file) {
+    try {
+      return this._dir.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).toString().replace('\\', '/');
+    } catch (IllegalArgumentException ex) {
+      // On a different root
+      return file.getAbsolutePath();
+    }
+  }
+
+  /**
+   * @param content The content
+   * @param text    The text to append
+   *
+   * @return the content followed by the text encoded as UTF-8
+   */
+  private static byte[] append(byte[] content, String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    byte[] appended = Arrays.copyOf(content, content.length + bytes.length);
+    System.arraycopy(bytes, 0, appended, content.length, bytes.length);
+    return appended;
+  }
+
+  /**
+   * Writes to a temporary file in the same directory and moves it atomically to the target.
+   *
+   * @param target  The file to write
+   * @param content The content to write
+   *
+   * @throws IOException If the file could not be written
+   */
+  private static void write(Path target, byte[] content) throws IOException {
+    Path temp = Files.createTempFile(target.getParent(), "."+target.getFileName(), ".tmp");
+    try {
+      Files.write(temp, content);
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * A bundle file recorded in the manifest.
+   */
+  static final class Entry {
+
+    /**
+     * The fingerprint of the source files.
+     */
+    private final String _key;
+
+    /**
+     * The bundle ID.
+     */
+    private final String _id;
+
+    /**
+     * When the bundle was created.
+     */
+    private final long _created;
+
+    /**
+     * The bundle file.
+     */
+    private final File _file;
+
+    /**
+     * The files imported by the source files.
+     */
+    private final List<File> _imports;
+
+    /**
+     * The fingerprint of the imported files.
+     */
+    private final long _fingerprint;
+
+    Entry(String key, String id, long created, File file, List<File> imports, long fingerprint) {
+      this._key = key;
+      this._id = id;
+      this._created = created;
+      this._file = file;
+      this._imports = Collections.unmodifiableList(imports);
+      this._fingerprint = fingerprint;
+    }
+
+    /**
+     * @return The bundle file.
+     */
+    File file() {
+      return this._file;
+    }
+
+    /**
+     * @return The files imported by the source files.
+     */
+    List<File> imports() {
+      return this._imports;
+    }
+
+  }
+
+}
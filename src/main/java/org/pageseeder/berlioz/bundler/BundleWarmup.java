@@ -0,0 +1,293 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.content.ContentGenerator;
+import org.pageseeder.berlioz.content.Parameter;
+import org.pageseeder.berlioz.content.Service;
+import org.pageseeder.berlioz.content.ServiceRegistry;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the web bundles of all the services before the application accepts requests.
+ *
+ * <p>The bundle instances of every service using the {@link GetWebBundles} generator are
+ * computed for each bundle configuration in use; instances bundling the same files are only
+ * built once. The bundles are built in parallel by the bundler threads.
+ *
+ * <p>The warm-up waits at most for the specified time budget; bundles which are not ready by
+ * then continue to be built in the background.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class BundleWarmup {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundleWarmup.class);
+
+  /**
+   * The last warm-up.
+   */
+  private static volatile @Nullable BundleWarmup last = null;
+
+  /**
+   * The number of services using bundles.
+   */
+  private final int _services;
+
+  /**
+   * The number of distinct bundles to build.
+   */
+  private final int _bundles;
+
+  /**
+   * The number of bundles built so far.
+   */
+  private final AtomicInteger _built = new AtomicInteger();
+
+  /**
+   * The number of bundles which could not be built.
+   */
+  private final AtomicInteger _failed = new AtomicInteger();
+
+  /**
+   * When the warm-up started.
+   */
+  private final long _started = System.nanoTime();
+
+  /**
+   * How long the warm-up took in nanoseconds (-1 until all bundles are built).
+   */
+  private volatile long duration = -1;
+
+  /**
+   * @param services The number of services using bundles.
+   * @param bundles  The number of distinct bundles to build.
+   */
+  private BundleWarmup(int services, int bundles) {
+    this._services = services;
+    this._bundles = bundles;
+  }
+
+  /**
+   * @return The number of services using bundles.
+   */
+  public int services() {
+    return this._services;
+  }
+
+  /**
+   * @return The number of distinct bundles to build.
+   */
+  public int bundles() {
+    return this._bundles;
+  }
+
+  /**
+   * @return The number of bundles built so far.
+   */
+  public int built() {
+    return this._built.get();
+  }
+
+  /**
+   * @return The number of bundles which could not be built.
+   */
+  public int failed() {
+    return this._failed.get();
+  }
+
+  /**
+   * @return <code>true</code> if all the bundles have been processed.
+   */
+  public boolean isComplete() {
+    return this.duration >= 0;
+  }
+
+  /**
+   * @return How long the warm-up took in milliseconds or how long it has been running if it is not complete.
+   */
+  public long time() {
+    long d = this.duration;
+    return TimeUnit.NANOSECONDS.toMillis(d >= 0? d : System.nanoTime() - this._started);
+  }
+
+  /**
+   * Writes the statistics of this warm-up as XML.
+   *
+   * @param xml The XML writer
+   *
+   * @throws IOException Should an error be reported by the XML writer
+   */
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("warmup", false);
+    xml.attribute("services", this._services);
+    xml.attribute("bundles", this._bundles);
+    xml.attribute("built", built());
+    xml.attribute("failed", failed());
+    xml.attribute("time", Long.toString(time()));
+    xml.attribute("complete", Boolean.toString(isComplete()));
+    xml.closeElement();
+  }
+
+  @Override
+  public String toString() {
+    return built()+"/"+this._bundles+" bundles for "+this._services+" services in "+time()+"ms"
+        +(failed() > 0? " ("+failed()+" failed)" : "");
+  }
+
+  /**
+   * @return The last warm-up or <code>null</code> if the bundles were not warmed up.
+   */
+  public static @Nullable BundleWarmup last() {
+    return last;
+  }
+
+  /**
+   * Builds the bundles for all the services in the specified registry.
+   *
+   * @param registry The services
+   * @param root     The root of the public folder of the web application
+   * @param budget   The maximum time to wait for the bundles in milliseconds
+   *
+   * @return The statistics of the warm-up.
+   */
+  public static BundleWarmup warmup(ServiceRegistry registry, File root, long budget) {
+    // Collect the distinct services using bundles and the configs they use
+    Map<String, Service> services = new LinkedHashMap<>();
+    Map<String, Set<String>> configs = new LinkedHashMap<>();
+    for (Service service : registry.getServices()) {
+      if (services.containsKey(service.id())) {
+        continue;
+      }
+      Set<String> names = getConfigNames(service);
+      if (!names.isEmpty()) {
+        services.put(service.id(), service);
+        configs.put(service.id(), names);
+      }
+    }
+
+    // Compute the distinct bundle instances for each bundle configuration
+    Map<BundleConfig, Map<String, BundleInstance>> instances = new LinkedHashMap<>();
+    int count = 0;
+    for (Service service : services.values()) {
+      for (String name : configs.get(service.id())) {
+        for (BundleType type : BundleType.values()) {
+          BundleConfig config = GetWebBundles.getConfig(name, type, root);
+          if (!config.store().canWrite()) {
+            continue;
+          }
+          Map<String, BundleInstance> distinct = instances.computeIfAbsent(config, c -> new LinkedHashMap<>());
+          for (BundleInstance instance : config.getInstances(service)) {
+            if (distinct.putIfAbsent(instance.key(), instance) == null) {
+              count++;
+            }
+          }
+        }
+      }
+    }
+
+    // Build them in parallel
+    BundleWarmup warmup = new BundleWarmup(services.size(), count);
+    last = warmup;
+    LOGGER.info("Warming up {} bundles for {} services", count, services.size());
+    int step = Math.max(1, count / 10);
+    List<CompletableFuture<BundleIndex.Entry>> futures = new ArrayList<>(count);
+    for (Map.Entry<BundleConfig, Map<String, BundleInstance>> e : instances.entrySet()) {
+      for (BundleInstance instance : e.getValue().values()) {
+        CompletableFuture<BundleIndex.Entry> future = instance.warmup(e.getKey());
+        future.whenComplete((entry, ex) -> {
+          if (ex != null || entry.stale) {
+            warmup._failed.incrementAndGet();
+            LOGGER.warn("Unable to warm up bundle {}", instance.name(), ex);
+          }
+          int built = warmup._built.incrementAndGet();
+          if (built % step == 0 || built == warmup._bundles) {
+            LOGGER.info("Warmed up {}/{} bundles", built, warmup._bundles);
+          }
+        });
+        futures.add(future);
+      }
+    }
+    CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    all.whenComplete((v, ex) -> warmup.duration = System.nanoTime() - warmup._started);
+
+    // Wait for the builds within the time budget
+    try {
+      all.get(budget, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException ex) {
+      LOGGER.warn("Bundle warm-up exceeded {}ms, remaining bundles are built in the background", budget);
+    } catch (ExecutionException ex) {
+      // Already reported for each bundle
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return warmup;
+  }
+
+  /**
+   * Returns the names of the bundle configurations used by the specified service.
+   *
+   * @param service The service
+   *
+   * @return The names of the bundle configurations used by the {@link GetWebBundles} generators of the service.
+   */
+  private static Set<String> getConfigNames(Service service) {
+    Set<String> names = Collections.emptySet();
+    for (ContentGenerator generator : service.generators()) {
+      if (generator instanceof GetWebBundles) {
+        String name = "default";
+        for (Parameter p : service.parameters(generator)) {
+          if ("config".equals(p.name())) {
+            String value = p.value(Collections.emptyMap());
+            if (!value.isEmpty()) {
+              name = value;
+            }
+          }
+        }
+        if (names.isEmpty()) {
+          names = new LinkedHashSet<>();
+        }
+        names.add(name);
+      }
+    }
+    return names;
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the directories of the files used by the bundles and invalidates the bundle entries
+ * when any of their files is created, modified or deleted.
+ *
+ * <p>A single watcher thread is shared by all the bundle indexes; it is started when the first
+ * entry is registered and stopped by {@link #shutdown()}.
+ *
+ * <p>If the file system does not support watching for changes, entries are not registered and
+ * the bundle index falls back on checking the files periodically.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class BundleWatcher {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundleWatcher.class);
+
+  /**
+   * The shared watcher (lazily created).
+   */
+  private static volatile @Nullable BundleWatcher watcher = null;
+
+  /**
+   * Whether the watch service is unavailable on this file system.
+   */
+  private static volatile boolean unavailable = false;
+
+  /**
+   * The watch service.
+   */
+  private final WatchService _service;
+
+  /**
+   * The entries to invalidate for each directory being watched.
+   */
+  private final Map<Path, Set<BundleIndex.Entry>> _entries = new ConcurrentHashMap<>();
+
+  /**
+   * @param service The watch service to use.
+   */
+  private BundleWatcher(WatchService service) {
+    this._service = service;
+  }
+
+  /**
+   * Registers the specified entry so that it is invalidated when any of its files changes.
+   *
+   * <p>The nearest existing directory of each file is watched so that files which do not
+   * exist yet are also detected when they are created.
+   *
+   * @param entry The bundle entry to register.
+   *
+   * @return <code>true</code> if the entry is watched; <code>false</code> if a directory could not be watched.
+   */
+  boolean register(BundleIndex.Entry entry) {
+    for (Path file : entry.paths()) {
+      Path dir = file.getParent();
+      while (dir != null && !Files.isDirectory(dir)) {
+        dir = dir.getParent();
+      }
+      if (dir == null) return false;
+      Set<BundleIndex.Entry> entries = this._entries.get(dir);
+      if (entries == null) {
+        try {
+          dir.register(this._service, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | ClosedWatchServiceException ex) {
+          LOGGER.warn("Unable to watch {}: {}", dir, ex.getMessage());
+          return false;
+        }
+        entries = this._entries.computeIfAbsent(dir, d -> ConcurrentHashMap.newKeySet());
+      }
+      entries.add(entry);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the specified entry from all the directories being watched.
+   *
+   * @param entry The bundle entry to unregister.
+   */
+  void unregister(BundleIndex.Entry entry) {
+    for (Set<BundleIndex.Entry> entries : this._entries.values()) {
+      entries.remove(entry);
+    }
+  }
+
+  /**
+   * Processes the watch events until the watch service is closed.
+   */
+  private void run() {
+    try {
+      while (true) {
+        WatchKey key = this._service.take();
+        Path dir = (Path)key.watchable();
+        Set<BundleIndex.Entry> entries = this._entries.get(dir);
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (entries == null) {
+            continue;
+          }
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            invalidate(entries, null);
+          } else {
+            invalidate(entries, dir.resolve((Path)event.context()));
+          }
+        }
+        if (!key.reset()) {
+          // The directory is no longer accessible
+          Set<BundleIndex.Entry> removed = this._entries.remove(dir);
+          if (removed != null) {
+            invalidate(removed, null);
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException ex) {
+      // The watcher was shut down
+    }
+    LOGGER.debug("Stopped watching bundle files");
+  }
+
+  /**
+   * Invalidates the entries which depend on the specified file.
+   *
+   * @param entries The entries for the directory where the change occurred
+   * @param changed The path to the file which was changed (<code>null</code> to invalidate all)
+   */
+  private void invalidate(Set<BundleIndex.Entry> entries, @Nullable Path changed) {
+    for (BundleIndex.Entry entry : entries) {
+      if (changed == null || entry.dependsOn(changed)) {
+        LOGGER.debug("Bundle invalidated by change to {}", changed);
+        entry.invalidate();
+        unregister(entry);
+      }
+    }
+  }
+
+  /**
+   * Returns the shared watcher, starting it if necessary.
+   *
+   * @return the watcher or <code>null</code> if the file system cannot be watched.
+   */
+  static @Nullable BundleWatcher get() {
+    BundleWatcher w = watcher;
+    if (w == null && !unavailable) {
+      synchronized (BundleWatcher.class) {
+        w = watcher;
+        if (w == null && !unavailable) {
+          try {
+            w = new BundleWatcher(FileSystems.getDefault().newWatchService());
+            Thread thread = new Thread(w::run, "berlioz-bundle-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            watcher = w;
+            LOGGER.info("Watching bundle files for changes");
+          } catch (IOException | UnsupportedOperationException ex) {
+            LOGGER.warn("Unable to watch bundle files, falling back on periodic checks: {}", ex.getMessage());
+            unavailable = true;
+          }
+        }
+      }
+    }
+    return w;
+  }
+
+  /**
+   * Stops watching the bundle files.
+   *
+   * <p>The bundle entries being watched are invalidated since changes can no longer be detected;
+   * a new watcher is started if an entry is registered afterwards.
+   */
+  public static synchronized void shutdown() {
+    BundleWatcher w = watcher;
+    if (w != null) {
+      LOGGER.info("Shutting down bundle watcher");
+      watcher = null;
+      for (Set<BundleIndex.Entry> entries : w._entries.values()) {
+        for (BundleIndex.Entry entry : entries) {
+          entry.invalidate();
+        }
+      }
+      w._entries.clear();
+      try {
+        w._service.close();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to close bundle watcher", ex);
+      }
+    }
+  }
+
+}
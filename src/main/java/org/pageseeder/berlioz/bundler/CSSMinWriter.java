@@ -0,0 +1,986 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A writer minimizing the CSS written to it in a single pass.
+ *
+ * <p>The styles are tokenized as they are written: lines, comments and rules are processed one
+ * character at a time and each rule is written to the output stream as soon as it is complete,
+ * so that only the current rule is held in memory.
+ *
+ * <p>The output is the same as the one produced by {@link CSSMin}: comments and unnecessary
+ * whitespace are removed, colors, zero values, font weights and shorthand parameters are
+ * simplified. Special comments (starting with <code>/**</code>) are kept; those found after the
+ * first rule has been written are written before the next rule instead of at the top.
+ *
+ * <p>The output is written as UTF-8 and closing this writer closes the output stream.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class CSSMinWriter extends Writer {
+
+  /**
+   * Logger to know what is going on in the class.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(CSSMinWriter.class);
+
+  /**
+   * Color names and values mapped to their shorter equivalent.
+   */
+  private static final Map<String, String> COLOURS = initColours();
+  private static Map<String, String> initColours() {
+    Map<String, String> colours = new HashMap<>();
+    String[] names = Constants.HTML_COLOR_NAMES;
+    String[] values = Constants.HTML_COLOR_VALUES;
+    for (int i = 0; i < names.length; i++) {
+      putColour(colours, names[i]);
+      putColour(colours, values[i]);
+    }
+    return Collections.unmodifiableMap(colours);
+  }
+
+  /**
+   * Adds the replacement for the specified color if there is one; the first name matching is
+   * replaced by its value and values are replaced by the last name matching.
+   */
+  private static void putColour(Map<String, String> colours, String colour) {
+    String[] names = Constants.HTML_COLOR_NAMES;
+    String[] values = Constants.HTML_COLOR_VALUES;
+    String result = colour;
+    for (int i = 0; i < names.length; i++) {
+      if (colour.equals(names[i])) {
+        if (values[i].length() < names[i].length()) {
+          result = values[i];
+        }
+        break;
+      } else if (colour.equals(values[i])) {
+        if (names[i].length() < values[i].length()) {
+          result = names[i];
+        }
+      }
+    }
+    if (!result.equals(colour)) {
+      colours.put(colour, result);
+    }
+  }
+
+  /** Outside of comments. */
+  private static final int NORMAL = 0;
+
+  /** After a slash which may start a comment. */
+  private static final int SLASH = 1;
+
+  /** Inside a comment. */
+  private static final int COMMENT = 2;
+
+  /**
+   * Where the minimized CSS is written.
+   */
+  private final Writer _out;
+
+  // Lines ----------------------------------------------------------------------------------------
+
+  /**
+   * Whitespace at the start of the current line (dropped if the line is blank).
+   */
+  private final StringBuilder _indent = new StringBuilder();
+
+  /**
+   * Whether the current line has any character.
+   */
+  private boolean line = false;
+
+  /**
+   * Whether the current line is blank so far.
+   */
+  private boolean blank = true;
+
+  /**
+   * Whether the last character was a carriage return.
+   */
+  private boolean cr = false;
+
+  // Comments -------------------------------------------------------------------------------------
+
+  /**
+   * The comment state.
+   */
+  private int state = NORMAL;
+
+  /**
+   * Whether the next character is the first one of the comment.
+   */
+  private boolean first = false;
+
+  /**
+   * Whether the last character of the comment was a star.
+   */
+  private boolean star = false;
+
+  /**
+   * Whether the comment is a special comment to keep.
+   */
+  private boolean keep = false;
+
+  /**
+   * The number of new lines in the comment.
+   */
+  private int lines = 0;
+
+  /**
+   * The special comment being read.
+   */
+  private final StringBuilder _comment = new StringBuilder();
+
+  // Rules ----------------------------------------------------------------------------------------
+
+  /**
+   * The text of the current selector, segment or declaration block.
+   */
+  private final StringBuilder _text = new StringBuilder();
+
+  /**
+   * The special comments to write at the top.
+   */
+  private final StringBuilder _header = new StringBuilder();
+
+  /**
+   * The special comments to write before the next rule.
+   */
+  private final StringBuilder _pending = new StringBuilder();
+
+  /**
+   * The selector of the current rule.
+   */
+  private String selector = "";
+
+  /**
+   * The selector of the current sub rule.
+   */
+  private String subselector = "";
+
+  /**
+   * The number of open braces.
+   */
+  private int depth = 0;
+
+  /**
+   * The index of the current segment between braces of the rule.
+   */
+  private int segment = 0;
+
+  /**
+   * Whether the current rule contains other rules (e.g. <code>@media</code>).
+   */
+  private boolean nested = false;
+
+  /**
+   * The number of sub rules written for the current rule.
+   */
+  private int subrules = 0;
+
+  /**
+   * The number of rules written.
+   */
+  private int rules = 0;
+
+  /**
+   * Whether the header has been written.
+   */
+  private boolean started = false;
+
+  /**
+   * Whether this writer was closed.
+   */
+  private boolean closed = false;
+
+  /**
+   * @param out Where to write the minimized CSS.
+   */
+  CSSMinWriter(OutputStream out) {
+    this._out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    line((char)c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    for (int i = off; i < off+len; i++) {
+      line(cbuf[i]);
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    for (int i = off; i < off+len; i++) {
+      line(str.charAt(i));
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this._out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) return;
+    this.closed = true;
+    if (this.line) {
+      endLine();
+    }
+    if (this.state == SLASH) {
+      rule('/');
+    } else if (this.state == COMMENT) {
+      LOGGER.warn("Unterminated comment, ignoring the end of the styles");
+    }
+    if (this.depth > 0) {
+      LOGGER.warn("Unterminated rule: {}", this.selector);
+      if (this.subrules > 0) {
+        this._out.write('}');
+      }
+    }
+    start();
+    this._out.write('\n');
+    this._out.close();
+  }
+
+  // Lines
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Normalizes line separators and removes the whitespace of blank lines.
+   */
+  private void line(char c) throws IOException {
+    if (c == '\n' || c == '\r') {
+      if (c == '\n' && this.cr) {
+        this.cr = false;
+      } else {
+        this.cr = c == '\r';
+        endLine();
+      }
+    } else {
+      this.cr = false;
+      this.line = true;
+      if (this.blank) {
+        if (c <= ' ') {
+          this._indent.append(c);
+          return;
+        }
+        this.blank = false;
+        for (int i = 0; i < this._indent.length(); i++) {
+          comment(this._indent.charAt(i));
+        }
+        this._indent.setLength(0);
+      }
+      comment(c);
+    }
+  }
+
+  /**
+   * Ends the current line.
+   */
+  private void endLine() throws IOException {
+    this._indent.setLength(0);
+    this.line = false;
+    this.blank = true;
+    comment('\n');
+  }
+
+  // Comments
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Strips the comments keeping only the new lines they contain and the special comments.
+   */
+  private void comment(char c) throws IOException {
+    if (this.state == NORMAL) {
+      if (c == '/') {
+        this.state = SLASH;
+      } else {
+        rule(c);
+      }
+    } else if (this.state == SLASH) {
+      if (c == '*') {
+        this.state = COMMENT;
+        this.first = true;
+        this.star = false;
+        this.lines = 0;
+      } else {
+        rule('/');
+        if (c != '/') {
+          this.state = NORMAL;
+          rule(c);
+        }
+      }
+    } else {
+      if (this.first) {
+        this.first = false;
+        this.keep = c == '*';
+        if (this.keep) {
+          this._comment.append("/*");
+        }
+      }
+      if (this.keep) {
+        this._comment.append(c);
+      }
+      if (this.star && c == '/') {
+        this.state = NORMAL;
+        endComment();
+      } else {
+        if (c == '\n') {
+          this.lines++;
+        }
+        this.star = c == '*';
+      }
+    }
+  }
+
+  /**
+   * Ends the current comment.
+   */
+  private void endComment() throws IOException {
+    if (this.keep) {
+      StringBuilder comment = this.started? this._pending : this._header;
+      StringBuilder text = this._comment;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c == '\n') {
+          // Remove the leading stars of multiline comments
+          if (i+3 < text.length() && text.charAt(i+1) == ' ' && text.charAt(i+2) == '*' && text.charAt(i+3) == ' ') {
+            i += 2;
+          }
+        } else {
+          comment.append(c);
+        }
+      }
+      this._comment.setLength(0);
+      this.keep = false;
+    }
+    for (int i = 0; i < this.lines; i++) {
+      rule('\n');
+    }
+  }
+
+  // Rules
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Splits the styles into rules.
+   */
+  private void rule(char c) throws IOException {
+    if (c == '{') {
+      if (this.depth == 0) {
+        this.selector = selector(this._text);
+        this._text.setLength(0);
+        this.segment = 1;
+        this.nested = false;
+        this.subrules = 0;
+      } else {
+        this.nested = true;
+        segment();
+      }
+      this.depth++;
+    } else if (c == '}') {
+      if (this.depth == 0) {
+        LOGGER.warn("Unbalanced braces, ignoring '}' after: {}", this.selector);
+        return;
+      }
+      this.depth--;
+      if (this.nested) {
+        segment();
+      }
+      if (this.depth == 0) {
+        endRule();
+      }
+    } else {
+      this._text.append(c);
+    }
+  }
+
+  /**
+   * Ends a segment between two braces of a nested rule, the odd segments are the selectors and
+   * the even segments the declarations of the sub rules.
+   */
+  private void segment() throws IOException {
+    String text = this._text.toString().trim();
+    this._text.setLength(0);
+    if (this.segment % 2 == 1) {
+      this.subselector = text;
+    } else if (this.subselector.length() > 0 && text.length() > 0) {
+      if (this.subrules == 0) {
+        start();
+        this._out.write('\n');
+        this._out.write(this.selector);
+        this._out.write('{');
+      }
+      this._out.write(selector(this.subselector));
+      this._out.write('{');
+      properties(text);
+      this._out.write('}');
+      this.subrules++;
+    }
+    this.segment++;
+  }
+
+  /**
+   * Ends the current rule.
+   */
+  private void endRule() throws IOException {
+    if (this.nested && this.subrules > 0) {
+      this._out.write('}');
+    } else {
+      start();
+      if (this.rules % 10 == 0) {
+        this._out.write('\n');
+      }
+      this._out.write(this.selector);
+      this._out.write('{');
+      if (!this.nested) {
+        properties(this._text);
+      }
+      this._out.write('}');
+    }
+    this._text.setLength(0);
+    this.subrules = 0;
+    this.rules++;
+  }
+
+  /**
+   * Writes the header or special comments before the next rule.
+   */
+  private void start() throws IOException {
+    if (!this.started) {
+      this.started = true;
+      this._out.write(this._header.toString());
+      this._out.write('\n');
+      this._header.setLength(0);
+    } else if (this._pending.length() > 0) {
+      this._out.write(this._pending.toString());
+      this._pending.setLength(0);
+    }
+  }
+
+  /**
+   * Writes the properties of a declaration block separated by semi-colons.
+   *
+   * @param block The declaration block; for example, "border: solid 1px red; color: blue;"
+   */
+  private void properties(CharSequence block) throws IOException {
+    boolean quotes = false;
+    boolean brackets = false;
+    boolean first = true;
+    int from = 0;
+    for (int i = 0; i < block.length(); i++) {
+      char c = block.charAt(i);
+      if (quotes) {
+        quotes = c != '"';
+      } else if (brackets) {
+        brackets = c != ')';
+      } else if (c == '"') {
+        quotes = true;
+      } else if (c == '(') {
+        brackets = true;
+      } else if (c == ';') {
+        first = property(block.subSequence(from, i).toString(), first);
+        from = i + 1;
+      }
+    }
+    property(block.subSequence(from, block.length()).toString(), first);
+  }
+
+  /**
+   * Writes the specified property.
+   *
+   * @param property The property; for example, "border: solid 1px red"
+   * @param first    Whether it is the first property of the block
+   *
+   * @return <code>false</code> if a property was written; the value of <code>first</code> otherwise.
+   */
+  private boolean property(String property, boolean first) throws IOException {
+    if (property.trim().isEmpty()) return first;
+    // Split the name and value
+    String name = null;
+    String value = null;
+    boolean quotes = false;
+    boolean brackets = false;
+    int from = 0;
+    for (int i = 0; i < property.length() && value == null; i++) {
+      char c = property.charAt(i);
+      if (quotes) {
+        quotes = c != '"';
+      } else if (brackets) {
+        brackets = c != ')';
+      } else if (c == '"') {
+        quotes = true;
+      } else if (c == '(') {
+        brackets = true;
+      } else if (c == ':') {
+        String part = property.substring(from, i).trim();
+        if (part.length() > 0) {
+          if (name == null) {
+            name = part;
+          } else {
+            value = part;
+          }
+        }
+        from = i + 1;
+      }
+    }
+    if (value == null) {
+      String part = property.substring(from).trim();
+      if (part.length() > 0) {
+        if (name == null) {
+          name = part;
+        } else {
+          value = part;
+        }
+      }
+    }
+    if (name == null || value == null) {
+      LOGGER.warn("Incomplete property: {}", property);
+      return first;
+    }
+    if (!first) {
+      this._out.write(';');
+    }
+    name = name.toLowerCase();
+    this._out.write(name);
+    values(name, value);
+    return false;
+  }
+
+  /**
+   * Writes the simplified values of a property separated by commas.
+   *
+   * @param property The name of the property
+   * @param value    The value of the property
+   */
+  private void values(String property, String value) throws IOException {
+    String values = simplifyColours(removeSpaceAfterComma(value));
+    // Make sure we do not split data URIs
+    boolean split = !values.contains("data:");
+    // Empty parts at the end are ignored
+    int end = values.length();
+    while (split && end > 0 && values.charAt(end-1) == ',') {
+      end--;
+    }
+    char separator = ':';
+    int from = 0;
+    while (end > 0) {
+      int to = split? values.indexOf(',', from) : -1;
+      if (to < 0 || to > end) {
+        to = end;
+      }
+      this._out.write(separator);
+      this._out.write(simplify(property, values.substring(from, to)));
+      if (to == end) {
+        break;
+      }
+      separator = ',';
+      from = to + 1;
+    }
+  }
+
+  // Simplifications
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Simplifies the selector by removing the whitespace around combinators and operators.
+   *
+   * @param selector The selector
+   *
+   * @return the simplified selector
+   */
+  static String selector(CharSequence selector) {
+    String s = selector.toString().trim();
+    StringBuilder min = new StringBuilder(s.length());
+    int i = 0;
+    while (i < s.length()) {
+      int j = isSpace(s.charAt(i))? i+1 : i;
+      int length = combinator(s, j);
+      if (length > 0) {
+        min.append(s, j, j+length);
+        i = j + length;
+        if (i < s.length() && isSpace(s.charAt(i))) {
+          i++;
+        }
+      } else {
+        min.append(s.charAt(i++));
+      }
+    }
+    return min.toString();
+  }
+
+  /**
+   * @return The length of the combinator or attribute operator at the specified index; 0 if none.
+   */
+  private static int combinator(String s, int i) {
+    if (i >= s.length()) return 0;
+    char c = s.charAt(i);
+    if (c == '+' || c == '~' || c == ',' || c == '=' || c == '>') return 1;
+    if ((c == '^' || c == '$' || c == '*' || c == '|') && i+1 < s.length() && s.charAt(i+1) == '=') return 2;
+    return 0;
+  }
+
+  /**
+   * Removes a single space after each comma.
+   */
+  private static String removeSpaceAfterComma(String value) {
+    if (value.indexOf(", ") < 0) return value;
+    StringBuilder min = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      min.append(c);
+      if (c == ',' && i+1 < value.length() && value.charAt(i+1) == ' ') {
+        i++;
+      }
+    }
+    return min.toString();
+  }
+
+  /**
+   * Converts rgb(51,102,153) to #336699.
+   *
+   * @param value The value which may contain colors to replace
+   *
+   * @return the simplified value.
+   */
+  static String simplifyColours(String value) {
+    int i = value.indexOf("rgb");
+    if (i < 0) return value;
+    StringBuilder min = new StringBuilder(value.length());
+    int last = 0;
+    while (i >= 0) {
+      int end = rgb(value, i, min, last);
+      if (end > 0) {
+        last = end;
+        i = value.indexOf("rgb", end);
+      } else {
+        i = value.indexOf("rgb", i+1);
+      }
+    }
+    min.append(value, last, value.length());
+    return min.toString();
+  }
+
+  /**
+   * Appends the hexadecimal color for the <code>rgb()</code> function at the specified index.
+   *
+   * @return the index after the function or -1 if it is not a valid <code>rgb()</code> function.
+   */
+  private static int rgb(String value, int start, StringBuilder min, int last) {
+    int i = skipSpaces(value, start+3);
+    if (i >= value.length() || value.charAt(i) != '(') return -1;
+    i = skipSpaces(value, i+1);
+    int from = i;
+    while (i < value.length() && (isSpace(value.charAt(i)) || value.charAt(i) == ',' || (value.charAt(i) >= '0' && value.charAt(i) <= '9'))) {
+      i++;
+    }
+    if (i == from || i >= value.length() || value.charAt(i) != ')') return -1;
+    StringBuilder hex = new StringBuilder("#");
+    String[] colours = value.substring(from, i).split(",");
+    try {
+      for (String colour : colours) {
+        int c = Integer.parseInt(colour);
+        if (c < 16) {
+          hex.append('0');
+        }
+        hex.append(Integer.toHexString(c));
+      }
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+    min.append(value, last, start).append(hex);
+    return i+1;
+  }
+
+  /**
+   * Simplifies a part of a property value.
+   *
+   * @param property The name of the property
+   * @param part     The part of the value
+   *
+   * @return the simplified part
+   */
+  static String simplify(String property, String part) {
+    // !important doesn't need to be spaced, 0in, 0cm, etc. are just 0
+    String result = stripZeroUnits(removeSpaceBeforeImportant(" "+part)).trim();
+
+    // Simplify multiple zeroes
+    if ("0 0 0 0".equals(result) || "0 0 0".equals(result) || "0 0".equals(result)) {
+      result = "0";
+    }
+
+    // Simplify multiple-parameter properties
+    result = simplifyParameters(result);
+
+    // Simplify font weights (only applies to `font-weight`)
+    if ("font-weight".equals(property)) {
+      String weight = CSSMin.FONT_WEIGHTS.get(result.toLowerCase());
+      if (weight != null) {
+        result = weight;
+      }
+    }
+
+    // Strip unnecessary quotes from url() and make single-word parts lowercase
+    if (result.length() > 4 && result.regionMatches(true, 0, "url(", 0, 4)) {
+      result = unquoteURLs(result);
+    } else if (!hasSpace(result)) {
+      result = result.toLowerCase();
+    }
+
+    // Simplify colours
+    String colour = COLOURS.get(result.toLowerCase());
+    if (colour != null) {
+      result = colour;
+    }
+    return simplifyHexColours(result);
+  }
+
+  /**
+   * Replaces " !important" by "!important".
+   */
+  private static String removeSpaceBeforeImportant(String value) {
+    int i = value.indexOf(" !important");
+    if (i < 0) return value;
+    StringBuilder min = new StringBuilder(value.length());
+    int last = 0;
+    while (i >= 0) {
+      min.append(value, last, i);
+      last = i + 1;
+      i = value.indexOf(" !important", i + 11);
+    }
+    min.append(value, last, value.length());
+    return min.toString();
+  }
+
+  /**
+   * Removes the units after zero values preceded by whitespace.
+   */
+  private static String stripZeroUnits(String value) {
+    StringBuilder min = null;
+    int last = 0;
+    for (int i = 0; i+2 < value.length(); i++) {
+      if (isSpace(value.charAt(i)) && value.charAt(i+1) == '0') {
+        int unit = zeroUnit(value, i+2);
+        if (unit > 0) {
+          if (min == null) {
+            min = new StringBuilder(value.length());
+          }
+          min.append(value, last, i+2);
+          last = i + 2 + unit;
+          i = last - 1;
+        }
+      }
+    }
+    if (min == null) return value;
+    min.append(value, last, value.length());
+    return min.toString();
+  }
+
+  /**
+   * @return The length of the unit at the specified index which can be removed after a zero; 0 otherwise.
+   */
+  private static int zeroUnit(String value, int i) {
+    char c = value.charAt(i);
+    if (c == '%') return 1;
+    if (i+1 >= value.length()) return 0;
+    char d = value.charAt(i+1);
+    switch (c) {
+      case 'p': return d == 'x' || d == 'c' || d == 't'? 2 : 0;
+      case 'e': return d == 'm' || d == 'x'? 2 : 0;
+      case 'i': return d == 'n'? 2 : 0;
+      case 'c':
+      case 'm': return d == 'm'? 2 : 0;
+      default: return 0;
+    }
+  }
+
+  /**
+   * Simplifies multiple-parameter properties, for example "3px 0 3px 0" becomes "3px 0".
+   */
+  private static String simplifyParameters(String value) {
+    String[] params = new String[4];
+    int count = 0;
+    int from = 0;
+    for (int i = 0; i <= value.length(); i++) {
+      if (i == value.length() || value.charAt(i) == ' ') {
+        if (count == 4) return value;
+        params[count++] = value.substring(from, i);
+        from = i + 1;
+      }
+    }
+    if ("\"".equals(params[0]) || "'".equals(params[0])) return value;
+    int length = count;
+    if (length == 4 && params[1].equalsIgnoreCase(params[3])) {
+      length = 3;
+    }
+    if (length == 3 && params[0].equalsIgnoreCase(params[2])) {
+      length = 2;
+    }
+    if (length == 2 && params[0].equalsIgnoreCase(params[1])) {
+      length = 1;
+    }
+    if (length == count) return value;
+    StringBuilder min = new StringBuilder(params[0]);
+    for (int i = 1; i < length; i++) {
+      min.append(' ').append(params[i]);
+    }
+    return min.toString();
+  }
+
+  /**
+   * Strips the quotes from the URLs, for example "url('a.png')" becomes "url(a.png)".
+   */
+  private static String unquoteURLs(String value) {
+    StringBuilder min = new StringBuilder(value.length());
+    int last = 0;
+    int i = indexOfURL(value, 0);
+    while (i >= 0) {
+      int end = unquoteURL(value, i);
+      if (end > 0) {
+        min.append(value, last, i).append("url(").append(value, i+5, end-2).append(')');
+        last = end;
+        i = indexOfURL(value, end);
+      } else {
+        i = indexOfURL(value, i+1);
+      }
+    }
+    min.append(value, last, value.length());
+    return min.toString();
+  }
+
+  /**
+   * @return the index of the next "url(" ignoring case; -1 if none.
+   */
+  private static int indexOfURL(String value, int from) {
+    for (int i = from; i+4 <= value.length(); i++) {
+      if (value.regionMatches(true, i, "url(", 0, 4)) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the index after the quoted URL starting at the specified index; -1 if not quoted.
+   */
+  private static int unquoteURL(String value, int start) {
+    int i = start + 4;
+    if (i >= value.length()) return -1;
+    char quote = value.charAt(i);
+    if (quote != '\'' && quote != '"') return -1;
+    for (i++; i+1 < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == quote && value.charAt(i+1) == ')') return i+2;
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') return -1;
+    }
+    return -1;
+  }
+
+  /**
+   * Shortens hexadecimal colors, for example "#AABBCC" becomes "#abc".
+   */
+  private static String simplifyHexColours(String value) {
+    int i = value.indexOf('#');
+    if (i < 0) return value;
+    StringBuilder min = new StringBuilder(value.length());
+    int last = 0;
+    while (i >= 0) {
+      if (isHexColour(value, i)) {
+        min.append(value, last, i).append('#');
+        if (equalsIgnoreCase(value.charAt(i+1), value.charAt(i+2))
+         && equalsIgnoreCase(value.charAt(i+3), value.charAt(i+4))
+         && equalsIgnoreCase(value.charAt(i+5), value.charAt(i+6))) {
+          min.append(Character.toLowerCase(value.charAt(i+1)));
+          min.append(Character.toLowerCase(value.charAt(i+3)));
+          min.append(Character.toLowerCase(value.charAt(i+5)));
+        } else {
+          min.append(value.substring(i+1, i+7).toLowerCase());
+        }
+        last = i + 7;
+        i = value.indexOf('#', last);
+      } else {
+        i = value.indexOf('#', i+1);
+      }
+    }
+    min.append(value, last, value.length());
+    return min.toString();
+  }
+
+  /**
+   * @return <code>true</code> if the '#' at the specified index is followed by 6 hexadecimal digits.
+   */
+  private static boolean isHexColour(String value, int i) {
+    if (i+7 > value.length()) return false;
+    for (int j = i+1; j < i+7; j++) {
+      char c = value.charAt(j);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) return false;
+    }
+    return true;
+  }
+
+  private static boolean equalsIgnoreCase(char a, char b) {
+    return Character.toLowerCase(a) == Character.toLowerCase(b);
+  }
+
+  /**
+   * @return <code>true</code> if the value contains whitespace
+   */
+  private static boolean hasSpace(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (isSpace(value.charAt(i))) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the index of the first non-whitespace character from the specified index.
+   */
+  private static int skipSpaces(String value, int from) {
+    int i = from;
+    while (i < value.length() && isSpace(value.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * @return <code>true</code> for the whitespace characters: space, tab, new line, vertical tab, form feed and carriage return.
+   */
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+}
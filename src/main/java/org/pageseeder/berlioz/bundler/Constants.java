@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * CSSMin Copyright License Agreement (BSD License)
+ *
+ * Copyright (c) 2011, Barry van Oudtshoorn
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * * Redistributions of source code must retain the above
+ *   copyright notice, this list of conditions and the
+ *   following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the
+ *   following disclaimer in the documentation and/or other
+ *   materials provided with the distribution.
+ *
+ * * Neither the name of Barryvan nor the names of its
+ *   contributors may be used to endorse or promote products
+ *   derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.pageseeder.berlioz.bundler;
+
+/**
+ * Constants for replacement.
+ */
+final class Constants {
+
+  /**
+   * Color name - index must match color codes below.
+   */
+  static final String[] HTML_COLOR_NAMES = {
+    "aliceblue",
+    "antiquewhite",
+    "aqua",
+    "aquamarine",
+    "azure",
+    "beige",
+    "bisque",
+    "black",
+    "blanchedalmond",
+    "blue",
+    "blueviolet",
+    "brown",
+    "burlywood",
+    "cadetblue",
+    "chartreuse",
+    "chocolate",
+    "coral",
+    "cornflowerblue",
+    "cornsilk",
+    "crimson",
+    "cyan",
+    "darkblue",
+    "darkcyan",
+    "darkgoldenrod",
+    "darkgray",
+    "darkgreen",
+    "darkkhaki",
+    "darkmagenta",
+    "darkolivegreen",
+    "darkorange",
+    "darkorchid",
+    "darkred",
+    "darksalmon",
+    "darkseagreen",
+    "darkslateblue",
+    "darkslategray",
+    "darkturquoise",
+    "darkviolet",
+    "deeppink",
+    "deepskyblue",
+    "dimgray",
+    "dodgerblue",
+    "firebrick",
+    "floralwhite",
+    "forestgreen",
+    "fuchsia",
+    "gainsboro",
+    "ghostwhite",
+    "gold",
+    "goldenrod",
+    "gray",
+    "green",
+    "greenyellow",
+    "honeydew",
+    "hotpink",
+    "indianred ",
+    "indigo ",
+    "ivory",
+    "khaki",
+    "lavender",
+    "lavenderblush",
+    "lawngreen",
+    "lemonchiffon",
+    "lightblue",
+    "lightcoral",
+    "lightcyan",
+    "lightgoldenrodyellow",
+    "lightgrey",
+    "lightgreen",
+    "lightpink",
+    "lightsalmon",
+    "lightseagreen",
+    "lightskyblue",
+    "lightslategray",
+    "lightsteelblue",
+    "lightyellow",
+    "lime",
+    "limegreen",
+    "linen",
+    "magenta",
+    "maroon",
+    "mediumaquamarine",
+    "mediumblue",
+    "mediumorchid",
+    "mediumpurple",
+    "mediumseagreen",
+    "mediumslateblue",
+    "mediumspringgreen",
+    "mediumturquoise",
+    "mediumvioletred",
+    "midnightblue",
+    "mintcream",
+    "mistyrose",
+    "moccasin",
+    "navajowhite",
+    "navy",
+    "oldlace",
+    "olive",
+    "olivedrab",
+    "orange",
+    "orangered",
+    "orchid",
+    "palegoldenrod",
+    "palegreen",
+    "paleturquoise",
+    "palevioletred",
+    "papayawhip",
+    "peachpuff",
+    "peru",
+    "pink",
+    "plum",
+    "powderblue",
+    "purple",
+    "red",
+    "rosybrown",
+    "royalblue",
+    "saddlebrown",
+    "salmon",
+    "sandybrown",
+    "seagreen",
+    "seashell",
+    "sienna",
+    "silver",
+    "skyblue",
+    "slateblue",
+    "slategray",
+    "snow",
+    "springgreen",
+    "steelblue",
+    "tan",
+    "teal",
+    "thistle",
+    "tomato",
+    "turquoise",
+    "violet",
+    "wheat",
+    "white",
+    "whitesmoke",
+    "yellow",
+    "yellowgreen"
+  };
+
+  /**
+   * Color hex codes - index must match color names.
+   */
+  static final String[] HTML_COLOR_VALUES = {
+    "#f0f8ff",
+    "#faebd7",
+    "#00ffff",
+    "#7fffd4",
+    "#f0ffff",
+    "#f5f5dc",
+    "#ffe4c4",
+    "#000",
+    "#ffebcd",
+    "#00f",
+    "#8a2be2",
+    "#a52a2a",
+    "#deb887",
+    "#5f9ea0",
+    "#7fff00",
+    "#d2691e",
+    "#ff7f50",
+    "#6495ed",
+    "#fff8dc",
+    "#dc143c",
+    "#0ff",
+    "#00008b",
+    "#008b8b",
+    "#b8860b",
+    "#a9a9a9",
+    "#006400",
+    "#bdb76b",
+    "#8b008b",
+    "#556b2f",
+    "#ff8c00",
+    "#9932cc",
+    "#8b0000",
+    "#e9967a",
+    "#8fbc8f",
+    "#483d8b",
+    "#2f4f4f",
+    "#00ced1",
+    "#9400d3",
+    "#ff1493",
+    "#00bfff",
+    "#696969",
+    "#1e90ff",
+    "#b22222",
+    "#fffaf0",
+    "#228b22",
+    "#f0f",
+    "#dcdcdc",
+    "#f8f8ff",
+    "#ffd700",
+    "#daa520",
+    "#808080",
+    "#008000",
+    "#adff2f",
+    "#f0fff0",
+    "#ff69b4",
+    "#cd5c5c",
+    "#4b0082",
+    "#fffff0",
+    "#f0e68c",
+    "#e6e6fa",
+    "#fff0f5",
+    "#7cfc00",
+    "#fffacd",
+    "#add8e6",
+    "#f08080",
+    "#e0ffff",
+    "#fafad2",
+    "#d3d3d3",
+    "#90ee90",
+    "#ffb6c1",
+    "#ffa07a",
+    "#20b2aa",
+    "#87cefa",
+    "#789",
+    "#b0c4de",
+    "#ffffe0",
+    "#0f0",
+    "#32cd32",
+    "#faf0e6",
+    "#f0f",
+    "#800000",
+    "#66cdaa",
+    "#0000cd",
+    "#ba55d3",
+    "#9370d8",
+    "#3cb371",
+    "#7b68ee",
+    "#00fa9a",
+    "#48d1cc",
+    "#c71585",
+    "#191970",
+    "#f5fffa",
+    "#ffe4e1",
+    "#ffe4b5",
+    "#ffdead",
+    "#000080",
+    "#fdf5e6",
+    "#808000",
+    "#6b8e23",
+    "#ffa500",
+    "#ff4500",
+    "#da70d6",
+    "#eee8aa",
+    "#98fb98",
+    "#afeeee",
+    "#d87093",
+    "#ffefd5",
+    "#ffdab9",
+    "#cd853f",
+    "#ffc0cb",
+    "#dda0dd",
+    "#b0e0e6",
+    "#800080",
+    "#f00",
+    "#bc8f8f",
+    "#4169e1",
+    "#8b4513",
+    "#fa8072",
+    "#f4a460",
+    "#2e8b57",
+    "#fff5ee",
+    "#a0522d",
+    "#c0c0c0",
+    "#87ceeb",
+    "#6a5acd",
+    "#708090",
+    "#fffafa",
+    "#00ff7f",
+    "#4682b4",
+    "#d2b48c",
+    "#008080",
+    "#d8bfd8",
+    "#ff6347",
+    "#40e0d0",
+    "#ee82ee",
+    "#f5deb3",
+    "#fff",
+    "#f5f5f5",
+    "#ff0",
+    "#9acd32"
+  };
+
+  /**
+   * Font weight names - index must match font weight values below.
+   */
+  static final String[] FONT_WEIGHT_NAMES = {
+    "normal",
+    "bold",
+    "bolder",
+    "lighter"
+  };
+
+  /**
+   * Font weight value - index must match font weight names below.
+   */
+  static final String[] FONT_WEIGHT_VALUES = {
+    "400",
+    "700",
+    "900",
+    "100"
+  };
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.util.BoundedCache;
+
+/**
+ * An in-memory cache of the data URIs of the images inlined in style bundles.
+ *
+ * <p>The same image is often referenced by many rules and bundles; its data URI is only encoded
+ * again when the file has changed. Entries are keyed on the path, length and last modified date of
+ * the image.
+ *
+ * <p>The cache is bounded by the memory used by the data URIs it holds, counting two bytes per
+ * character: when a new data URI would exceed the budget, the least recently used data URIs are
+ * evicted. The budget in kilobytes is defined by the <code>berlioz.cssbundler.datauris.cache</code>
+ * global property (1MB by default).
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class DataURICache {
+
+  /**
+   * The default budget in kilobytes.
+   */
+  private static final int DEFAULT_BUDGET = 1024;
+
+  /**
+   * The data URI cache shared by all bundlers.
+   */
+  private static final DataURICache SINGLETON = new DataURICache();
+
+  /**
+   * The data URIs by key.
+   */
+  private final BoundedCache<String, String> _uris = new BoundedCache<>("DataURICache", uri -> uri.length() * 2L);
+
+  /**
+   * Use the singleton instance.
+   */
+  DataURICache() {
+  }
+
+  /**
+   * @return The data URI cache shared by all bundlers.
+   */
+  static DataURICache getInstance() {
+    return SINGLETON;
+  }
+
+  /**
+   * @return The maximum number of bytes the cache can use as defined in the global settings.
+   */
+  static long getBudget() {
+    return GlobalSettings.get("berlioz.cssbundler.datauris.cache", DEFAULT_BUDGET) * 1024L;
+  }
+
+  /**
+   * Returns the data URI for the specified image, encoding it only if it is not in the cache.
+   *
+   * @param image The image file
+   * @param type  The type of image ("png", "jpg" or "gif")
+   *
+   * @return the data URI
+   *
+   * @throws IOException If thrown while reading the image.
+   */
+  String get(File image, String type) throws IOException {
+    String key = image.getAbsolutePath()+'$'+image.length()+'%'+image.lastModified();
+    String uri = this._uris.get(key);
+    if (uri == null) {
+      byte[] bytes = Files.readAllBytes(image.toPath());
+      uri = "data:image/"+type+";base64,"+Base64.getEncoder().encodeToString(bytes);
+      put(key, uri, getBudget());
+    }
+    return uri;
+  }
+
+  /**
+   * Stores the specified data URI, evicting the least recently used data URIs if necessary.
+   *
+   * <p>Data URIs larger than the budget are ignored.
+   *
+   * @param key    The key for the image
+   * @param uri    The data URI
+   * @param budget The maximum number of bytes the cache can use
+   */
+  void put(String key, String uri, long budget) {
+    this._uris.put(key, uri, budget);
+  }
+
+  /**
+   * Removes all the data URIs from the cache.
+   */
+  void clear() {
+    this._uris.clear();
+  }
+
+  /**
+   * @return The number of data URIs in the cache.
+   */
+  int size() {
+    return this._uris.size();
+  }
+
+  /**
+   * @return The total number of bytes used by the data URIs held by the cache.
+   */
+  long bytes() {
+    return this._uris.bytes();
+  }
+
+  /**
+   * @return The number of data URIs found in the cache.
+   */
+  long hits() {
+    return this._uris.hits();
+  }
+
+  /**
+   * @return The number of data URIs which had to be encoded.
+   */
+  long misses() {
+    return this._uris.misses();
+  }
+
+  @Override
+  public String toString() {
+    return this._uris.toString();
+  }
+
+}
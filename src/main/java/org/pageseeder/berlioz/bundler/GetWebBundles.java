@@ -17,10 +17,10 @@ package org.pageseeder.berlioz.bundler;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.BerliozException;
@@ -51,10 +51,14 @@ import org.pageseeder.xmlwriter.XMLWriter;
  *
  * <h4>File naming</h4>
  * <p>Bundled files are automatically named as:</p>
- * <pre>[bundlename]-[date]-[etag].[ext]</pre>
- * <p>The <i>bundle name</i> is specified in the configuration; the <i>date</i> is the creation date of the
- * bundle; the etag is the 4-character alphanumerical stamp; and the extension depends on the MIME type and
- * minimization options.
+ * <pre>[bundlename]-[hash].[ext]</pre>
+ * <p>The <i>bundle name</i> is specified in the configuration; the <i>hash</i> is a 16-character
+ * hexadecimal stamp computed from the content of the bundle; and the extension depends on the MIME type
+ * and minimization options.
+ *
+ * <p>Bundles are kept in their location across restarts: a manifest (<code>bundles.manifest</code>)
+ * maps the files of each bundle to the bundle file so that a bundle is only generated again when its
+ * files change. Bundle files which are no longer used are deleted after an hour.
  *
  * <h3>Configuration</h3>
  * <p>This generator is highly configurable and the configuration properties are specific (but similar)
@@ -67,6 +71,26 @@ import org.pageseeder.xmlwriter.XMLWriter;
  *
  * <p>The <code>location</code> property can be used to define where the bundled files should be stored.
  *
+ * <p>The <code>watch</code> property can be used to control whether the bundled files are watched for
+ * changes. When files are watched, a bundle is only checked again after one of its files has changed;
+ * otherwise, the files are checked at most once every <code>check-interval</code> seconds.
+ *
+ * <p>Bundles are built in the background by the bundler threads (<code>berlioz.bundler.threads</code>).
+ * When <code>berlioz.bundler.warmup</code> is <code>true</code> (default), the bundles of all services
+ * are built when the application starts, waiting at most <code>berlioz.bundler.warmup-budget</code>
+ * seconds (30 by default).
+ * The <code>wait</code> property can be set to <code>false</code> so that pages use the previous version
+ * of a bundle until its new version has been built instead of waiting for it.
+ *
+ * <p>The <code>gzip</code> property (<code>false</code> by default) can be set to <code>true</code> to write
+ * a GZip compressed companion <code>[bundle].gz</code> next to each bundle so that the bundles can be
+ * served compressed by the {@link org.pageseeder.berlioz.servlet.BundleFilter}.
+ *
+ * <p>When <code>berlioz.jsbundler.sourcemap</code> is <code>true</code> (<code>false</code> by default),
+ * a source map is written next to each script bundle as <code>[bundle].map</code>. Minimized scripts are
+ * cached by content so that only the scripts which have changed are minimized again when a bundle is
+ * rebuilt, the cache is limited to <code>berlioz.jsbundler.cache</code> kilobytes (8192 by default).
+ *
  * <p>A bundle config defines the list of bundles to create. The "default" config is made of three bundles
  * 'global', 'group', and 'service'.
  *
@@ -79,14 +103,14 @@ import org.pageseeder.xmlwriter.XMLWriter;
  *
  * <pre>{@code
  * <berlioz>
- *   <cssbundler minimize="true" location="/style/_/">
+ *   <cssbundler minimize="true" location="/style/_/" watch="true" check-interval="1" wait="true">
  *     <configs default="global,group,service"/>
  *     <bundles global="/style/global.css"
  *               group="/style/{GROUP}.css"
  *             service="/style/{GROUP}/{SERVICE}.css"/>
- *     <datauris threshold="4096"/>
+ *     <datauris threshold="4096" cache="1024"/>
  *   </cssbundler>
- *   <jsbundler minimize="true" location="/script/_/">
+ *   <jsbundler minimize="true" location="/script/_/" watch="true" check-interval="1" wait="true">
  *     <configs default="global,group,service"/>
  *     <bundles global="/script/global.js"
  *               group="/script/{GROUP}.js"
@@ -103,12 +127,18 @@ import org.pageseeder.xmlwriter.XMLWriter;
  * <h3>Returned XML</h3>
  * <p>The XML returns the scripts and styles in the order in which they are defined.
  * <pre>{@code
- * <script src="[jslocation]/[bundle].js" bundled="[true|false]" minimized="[true|false]" />
+ * <script src="[jslocation]/[bundle].js" bundled="[true|false]" minimized="[true|false]" map="[jslocation]/[bundle].js.map"/>
  * ...
  * <style  src="[csslocation]/[bundle].css" bundled="[true|false]" minimized="[true|false]" />
  * ...
+ * <warmup services="[count]" bundles="[count]" built="[count]" failed="[count]" time="[ms]" complete="[true|false]"/>
  * }</pre>
  *
+ * <p>The <code>map</code> attribute is only included if source maps are enabled.
+ *
+ * <p>The <code>warmup</code> element is only included if the bundles were built when the application
+ * started (see {@link BundleWarmup}).
+ *
  * <h4>Error handling</h4>
  *
  * <h3>Usage</h3>
@@ -117,7 +147,7 @@ import org.pageseeder.xmlwriter.XMLWriter;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class GetWebBundles implements ContentGenerator, Cacheable {
@@ -125,12 +155,12 @@ public final class GetWebBundles implements ContentGenerator, Cacheable {
   /**
    * The CSS bundle configuration - static as it is common to all generators.
    */
-  private static final Map<String, BundleConfig> CSS_CONFIGS = new HashMap<>();
+  private static final Map<String, BundleConfig> CSS_CONFIGS = new ConcurrentHashMap<>();
 
   /**
    * The JS bundle configuration - static as it is common to all generators.
    */
-  private static final Map<String, BundleConfig> JS_CONFIGS = new HashMap<>();
+  private static final Map<String, BundleConfig> JS_CONFIGS = new ConcurrentHashMap<>();
 
   /**
    * Indicates whether the bundle can be written..
@@ -151,6 +181,9 @@ public final class GetWebBundles implements ContentGenerator, Cacheable {
       isWritable = js.store().exists() && js.store().canWrite();
     }
     boolean doBundle = canBundle(req);
+    // Statistics change until the warm-up is complete
+    BundleWarmup warmup = BundleWarmup.last();
+    if (warmup != null && !warmup.isComplete()) return null;
     if (doBundle) {
       long etagJS = js.getLastModifiedBundle(service);
       long etagCSS = css.getLastModifiedBundle(service);
@@ -174,11 +207,15 @@ public final class GetWebBundles implements ContentGenerator, Cacheable {
     if (doBundle) {
       List<File> bundles = js.getBundles(service);
       String location = js.location();
+      boolean maps = js.bundler().hasSourceMaps();
       for (File bundle :  bundles) {
         xml.openElement("script", false);
         xml.attribute("src", location+bundle.getName());
         xml.attribute("bundled", "true");
         xml.attribute("minimized", Boolean.toString(js.minimize()));
+        if (maps && new File(bundle.getPath()+".map").isFile()) {
+          xml.attribute("map", location+bundle.getName()+".map");
+        }
         xml.closeElement();
       }
     } else {
@@ -214,6 +251,12 @@ public final class GetWebBundles implements ContentGenerator, Cacheable {
         xml.closeElement();
       }
     }
+
+    // Warm-up statistics
+    BundleWarmup warmup = BundleWarmup.last();
+    if (warmup != null) {
+      warmup.toXML(xml);
+    }
   }
 
   // Private helpers
@@ -239,14 +282,9 @@ public final class GetWebBundles implements ContentGenerator, Cacheable {
    *
    * @return the bundle config for the given type creating a new instance if necessary.
    */
-  private BundleConfig getConfig(String name, BundleType type, File root) {
+  static BundleConfig getConfig(String name, BundleType type, File root) {
     Map<String, BundleConfig> configs = type == BundleType.JS? JS_CONFIGS : CSS_CONFIGS;
-    BundleConfig config = configs.get(name);
-    if (config == null) {
-      config = BundleConfig.newInstance(name, type, root);
-      configs.put(name, config);
-    }
-    return config;
+    return configs.computeIfAbsent(name, n -> BundleConfig.newInstance(n, type, root));
   }
 
 }
@@ -45,15 +45,20 @@ package org.pageseeder.berlioz.bundler;
 import java.io.*;
 import java.nio.file.Files;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
  * A JavaScript minimiser.
  *
  * <p>This class is a slightly modified version of the work done by John Reilly who initially
  * adapted Douglas Crockford's C version of his JavaScript minimiser.
  *
+ * <p>The minimiser can optionally record the position in the source of each token it writes so
+ * that a source map can be produced for the minimised script.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class JSMin {
@@ -98,6 +103,26 @@ public final class JSMin {
    */
   private int column;
 
+  /**
+   * The mappings to the source (may be <code>null</code>).
+   */
+  private final SourceMap.@Nullable Mappings _mappings;
+
+  /** The line and column in the source of the last character read. */
+  private int charLine, charColumn;
+
+  /** The line and column in the source of byte A. */
+  private int aLine, aColumn;
+
+  /** The line and column in the source of byte B. */
+  private int bLine, bColumn;
+
+  /** The line and column in the source of the last byte written. */
+  private int lastLine = -1, lastColumn;
+
+  /** The line and column in the output. */
+  private int outLine, outColumn;
+
   /**
    * Creates a new JavaScript minimiser for the specified I/O.
    *
@@ -105,10 +130,23 @@ public final class JSMin {
    * @param out The minimised script.
    */
   public JSMin(InputStream in, OutputStream out) {
+    this(in, out, null);
+  }
+
+  /**
+   * Creates a new JavaScript minimiser for the specified I/O recording the position in the source
+   * of the tokens written to the output.
+   *
+   * @param in       The JavaScript to minimise.
+   * @param out      The minimised script.
+   * @param mappings Where the positions of the tokens are recorded (may be <code>null</code>).
+   */
+  JSMin(InputStream in, OutputStream out, SourceMap.@Nullable Mappings mappings) {
     this._in = new PushbackInputStream(in);
     this.out = out;
     this.line = 0;
     this.column = 0;
+    this._mappings = mappings;
   }
 
   /**
@@ -133,11 +171,14 @@ public final class JSMin {
    */
   int get() throws IOException {
     int c = this._in.read();
+    this.charLine = this.line;
+    this.charColumn = this.column;
 
     if (c == '\n') {
       this.line++;
       this.column = 0;
-    } else {
+    } else if ((c & 0xC0) != 0x80) {
+      // UTF-8 continuation bytes are part of the same character
       this.column++;
     }
 
@@ -230,46 +271,48 @@ public final class JSMin {
   private void process(int action) throws IOException, UnterminatedRegExpLiteralException, UnterminatedCommentException, UnterminatedStringLiteralException {
     switch (action) {
       case WRITE:
-        this.out.write(this.theA);
+        write(this.theA, this.aLine, this.aColumn);
 
       // fall through
       case COPY:
         this.theA = this.theB;
+        this.aLine = this.bLine;
+        this.aColumn = this.bColumn;
         if (this.theA == '\'' || this.theA == '"') {
           for (;;) {
-            this.out.write(this.theA);
-            this.theA = get();
+            write(this.theA, this.aLine, this.aColumn);
+            getA();
             if (this.theA == this.theB) {
               break;
             }
             if (this.theA <= '\n') throw new UnterminatedStringLiteralException(this.line, this.column);
             if (this.theA == '\\') {
-              this.out.write(this.theA);
-              this.theA = get();
+              write(this.theA, this.aLine, this.aColumn);
+              getA();
             }
           }
         }
 
       // fall through
       case NEXT:
-        this.theB = next();
+        nextB();
         if (this.theB == '/'
             && (this.theA == '(' || this.theA == ',' || this.theA == '=' || this.theA == ':' || this.theA == '[' || this.theA == '!' || this.theA == '&'
                 || this.theA == '|' || this.theA == '?' || this.theA == '{' || this.theA == '}' || this.theA == ';' || this.theA == '\n')) {
 
-          this.out.write(this.theA);
-          this.out.write(this.theB);
+          write(this.theA, this.aLine, this.aColumn);
+          write(this.theB, this.bLine, this.bColumn);
           for (;;) {
-            this.theA = get();
+            getA();
             if (this.theA == '/') {
               break;
             } else if (this.theA == '\\') {
-              this.out.write(this.theA);
-              this.theA = get();
+              write(this.theA, this.aLine, this.aColumn);
+              getA();
             } else if (this.theA <= '\n') throw new UnterminatedRegExpLiteralException(this.line, this.column);
-            this.out.write(this.theA);
+            write(this.theA, this.aLine, this.aColumn);
           }
-          this.theB = next();
+          nextB();
         }
 
       // fall through
@@ -277,6 +320,59 @@ public final class JSMin {
     }
   }
 
+  /**
+   * Gets the next character as byte A and records its position.
+   *
+   * @throws IOException If thrown while reading the input
+   */
+  private void getA() throws IOException {
+    this.theA = get();
+    this.aLine = this.charLine;
+    this.aColumn = this.charColumn;
+  }
+
+  /**
+   * Gets the next character excluding comments as byte B and records its position.
+   *
+   * @throws IOException If thrown while reading the input
+   * @throws UnterminatedCommentException If the end of the file is reading before the comment ends.
+   */
+  private void nextB() throws IOException, UnterminatedCommentException {
+    this.theB = next();
+    this.bLine = this.charLine;
+    this.bColumn = this.charColumn;
+  }
+
+  /**
+   * Writes the specified byte to the output.
+   *
+   * <p>If mappings are recorded, a new segment is added whenever the byte does not immediately
+   * follow the previous byte written in the source.
+   *
+   * @param c      The byte to write
+   * @param line   The line of the byte in the source
+   * @param column The column of the byte in the source
+   *
+   * @throws IOException If thrown while writing the output
+   */
+  private void write(int c, int line, int column) throws IOException {
+    this.out.write(c);
+    SourceMap.Mappings mappings = this._mappings;
+    if (mappings == null || (c & 0xC0) == 0x80) return;
+    if (c == '\n') {
+      this.outLine++;
+      this.outColumn = 0;
+      this.lastLine = -1;
+    } else {
+      if (line != this.lastLine || column != this.lastColumn + 1) {
+        mappings.add(this.outLine, this.outColumn, line, column);
+      }
+      this.lastLine = line;
+      this.lastColumn = column;
+      this.outColumn++;
+    }
+  }
+
   /**
    * Main JSMin method.
    *
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.util.BoundedCache;
+
+/**
+ * An in-memory cache of minimized scripts keyed on the hash of their source.
+ *
+ * <p>When a script bundle is rebuilt because one of its files has changed, only the files whose
+ * content has changed need to be minimized again; the other files are taken from this cache.
+ *
+ * <p>The cache is bounded by the total number of bytes it holds: when a new script would exceed
+ * the budget, the least recently used scripts are evicted. The budget in kilobytes is defined by
+ * the <code>berlioz.jsbundler.cache</code> global property (8MB by default).
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class ScriptCache {
+
+  /**
+   * The default budget in kilobytes.
+   */
+  private static final int DEFAULT_BUDGET = 8192;
+
+  /**
+   * The script cache shared by all bundlers.
+   */
+  private static final ScriptCache SINGLETON = new ScriptCache();
+
+  /**
+   * The minimized scripts by hash.
+   */
+  private final BoundedCache<String, Script> _scripts = new BoundedCache<>("ScriptCache", Script::length);
+
+  /**
+   * Use the singleton instance.
+   */
+  ScriptCache() {
+  }
+
+  /**
+   * @return The script cache shared by all bundlers.
+   */
+  static ScriptCache getInstance() {
+    return SINGLETON;
+  }
+
+  /**
+   * @return The maximum number of bytes the cache can hold as defined in the global settings.
+   */
+  static long getBudget() {
+    return GlobalSettings.get("berlioz.jsbundler.cache", DEFAULT_BUDGET) * 1024L;
+  }
+
+  /**
+   * Returns the minimized script for the specified hash.
+   *
+   * @param hash The hash of the source of the script
+   *
+   * @return the minimized script or <code>null</code>
+   */
+  @Nullable Script get(String hash) {
+    return this._scripts.get(hash);
+  }
+
+  /**
+   * Stores the specified script, evicting the least recently used scripts if necessary.
+   *
+   * <p>Scripts larger than the budget are ignored.
+   *
+   * @param hash   The hash of the source of the script
+   * @param script The minimized script
+   * @param budget The maximum number of bytes the cache can hold
+   */
+  void put(String hash, Script script, long budget) {
+    this._scripts.put(hash, script, budget);
+  }
+
+  /**
+   * Removes all the scripts from the cache.
+   */
+  void clear() {
+    this._scripts.clear();
+  }
+
+  /**
+   * @return The number of scripts in the cache.
+   */
+  int size() {
+    return this._scripts.size();
+  }
+
+  /**
+   * @return The number of scripts found in the cache.
+   */
+  long hits() {
+    return this._scripts.hits();
+  }
+
+  /**
+   * @return The number of times a script could not be found in the cache.
+   */
+  long misses() {
+    return this._scripts.misses();
+  }
+
+  @Override
+  public String toString() {
+    return this._scripts.toString();
+  }
+
+  /**
+   * A script as part of a bundle.
+   */
+  static final class Script {
+
+    /**
+     * The content of the script followed by a new line.
+     */
+    private final byte[] _content;
+
+    /**
+     * The mappings to the source (<code>null</code> unless requested).
+     */
+    private final SourceMap.@Nullable Mappings _mappings;
+
+    /**
+     * The number of lines in the content.
+     */
+    private final int _lines;
+
+    /**
+     * @param content  The content of the script followed by a new line
+     * @param mappings The mappings to the source (may be <code>null</code>)
+     */
+    Script(byte[] content, SourceMap.@Nullable Mappings mappings) {
+      this._content = content;
+      this._mappings = mappings;
+      int lines = 0;
+      for (byte b : content) {
+        if (b == '\n') {
+          lines++;
+        }
+      }
+      this._lines = lines;
+    }
+
+    /**
+     * @return The content of the script followed by a new line.
+     */
+    byte[] content() {
+      return this._content;
+    }
+
+    /**
+     * @return The mappings to the source (<code>null</code> unless requested).
+     */
+    SourceMap.@Nullable Mappings mappings() {
+      return this._mappings;
+    }
+
+    /**
+     * @return The number of lines in the content.
+     */
+    int lines() {
+      return this._lines;
+    }
+
+    /**
+     * @return The approximate number of bytes held by this script.
+     */
+    int length() {
+      SourceMap.Mappings mappings = this._mappings;
+      return this._content.length + (mappings != null? mappings.length() : 0);
+    }
+
+  }
+
+}
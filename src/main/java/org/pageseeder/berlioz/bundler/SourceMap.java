@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A source map (version 3) for a bundle made of several source files.
+ *
+ * <p>Each source file contributes the mappings of its part of the bundle, the mappings are
+ * offset by the line where the part starts in the bundle.
+ *
+ * <p>Columns are counted in characters rather than UTF-16 code units, which only differ for
+ * characters outside the Basic Multilingual Plane.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class SourceMap {
+
+  /**
+   * The Base64 digits used by VLQ encoding.
+   */
+  private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  /**
+   * The paths to the source files relative to the bundle.
+   */
+  private final List<String> _sources = new ArrayList<>();
+
+  /**
+   * The encoded mappings.
+   */
+  private final StringBuilder _mappings = new StringBuilder();
+
+  /**
+   * The current line in the bundle.
+   */
+  private int line = 0;
+
+  /**
+   * Whether a segment was already written for the current line.
+   */
+  private boolean segment = false;
+
+  /**
+   * The column in the bundle of the previous segment on the current line.
+   */
+  private int column = 0;
+
+  /**
+   * The index of the source file of the previous segment.
+   */
+  private int source = 0;
+
+  /**
+   * The line in the source file of the previous segment.
+   */
+  private int sourceLine = 0;
+
+  /**
+   * The column in the source file of the previous segment.
+   */
+  private int sourceColumn = 0;
+
+  /**
+   * Adds the mappings of a source file to this source map.
+   *
+   * <p>Parts must be added in the order they appear in the bundle.
+   *
+   * @param source   The path to the source file relative to the bundle
+   * @param mappings The mappings for the part of the bundle produced by the source file
+   * @param offset   The line where the part starts in the bundle
+   */
+  void add(String source, Mappings mappings, int offset) {
+    int index = this._sources.size();
+    this._sources.add(source);
+    int[] segments = mappings.segments;
+    for (int i = 0; i < mappings.size; i += 4) {
+      int at = offset + segments[i];
+      if (at < this.line) {
+        continue;
+      }
+      while (this.line < at) {
+        this._mappings.append(';');
+        this.line++;
+        this.column = 0;
+        this.segment = false;
+      }
+      if (this.segment) {
+        this._mappings.append(',');
+      }
+      vlq(this._mappings, segments[i+1] - this.column);
+      vlq(this._mappings, index - this.source);
+      vlq(this._mappings, segments[i+2] - this.sourceLine);
+      vlq(this._mappings, segments[i+3] - this.sourceColumn);
+      this.column = segments[i+1];
+      this.source = index;
+      this.sourceLine = segments[i+2];
+      this.sourceColumn = segments[i+3];
+      this.segment = true;
+    }
+  }
+
+  /**
+   * Returns the JSON for this source map.
+   *
+   * @param file The name of the bundle file.
+   *
+   * @return the source map as JSON
+   */
+  String toJSON(String file) {
+    StringBuilder json = new StringBuilder(this._mappings.length() + 64);
+    json.append("{\"version\":3,\"file\":");
+    quote(json, file);
+    json.append(",\"sources\":[");
+    for (int i = 0; i < this._sources.size(); i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      quote(json, this._sources.get(i));
+    }
+    json.append("],\"names\":[],\"mappings\":\"").append(this._mappings).append("\"}");
+    return json.toString();
+  }
+
+  /**
+   * Returns the comment referencing the source map at the end of a script.
+   *
+   * @param url The URL of the source map relative to the script
+   *
+   * @return The comment including the final new line.
+   */
+  static String comment(String url) {
+    return "//# sourceMappingURL="+url+"\n";
+  }
+
+  /**
+   * Appends the specified value as a Base64 VLQ.
+   *
+   * @param out   Where the value is appended
+   * @param value The value to append
+   */
+  private static void vlq(StringBuilder out, int value) {
+    int vlq = value < 0? ((-value) << 1) | 1 : value << 1;
+    do {
+      int digit = vlq & 0x1F;
+      vlq >>>= 5;
+      if (vlq > 0) {
+        digit |= 0x20;
+      }
+      out.append(BASE64[digit]);
+    } while (vlq > 0);
+  }
+
+  /**
+   * Appends the specified text as a JSON string.
+   *
+   * @param out  Where the string is appended
+   * @param text The text to quote
+   */
+  private static void quote(StringBuilder out, String text) {
+    out.append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\').append(c);
+      } else if (c < ' ') {
+        out.append(String.format("\\u%04x", (int)c));
+      } else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+  }
+
+  /**
+   * The mappings from positions in a part of a bundle to positions in its source file.
+   *
+   * <p>Positions are zero-based and segments must be added in the order of the generated
+   * positions.
+   */
+  static final class Mappings {
+
+    /**
+     * The segments as consecutive generated line, generated column, source line and source column.
+     */
+    private int[] segments = new int[64];
+
+    /**
+     * The number of values used in the segments array.
+     */
+    private int size = 0;
+
+    /**
+     * Maps a position in the generated content to a position in the source.
+     *
+     * @param line         The line in the generated content
+     * @param column       The column in the generated content
+     * @param sourceLine   The line in the source file
+     * @param sourceColumn The column in the source file
+     */
+    void add(int line, int column, int sourceLine, int sourceColumn) {
+      if (this.size + 4 > this.segments.length) {
+        this.segments = Arrays.copyOf(this.segments, this.segments.length * 2);
+      }
+      this.segments[this.size++] = line;
+      this.segments[this.size++] = column;
+      this.segments[this.size++] = sourceLine;
+      this.segments[this.size++] = sourceColumn;
+    }
+
+    /**
+     * @return The number of segments.
+     */
+    int size() {
+      return this.size / 4;
+    }
+
+    /**
+     * @return The approximate number of bytes used by these mappings.
+     */
+    int length() {
+      return this.size * 4;
+    }
+
+    /**
+     * Returns the mappings for content which was copied line by line from its source.
+     *
+     * @param content The content of the part
+     *
+     * @return The start of each line mapped to the start of the same line in the source.
+     */
+    static Mappings lines(byte[] content) {
+      Mappings mappings = new Mappings();
+      int line = 0;
+      boolean empty = true;
+      for (byte b : content) {
+        if (b == '\n') {
+          if (!empty) {
+            mappings.add(line, 0, line, 0);
+          }
+          line++;
+          empty = true;
+        } else {
+          empty = false;
+        }
+      }
+      if (!empty) {
+        mappings.add(line, 0, line, 0);
+      }
+      return mappings;
+    }
+
+  }
+
+}
@@ -19,6 +19,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.util.ISO8601;
@@ -29,7 +30,7 @@ import org.pageseeder.berlioz.util.MD5;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.5
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class WebBundle {
@@ -50,7 +51,7 @@ public final class WebBundle {
   private final List<File> _files;
 
   /**
-   * The name of the bundle.
+   * The files imported by the files in the bundle (may be read while the bundle is expanded).
    */
   private final List<File> _imported;
 
@@ -75,7 +76,7 @@ public final class WebBundle {
     this._name = name;
     this._files = Collections.unmodifiableList(files);
     this._id = id(files);
-    this._imported = new ArrayList<>();
+    this._imported = new CopyOnWriteArrayList<>();
     this._minimized = minimized;
   }
 
@@ -113,6 +114,15 @@ public final class WebBundle {
     this._imported.clear();
   }
 
+  /**
+   * Returns the files imported by the files in this bundle.
+   *
+   * @return a copy of the list of imported files.
+   */
+  public List<File> imports() {
+    return new ArrayList<>(this._imported);
+  }
+
   /**
    * Adds a file to consider as an import.
    * @param f the file to import.
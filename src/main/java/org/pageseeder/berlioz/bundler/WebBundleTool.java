@@ -15,36 +15,47 @@
  */
 package org.pageseeder.berlioz.bundler;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.util.MD5;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class is used to bundles resources together as one in order to minimise the number of resources to request.
  *
+ * <p>Minimized scripts are cached by content so that only the scripts which have changed are
+ * minimized again when a bundle is rebuilt. Script bundles can also be generated with a source
+ * map written next to the bundle as <code>[bundle].map</code> and with a GZip compressed companion
+ * written as <code>[bundle].gz</code>.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public final class WebBundleTool {
@@ -54,15 +65,10 @@ public final class WebBundleTool {
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(WebBundleTool.class);
 
-  /**
-   * Matches URL references in CSS.
-   */
-  private static final Pattern CSS_URL = Pattern.compile("url\\(([^)]*)\\)");
-
   /**
    * Stores bundles instances to check for freshness.
    */
-  private static final Map<String, WebBundle> instances = new Hashtable<>();
+  private static final Map<String, WebBundle> instances = new ConcurrentHashMap<>();
 
   /**
    * The maximum size for turning the content of an image into a data URI.
@@ -77,6 +83,16 @@ public final class WebBundleTool {
    */
   private final File _bundles;
 
+  /**
+   * The persistent store of bundles.
+   */
+  private final BundleStore _store;
+
+  /**
+   * The builds in progress by bundle key.
+   */
+  private final Map<String, CompletableFuture<File>> _builds = new ConcurrentHashMap<>();
+
   /**
    * The virtual location of the bundles (to calculate the relative path).
    */
@@ -87,6 +103,11 @@ public final class WebBundleTool {
    */
   private long _dataURIThreshold = DATA_URI_MAX_SIZE;
 
+  /**
+   * Whether to generate source maps for script bundles.
+   */
+  private boolean sourceMaps = false;
+
   /**
    * Creates a new Resource Bundler saving the bundles in the specified location.
    *
@@ -96,6 +117,7 @@ public final class WebBundleTool {
    */
   public WebBundleTool(File bundles) {
     this._bundles = checkBundlesFile(bundles);
+    this._store = new BundleStore(bundles);
     this.virtual = bundles;
   }
 
@@ -125,6 +147,38 @@ public final class WebBundleTool {
     this._dataURIThreshold = threshold;
   }
 
+  /**
+   * Sets whether to generate a source map for each script bundle.
+   *
+   * <p>The source map is written next to the bundle as <code>[bundle].map</code> and is referenced
+   * by the bundle.
+   *
+   * @param sourceMaps <code>true</code> to generate source maps for script bundles.
+   */
+  public void setSourceMaps(boolean sourceMaps) {
+    this.sourceMaps = sourceMaps;
+  }
+
+  /**
+   * @return <code>true</code> if source maps are generated for script bundles.
+   */
+  public boolean hasSourceMaps() {
+    return this.sourceMaps;
+  }
+
+  /**
+   * Sets whether to write a GZip compressed companion for each bundle.
+   *
+   * <p>The companion is written next to the bundle as <code>[bundle].gz</code> using the best
+   * compression so that the bundle can be served compressed without compressing it on every
+   * request, see {@link org.pageseeder.berlioz.servlet.BundleFilter}.
+   *
+   * @param compress <code>true</code> to write compressed companions.
+   */
+  public void setPrecompress(boolean compress) {
+    this._store.setCompression(compress);
+  }
+
   /**
    * @return Where the bundles are being stored.
    */
@@ -133,18 +187,39 @@ public final class WebBundleTool {
   }
 
   /**
-   * Return the file bundling the specified list of files.
+   * Return the file bundling the specified list of files if it has already been generated.
+   *
+   * <p>Since bundle files are named after their content, the file is only known once the bundle
+   * has been generated by this tool, by a previous instance or by another node sharing the same
+   * location.
    *
    * @param files    The list of files to bundle together.
    * @param prefix   The prefix for the bundle.
    * @param minimize Whether to minimise the files.
    *
-   * @return The file corresponding to the generated bundle.
+   * @return The file corresponding to the generated bundle or <code>null</code> if it hasn't been generated.
    */
   public @Nullable File getBundle(List<File> files, String prefix, boolean minimize) {
     if (files.isEmpty()) return null;
-    String filename = new WebBundle(prefix, files, minimize).getFileName();
-    return new File(this._bundles, filename);
+    BundleStore.Entry entry = this._store.get(key(prefix, files, minimize));
+    return entry != null? entry.file() : null;
+  }
+
+  /**
+   * Returns the files imported by the specified list of files when they were last bundled.
+   *
+   * @param files The list of files bundled together.
+   *
+   * @return The imported files or an empty list if there are no imports or the files were not bundled.
+   */
+  public List<File> getImports(List<File> files) {
+    if (files.isEmpty()) return Collections.emptyList();
+    String id = WebBundle.id(files);
+    WebBundle bundle = instances.get(id);
+    if (bundle != null) return bundle.imports();
+    // Bundled before a restart or by another node
+    BundleStore.Entry entry = this._store.latest(id);
+    return entry != null? entry.imports() : Collections.emptyList();
   }
 
   /**
@@ -191,6 +266,11 @@ public final class WebBundleTool {
   /**
    * Bundles the specified files together.
    *
+   * <p>If the bundle needs to be generated, it is built by the bundler threads and only one build
+   * is performed at a time for the same list of files: concurrent callers wait for the same build.
+   *
+   * <p>Bundles are reused as long as the files are unchanged, including after a restart.
+   *
    * @param files    The list of files to bundle together.
    * @param name     The name of the bundle.
    * @param minimize Whether to minimize the scripts.
@@ -200,16 +280,9 @@ public final class WebBundleTool {
    * @throws IOException should an error occur while reading the files or writing the bundle.
    */
   public @Nullable File bundleScripts(List<File> files, String name, boolean minimize) throws IOException {
-    if (files.isEmpty()) return null;
-    // Generate the hash value based on the filename, length and last modified date
     File bundle = getBundle(files, name, minimize);
-    // concatenate the content if the file does not already exist
-    if (bundle != null && !bundle.exists()) {
-      LOGGER.debug("Generating bundle:{} with {} files", bundle.getName(), files.size());
-      concatenate(files, bundle, minimize);
-      bundle.deleteOnExit();
-    }
-    return bundle;
+    if (bundle != null || files.isEmpty()) return bundle;
+    return await(buildScripts(files, name, minimize));
   }
 
   /**
@@ -225,53 +298,159 @@ public final class WebBundleTool {
    * @throws IOException should an error occur while reading the files or writing the bundle.
    */
   public @Nullable File bundleStyles(List<File> files, String name, boolean minimize) throws IOException {
-    if (files.isEmpty()) return null;
-    String key = WebBundle.id(files);
-    WebBundle bundle = instances.get(key);
-
-    boolean stale = false;
-    // Bundle has never been processed or it isn't fresh
-    if (bundle == null) {
-      bundle = new WebBundle(name, files, minimize);
-      stale = true;
-    // Create and process the new bundle
-    } else if (!bundle.isFresh()) {
-      stale = true;
-    }
-    String filename = bundle.getFileName();
-    File file = new File(this._bundles, filename);
-
-    // concatenate the content if the file does not already exist
-    if (stale || !file.exists()) {
-      LOGGER.debug("Generating bundle:{} with {} files", filename, files.size());
-
-      // Write to the file
-      bundle.clearImport();
-      StringWriter writer = new StringWriter();
-      expandStyles(bundle, writer, new File(this.virtual, file.getName()), minimize, this._dataURIThreshold);
-      bundle.getETag(true);
-      filename = bundle.getFileName();
-      instances.put(key, bundle);
-
-      // Write to the file
-      StringReader reader = new StringReader(writer.toString());
-      file = new File(this._bundles, filename);
-      if (minimize && bundle.isCSSMinimizable()) {
-        CSSMin.minimize(reader, new FileOutputStream(file));
-      } else {
-        copyTo(reader, new FileOutputStream(file));
+    File bundle = getBundle(files, name, minimize);
+    if (bundle != null || files.isEmpty()) return bundle;
+    return await(buildStyles(files, name, minimize));
+  }
+
+  /**
+   * Builds the bundle for the specified scripts using the bundler threads.
+   *
+   * <p>If the same list of files is already being bundled, this method returns the same build.
+   *
+   * @param files    The list of files to bundle together.
+   * @param name     The name of the bundle.
+   * @param minimize Whether to minimize the scripts.
+   *
+   * @return The build producing the bundle file.
+   */
+  public CompletableFuture<File> buildScripts(List<File> files, String name, boolean minimize) {
+    String key = key(name, files, minimize);
+    boolean mapped = this.sourceMaps;
+    return build(key, () -> {
+      BundleStore.Entry entry = this._store.get(key);
+      if (entry == null) {
+        LOGGER.debug("Generating bundle:{} with {} files", name, files.size());
+        WebBundle bundle = new WebBundle(name, files, minimize);
+        List<ScriptCache.Script> scripts = scripts(files, minimize, mapped);
+        SourceMap map = mapped? toSourceMap(files, scripts) : null;
+        entry = this._store.put(key, bundle, getExtension(files.get(0)), concatenate(scripts), map);
+      }
+      return entry.file();
+    });
+  }
+
+  /**
+   * Builds the bundle for the specified styles using the bundler threads.
+   *
+   * <p>If the same list of files is already being bundled, this method returns the same build.
+   *
+   * @param files    The list of files to bundle together.
+   * @param name     The name of the bundle.
+   * @param minimize Whether to minimize the styles.
+   *
+   * @return The build producing the bundle file.
+   */
+  public CompletableFuture<File> buildStyles(List<File> files, String name, boolean minimize) {
+    String key = key(name, files, minimize);
+    return build(key, () -> {
+      BundleStore.Entry entry = this._store.get(key);
+      if (entry == null) {
+        LOGGER.debug("Generating bundle:{} with {} files", name, files.size());
+        WebBundle bundle = new WebBundle(name, files, minimize);
+        File virtual = new File(this.virtual, name);
+        boolean minimizable = minimize && bundle.isCSSMinimizable();
+        byte[] content = expandStyles(bundle, virtual, minimize, minimizable, this._dataURIThreshold);
+        if (minimizable && !bundle.isCSSMinimizable()) {
+          // An imported style sheet is already minimized, the bundle must not be minimized
+          bundle = new WebBundle(name, files, minimize);
+          content = expandStyles(bundle, virtual, minimize, false, this._dataURIThreshold);
+        }
+        entry = this._store.put(key, bundle, getExtension(files.get(0)), content);
+        instances.put(bundle.id(), bundle);
       }
-      file.deleteOnExit();
+      return entry.file();
+    });
+  }
+
+  /**
+   * Stops the bundler threads.
+   *
+   * <p>Builds in progress will complete; new bundler threads are started if bundles need to be
+   * built afterwards.
+   */
+  public static void shutdown() {
+    BundleExecutor.shutdown();
+  }
+
+  /**
+   * Submits the build of a bundle to the bundler threads unless the same bundle is already
+   * being built.
+   *
+   * @param id   The key of the bundle in the store.
+   * @param task The task building the bundle.
+   *
+   * @return The new build or the build in progress.
+   */
+  private CompletableFuture<File> build(String id, Build task) {
+    CompletableFuture<File> build = new CompletableFuture<>();
+    CompletableFuture<File> existing = this._builds.putIfAbsent(id, build);
+    if (existing != null) return existing;
+    try {
+      BundleExecutor.get().execute(() -> {
+        try {
+          build.complete(task.call());
+        } catch (IOException | RuntimeException ex) {
+          build.completeExceptionally(ex);
+        } finally {
+          this._builds.remove(id, build);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      this._builds.remove(id, build);
+      build.completeExceptionally(ex);
     }
-    return file;
+    return build;
   }
 
   // Private helpers
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * Returns the key of the bundle in the store.
+   *
+   * <p>Script bundles with a source map are distinct from the same bundles without.
+   *
+   * @param name     The name of the bundle.
+   * @param files    The list of files to bundle together.
+   * @param minimize Whether to minimise the files.
+   *
+   * @return the key of the bundle
+   */
+  private String key(String name, List<File> files, boolean minimize) {
+    String ext = getExtension(files.get(0));
+    boolean mapped = this.sourceMaps && ext != null && BundleType.JS.matches(ext);
+    return this._store.key(mapped? name+".map" : name, files, minimize);
+  }
+
+  /**
+   * Returns the source map for the specified scripts.
+   *
+   * @param files   The source files of the scripts.
+   * @param scripts The scripts in the order they are bundled.
+   *
+   * @return the corresponding source map
+   */
+  private SourceMap toSourceMap(List<File> files, List<ScriptCache.Script> scripts) {
+    SourceMap map = new SourceMap();
+    int line = 0;
+    for (int i = 0; i < scripts.size(); i++) {
+      ScriptCache.Script script = scripts.get(i);
+      SourceMap.Mappings mappings = script.mappings();
+      if (mappings != null) {
+        map.add(this._store.relativize(files.get(i)), mappings, line);
+      }
+      line += script.lines();
+    }
+    return map;
+  }
+
   /**
    * Concatenate the contents of each file in the bundle.
    *
+   * <p>The files are minimized in parallel by the bundler threads and the bundle is replaced
+   * atomically once it has been written.
+   *
    * @param files    The list of files to concatenate.
    * @param bundle   The bundle to write to.
    * @param minimize <code>true</code> to minimize the script;
@@ -280,16 +459,55 @@ public final class WebBundleTool {
    * @throws IOException if an input/output error occurs.
    */
   protected static void concatenate(List<File> files, File bundle, boolean minimize) throws IOException {
-    // Copy the input stream to the output stream
-    try (FileOutputStream out = new FileOutputStream(bundle)) {
-      for (File f : files) {
-        if (minimize && !f.getName().endsWith(".min.js")) {
-          minimizeAndCopyTo(f, out);
-        } else {
-          copyTo(f, out);
-        }
+    byte[] content = concatenate(scripts(files, minimize, false));
+    write(bundle, out -> out.write(content));
+  }
+
+  /**
+   * Returns the scripts to bundle minimizing the files in parallel.
+   *
+   * @param files    The list of files to bundle.
+   * @param minimize <code>true</code> to minimize the script;
+   *                 <code>false</code> otherwise.
+   * @param mapped   <code>true</code> to include the mappings to the source of each script.
+   *
+   * @return the scripts in the same order as the files
+   *
+   * @throws IOException if an input/output error occurs.
+   */
+  private static List<ScriptCache.Script> scripts(List<File> files, boolean minimize, boolean mapped) throws IOException {
+    List<CompletableFuture<ScriptCache.Script>> parts = new ArrayList<>(files.size());
+    for (File f : files) {
+      if (minimize && !f.getName().endsWith(".min.js")) {
+        parts.add(supply(() -> minimize(f, mapped)));
+      } else {
+        parts.add(supply(() -> script(f, mapped)));
       }
     }
+    List<ScriptCache.Script> scripts = new ArrayList<>(files.size());
+    for (CompletableFuture<ScriptCache.Script> part : parts) {
+      scripts.add(await(part));
+    }
+    return scripts;
+  }
+
+  /**
+   * Concatenate the content of the specified scripts.
+   *
+   * @param scripts The scripts to concatenate.
+   *
+   * @return the content of the bundle
+   */
+  private static byte[] concatenate(List<ScriptCache.Script> scripts) {
+    int length = 0;
+    for (ScriptCache.Script script : scripts) {
+      length += script.content().length;
+    }
+    ByteArrayOutputStream content = new ByteArrayOutputStream(length);
+    for (ScriptCache.Script script : scripts) {
+      content.write(script.content(), 0, script.content().length);
+    }
+    return content.toByteArray();
   }
 
   /**
@@ -317,30 +535,167 @@ public final class WebBundleTool {
   }
 
   /**
-   * Copy the contents of the specified input stream to the specified output stream, and ensure that both streams are
-   * closed before returning (even in the face of an exception).
+   * Returns the content of the bundle expanding the styles of each file in the bundle.
    *
-   * @param file The file to read.
-   * @param out  Where the output goes to.
+   * <p>When minimized, the styles of each file are minimized as they are expanded in a single
+   * pass so that the expanded styles are never held in memory.
+   *
+   * @param bundle      The bundle to expand.
+   * @param virtual     The virtual location of the bundle.
+   * @param minimize    Whether the styles should be minimized.
+   * @param minimizable Whether the styles can be minimized.
+   * @param threshold   The threshold for data URIs
+   *
+   * @return the content of the bundle
+   *
+   * @throws IOException if an input/output error occurs.
+   */
+  private static byte[] expandStyles(WebBundle bundle, File virtual, boolean minimize, boolean minimizable, long threshold)
+      throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    IOException exception = null;
+    List<File> processed = new ArrayList<>();
+    for (File f : bundle.files()) {
+      try (Writer writer = minimizable? new CSSMinWriter(content) : new OutputStreamWriter(content, StandardCharsets.UTF_8)) {
+        IOException ex = expandStylesTo(bundle, f, virtual, writer, processed, minimize, threshold);
+        if (ex != null) {
+          exception = ex;
+        }
+        writer.write('\n'); // insert new line
+      }
+    }
+    // Re-throw any exception that has occurred
+    if (exception != null) throw exception;
+    return content.toByteArray();
+  }
+
+  /**
+   * Writes the bundle to a temporary file in the same directory and moves it atomically to the
+   * bundle file so that the bundle is never read partially written.
+   *
+   * @param bundle  The bundle file
+   * @param content Writes the content of the bundle
+   *
+   * @throws IOException if an input/output error occurs.
+   */
+  private static void write(File bundle, Content content) throws IOException {
+    Path target = bundle.toPath();
+    Path temp = Files.createTempFile(target.getParent(), "."+bundle.getName(), ".tmp");
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+        content.writeTo(out);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Returns the minimized script, or its content if it cannot be minimized.
+   *
+   * <p>Scripts are only minimized if the same content has not been minimized already.
+   *
+   * @param file   The script to minimize.
+   * @param mapped <code>true</code> to include the mappings to the source.
+   *
+   * @return the minimized script followed by a new line.
    *
    * @throws IOException if an input/output error occurs
    */
-  private static void minimizeAndCopyTo(File file, OutputStream out) throws IOException {
-    FileInputStream input = new FileInputStream(file);
+  private static ScriptCache.Script minimize(File file, boolean mapped) throws IOException {
+    byte[] source = Files.readAllBytes(file.toPath());
+    String hash = MD5.hash(source);
+    ScriptCache cache = ScriptCache.getInstance();
+    ScriptCache.Script script = cache.get(hash);
+    if (script != null && (!mapped || script.mappings() != null)) return script;
+    SourceMap.Mappings mappings = mapped? new SourceMap.Mappings() : null;
     try {
-      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-      JSMin minimizer = new JSMin(input, buffer);
-      minimizer.jsmin();
-      byte[] min = buffer.toByteArray();
-      out.write(min);
-      out.write('\n');
-      out.flush();
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(source.length);
+      new JSMin(new ByteArrayInputStream(source), buffer, mappings).jsmin();
+      buffer.write('\n');
+      script = new ScriptCache.Script(buffer.toByteArray(), mappings);
     } catch (ParsingException ex) {
       LOGGER.warn("Unable to minimize {}: {}", file.getName(),  ex.getMessage());
-      closeQuietly(input);
-      copyTo(file, out);
-    } finally {
-      closeQuietly(input);
+      script = script(file, mapped);
+    }
+    cache.put(hash, script, ScriptCache.getBudget());
+    return script;
+  }
+
+  /**
+   * Returns the script with each line terminated by a new line.
+   *
+   * @param file   The script to read.
+   * @param mapped <code>true</code> to include the mappings to the source.
+   *
+   * @return the script
+   *
+   * @throws IOException if an input/output error occurs
+   */
+  private static ScriptCache.Script script(File file, boolean mapped) throws IOException {
+    byte[] content = read(file);
+    return new ScriptCache.Script(content, mapped? SourceMap.Mappings.lines(content) : null);
+  }
+
+  /**
+   * Returns the content of the specified file with each line terminated by a new line.
+   *
+   * @param file The file to read.
+   *
+   * @return the content of the file
+   *
+   * @throws IOException if an input/output error occurs
+   */
+  private static byte[] read(File file) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream((int)file.length() + 1);
+    copyTo(file, buffer);
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Runs the specified task on the bundler threads.
+   *
+   * @param task The task returning some content
+   * @param <T>  The type of content
+   *
+   * @return the future content
+   */
+  private static <T> CompletableFuture<T> supply(Part<T> task) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return task.call();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }, BundleExecutor.get());
+  }
+
+  /**
+   * Waits for the result of the specified future rethrowing any <code>IOException</code>.
+   *
+   * @param future The future to wait for.
+   * @param <T>    The type of result
+   *
+   * @return the result
+   *
+   * @throws IOException If thrown while computing the result.
+   */
+  private static <T> T await(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.join();
+    } catch (CompletionException | CancellationException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof UncheckedIOException) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof IOException) throw (IOException)cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      throw new IOException(cause != null? cause : ex);
     }
   }
 
@@ -367,29 +722,6 @@ public final class WebBundleTool {
     }
   }
 
-  /**
-   * Copy the contents of the specified file to the specified output stream, and ensure that both streams are
-   * closed before returning (even in the face of an exception).
-   *
-   * @param reader The file to read.
-   * @param out  Where the output goes to.
-   *
-   * @throws IOException if an input/output error occurs
-   */
-  private static void copyTo(StringReader reader, OutputStream out) throws IOException {
-    OutputStreamWriter writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
-    char[] buffer = new char[1024];
-    while (true) {
-      int length = reader.read(buffer);
-      if (length < 0) {
-        break;
-      }
-      writer.write(buffer, 0, length);
-    }
-    writer.flush();
-    writer = null;
-  }
-
   /**
    * Returns the extension of the specified file.
    *
@@ -426,11 +758,12 @@ public final class WebBundleTool {
     try (BufferedReader reader = newBufferedReader(file)) {
       String line = reader.readLine();
       while (line != null) {
-        Matcher m = CSS_URL.matcher(line);
-        if (m.find()) {
+        int url = line.indexOf("url(");
+        int end = url >= 0? line.indexOf(')', url+4) : -1;
+        if (end >= 0) {
           // Expand the file
           if (line.trim().toLowerCase().startsWith("@import")) {
-            String path = unquote(m.group(1));
+            String path = unquote(line.substring(url+4, end));
             if (isRelative(path)) {
               File imported = new File(file.getParentFile(), path);
               if (imported.exists()) {
@@ -456,20 +789,7 @@ public final class WebBundleTool {
             }
           } else {
             // Replace all URL links to the new relative location
-            m.reset();
-            StringBuffer sb = new StringBuffer();
-            while (m.find()) {
-              String url = unquote(m.group(1));
-              String query = "";
-              int q = url.indexOf('?');
-              if (q > 0) {
-                query = url.substring(q);
-                url = url.substring(0, q);
-              }
-              m.appendReplacement(sb, "url("+getLocation(file, virtual, url, threshold)+query+")");
-            }
-            m.appendTail(sb);
-            out.write(sb.toString());
+            expandURLs(file, virtual, line, out, threshold);
           }
 
         } else {
@@ -486,9 +806,73 @@ public final class WebBundleTool {
     return exception;
   }
 
+  /**
+   * Writes the specified line replacing the location of each URL to the new relative location.
+   *
+   * <p>The line is scanned for <code>url(...)</code> references and written as it goes, data URIs
+   * are written directly from the {@link DataURICache}.
+   *
+   * @param source    The source file.
+   * @param target    The target file.
+   * @param line      The line to write
+   * @param out       Where the line is written.
+   * @param threshold the file size threshold for images not to be included using data URIs
+   *
+   * @throws IOException If thrown while writing the line or reading an image.
+   */
+  private static void expandURLs(File source, File target, String line, Writer out, long threshold) throws IOException {
+    int from = 0;
+    int url = line.indexOf("url(");
+    while (url >= 0) {
+      int end = line.indexOf(')', url+4);
+      if (end < 0) {
+        break;
+      }
+      out.write(line, from, url+4-from);
+      String path = unquote(line.substring(url+4, end));
+      String query = "";
+      int q = path.indexOf('?');
+      if (q > 0) {
+        query = path.substring(q);
+        path = path.substring(0, q);
+      }
+      out.write(getLocation(source, target, path, threshold));
+      out.write(query);
+      out.write(')');
+      from = end+1;
+      url = line.indexOf("url(", from);
+    }
+    out.write(line, from, line.length()-from);
+  }
+
+  /**
+   * Returns the data URI for the specified path if it is a small image.
+   *
+   * @param source    The source file.
+   * @param path      The location based on the source file.
+   * @param threshold the file size threshold for images not to be included using data URIs
+   *
+   * @return The data URI or <code>null</code> if the path should not be replaced by a data URI.
+   */
+  private static @Nullable String toDataURI(File source, String path, long threshold) {
+    if (!isRelative(path)) return null;
+    boolean isImage = path.endsWith(".png") || path.endsWith(".jpg") || path.endsWith(".gif");
+    if (!isImage) return null;
+    File image = new File(source.getParentFile(), path);
+    if (!image.exists() || image.length() >= threshold) return null;
+    try {
+      return DataURICache.getInstance().get(image, path.substring(path.lastIndexOf('.')+1));
+    } catch (IOException ex) {
+      LOGGER.warn("Error while calculating location", ex);
+      return null;
+    }
+  }
+
   /**
    * Recalculates the specified path from the original file (source) to the new file (target).
    *
+   * <p>Small images are replaced by their data URI.
+   *
    * @param source The source file.
    * @param target The target file.
    * @param path   The location based on the source file.
@@ -499,30 +883,26 @@ public final class WebBundleTool {
   protected static String getLocation(File source, File target, String path, long threshold) {
     // Ignore data URIs, full URLs and absolute paths
     if (!isRelative(path)) return path;
+    // Replace short images by data uri
+    String uri = toDataURI(source, path, threshold);
+    if (uri != null) return uri;
     StringBuilder location = new StringBuilder();
     try {
       // Locate the referenced URL
       File ftarget = new File(source.getParentFile(), path);
-      boolean isImage = path.endsWith(".png") || path.endsWith(".jpg") || path.endsWith(".gif");
-      if (isImage && ftarget.exists() && ftarget.length() < threshold) {
-        // Replace short images by data uri
-        location.append("data:image/").append(path.substring(path.lastIndexOf('.')+1)).append(";base64,");
-        location.append(encodeBase64(ftarget));
-      } else {
-        String csource = ftarget.getCanonicalPath();
-        // Check difference with bundle file
-        String ctarget = target.getCanonicalPath();
-        int x = common(csource, ctarget);
-        // Start path to return to common base
-        String rbundle = ctarget.substring(x);
-        for (int i = 0; i < rbundle.length(); i++) {
-          if (rbundle.charAt(i) == File.separatorChar) {
-            location.append("../");
-          }
+      String csource = ftarget.getCanonicalPath();
+      // Check difference with bundle file
+      String ctarget = target.getCanonicalPath();
+      int x = common(csource, ctarget);
+      // Start path to return to common base
+      String rbundle = ctarget.substring(x);
+      for (int i = 0; i < rbundle.length(); i++) {
+        if (rbundle.charAt(i) == File.separatorChar) {
+          location.append("../");
         }
-        // Continue with remaining path
-        location.append(csource.substring(x).replace('\\', '/'));
       }
+      // Continue with remaining path
+      location.append(csource.substring(x).replace('\\', '/'));
     } catch (IOException ex) {
       LOGGER.warn("Error while calculating location", ex);
     }
@@ -577,20 +957,6 @@ public final class WebBundleTool {
           || url.startsWith("<"));
   }
 
-  /**
-   * Call the <code>close()</code> method the specified argument if not <code>null</code> without
-   * attracting attention.
-   *
-   * @param closeable The object to close.
-   */
-  private static void closeQuietly(@Nullable Closeable closeable) {
-    if (closeable == null) return;
-    try {
-      closeable.close();
-    } catch (IOException ignored) {
-    }
-  }
-
   /**
    * Returns a new buffered reader on a file using a UTF-8 decoder.
    *
@@ -605,17 +971,27 @@ public final class WebBundleTool {
   }
 
   /**
-   * Encodes the file using the Java 8 Base64 method.
-   *
-   * @param file The file to encode
-   * @return file content encoded with Base64
-   *
-   * @throws IOException If thrown while reading file content
+   * A task building a bundle.
+   */
+  @FunctionalInterface
+  private interface Build {
+    File call() throws IOException;
+  }
+
+  /**
+   * A task producing part of the content of a bundle.
+   */
+  @FunctionalInterface
+  private interface Part<T> {
+    T call() throws IOException;
+  }
+
+  /**
+   * Writes the content of a bundle.
    */
-  private static String encodeBase64(File file) throws IOException {
-    Base64.Encoder encoder = Base64.getEncoder();
-    byte[] bytes = Files.readAllBytes(file.toPath());
-    return encoder.encodeToString(bytes);
+  @FunctionalInterface
+  private interface Content {
+    void writeTo(OutputStream out) throws IOException;
   }
 
 }
@@ -19,10 +19,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -39,7 +41,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 public final class Service {
@@ -69,6 +71,11 @@ public final class Service {
    */
   private final String _flags;
 
+  /**
+   * Whether the generators of this service should be invoked concurrently (<code>null</code> to use the default).
+   */
+  private final @Nullable Boolean _parallel;
+
   /**
    * How the status code this service is calculated.
    */
@@ -89,6 +96,16 @@ public final class Service {
    */
   private final Map<ContentGenerator, String> _targets;
 
+  /**
+   * Maps the timeouts (in milliseconds) to the generators.
+   */
+  private final Map<ContentGenerator, Long> _timeouts;
+
+  /**
+   * The generators whose content should not be kept in the fragment cache.
+   */
+  private final Set<ContentGenerator> _uncached;
+
   /**
    * Maps names to a given generator instance.
    */
@@ -105,11 +122,14 @@ public final class Service {
     this._rule = Objects.requireNonNull(builder.rule, "There must be a rule for this service");
     this._cache = builder.cache;
     this._flags = builder.flags;
+    this._parallel = builder.parallel;
     this._generators = immutableList(builder._generators);
     this._parameters = immutableMap(builder._parameters);
     this._cacheable = isCacheable(this._generators);
     this._names = immutable3(builder._names);
     this._targets = immutable3(builder._targets);
+    this._timeouts = immutable3(builder._timeouts);
+    this._uncached = builder._uncached.isEmpty()? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(builder._uncached));
   }
 
   /**
@@ -157,6 +177,18 @@ public final class Service {
     return this._rule;
   }
 
+  /**
+   * Indicates whether the generators of this service should be invoked concurrently.
+   *
+   * @return <code>true</code> or <code>false</code> if specified for this service;
+   *         <code>null</code> to use the global default.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public @Nullable Boolean parallel() {
+    return this._parallel;
+  }
+
   /**
    * Indicates whether this service is cacheable.
    *
@@ -200,6 +232,36 @@ public final class Service {
     return this._targets.get(generator);
   }
 
+  /**
+   * Returns the time in milliseconds after which the specified generator should time out.
+   *
+   * @param generator The content generator.
+   *
+   * @return the timeout in milliseconds or <code>-1</code> if not specified for this generator.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public long timeout(ContentGenerator generator) {
+    Long timeout = this._timeouts.get(generator);
+    return timeout != null? timeout.longValue() : -1;
+  }
+
+  /**
+   * Indicates whether the content of the specified generator can be kept in the fragment cache.
+   *
+   * <p>Only applies to cacheable generators when the fragment cache is enabled.
+   *
+   * @param generator The content generator.
+   *
+   * @return <code>false</code> if the generator has opted out of the fragment cache;
+   *         <code>true</code> otherwise.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public boolean fragmentCache(ContentGenerator generator) {
+    return !this._uncached.contains(generator);
+  }
+
   /**
    * Returns the name of the given generator.
    *
@@ -268,6 +330,9 @@ public final class Service {
     if (this._flags.length() > 0) {
       xml.attribute("flags", this._flags);
     }
+    if (this._parallel != null) {
+      xml.attribute("parallel", this._parallel.toString());
+    }
 
     // Caching information
     xml.attribute("cacheable", Boolean.toString(this._cacheable));
@@ -304,6 +369,13 @@ public final class Service {
       if (target != null) {
         xml.attribute("target", target);
       }
+      long timeout = timeout(generator);
+      if (timeout >= 0) {
+        xml.attribute("timeout", Long.toString(timeout));
+      }
+      if (!fragmentCache(generator)) {
+        xml.attribute("fragment-cache", "false");
+      }
       xml.attribute("cacheable", Boolean.toString(generator instanceof Cacheable));
       xml.attribute("affect-status", Boolean.toString(affectStatus(generator)));
       for (Parameter p : parameters) {
@@ -386,6 +458,21 @@ public final class Service {
      */
     private final Map<ContentGenerator, String> _targets = new HashMap<>();
 
+    /**
+     * Maps the timeouts to the generators.
+     */
+    private final Map<ContentGenerator, Long> _timeouts = new HashMap<>();
+
+    /**
+     * The generators whose content should not be kept in the fragment cache.
+     */
+    private final Set<ContentGenerator> _uncached = new HashSet<>();
+
+    /**
+     * Whether the generators should be invoked concurrently.
+     */
+    private @Nullable Boolean parallel;
+
     /**
      * Creates a new builder.
      */
@@ -452,6 +539,17 @@ public final class Service {
       return this;
     }
 
+    /**
+     * Sets whether the generators of this service should be invoked concurrently.
+     *
+     * @param parallel <code>true</code> or <code>false</code>; <code>null</code> to use the default.
+     * @return this builder for easy chaining.
+     */
+    public Builder parallel(@Nullable Boolean parallel) {
+      this.parallel = parallel;
+      return this;
+    }
+
     /**
      * Sets the status rule of the service to build.
      *
@@ -503,6 +601,39 @@ public final class Service {
       return this;
     }
 
+    /**
+     * Sets the timeout in milliseconds of the latest content generator added.
+     *
+     * @param timeout the timeout for the latest content generator.
+     * @return this builder for easy chaining.
+     */
+    public Builder timeout(@Nullable Long timeout) {
+      if (this._generators.size() > 0 && timeout != null) {
+        ContentGenerator generator = this._generators.get(this._generators.size() - 1);
+        this._timeouts.put(generator, timeout);
+      }
+      return this;
+    }
+
+    /**
+     * Sets whether the content of the latest content generator added can be kept in the fragment
+     * cache.
+     *
+     * @param cache <code>false</code> to opt out of the fragment cache.
+     * @return this builder for easy chaining.
+     */
+    public Builder fragmentCache(@Nullable Boolean cache) {
+      if (this._generators.size() > 0 && cache != null) {
+        ContentGenerator generator = this._generators.get(this._generators.size() - 1);
+        if (cache.booleanValue()) {
+          this._uncached.remove(generator);
+        } else {
+          this._uncached.add(generator);
+        }
+      }
+      return this;
+    }
+
     /**
      * Sets the name of the latest content generator added.
      *
@@ -540,10 +671,13 @@ public final class Service {
       this.id = null;
       this.cache = "";
       this.flags = "";
+      this.parallel = null;
       this._generators.clear();
       this._parameters.clear();
       this._names.clear();
       this._targets.clear();
+      this._timeouts.clear();
+      this._uncached.clear();
     }
 
   }
@@ -589,15 +723,15 @@ public final class Service {
    * @param original the map maintained by the builder.
    * @return a new identical immutable map.
    */
-  private static Map<ContentGenerator, String> immutable3(Map<ContentGenerator, String> original) {
+  private static <V> Map<ContentGenerator, V> immutable3(Map<ContentGenerator, V> original) {
     if (original.isEmpty())
       return Collections.emptyMap();
     else if (original.size() == 1) {
-      Entry<ContentGenerator, String> entry = original.entrySet().iterator().next();
+      Entry<ContentGenerator, V> entry = original.entrySet().iterator().next();
       return Collections.singletonMap(entry.getKey(), entry.getValue());
     } else {
-      Map<ContentGenerator, String> map = new HashMap<>();
-      for (Entry<ContentGenerator, String> entry : original.entrySet()) {
+      Map<ContentGenerator, V> map = new HashMap<>();
+      for (Entry<ContentGenerator, V> entry : original.entrySet()) {
         map.put(entry.getKey(), entry.getValue());
       }
       return Collections.unmodifiableMap(map);
@@ -15,13 +15,20 @@
  */
 package org.pageseeder.berlioz.content;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import javax.xml.parsers.SAXParser;
 
@@ -31,6 +38,7 @@ import org.pageseeder.berlioz.BerliozErrorID;
 import org.pageseeder.berlioz.BerliozException;
 import org.pageseeder.berlioz.BerliozOption;
 import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.content.ServiceRegistry.Registration;
 import org.pageseeder.berlioz.util.CollectedError.Level;
 import org.pageseeder.berlioz.util.CompoundBerliozException;
 import org.pageseeder.berlioz.xml.BerliozEntityResolver;
@@ -51,9 +59,21 @@ import org.xml.sax.helpers.DefaultHandler;
 /**
  * A utility class to provide access to the content of generators.
  *
+ * <h3>Incremental loading</h3>
+ * <p>The loader keeps track of the last modified date, length and checksum of each services file
+ * it has loaded. When the services are reloaded, only the files which have changed are parsed
+ * again and the generators of the services whose configuration is unchanged are reused.
+ *
+ * <p>The registry is updated atomically once all the files have been parsed successfully, so
+ * that the services remain available while they are reloaded. If a file cannot be parsed, the
+ * registry is left unchanged.
+ *
+ * <p>The services files are checked for changes after {@link #invalidate()} is invoked or
+ * periodically if the {@link BerliozOption#SERVICES_CHECK_INTERVAL} is set.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.4
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.6
  */
 public final class ServiceLoader {
@@ -78,11 +98,26 @@ public final class ServiceLoader {
    */
   private static final FilenameFilter FILE_FILTER = (dir, name) -> name.startsWith("services!") && name.endsWith(".xml");
 
+  /**
+   * The services files which have been loaded in the order they were loaded.
+   */
+  private final Map<File, ServiceFile> _files = new LinkedHashMap<>();
+
   /**
    * Indicates whether the boolean value was loaded.
    */
   private volatile boolean loaded = false;
 
+  /**
+   * Indicates whether the services files should be checked for changes.
+   */
+  private volatile boolean stale = false;
+
+  /**
+   * When the services files were last checked for changes (in nanoseconds).
+   */
+  private volatile long checked = System.nanoTime();
+
   /**
    * Singleton constructor.
    */
@@ -114,23 +149,110 @@ public final class ServiceLoader {
    *
    * @since Berlioz 0.8.2
    */
-  public synchronized boolean loadIfRequired() throws BerliozException {
-    if (this.loaded) return false;
-    load();
-    this.loaded = true;
-    return true;
+  public boolean loadIfRequired() throws BerliozException {
+    if (this.loaded && !this.stale && !isCheckDue()) return false;
+    synchronized (this) {
+      if (this.loaded && !this.stale && !isCheckDue()) return false;
+      boolean changed = reload();
+      this.loaded = true;
+      return changed;
+    }
   }
 
   /**
    * Loads the content access file from all services files.
    *
+   * <p>Only the files which have changed since they were last loaded are parsed and the files
+   * which no longer exist are unloaded.
+   *
    * @throws BerliozException Should something unexpected happen.
    */
   public synchronized void load() throws BerliozException {
+    reload();
+  }
+
+  /**
+   * Indicates that the services files should be checked for changes the next time
+   * {@link #loadIfRequired()} is invoked.
+   *
+   * <p>Unlike {@link #clear()}, the services remain available until they have been reloaded.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public void invalidate() {
+    this.stale = true;
+  }
+
+  /**
+   * Reloads the services files which have changed and publish the services if any file has
+   * changed.
+   *
+   * @return <code>true</code> if the registry was updated.
+   *
+   * @throws BerliozException If any of the services files could not be loaded.
+   */
+  private boolean reload() throws BerliozException {
     List<File> files = listServiceFiles();
+    Map<File, ServiceFile> checked = new LinkedHashMap<>();
+    boolean changed = !files.equals(new ArrayList<>(this._files.keySet()));
     for (File f : files) {
-      load(f);
+      ServiceFile previous = this._files.get(f);
+      ServiceFile current = check(f, previous);
+      changed = changed || previous == null || current._registrations != previous._registrations;
+      checked.put(f, current);
+    }
+    // Keep the new last modified dates even if nothing has changed
+    this._files.clear();
+    this._files.putAll(checked);
+    if (changed) {
+      publish();
+    }
+    this.stale = false;
+    this.checked = System.nanoTime();
+    return changed;
+  }
+
+  /**
+   * Returns the loaded services file if it has not changed or loads it again.
+   *
+   * @param xml      The XML file to check.
+   * @param previous The file as it was last loaded
+   *
+   * @return the same services file if it is unchanged.
+   *
+   * @throws BerliozException If the file could not be loaded.
+   */
+  private ServiceFile check(File xml, @Nullable ServiceFile previous) throws BerliozException {
+    if (previous != null && previous.isUnchanged(xml.lastModified(), xml.length())) return previous;
+    byte[] data = read(xml);
+    if (previous != null && previous.isUnchanged(data)) {
+      LOGGER.debug("Services file {} is unchanged", xml.getName());
+      return previous.touch(xml.lastModified(), data.length);
     }
+    return parse(xml, data, previous);
+  }
+
+  /**
+   * Publishes the services from all the loaded files to the registry.
+   */
+  private void publish() {
+    List<Registration> registrations = new ArrayList<>();
+    for (ServiceFile f : this._files.values()) {
+      registrations.addAll(f._registrations);
+    }
+    this.services.publish(registrations);
+    LOGGER.info("Published {} service mappings from {} file(s)", registrations.size(), this._files.size());
+  }
+
+  /**
+   * Indicates whether the services files should be checked for changes based on the interval
+   * defined in the global settings.
+   *
+   * @return <code>true</code> if the interval has elapsed since the last check.
+   */
+  private boolean isCheckDue() {
+    int interval = GlobalSettings.getInt(BerliozOption.SERVICES_CHECK_INTERVAL);
+    return interval > 0 && System.nanoTime() - this.checked > TimeUnit.SECONDS.toNanos(interval);
   }
 
   /**
@@ -140,8 +262,8 @@ public final class ServiceLoader {
    * <p>This list includes the main file <code>services.xml</code> as well as
    * any file starting with <code>services!</code> and ending in <code>.xml</code>.
    *
-   * <p>If it exists, the main file is always returned first. There is no
-   * guaranteed ordering for the other services files.
+   * <p>If it exists, the main file is always returned first. The other services
+   * files are sorted by name.
    *
    * @return the list of services files.
    */
@@ -158,6 +280,7 @@ public final class ServiceLoader {
       if (xml.exists()) {
         files.add(xml);
       }
+      Arrays.sort(subs);
       Collections.addAll(files, subs);
     }
 
@@ -176,12 +299,50 @@ public final class ServiceLoader {
   /**
    * Loads the content access file.
    *
+   * <p>The services previously loaded from the same file are replaced.
+   *
    * @param xml    The XML file to load.
    *
    * @throws BerliozException Should something unexpected happen.
    */
   public synchronized void load(File xml) throws BerliozException {
     Objects.requireNonNull(xml, "The service configuration file is null! That's it I give up.");
+    ServiceFile previous = this._files.get(xml);
+    ServiceFile loaded = parse(xml, read(xml), previous);
+    this._files.put(xml, loaded);
+    publish();
+  }
+
+  /**
+   * Reads the specified services file.
+   *
+   * @param xml The XML file to read.
+   *
+   * @return the content of the file
+   *
+   * @throws BerliozException If the file could not be read.
+   */
+  private static byte[] read(File xml) throws BerliozException {
+    try {
+      return Files.readAllBytes(xml.toPath());
+    } catch (IOException ex) {
+      LOGGER.error("An I/O error occurred while reading XML service configuration: {}", ex.getMessage());
+      throw new BerliozException("Unable to read services configuration file.", ex, BerliozErrorID.SERVICES_NOT_FOUND);
+    }
+  }
+
+  /**
+   * Parses the content access file.
+   *
+   * @param xml      The XML file to load.
+   * @param data     The content of the file.
+   * @param previous The file as it was last loaded (to reuse the generators)
+   *
+   * @return the services loaded from the file.
+   *
+   * @throws BerliozException Should something unexpected happen.
+   */
+  private static ServiceFile parse(File xml, byte[] data, @Nullable ServiceFile previous) throws BerliozException {
     // OK Let's start
     SAXParser parser = XMLUtils.getParser(true);
     SAXErrorCollector collector = new SAXErrorCollector(LOGGER);
@@ -192,17 +353,23 @@ public final class ServiceLoader {
     // Load the services
     try {
       XMLReader reader = parser.getXMLReader();
-      HandlingDispatcher dispatcher = new HandlingDispatcher(reader, this.services);
+      Map<String, ContentGenerator> reusable = previous != null? previous._generators : Collections.emptyMap();
+      HandlingDispatcher dispatcher = new HandlingDispatcher(reader, reusable);
       reader.setContentHandler(dispatcher);
       reader.setEntityResolver(BerliozEntityResolver.getInstance());
       reader.setErrorHandler(collector);
       LOGGER.info("Parsing {}", xml.toURI());
-      reader.parse(new InputSource(xml.toURI().toString()));
+      InputSource source = new InputSource(new ByteArrayInputStream(data));
+      source.setSystemId(xml.toURI().toString());
+      reader.parse(source);
       // if the error threshold was reached, throw an error!
       if (collector.hasError()) {
         id = BerliozErrorID.SERVICES_INVALID;
         throw new SAXException(collector.getErrors().size()+" error(s) reported by the XML parser.");
       }
+      ServicesHandler10 handler = dispatcher.handler;
+      if (handler == null) throw new SAXException("Not a valid Berlioz service configuration!");
+      return new ServiceFile(xml.lastModified(), data.length, checksum(data), handler.registrations(), handler.generators());
     } catch (SAXException ex) {
       if (id == null) {
         id = BerliozErrorID.SERVICES_MALFORMED;
@@ -213,18 +380,101 @@ public final class ServiceLoader {
       LOGGER.error("An I/O error occurred while reading XML service configuration: {}", ex.getMessage());
       throw new BerliozException("Unable to read services configuration file.", ex, BerliozErrorID.SERVICES_NOT_FOUND);
     }
-    this.services.touch();
   }
 
   /**
-   * Update the patterns based on the current generators.
+   * Unloads all the services files and clears the registry.
+   *
+   * <p>All the files will be parsed again and the generators created again when the services
+   * are loaded.
    */
   public synchronized void clear() {
     LOGGER.info("Clearing content manager");
+    this._files.clear();
     this.services.clear();
     this.loaded = false;
   }
 
+  /**
+   * Returns the CRC32 checksum of the specified data.
+   *
+   * @param data The content of the services file.
+   *
+   * @return the checksum.
+   */
+  private static long checksum(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    return crc.getValue();
+  }
+
+  /**
+   * The services loaded from a services file.
+   */
+  private static final class ServiceFile {
+
+    /**
+     * The last modified date of the file when it was last checked.
+     */
+    private final long _modified;
+
+    /**
+     * The length of the file when it was last checked.
+     */
+    private final long _length;
+
+    /**
+     * The CRC32 checksum of the content of the file.
+     */
+    private final long _checksum;
+
+    /**
+     * The services in the file.
+     */
+    private final List<Registration> _registrations;
+
+    /**
+     * The generators used by the services by generator key.
+     */
+    private final Map<String, ContentGenerator> _generators;
+
+    /**
+     * @param modified      The last modified date of the file
+     * @param length        The length of the file
+     * @param checksum      The CRC32 checksum of the content of the file
+     * @param registrations The services in the file
+     * @param generators    The generators used by the services by generator key
+     */
+    ServiceFile(long modified, long length, long checksum, List<Registration> registrations, Map<String, ContentGenerator> generators) {
+      this._modified = modified;
+      this._length = length;
+      this._checksum = checksum;
+      this._registrations = registrations;
+      this._generators = generators;
+    }
+
+    /**
+     * @return <code>true</code> if the file has the same last modified date and length.
+     */
+    boolean isUnchanged(long modified, long length) {
+      return this._modified == modified && this._length == length;
+    }
+
+    /**
+     * @return <code>true</code> if the file has the same content.
+     */
+    boolean isUnchanged(byte[] data) {
+      return this._length == data.length && this._checksum == checksum(data);
+    }
+
+    /**
+     * @return a copy of this services file with a new last modified date and length.
+     */
+    ServiceFile touch(long modified, long length) {
+      return new ServiceFile(modified, length, this._checksum, this._registrations, this._generators);
+    }
+  }
+
   // Inner class to determine which handler to use --------------------------------------------------
 
   /**
@@ -234,9 +484,14 @@ public final class ServiceLoader {
   private static final class HandlingDispatcher extends DefaultHandler implements ContentHandler {
 
     /**
-     * Registry for the services to load.
+     * The generators which can be reused.
+     */
+    private final Map<String, ContentGenerator> _reusable;
+
+    /**
+     * The handler collecting the services.
      */
-    private final ServiceRegistry _registry;
+    private @Nullable ServicesHandler10 handler;
 
     /**
      * The reader in use.
@@ -252,11 +507,11 @@ public final class ServiceLoader {
      * Create a new version sniffer for the specified XML reader.
      *
      * @param reader   The XML Reader in use.
-     * @param registry The service registry.
+     * @param reusable The generators which can be reused.
      */
-    public HandlingDispatcher(XMLReader reader, ServiceRegistry registry) {
+    public HandlingDispatcher(XMLReader reader, Map<String, ContentGenerator> reusable) {
       this._reader = reader;
-      this._registry = registry;
+      this._reusable = reusable;
     }
 
     @Override
@@ -274,7 +529,8 @@ public final class ServiceLoader {
     @Override
     public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
       // Identify the handler to use
-      ContentHandler handler = getHandler(localName, atts);
+      ServicesHandler10 handler = getHandler(localName, atts);
+      this.handler = handler;
       Locator loc = this.locator;
       if (loc != null)
         handler.setDocumentLocator(loc);
@@ -294,7 +550,7 @@ public final class ServiceLoader {
      *
      * @throws SAXException if the the file being parsed is not a service configuration.
      */
-    private ContentHandler getHandler(String name, Attributes atts) throws SAXException {
+    private ServicesHandler10 getHandler(String name, Attributes atts) throws SAXException {
       SAXErrorCollector collector = getErrorCollector(this._reader);
 
       // Service configuration
@@ -304,18 +560,18 @@ public final class ServiceLoader {
         // Version 1.0
         if ("1.0".equals(version)) {
           LOGGER.info("Service configuration 1.0 detected");
-          return new ServicesHandler10(this._registry, collector);
+          return new ServicesHandler10(this._reusable, collector);
 
         // Unknown version (assume 1.0)
         } else {
           LOGGER.info("Service configuration version unavailable, assuming 1.0");
-          return new ServicesHandler10(this._registry, collector);
+          return new ServicesHandler10(this._reusable, collector);
         }
 
       } else if ("services".equals(name)) {
 
         LOGGER.info("Services group using 1.0");
-        return new ServicesHandler10(this._registry, collector);
+        return new ServicesHandler10(this._reusable, collector);
 
       // Definitely not supported
       } else {
@@ -16,10 +16,11 @@
 package org.pageseeder.berlioz.content;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,8 +29,9 @@ import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.furi.URIPattern;
+import org.pageseeder.berlioz.furi.URIPatternIndex;
+import org.pageseeder.berlioz.furi.URIResolveResult;
 import org.pageseeder.berlioz.furi.URIResolver;
-import org.pageseeder.berlioz.furi.URIResolver.MatchRule;
 import org.pageseeder.berlioz.http.HttpMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,53 +39,82 @@ import org.slf4j.LoggerFactory;
 /**
  * A registry for services.
  *
- * <p>Note: this class is not synchronized and must be synchronized externally.
+ * <p>The services are held in an immutable snapshot which is replaced atomically whenever the
+ * registry is modified, so that the registry can be read concurrently without locking and is
+ * never seen partially loaded. Use {@link #snapshot()} to obtain a view of the registry which
+ * remains consistent while it is modified.
+ *
+ * <p>Modifications are synchronized. Since each modification rebuilds the registry, services
+ * should be registered in bulk using {@link #register(Collection)}.
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.4
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.8
  */
 public final class ServiceRegistry {
 
   /**
-   * Maps content generators to the appropriate HTTP method.
+   * The current snapshot of the registry.
    */
-  private final Map<HttpMethod, ServiceMap> registry;
+  private volatile Snapshot snapshot;
 
   /**
-   * When the service registry was last loaded.
+   * Whether this registry is a read-only snapshot.
    */
-  private long version;
+  private final boolean _readOnly;
 
   /**
    * Creates a new registry.
    */
   public ServiceRegistry() {
-    this.registry = new EnumMap<>(HttpMethod.class);
-    // Create a map for each mappable HTTP method
-    for (HttpMethod m : HttpMethod.mappable()) {
-      this.registry.put(m, new ServiceMap());
-    }
-    this.version = System.currentTimeMillis();
+    this.snapshot = new Snapshot(Collections.emptyList(), System.currentTimeMillis());
+    this._readOnly = false;
+  }
+
+  /**
+   * Creates a read-only registry for the specified snapshot.
+   *
+   * @param snapshot the snapshot of the registry.
+   */
+  private ServiceRegistry(Snapshot snapshot) {
+    this.snapshot = snapshot;
+    this._readOnly = true;
   }
 
   /**
    * Register the content generator.
    *
+   * <p>Each call rebuilds the registry, use {@link #register(Collection)} to register several
+   * services at once.
+   *
    * @param service the service to register.
    * @param pattern the URL pattern to associate to this content generator.
    * @param method  the method for this URL pattern.
    *
    * @throws NullPointerException If any argument is <code>null</code>
+   * @throws UnsupportedOperationException If this registry is a read-only snapshot
    */
   public void register(Service service, URIPattern pattern, HttpMethod method) {
-    // preliminary checks
-    Objects.requireNonNull(service, "No service to register.");
-    Objects.requireNonNull(pattern, "URL Pattern must be specified to register a service.");
-    Objects.requireNonNull(method, "HTTP Method must be specified to register a service.");
-    // Register the generator with the URL pattern
-    getMapping(method).put(pattern, service);
+    register(Collections.singletonList(new Registration(service, pattern, method)));
+  }
+
+  /**
+   * Register the specified services at once.
+   *
+   * <p>The registry is rebuilt only once for all the services.
+   *
+   * @param registrations the services to register with their URI pattern and HTTP method.
+   *
+   * @throws UnsupportedOperationException If this registry is a read-only snapshot
+   *
+   * @since Berlioz 0.13.0
+   */
+  public synchronized void register(Collection<Registration> registrations) {
+    List<Registration> all = new ArrayList<>(this.snapshot.registrations.size() + registrations.size());
+    all.addAll(this.snapshot.registrations);
+    all.addAll(registrations);
+    publish(all);
   }
 
   /**
@@ -96,7 +127,7 @@ public final class ServiceRegistry {
    * @return A content generator which URI pattern matches this URL or <code>null</code>.
    */
   public @Nullable MatchingService get(String url) {
-    for (Entry<HttpMethod, ServiceRegistry.ServiceMap> allMethods : this.registry.entrySet()) {
+    for (Entry<HttpMethod, ServiceRegistry.ServiceMap> allMethods : this.snapshot.registry.entrySet()) {
       ServiceMap mapping = allMethods.getValue();
       MatchingService service = mapping.match(url);
       if (service != null) return service;
@@ -117,7 +148,7 @@ public final class ServiceRegistry {
    */
   public List<String> allows(String url) {
     List<String> methods = new ArrayList<>();
-    for (Entry<HttpMethod, ServiceMap> e : this.registry.entrySet()) {
+    for (Entry<HttpMethod, ServiceMap> e : this.snapshot.registry.entrySet()) {
       HttpMethod m = e.getKey();
       ServiceMap mapping = e.getValue();
       MatchingService service = mapping.match(url);
@@ -140,7 +171,7 @@ public final class ServiceRegistry {
    */
   public @Nullable HttpMethod getMethod(Service service) {
     if (service == null) return null;
-    for (Entry<HttpMethod, ServiceMap> e : this.registry.entrySet()) {
+    for (Entry<HttpMethod, ServiceMap> e : this.snapshot.registry.entrySet()) {
       ServiceMap mapping = e.getValue();
       if (mapping.isMapped(service)) return e.getKey();
     }
@@ -156,7 +187,7 @@ public final class ServiceRegistry {
    */
   public List<String> matches(Service service) {
     if (service == null) return Collections.emptyList();
-    for (ServiceMap mapping : this.registry.values()) {
+    for (ServiceMap mapping : this.snapshot.registry.values()) {
       boolean mapped = mapping.isMapped(service);
       if (mapped) return mapping.matches(service);
     }
@@ -196,7 +227,7 @@ public final class ServiceRegistry {
     if (method == HttpMethod.HEAD) {
       m = HttpMethod.GET;
     }
-    ServiceMap mapping = getMapping(m);
+    ServiceMap mapping = this.snapshot.getMapping(m);
     return mapping.match(url);
   }
 
@@ -207,7 +238,7 @@ public final class ServiceRegistry {
    * @return an unmodifiable map of services by URI Pattern
    */
   public Map<String, Service> getServiceMap(HttpMethod method) {
-    ServiceMap map = getMapping(method);
+    ServiceMap map = this.snapshot.getMapping(method);
     return Collections.unmodifiableMap(map.mapping);
   }
 
@@ -218,7 +249,7 @@ public final class ServiceRegistry {
    */
   public List<Service> getServices() {
     List<Service> services = new ArrayList<>();
-    for (ServiceMap map : this.registry.values()) {
+    for (ServiceMap map : this.snapshot.registry.values()) {
      services.addAll(map.mapping.values());
     }
     return services;
@@ -231,32 +262,57 @@ public final class ServiceRegistry {
    * @return the list of services.
    */
   public List<Service> getServices(HttpMethod method) {
-    ServiceMap map = getMapping(method);
+    ServiceMap map = this.snapshot.getMapping(method);
     Set<Service> services = new HashSet<>(map.mapping.values());
     return new ArrayList<>(services);
   }
 
   /**
    * Clears the service registry.
+   *
+   * <p>This method also changes the version of this registry.
+   *
+   * @throws UnsupportedOperationException If this registry is a read-only snapshot
    */
-  public void clear() {
-    for (ServiceMap map : this.registry.values()) {
-      map.clear();
-    }
+  public synchronized void clear() {
+    publish(Collections.emptyList());
   }
 
   /**
    * @return The version of this registry.
    */
   public long version() {
-    return this.version;
+    return this.snapshot.version;
+  }
+
+  /**
+   * Returns a read-only view of the services currently in this registry.
+   *
+   * <p>The view is not affected by any subsequent change to this registry.
+   *
+   * @return a read-only snapshot of this registry.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public ServiceRegistry snapshot() {
+    return this._readOnly? this : new ServiceRegistry(this.snapshot);
   }
 
   /**
-   * Changed the version of this registry.
+   * Replaces all the services in this registry at once.
+   *
+   * <p>A new snapshot is created with a new version and the URI patterns indexed before it is
+   * made visible.
+   *
+   * @param registrations the services to register with their URI pattern and HTTP method.
+   *
+   * @throws UnsupportedOperationException If this registry is a read-only snapshot
    */
-  void touch() {
-    this.version = System.currentTimeMillis();
+  synchronized void publish(List<Registration> registrations) {
+    if (this._readOnly) throw new UnsupportedOperationException("Read-only service registry");
+    // Ensure that the version always changes
+    long version = Math.max(System.currentTimeMillis(), this.snapshot.version + 1);
+    this.snapshot = new Snapshot(registrations, version);
   }
 
   /**
@@ -272,18 +328,122 @@ public final class ServiceRegistry {
     return null;
   }
 
-  private ServiceMap getMapping(HttpMethod method) {
-    ServiceMap mapping = this.registry.get(method);
-    // this should never happen since we initialise method
-    if (mapping == null) throw new IllegalStateException("Failure to initialize service registry");
-    return mapping;
+  /**
+   * A service registered with a URI pattern and HTTP method.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static final class Registration {
+
+    /**
+     * The service.
+     */
+    private final Service _service;
+
+    /**
+     * The URL pattern to associate to the service.
+     */
+    private final URIPattern _pattern;
+
+    /**
+     * The HTTP method for the URL pattern.
+     */
+    private final HttpMethod _method;
+
+    /**
+     * @param service the service to register.
+     * @param pattern the URL pattern to associate to the service.
+     * @param method  the HTTP method for the URL pattern.
+     *
+     * @throws NullPointerException If any argument is <code>null</code>
+     */
+    public Registration(Service service, URIPattern pattern, HttpMethod method) {
+      this._service = Objects.requireNonNull(service, "No service to register.");
+      this._pattern = Objects.requireNonNull(pattern, "URL Pattern must be specified to register a service.");
+      this._method = Objects.requireNonNull(method, "HTTP Method must be specified to register a service.");
+    }
+
+    /**
+     * @return the service.
+     */
+    public Service service() {
+      return this._service;
+    }
+
+    /**
+     * @return the URL pattern associated to the service.
+     */
+    public URIPattern pattern() {
+      return this._pattern;
+    }
+
+    /**
+     * @return the HTTP method for the URL pattern.
+     */
+    public HttpMethod method() {
+      return this._method;
+    }
+  }
+
+  /**
+   * An immutable snapshot of the services registered.
+   */
+  private static final class Snapshot {
+
+    /**
+     * The registrations this snapshot was built from.
+     */
+    private final List<Registration> registrations;
+
+    /**
+     * Maps content generators to the appropriate HTTP method.
+     */
+    private final Map<HttpMethod, ServiceMap> registry;
+
+    /**
+     * When the snapshot was created.
+     */
+    private final long version;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param registrations the services to register with their URI pattern and HTTP method.
+     * @param version       the version of the snapshot.
+     */
+    Snapshot(List<Registration> registrations, long version) {
+      this.registrations = Collections.unmodifiableList(new ArrayList<>(registrations));
+      this.registry = new EnumMap<>(HttpMethod.class);
+      // Create a map for each mappable HTTP method
+      for (HttpMethod m : HttpMethod.mappable()) {
+        this.registry.put(m, new ServiceMap());
+      }
+      for (Registration r : registrations) {
+        getMapping(r._method).put(r._pattern, r._service);
+      }
+      // Compile the indexes so that they are not built on the first request
+      for (ServiceMap map : this.registry.values()) {
+        map.index();
+      }
+      this.version = version;
+    }
+
+    private ServiceMap getMapping(HttpMethod method) {
+      ServiceMap mapping = this.registry.get(method);
+      // this should never happen since we initialise method
+      if (mapping == null) throw new IllegalStateException("Failure to initialize service registry");
+      return mapping;
+    }
   }
 
   /**
    * Simply Maps generators to URI patterns.
    *
+   * <p>URLs are matched using an index of the URI patterns. The map is only modified while the
+   * snapshot is being built.
+   *
    * @author Christophe Lauret
-   * @version Berlioz 0.12.4
+   * @version Berlioz 0.13.0
    */
   private static class ServiceMap {
 
@@ -295,13 +455,23 @@ public final class ServiceRegistry {
     /**
      * Maps services to the URI Pattern.
      */
-    private final Map<String, Service> mapping = new Hashtable<>();
+    private final Map<String, Service> mapping = new HashMap<>();
 
     /**
      * List of URI Patterns that match a service.
      */
     private final List<URIPattern> patterns = new ArrayList<>();
 
+    /**
+     * URI Patterns by their string representation for exact matches.
+     */
+    private final Map<String, URIPattern> exact = new HashMap<>();
+
+    /**
+     * The index to find the URI patterns matching a URL.
+     */
+    private @Nullable URIPatternIndex index;
+
     /**
      * Puts the given content generator in this map.
      *
@@ -316,6 +486,8 @@ public final class ServiceRegistry {
         this.logger.warn("Service ID={} was already registered to {}", previous, pattern);
       }
       this.patterns.add(pattern);
+      this.exact.put(pattern.toString(), pattern);
+      this.index = null;
       return true;
     }
 
@@ -329,25 +501,39 @@ public final class ServiceRegistry {
       // Attempt to the find service directly
       MatchingService match = null;
       Service service = this.mapping.get(url);
-      if (service != null) {
-        URIPattern p = new URIPattern(url);
+      URIPattern p = this.exact.get(url);
+      if (service != null && p != null) {
         match = new MatchingService(service, p, new URIResolver(url).resolve(p));
 
       // Check if matching URI pattern
       } else {
-        // Find the URI pattern matching the given path info
-        URIResolver resolver = new URIResolver(url);
-        URIPattern p = resolver.find(this.patterns, MatchRule.BEST_MATCH);
-        if (p != null) {
+        // Find the URI pattern best matching the given path info
+        URIResolveResult result = index().resolve(url);
+        if (result != null) {
+          p = result.getURIPattern();
           service = this.mapping.get(p.toString());
           if (service != null) {
-            match = new MatchingService(service, p, resolver.resolve(p));
+            match = new MatchingService(service, p, result);
           }
         }
       }
       return match;
     }
 
+    /**
+     * Returns the index for the URI patterns in this map, building it if necessary.
+     *
+     * @return the index for the URI patterns in this map
+     */
+    public URIPatternIndex index() {
+      URIPatternIndex index = this.index;
+      if (index == null) {
+        index = new URIPatternIndex(new ArrayList<>(this.patterns));
+        this.index = index;
+      }
+      return index;
+    }
+
     /**
      * Indicates whether the specified service is mapped to any URL.
      *
@@ -373,14 +559,6 @@ public final class ServiceRegistry {
       }
       return urls;
     }
-
-    /**
-     * Clears mapping and patterns.
-     */
-    public void clear() {
-      this.mapping.clear();
-      this.patterns.clear();
-    }
   }
 
 }
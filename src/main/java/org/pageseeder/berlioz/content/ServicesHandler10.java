@@ -16,12 +16,16 @@
 package org.pageseeder.berlioz.content;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.content.ServiceRegistry.Registration;
 import org.pageseeder.berlioz.furi.URIPattern;
 import org.pageseeder.berlioz.generator.NoContent;
 import org.pageseeder.berlioz.http.HttpMethod;
@@ -42,7 +46,7 @@ import org.xml.sax.helpers.DefaultHandler;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 final class ServicesHandler10 extends DefaultHandler {
@@ -53,9 +57,24 @@ final class ServicesHandler10 extends DefaultHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(ServicesHandler10.class);
 
   /**
-   * Where all the information about services is collected and registered.
+   * Where all the information about services is collected before being registered.
    */
-  private final ServiceRegistry _registry;
+  private final List<Registration> _registrations = new ArrayList<>();
+
+  /**
+   * The generators created from a previous version of the file which can be reused.
+   */
+  private final Map<String, ContentGenerator> _reusable;
+
+  /**
+   * The generators used by the services in this file by generator key.
+   */
+  private final Map<String, ContentGenerator> _generators = new HashMap<>();
+
+  /**
+   * The position of the next generator in the current service.
+   */
+  private int generatorIndex = 0;
 
   /**
    * The error handler to use.
@@ -157,20 +176,35 @@ final class ServicesHandler10 extends DefaultHandler {
   private final Set<String> _groups = new HashSet<>();
 
   /**
-   * Creates a new handler that will update the specified registry and use the given error handler.
+   * Creates a new handler that will collect the services and use the given error handler.
    *
-   * <p>Note: it is more efficient to pass the generators rather than access the outer class.
+   * <p>Generators from a previous version of the same file are reused when they are defined in
+   * the same position of the same service with the same class, name, target and timeout.
    *
-   * @param registry  The service registry to use.
+   * @param reusable  The generators that can be reused by generator key.
    * @param collector The error handler to collect errors.
    *
    * @throws NullPointerException If any of the method arguments is <code>null</code>.
    */
-  public ServicesHandler10(ServiceRegistry registry, SAXErrorCollector collector) {
-    this._registry = Objects.requireNonNull(registry, "service registry is required");
+  public ServicesHandler10(Map<String, ContentGenerator> reusable, SAXErrorCollector collector) {
+    this._reusable = Objects.requireNonNull(reusable, "reusable generators are required");
     this._collector = Objects.requireNonNull(collector, "error collector is required");
   }
 
+  /**
+   * @return the services collected by this handler with their URI pattern and HTTP method.
+   */
+  public List<Registration> registrations() {
+    return Collections.unmodifiableList(this._registrations);
+  }
+
+  /**
+   * @return the generators used by the services collected by this handler by generator key.
+   */
+  public Map<String, ContentGenerator> generators() {
+    return Collections.unmodifiableMap(this._generators);
+  }
+
   @Override
   public void setDocumentLocator(Locator locator) {
     this.locator = locator;
@@ -188,7 +222,6 @@ final class ServicesHandler10 extends DefaultHandler {
     }
     switch(element) {
       case SERVICE_CONFIG:
-        this._registry.clear();
         break;
 
       case SERVICES:
@@ -212,6 +245,7 @@ final class ServicesHandler10 extends DefaultHandler {
         this._builder.id(id != null? id : "");
         this._builder.cache(atts.getValue("cache-control"));
         this._builder.flags(atts.getValue("flags"));
+        handleParallel(atts.getValue("parallel"));
         handleMethod(atts.getValue("method"));
         break;
 
@@ -254,7 +288,7 @@ final class ServicesHandler10 extends DefaultHandler {
             warning("No URI pattern match service "+service.id()+" - service will be ignored");
           } else {
             for (URIPattern pattern : this._patterns) {
-              this._registry.register(service, pattern, method);
+              this._registrations.add(new Registration(service, pattern, method));
               LOGGER.debug("Assigning {}} [{}}] to {}", pattern, method, service);
             }
           }
@@ -263,6 +297,7 @@ final class ServicesHandler10 extends DefaultHandler {
         }
         this._builder.reset();
         this._patterns.clear();
+        this.generatorIndex = 0;
         // Any rule specific to the 'service'? remove it
         if (this._rules.size() == 3) {
           this._rules.remove(2);
@@ -400,6 +435,56 @@ final class ServicesHandler10 extends DefaultHandler {
     }
   }
 
+  /**
+   * Handle the parallel attribute of the service.
+   *
+   * @param parallel The 'parallel' attribute
+   *
+   * @throws SAXException Only if thrown by underlying error handler.
+   */
+  private void handleParallel(@Nullable String parallel) throws SAXException {
+    if (parallel == null) return;
+    if ("true".equals(parallel) || "false".equals(parallel)) {
+      this._builder.parallel(Boolean.valueOf(parallel));
+    } else {
+      warning("Ignoring illegal parallel value '"+parallel+"' for service id "+this._builder.id());
+    }
+  }
+
+  /**
+   * Handle the timeout attribute of the generator.
+   *
+   * @param timeout The 'timeout' attribute in milliseconds
+   *
+   * @throws SAXException Only if thrown by underlying error handler.
+   */
+  private void handleTimeout(@Nullable String timeout) throws SAXException {
+    if (timeout == null) return;
+    try {
+      long ms = Long.parseLong(timeout);
+      if (ms < 0) throw new NumberFormatException("Timeout must be positive");
+      this._builder.timeout(ms);
+    } catch (NumberFormatException ex) {
+      warning("Ignoring illegal timeout '"+timeout+"' for generator in service id "+this._builder.id(), ex);
+    }
+  }
+
+  /**
+   * Handle the fragment-cache attribute of the generator.
+   *
+   * @param cache The 'fragment-cache' attribute
+   *
+   * @throws SAXException Only if thrown by underlying error handler.
+   */
+  private void handleFragmentCache(@Nullable String cache) throws SAXException {
+    if (cache == null) return;
+    if ("true".equals(cache) || "false".equals(cache)) {
+      this._builder.fragmentCache(Boolean.valueOf(cache));
+    } else {
+      warning("Ignoring illegal fragment-cache value '"+cache+"' for generator in service id "+this._builder.id());
+    }
+  }
+
   /**
    * Handles the loading of the content generator.
    *
@@ -409,17 +494,23 @@ final class ServicesHandler10 extends DefaultHandler {
    */
   private void handleGenerator(Attributes atts) throws SAXException {
     String className = atts.getValue("class");
-    ContentGenerator generator;
+    String key = toGeneratorKey(atts);
     try {
-      // Allow unspecified class (defaults to no content)
-      if (className == null || className.length() ==0) {
-        generator = new NoContent();
-      } else {
-        generator = (ContentGenerator)Class.forName(className).newInstance();
+      ContentGenerator generator = this._reusable.get(key);
+      if (generator == null) {
+        // Allow unspecified class (defaults to no content)
+        if (className == null || className.length() ==0) {
+          generator = new NoContent();
+        } else {
+          generator = (ContentGenerator)Class.forName(className).newInstance();
+        }
       }
+      this._generators.put(key, generator);
       this._builder.add(generator);
       this._builder.target(atts.getValue("target"));
       this._builder.name(atts.getValue("name"));
+      handleTimeout(atts.getValue("timeout"));
+      handleFragmentCache(atts.getValue("fragment-cache"));
     } catch (NoClassDefFoundError error) {
       ClassNotFoundException ex = new ClassNotFoundException("Class definition problem", error);
       warning("Failed to create generator "+className+" for service "+this._builder.id(), ex);
@@ -432,6 +523,27 @@ final class ServicesHandler10 extends DefaultHandler {
     }
   }
 
+  /**
+   * Returns the key identifying the generator by its position in the current service and its
+   * configuration.
+   *
+   * <p>The parameters are not part of the key since they are held by the service.
+   *
+   * @param atts The attributes of the 'generator' element.
+   *
+   * @return the key for the generator.
+   */
+  private String toGeneratorKey(Attributes atts) {
+    StringBuilder key = new StringBuilder();
+    key.append(this._builder.group()).append('/').append(this._builder.id());
+    key.append('#').append(this.generatorIndex++);
+    key.append(' ').append(atts.getValue("class"));
+    key.append(' ').append(atts.getValue("name"));
+    key.append(' ').append(atts.getValue("target"));
+    key.append(' ').append(atts.getValue("timeout"));
+    return key.toString();
+  }
+
   /**
    * Convenience method to report a warning to the underlying error handler.
    *
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.content;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.Beta;
+import org.pageseeder.berlioz.output.UniversalWriter;
+import org.pageseeder.berlioz.output.XmlUniversalAdapter;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+/**
+ * A content generator which writes its content using the universal API so that it can be
+ * output either as XML or as JSON.
+ *
+ * <p>When the output of a service is JSON and all its generators implement this interface, the
+ * content is written as JSON directly without producing XML to transform.
+ *
+ * <p>Otherwise, the content is written as XML using the {@link XmlUniversalAdapter}.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+@Beta
+public interface UniversalContentGenerator extends ContentGenerator {
+
+  /**
+   * Produces the actual content using the universal API.
+   *
+   * @param req The content request.
+   * @param out The universal output.
+   *
+   * @throws BerliozException If an exception is thrown, it should be wrapped into a Berlioz
+   *                         exception in order to provide additional details.
+   *
+   * @throws IOException    If an I/O error occurs while writing to the output.
+   */
+  void process(ContentRequest req, UniversalWriter out)
+    throws BerliozException, IOException;
+
+  /**
+   * Produces the content as XML using the universal API.
+   *
+   * @param req The content request.
+   * @param xml The XML output.
+   *
+   * @throws BerliozException If thrown by the generator.
+   * @throws IOException      If an I/O error occurs while writing to the XML writer.
+   */
+  @Override
+  default void process(ContentRequest req, XMLWriter xml)
+    throws BerliozException, IOException {
+    StringWriter writer = new StringWriter();
+    XmlUniversalAdapter out = new XmlUniversalAdapter(writer);
+    process(req, out);
+    out.flush();
+    xml.writeXML(writer.toString());
+  }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.furi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An immutable index over a list of URI patterns to find the best matching pattern for a URI
+ * without testing every pattern.
+ *
+ * <p>Patterns are organised in a radix tree keyed on their leading literal token, so that only
+ * the patterns whose literal prefix is a prefix of the URI are ever matched against it. The tree
+ * is walked from the deepest (longest) prefix upwards and stops as soon as no remaining pattern
+ * can score higher than the current best match.
+ *
+ * <p>The result is always the same as {@link URIResolver#find(List, URIResolver.MatchRule)} with
+ * the {@link URIResolver.MatchRule#BEST_MATCH} rule: the pattern with the highest score wins and
+ * if several patterns have the same score, the one which appears first in the list wins.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class URIPatternIndex {
+
+  /**
+   * The root of the radix tree, holds the patterns which do not start with a literal.
+   */
+  private final Node root;
+
+  /**
+   * The number of patterns in this index.
+   */
+  private final int size;
+
+  /**
+   * Creates a new index for the specified list of patterns.
+   *
+   * <p>The order of the list is significant when several patterns have the same score.
+   *
+   * @param patterns The URI patterns to index.
+   *
+   * @throws NullPointerException If the list or any pattern in the list is <code>null</code>
+   */
+  public URIPatternIndex(List<URIPattern> patterns) {
+    Objects.requireNonNull(patterns, "The list of patterns must be specified");
+    this.root = new Node("", null);
+    int order = 0;
+    for (URIPattern p : patterns) {
+      Objects.requireNonNull(p, "Cannot index a null pattern");
+      insert(this.root, prefix(p), new Candidate(p, p.score(), order++));
+    }
+    this.root.freeze(0);
+    this.size = order;
+  }
+
+  /**
+   * Returns the URI pattern which best matches the specified URI.
+   *
+   * @param uri The URI to match.
+   *
+   * @return The best URI pattern that matches or <code>null</code>.
+   */
+  public @Nullable URIPattern find(String uri) {
+    Hit hit = search(uri);
+    return hit != null ? hit.candidate.pattern : null;
+  }
+
+  /**
+   * Finds the URI pattern which best matches the specified URI and resolves its variables
+   * in the same pass.
+   *
+   * @param uri The URI to match.
+   *
+   * @return The resolve result for the best matching pattern or <code>null</code> if no pattern matches.
+   */
+  public @Nullable URIResolveResult resolve(String uri) {
+    return resolve(uri, new VariableBinder());
+  }
+
+  /**
+   * Finds the URI pattern which best matches the specified URI and resolves its variables
+   * in the same pass using the specified variable binder.
+   *
+   * @param uri    The URI to match.
+   * @param binder The variable binder.
+   *
+   * @return The resolve result for the best matching pattern or <code>null</code> if no pattern matches.
+   */
+  public @Nullable URIResolveResult resolve(String uri, VariableBinder binder) {
+    Hit hit = search(uri);
+    return hit != null ? URIResolver.resolve(hit.candidate.pattern, hit.matcher, binder) : null;
+  }
+
+  /**
+   * @return the number of patterns in this index.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  // private helpers ----------------------------------------------------------
+
+  /**
+   * Search for the best match.
+   *
+   * @param uri The URI to match
+   *
+   * @return the best match or <code>null</code>
+   */
+  private @Nullable Hit search(String uri) {
+    Objects.requireNonNull(uri, "Specified URI cannot be null");
+    Candidate best = null;
+    Matcher matcher = null;
+    for (Node n = descend(uri); n != null; n = n.parent) {
+      if (best != null && n.bound < best.score) {
+        break;
+      }
+      for (Candidate c : n.candidates) {
+        // Candidates are sorted so if this one cannot beat the best, none of the others can
+        if (best != null && !c.beats(best)) {
+          break;
+        }
+        Matcher m = c.pattern.pattern().matcher(uri);
+        if (m.matches()) {
+          best = c;
+          matcher = m;
+          break;
+        }
+      }
+    }
+    return best != null && matcher != null ? new Hit(best, matcher) : null;
+  }
+
+  /**
+   * Returns the deepest node whose full prefix is a prefix of the URI.
+   *
+   * @param uri The URI to match
+   *
+   * @return the deepest node matching the URI.
+   */
+  private Node descend(String uri) {
+    Node n = this.root;
+    int i = 0;
+    while (i < uri.length()) {
+      Node child = n.child(uri.charAt(i));
+      if (child == null || !uri.startsWith(child.label, i)) {
+        break;
+      }
+      n = child;
+      i += child.label.length();
+    }
+    return n;
+  }
+
+  /**
+   * Returns the leading literal text of the specified pattern.
+   *
+   * <p>Since a literal token is matched verbatim, any URI that the pattern matches starts
+   * with that text.
+   *
+   * @param pattern The URI pattern
+   *
+   * @return the leading literal text or an empty string.
+   */
+  private static String prefix(URIPattern pattern) {
+    StringBuilder prefix = new StringBuilder();
+    for (Token t : pattern.tokens()) {
+      if (!(t instanceof TokenLiteral)) {
+        break;
+      }
+      prefix.append(t.expression());
+    }
+    return prefix.toString();
+  }
+
+  /**
+   * Inserts the candidate into the tree, splitting nodes as required.
+   *
+   * @param root      The root of the tree
+   * @param key       The literal prefix of the pattern
+   * @param candidate The candidate
+   */
+  private static void insert(Node root, String key, Candidate candidate) {
+    Node n = root;
+    int i = 0;
+    while (i < key.length()) {
+      char c = key.charAt(i);
+      Node child = n.children.get(c);
+      if (child == null) {
+        child = new Node(key.substring(i), n);
+        n.children.put(c, child);
+        n = child;
+        break;
+      }
+      int common = commonPrefixLength(child.label, key, i);
+      if (common < child.label.length()) {
+        // Split the edge
+        Node split = new Node(child.label.substring(0, common), n);
+        n.children.put(c, split);
+        child.label = child.label.substring(common);
+        child.parent = split;
+        split.children.put(child.label.charAt(0), child);
+        child = split;
+      }
+      n = child;
+      i += common;
+    }
+    n.candidates.add(candidate);
+  }
+
+  /**
+   * Returns the length of the common prefix between the label and the key starting at the offset.
+   */
+  private static int commonPrefixLength(String label, String key, int offset) {
+    int max = Math.min(label.length(), key.length() - offset);
+    int i = 0;
+    while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * A node in the radix tree.
+   */
+  private static final class Node {
+
+    /**
+     * The label of the edge leading to this node.
+     */
+    String label;
+
+    /**
+     * The parent node.
+     */
+    @Nullable Node parent;
+
+    /**
+     * Children by first character while the tree is being built.
+     */
+    Map<Character, Node> children = new TreeMap<>();
+
+    /**
+     * The patterns whose literal prefix ends at this node.
+     */
+    List<Candidate> candidates = new ArrayList<>(1);
+
+    /**
+     * First character of each child sorted for binary search (once frozen).
+     */
+    char[] keys = new char[0];
+
+    /**
+     * Children in the same order as the keys (once frozen).
+     */
+    Node[] nodes = new Node[0];
+
+    /**
+     * The highest score of any candidate on this node or its ancestors.
+     */
+    int bound;
+
+    Node(String label, @Nullable Node parent) {
+      this.label = label;
+      this.parent = parent;
+    }
+
+    /**
+     * Returns the child for the specified character.
+     */
+    @Nullable Node child(char c) {
+      int i = Arrays.binarySearch(this.keys, c);
+      return i >= 0 ? this.nodes[i] : null;
+    }
+
+    /**
+     * Sorts candidates, computes the bounds and compacts the children into arrays.
+     *
+     * @param parentBound The bound of the parent node
+     */
+    void freeze(int parentBound) {
+      this.candidates.sort(null);
+      int max = parentBound;
+      for (Candidate c : this.candidates) {
+        max = Math.max(max, c.score);
+      }
+      this.bound = max;
+      this.keys = new char[this.children.size()];
+      this.nodes = new Node[this.children.size()];
+      int i = 0;
+      for (Map.Entry<Character, Node> e : this.children.entrySet()) {
+        this.keys[i] = e.getKey();
+        this.nodes[i] = e.getValue();
+        e.getValue().freeze(max);
+        i++;
+      }
+      this.children = new TreeMap<>();
+    }
+  }
+
+  /**
+   * A pattern with its score and position in the original list.
+   *
+   * <p>Candidates are ordered from the best to the worst match.
+   */
+  private static final class Candidate implements Comparable<Candidate> {
+
+    final URIPattern pattern;
+
+    final int score;
+
+    final int order;
+
+    Candidate(URIPattern pattern, int score, int order) {
+      this.pattern = pattern;
+      this.score = score;
+      this.order = order;
+    }
+
+    /**
+     * @return <code>true</code> if this candidate would be preferred over the specified one.
+     */
+    boolean beats(Candidate other) {
+      return this.score > other.score || (this.score == other.score && this.order < other.order);
+    }
+
+    @Override
+    public int compareTo(Candidate o) {
+      if (this.score != o.score) return this.score > o.score ? -1 : 1;
+      return Integer.compare(this.order, o.order);
+    }
+  }
+
+  /**
+   * The best candidate and the matcher which matched it.
+   */
+  private static final class Hit {
+
+    final Candidate candidate;
+
+    final Matcher matcher;
+
+    Hit(Candidate candidate, Matcher matcher) {
+      this.candidate = candidate;
+      this.matcher = matcher;
+    }
+  }
+
+}
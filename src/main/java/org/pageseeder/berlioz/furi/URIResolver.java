@@ -164,12 +164,28 @@ public final class URIResolver {
    * @return The URI pattern that best matches the given URI.
    */
   public URIResolveResult resolve(URIPattern pattern, VariableBinder binder) {
-    URIResolveResult result = new URIResolveResult(pattern);
     Matcher mx = pattern.pattern().matcher(this._uri);
-    boolean match = mx.matches();
-    // it is an error condition if there is no match
-    // or if the number of capturing groups is not the same as the number of tokens
-    if (!match || mx.groupCount() != pattern.tokens().size()) {
+    if (!mx.matches()) {
+      URIResolveResult result = new URIResolveResult(pattern);
+      result.setStatus(Status.ERROR);
+      return result;
+    }
+    return resolve(pattern, mx, binder);
+  }
+
+  /**
+   * Resolves the given URI pattern from a matcher which has already matched the URI.
+   *
+   * @param pattern The pattern to resolve.
+   * @param mx      The matcher for this pattern after a successful match.
+   * @param binder  The variable binder.
+   *
+   * @return The URI pattern that best matches the given URI.
+   */
+  static URIResolveResult resolve(URIPattern pattern, Matcher mx, VariableBinder binder) {
+    URIResolveResult result = new URIResolveResult(pattern);
+    // it is an error condition if the number of capturing groups is not the same as the number of tokens
+    if (mx.groupCount() != pattern.tokens().size()) {
       result.setStatus(Status.ERROR);
       return result;
     }
@@ -198,7 +214,7 @@ public final class URIResolver {
    * @param map    Values mapped to the variables.
    * @param binder The resolvers to use for each variable.
    */
-  private void lookup(URIResolveResult result, Map<Variable, Object> map, VariableBinder binder) {
+  private static void lookup(URIResolveResult result, Map<Variable, Object> map, VariableBinder binder) {
     Status status = Status.RESOLVED;
     // lookup variable values
     for (Map.Entry<Variable, Object> entry : map.entrySet()) {
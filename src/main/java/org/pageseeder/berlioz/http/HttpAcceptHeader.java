@@ -43,7 +43,7 @@ import org.eclipse.jdt.annotation.Nullable;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.6
  */
 public final class HttpAcceptHeader { // NO_UCD
@@ -138,6 +138,74 @@ public final class HttpAcceptHeader { // NO_UCD
     return false;
   }
 
+  /**
+   * Returns the quality value of the specified value in the given 'Accept' header.
+   *
+   * <p>Unlike {@link #accepts(Map, String)}, this method only considers the "*" wildcard and
+   * does not handle content types.
+   *
+   * @param accept An accept map produced by this class.
+   * @param value  The value to look for.
+   *
+   * @return the Q value for the specified value or 0 if not specified.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static float quality(Map<String, Float> accept, String value) {
+    Float q = accept.get(value);
+    if (q == null) {
+      q = accept.get("*");
+    }
+    return q != null? q.floatValue() : 0.0f;
+  }
+
+  /**
+   * Returns the media type preferred by the client among the specified media types.
+   *
+   * <p>Each media type is given the quality value of the most specific media range in the
+   * 'Accept' header which matches it: the media type itself, then "type/*", then "*&#47;*".
+   * Parameters of the media ranges other than the quality value are ignored.
+   *
+   * <p>When several media types have the same quality value, the one matched by the most
+   * specific media range is preferred, then the first one specified.
+   *
+   * @param accept An accept map produced by this class.
+   * @param types  The media types to choose from.
+   *
+   * @return the preferred media type or <code>null</code> if none is acceptable.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static @Nullable String preferred(Map<String, Float> accept, String... types) {
+    String preferred = null;
+    float best = 0.0f;
+    int specificity = -1;
+    for (String type : types) {
+      int slash = type.indexOf('/');
+      String range = slash >= 0? type.substring(0, slash)+"/*" : type;
+      float q = 0.0f;
+      int s = -1;
+      for (Map.Entry<String, Float> e : accept.entrySet()) {
+        String key = e.getKey();
+        int semi = key.indexOf(';');
+        if (semi >= 0) {
+          key = key.substring(0, semi).trim();
+        }
+        int match = key.equalsIgnoreCase(type)? 2 : key.equalsIgnoreCase(range)? 1 : "*/*".equals(key)? 0 : -1;
+        if (match > s) {
+          s = match;
+          q = e.getValue().floatValue();
+        }
+      }
+      if (q > 0.0f && (q > best || (q == best && s > specificity))) {
+        preferred = type;
+        best = q;
+        specificity = s;
+      }
+    }
+    return preferred;
+  }
+
   /**
    * Parses the accept header and returns the corresponding map.
    *
@@ -148,10 +216,10 @@ public final class HttpAcceptHeader { // NO_UCD
     Map<String, Float> values = new LinkedHashMap<>();
     StringTokenizer t = new StringTokenizer(accept, ",");
     while (t.hasMoreElements()) {
-      String token = t.nextToken();
+      String token = t.nextToken().trim();
       Matcher m = ACCEPT_WITH_QVALUE.matcher(token);
       if (m.matches()) {
-        values.put(m.group(1), Float.parseFloat(m.group(2)));
+        values.put(m.group(1).trim(), Float.parseFloat(m.group(2)));
       } else {
         values.put(token, 1.0f);
       }
@@ -20,6 +20,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 
@@ -37,7 +38,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.6
  */
 public final class HttpHeaderUtils {
@@ -100,9 +101,35 @@ public final class HttpHeaderUtils {
    */
   public static boolean checkIfHeaders(HttpServletRequest request, HttpServletResponse response, EntityInfo info)
       throws IOException {
+    String encoding = isCompressible(info.getMimeType())? getContentEncoding(request) : null;
+    return checkIfHeaders(request, response, info, encoding);
+  }
+
+  /**
+   * Check if the conditions specified in the optional If headers require further processing from the servlet.
+   *
+   * <p>This method behaves like {@link #checkIfHeaders(HttpServletRequest, HttpServletResponse, EntityInfo)}
+   * except that the content encoding of the variant that would be sent is specified by the caller so that
+   * the ETag returned with a <code>304 Not Modified</code> response matches that variant.
+   *
+   * @param request  The servlet request we are processing.
+   * @param response The servlet response we are creating.
+   * @param info     The entity information.
+   * @param encoding The content encoding of the variant that would be sent (<code>null</code> if not compressed)
+   *
+   * @return <code>true</code> if the entity info fail to meet all the specified conditions, continue processing;
+   *         <code>false</code> if the any entity info meets any the specified conditions,
+   *         further processing is unnecessary.
+   *
+   * @throws IOException If thrown during checking.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static boolean checkIfHeaders(HttpServletRequest request, HttpServletResponse response, EntityInfo info,
+      @Nullable String encoding) throws IOException {
     return checkIfMatch(request, response, info)
-        && checkIfModifiedSince(request, response, info)
-        && checkIfNoneMatch(request, response, info)
+        && checkIfModifiedSince(request, response, info, encoding)
+        && checkIfNoneMatch(request, response, info, encoding)
         && checkIfUnmodifiedSince(request, response, info);
   }
 
@@ -158,15 +185,17 @@ public final class HttpHeaderUtils {
    *
    * @see <a href="http://tools.ietf.org/html/rfc2616#section-14.25">HTTP/1.1 - 14.25 If-Modified-Since</a>
    *
-   * @param req  The servlet request we are processing
-   * @param res  The servlet response we are creating
-   * @param info Resource metadata
+   * @param req      The servlet request we are processing
+   * @param res      The servlet response we are creating
+   * @param info     Resource metadata
+   * @param encoding The content encoding of the variant that would be sent
    *
    * @return <code>true</code> if the resource meets the specified condition;
    *         <code>false</code> if the condition is not satisfied, in which case request processing is stopped.
    *
    */
-  protected static boolean checkIfModifiedSince(HttpServletRequest req, HttpServletResponse res, EntityInfo info) {
+  protected static boolean checkIfModifiedSince(HttpServletRequest req, HttpServletResponse res, EntityInfo info,
+      @Nullable String encoding) {
     try {
       long headerValue = req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
       long lastModified = info.getLastModified();
@@ -175,11 +204,8 @@ public final class HttpHeaderUtils {
         if ((req.getHeader(HttpHeaders.IF_NONE_MATCH) == null) && (lastModified < headerValue + 1000)) {
           // The entity has not been modified since the date specified by the client. This is not an error case.
           res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-          String etag = info.getETag();
-          // Use the GZIP ETag for compressible resources
-          if (isCompressible(info.getMimeType()) && acceptsGZipCompression(req)) {
-            etag = getETagForGZip(etag);
-          }
+          // Use the ETag of the variant that would be sent
+          String etag = encoding != null? getETagForEncoding(info.getETag(), encoding) : info.getETag();
           res.setHeader(HttpHeaders.ETAG, etag);
           LOGGER.debug("If-Modified-Since check: NOT MODIFIED, etag={}", etag);
           return false;
@@ -197,24 +223,24 @@ public final class HttpHeaderUtils {
    *
    * @see <a href="http://tools.ietf.org/html/rfc2616#section-14.26">HTTP/1.1 - 14.26 If-None-Match</a>
    *
-   * @param req  The servlet request we are processing
-   * @param res  The servlet response we are creating
-   * @param info Resource metadata
+   * @param req      The servlet request we are processing
+   * @param res      The servlet response we are creating
+   * @param info     Resource metadata
+   * @param encoding The content encoding of the variant that would be sent
    *
    * @return <code>true</code> if the resource meets the specified condition;
    *         <code>false</code> if the condition is not satisfied, in which case request processing is stopped.
    *
    * @throws IOException If thrown while setting the response status code.
    */
-  protected static boolean checkIfNoneMatch(HttpServletRequest req, HttpServletResponse res, EntityInfo info)
-      throws IOException {
+  protected static boolean checkIfNoneMatch(HttpServletRequest req, HttpServletResponse res, EntityInfo info,
+      @Nullable String encoding) throws IOException {
 
     String eTag = info.getETag();
     String headerValue = req.getHeader(HttpHeaders.IF_NONE_MATCH);
     if (headerValue != null) {
 
       boolean conditionSatisfied = false;
-      boolean isGZIP = false;
 
       if (!"*".equals(headerValue)) {
 
@@ -222,11 +248,11 @@ public final class HttpHeaderUtils {
 
         while (!conditionSatisfied && commaTokenizer.hasMoreTokens()) {
           String currentToken = commaTokenizer.nextToken().trim();
-          // Handle ETags of GZipped resources
-          isGZIP = false;
+          // Handle ETags of compressed resources
           if (currentToken.endsWith("-gzip\"")) {
             currentToken = currentToken.substring(0, currentToken.length()-6) +'\"';
-            isGZIP = true;
+          } else if (currentToken.endsWith("-deflate\"")) {
+            currentToken = currentToken.substring(0, currentToken.length()-9) +'\"';
           }
           if (currentToken.equals(eTag)) {
             conditionSatisfied = true;
@@ -241,7 +267,7 @@ public final class HttpHeaderUtils {
         // For GET and HEAD, we should respond with 304 Not Modified.
         // For every other method, 412 Precondition Failed is sent back.
         if (("GET".equals(req.getMethod())) || ("HEAD".equals(req.getMethod()))) {
-          eTag = isGZIP? getETagForGZip(eTag) : eTag;
+          eTag = encoding != null? getETagForEncoding(eTag, encoding) : eTag;
           res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
           res.setHeader(HttpHeaders.ETAG, eTag);
           LOGGER.debug("If-None-Match check: match etag={}", eTag);
@@ -302,6 +328,28 @@ public final class HttpHeaderUtils {
     return HttpAcceptHeader.accepts(encoding, "gzip");
   }
 
+  /**
+   * Returns the content encoding to use for compressed responses.
+   *
+   * <p>The client's preferred encoding among "gzip" and "deflate" is returned based on the
+   * quality values of the 'Accept-Encoding' header; "gzip" is preferred when both are equally
+   * acceptable.
+   *
+   * @param req The HTTP servlet request.
+   *
+   * @return "gzip", "deflate" or <code>null</code> if the client accepts neither.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static @Nullable String getContentEncoding(HttpServletRequest req) {
+    Map<String, Float> accept = HttpAcceptHeader.get(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    float gzip = HttpAcceptHeader.quality(accept, "gzip");
+    float deflate = HttpAcceptHeader.quality(accept, "deflate");
+    if (gzip > 0.0f && gzip >= deflate) return "gzip";
+    if (deflate > 0.0f) return "deflate";
+    return null;
+  }
+
   /**
    * Sets the content length handling the case when the value is larger than Max Integer.
    *
@@ -345,6 +393,21 @@ public final class HttpHeaderUtils {
     return (q > 0)? etag.substring(0, q)+"-gzip\"" : etag;
   }
 
+  /**
+   * Returns the entity tag for a response compressed with the specified content encoding.
+   *
+   * @param etag     the entity tag of the response before compression.
+   * @param encoding the content encoding.
+   * @return the entity tag of the compressed response.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static @Nullable String getETagForEncoding(@Nullable String etag, String encoding) {
+    if (etag == null) return null;
+    int q = etag.lastIndexOf("\"");
+    return (q > 0)? etag.substring(0, q)+'-'+encoding+'"' : etag;
+  }
+
   /**
    * Returns the entity tag for an uncompressed response.
    *
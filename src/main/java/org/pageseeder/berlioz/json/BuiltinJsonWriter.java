@@ -23,7 +23,7 @@ import java.util.Arrays;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.12.0
  */
 final class BuiltinJsonWriter implements JsonWriter {
@@ -56,7 +56,7 @@ final class BuiltinJsonWriter implements JsonWriter {
   public JsonWriter startArray(String name) {
     push(']');
     maybeAppendComma(true);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
     this._json.append('[');
     return this;
@@ -82,7 +82,7 @@ final class BuiltinJsonWriter implements JsonWriter {
   public JsonWriter startObject(String name) {
     push('}');
     maybeAppendComma(true);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
     this._json.append('{');
     return this;
@@ -104,10 +104,30 @@ final class BuiltinJsonWriter implements JsonWriter {
     return this;
   }
 
+  @Override
+  public JsonWriter startArray(JsonName name) {
+    push(']');
+    maybeAppendComma(true);
+    this._json.write(name.quoted());
+    this._json.append(':');
+    this._json.append('[');
+    return this;
+  }
+
+  @Override
+  public JsonWriter startObject(JsonName name) {
+    push('}');
+    maybeAppendComma(true);
+    this._json.write(name.quoted());
+    this._json.append(':');
+    this._json.append('{');
+    return this;
+  }
+
   @Override
   public JsonWriter nullValue(String name) {
     maybeAppendComma(false);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
     this._json.append("null");
     return this;
@@ -137,7 +157,7 @@ final class BuiltinJsonWriter implements JsonWriter {
   @Override
   public JsonWriter value(String value) {
     maybeAppendComma(false);
-    appendJSONString(value);
+    appendJSONString(value, this._json);
     return this;
   }
 
@@ -151,7 +171,7 @@ final class BuiltinJsonWriter implements JsonWriter {
   @Override
   public JsonWriter name(String name) {
     maybeAppendComma(false);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
     this.needComma = false;
     return this;
@@ -160,16 +180,16 @@ final class BuiltinJsonWriter implements JsonWriter {
   @Override
   public JsonWriter field(String name, String value) {
     maybeAppendComma(false);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
-    appendJSONString(value);
+    appendJSONString(value, this._json);
     return this;
   }
 
   @Override
   public JsonWriter field(String name, boolean value) {
     maybeAppendComma(false);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
     appendJsonBoolean(value);
     return this;
@@ -178,7 +198,7 @@ final class BuiltinJsonWriter implements JsonWriter {
   @Override
   public JsonWriter field(String name, double value) {
     maybeAppendComma(false);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
     this._json.append(':');
     appendJsonDouble(value);
     return this;
@@ -187,7 +207,52 @@ final class BuiltinJsonWriter implements JsonWriter {
   @Override
   public JsonWriter field(String name, long value) {
     maybeAppendComma(false);
-    appendJSONString(name);
+    appendJSONString(name, this._json);
+    this._json.append(':');
+    appendJsonLong(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(JsonName name) {
+    maybeAppendComma(false);
+    this._json.write(name.quoted());
+    this._json.append(':');
+    this.needComma = false;
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, String value) {
+    maybeAppendComma(false);
+    this._json.write(name.quoted());
+    this._json.append(':');
+    appendJSONString(value, this._json);
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, boolean value) {
+    maybeAppendComma(false);
+    this._json.write(name.quoted());
+    this._json.append(':');
+    appendJsonBoolean(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, double value) {
+    maybeAppendComma(false);
+    this._json.write(name.quoted());
+    this._json.append(':');
+    appendJsonDouble(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, long value) {
+    maybeAppendComma(false);
+    this._json.write(name.quoted());
     this._json.append(':');
     appendJsonLong(value);
     return this;
@@ -208,38 +273,44 @@ final class BuiltinJsonWriter implements JsonWriter {
     this._json.flush();
   }
 
-  private void appendJSONString(String s) {
-    this._json.append('"');
+  /**
+   * Appends the specified string escaped and quoted as a JSON string.
+   *
+   * @param s    The string to append
+   * @param json Where the JSON goes
+   */
+  static void appendJSONString(String s, PrintWriter json) {
+    json.append('"');
     final int _length = s.length();
     for (int i = 0; i < _length; i++) {
       char c = s.charAt(i);
       switch (c) {
         case '\n':
-          this._json.append('\\').append('n');
+          json.append('\\').append('n');
           break;
         case '\r':
-          this._json.append('\\').append('r');
+          json.append('\\').append('r');
           break;
         case '\t':
-          this._json.append('\\').append('t');
+          json.append('\\').append('t');
           break;
         case '"':
-          this._json.append('\\').append('"');
+          json.append('\\').append('"');
           break;
         case '\\':
-          this._json.append('\\').append('\\');
+          json.append('\\').append('\\');
           break;
         default:
           if (c < 0x10) {
-            this._json.append("\\u000").append(Integer.toHexString(c));
+            json.append("\\u000").append(Integer.toHexString(c));
           } else if (c < 0x20) {
-            this._json.append("\\u00").append(Integer.toHexString(c));
+            json.append("\\u00").append(Integer.toHexString(c));
           } else {
-            this._json.append(c);
+            json.append(c);
           }
       }
     }
-    this._json.append('"');
+    json.append('"');
   }
 
   private void appendJsonLong(long number) {
@@ -257,18 +328,17 @@ final class BuiltinJsonWriter implements JsonWriter {
   private void maybeAppendComma(boolean newContext) {
     if (this.needComma) {
       this._json.append(',');
-    } else if (!newContext) {
-      this.needComma = true;
     }
+    // No comma before the first value of a new context
+    this.needComma = !newContext;
   }
 
   private void push(char c) {
     this.level++;
-    if (this.level < this.closer.length) {
-      this.closer[this.level] = c;
-    } else {
+    if (this.level >= this.closer.length) {
       this.closer = Arrays.copyOf(this.closer, this.closer.length*2);
     }
+    this.closer[this.level] = c;
   }
 
 }
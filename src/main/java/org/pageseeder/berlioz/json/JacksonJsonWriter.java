@@ -21,13 +21,15 @@ import java.io.Writer;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 /**
  * An implementation of a JSON Writer backed by Jackson library.
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.12.0
  */
 final class JacksonJsonWriter implements JsonWriter {
@@ -227,6 +229,82 @@ final class JacksonJsonWriter implements JsonWriter {
     return this;
   }
 
+  @Override
+  public JsonWriter startArray(JsonName name) {
+    try {
+      this._json.writeFieldName(encode(name));
+      this._json.writeStartArray();
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter startObject(JsonName name) {
+    try {
+      this._json.writeFieldName(encode(name));
+      this._json.writeStartObject();
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(JsonName name) {
+    try {
+      this._json.writeFieldName(encode(name));
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, String value) {
+    try {
+      this._json.writeFieldName(encode(name));
+      this._json.writeString(value);
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, boolean value) {
+    try {
+      this._json.writeFieldName(encode(name));
+      this._json.writeBoolean(value);
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, double value) {
+    try {
+      this._json.writeFieldName(encode(name));
+      this._json.writeNumber(value);
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
+  @Override
+  public JsonWriter field(JsonName name, long value) {
+    try {
+      this._json.writeFieldName(encode(name));
+      this._json.writeNumber(value);
+    } catch (IOException ex) {
+      throw new JsonWriteFailureException(ex);
+    }
+    return this;
+  }
+
   @Override
   public boolean inObject() {
     return this._json.getOutputContext().inObject();
@@ -250,6 +328,22 @@ final class JacksonJsonWriter implements JsonWriter {
     }
   }
 
+  /**
+   * Returns the Jackson serialized string for the specified name, keeping it with the name so
+   * that it is only encoded once.
+   *
+   * @param name The JSON name
+   *
+   * @return the corresponding serialized string
+   */
+  private static SerializableString encode(JsonName name) {
+    Object encoded = name.encoded;
+    if (encoded instanceof SerializableString) return (SerializableString)encoded;
+    SerializableString serialized = new SerializedString(name.value());
+    name.encoded = serialized;
+    return serialized;
+  }
+
   /**
    * Always return a JSON Writer.
    *
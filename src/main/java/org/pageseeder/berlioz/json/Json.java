@@ -18,6 +18,7 @@ package org.pageseeder.berlioz.json;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +28,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.12.0
  */
 public class Json {
@@ -139,6 +140,16 @@ public class Json {
 
   }
 
+  /**
+   * The maximum number of names kept in the name cache, the cache is cleared when it is full.
+   */
+  private static final int MAX_NAMES = 2048;
+
+  /**
+   * The JSON names in camel case by name.
+   */
+  private static final ConcurrentHashMap<String, JsonName> NAMES = new ConcurrentHashMap<>();
+
   /** Indicates whether we have identified our json provider. */
   private static volatile JsonProvider provider = JsonProvider.UNKNOWN;
 
@@ -182,7 +193,35 @@ public class Json {
    */
   public static String camelify(String name) {
     int dash = name.indexOf('-');
-    return dash < 0? name : camelify(name, dash);
+    if (dash < 0) return name;
+    // Only use the cached name if available to avoid encoding names which are not cached
+    JsonName json = NAMES.get(name);
+    return json != null? json.value() : camelify(name, dash);
+  }
+
+  /**
+   * Returns the pre-encoded JSON name in camel case for the specified name.
+   *
+   * <p>Names are cached so that the same few field names used by generators are only converted
+   * and encoded once. Once the cache is full, it is cleared so that names which are no longer
+   * used, such as dynamic keys, do not prevent the names used often from being cached.
+   *
+   * @param name the name in snake-case
+   * @return The corresponding JSON name in camel case
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static JsonName toName(String name) {
+    JsonName json = NAMES.get(name);
+    if (json == null) {
+      int dash = name.indexOf('-');
+      json = JsonName.of(dash < 0? name : camelify(name, dash));
+      if (NAMES.size() >= MAX_NAMES) {
+        NAMES.clear();
+      }
+      NAMES.putIfAbsent(name, json);
+    }
+    return json;
   }
 
   private static String camelify(String name, int from) {
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.json;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The name of a JSON field encoded once so that it can be written many times.
+ *
+ * <p>JSON writers which support pre-encoded names write the quoted name directly instead of
+ * escaping it every time. Other writers simply use the name.
+ *
+ * <p>Names are usually obtained from {@link Json#toName(String)} which caches the camel case
+ * names written by the universal API.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class JsonName {
+
+  /**
+   * The name.
+   */
+  private final String _name;
+
+  /**
+   * The name escaped and quoted as a JSON string.
+   */
+  private final String _quoted;
+
+  /**
+   * The name as encoded by a specific JSON implementation (for example Jackson's
+   * <code>SerializableString</code>), computed when first needed.
+   */
+  @Nullable Object encoded;
+
+  /**
+   * @param name The name
+   */
+  private JsonName(String name) {
+    this._name = name;
+    StringWriter quoted = new StringWriter(name.length() + 2);
+    BuiltinJsonWriter.appendJSONString(name, new PrintWriter(quoted));
+    this._quoted = quoted.toString();
+  }
+
+  /**
+   * Returns the JSON name for the specified name.
+   *
+   * @param name The name as is
+   *
+   * @return the corresponding JSON name.
+   */
+  public static JsonName of(String name) {
+    return new JsonName(name);
+  }
+
+  /**
+   * @return the name.
+   */
+  public String value() {
+    return this._name;
+  }
+
+  /**
+   * @return the name escaped and quoted as a JSON string.
+   */
+  String quoted() {
+    return this._quoted;
+  }
+
+  @Override
+  public String toString() {
+    return this._name;
+  }
+
+}
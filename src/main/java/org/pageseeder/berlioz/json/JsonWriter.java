@@ -31,8 +31,8 @@ import java.util.Map;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.12.0
- * @version Berlioz 0.12.0
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.12.0
  */
 public interface JsonWriter extends AutoCloseable, Flushable {
 
@@ -172,6 +172,94 @@ public interface JsonWriter extends AutoCloseable, Flushable {
    */
   JsonWriter field(String name, long value);
 
+  /**
+   * Start writing a JSON array in the context of an object using a pre-encoded name.
+   *
+   * @param name The name of the array
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter startArray(JsonName name) {
+    return startArray(name.value());
+  }
+
+  /**
+   * Start writing a JSON object in the context of an object using a pre-encoded name.
+   *
+   * @param name The name of the object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter startObject(JsonName name) {
+    return startObject(name.value());
+  }
+
+  /**
+   * Writes a pre-encoded JSON name in the current object context.
+   *
+   * @param name a name in the JSON name/value pair to be written in current JSON object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter name(JsonName name) {
+    return name(name.value());
+  }
+
+  /**
+   * Writes a JSON name/string value pair in the current object context using a pre-encoded name.
+   *
+   * @param name a name in the JSON name/value pair to be written in current JSON object
+   * @param value a value in the JSON name/value pair to be written in current JSON object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter field(JsonName name, String value) {
+    return field(name.value(), value);
+  }
+
+  /**
+   * Writes a JSON name/boolean value pair in the current object context using a pre-encoded name.
+   *
+   * @param name a name in the JSON name/value pair to be written in current JSON object
+   * @param value a value in the JSON name/value pair to be written in current JSON object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter field(JsonName name, boolean value) {
+    return field(name.value(), value);
+  }
+
+  /**
+   * Writes a JSON name/number value pair in the current object context using a pre-encoded name.
+   *
+   * @param name a name in the JSON name/value pair to be written in current JSON object
+   * @param value a value in the JSON name/value pair to be written in current JSON object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter field(JsonName name, double value) {
+    return field(name.value(), value);
+  }
+
+  /**
+   * Writes a JSON name/number value pair in the current object context using a pre-encoded name.
+   *
+   * @param name a name in the JSON name/value pair to be written in current JSON object
+   * @param value a value in the JSON name/value pair to be written in current JSON object
+   * @return this instance.
+   *
+   * @since Berlioz 0.13.0
+   */
+  default JsonWriter field(JsonName name, long value) {
+    return field(name.value(), value);
+  }
+
   /**
    * Writes a map of Object properties.
    *
@@ -58,28 +58,28 @@ public class JsonUniversalAdapter implements UniversalWriter {
 
   @Override
   public final void field(String name, boolean value, FieldOption option) {
-    this._json.field(Json.camelify(name), value);
+    this._json.field(Json.toName(name), value);
   }
 
   @Override
   public final void field(String name, long value, FieldOption option) {
-    this._json.field(Json.camelify(name), value);
+    this._json.field(Json.toName(name), value);
   }
 
   @Override
   public final void field(String name, double value, FieldOption option) {
-    this._json.field(Json.camelify(name), value);
+    this._json.field(Json.toName(name), value);
   }
 
   @Override
   public final void field(String name, String value, FieldOption option) {
-    this._json.field(Json.camelify(name), value);
+    this._json.field(Json.toName(name), value);
   }
 
   @Override
   public void startObject(String name, ContextOption option) {
     if (this._json.inObject()) {
-      this._json.startObject(Json.camelify(name));
+      this._json.startObject(Json.toName(name));
     } else {
       this._json.startObject();
     }
@@ -93,7 +93,7 @@ public class JsonUniversalAdapter implements UniversalWriter {
   @Override
   public void startArray(String name, ContextOption option) {
     if (this._json.inObject()) {
-      this._json.startArray(Json.camelify(name));
+      this._json.startArray(Json.toName(name));
     } else {
       this._json.startArray();
     }
@@ -22,15 +22,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.BerliozException;
 import org.pageseeder.berlioz.BerliozOption;
 import org.pageseeder.berlioz.GlobalSettings;
-import org.pageseeder.berlioz.LifecycleListener;
 import org.pageseeder.berlioz.InitEnvironment;
+import org.pageseeder.berlioz.LifecycleListener;
+import org.pageseeder.berlioz.bundler.BundleWarmup;
+import org.pageseeder.berlioz.bundler.BundleWatcher;
+import org.pageseeder.berlioz.bundler.WebBundleTool;
+import org.pageseeder.berlioz.content.ServiceLoader;
 import org.pageseeder.berlioz.servlet.Overlays.Overlay;
 import org.slf4j.ILoggerFactory;
 import org.slf4j.LoggerFactory;
@@ -38,7 +44,7 @@ import org.slf4j.LoggerFactory;
 /**
  * This class initializes a Berlioz application.
  *
- * @version Berlioz 0.11.5
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.11.0
  */
 public abstract class AppInitializer {
@@ -83,6 +89,7 @@ public abstract class AppInitializer {
    *   <li>Overlays deployment</li>
    *   <li>Logging</li>
    *   <li>Lifecycle listeners are started with {@link LifecycleListener#start()}</li>
+   *   <li>Services are loaded and their web bundles are built (see {@link BundleWarmup})</li>
    * </ol>
    */
   public final void init() {
@@ -131,6 +138,9 @@ public abstract class AppInitializer {
     // Send 'start' event to lifecycle listener (after the configuration is loaded)
     startListeners();
 
+    // Build the web bundles before accepting requests
+    warmupBundles();
+
     // All done
     console(Phase.INIT, "Done!");
     console(Phase.INIT, "===============================================================");
@@ -159,6 +169,15 @@ public abstract class AppInitializer {
       console(Phase.STOP, "Lifecycle: OK (No listener)");
     }
 
+    // Stop the threads used to invoke generators concurrently
+    GeneratorExecutor.shutdown();
+
+    // Stop watching the bundled files
+    BundleWatcher.shutdown();
+
+    // Stop the threads used to build the bundles
+    WebBundleTool.shutdown();
+
     console(Phase.STOP, "Bye now!");
     console(Phase.STOP, "===============================================================");
   }
@@ -857,6 +876,31 @@ public abstract class AppInitializer {
     }
   }
 
+  // Web bundles
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Loads the services and builds their web bundles unless <code>berlioz.bundler.warmup</code>
+   * is set to <code>false</code>.
+   */
+  private void warmupBundles() {
+    if (!GlobalSettings.get("berlioz.bundler.warmup", true)) {
+      console(Phase.INIT, "Bundles: warm-up disabled");
+      return;
+    }
+    try {
+      ServiceLoader loader = ServiceLoader.getInstance();
+      loader.loadIfRequired();
+      long budget = TimeUnit.SECONDS.toMillis(GlobalSettings.get("berlioz.bundler.warmup-budget", 30));
+      BundleWarmup warmup = BundleWarmup.warmup(loader.getDefaultRegistry(), this._webinf.getAbsoluteFile().getParentFile(), budget);
+      if (warmup.bundles() > 0) {
+        console(Phase.INIT, "Bundles: warmed up "+warmup);
+      }
+    } catch (BerliozException ex) {
+      console(Phase.INIT, "Bundles: (!) Unable to load services: "+ex.getMessage());
+    }
+  }
+
   /**
    * Returns the relative path to the given file if possible.
    *
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -39,6 +40,7 @@ import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.content.Environment;
 import org.pageseeder.berlioz.content.GeneratorListener;
 import org.pageseeder.berlioz.content.Service;
+import org.pageseeder.berlioz.output.OutputType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,7 +49,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.8.1
  */
 public final class BerliozConfig {
@@ -94,6 +96,11 @@ public final class BerliozConfig {
    */
   private String _contentType;
 
+  /**
+   * The type of output the servlet is configured to produce.
+   */
+  private final OutputType _outputType;
+
   /**
    * Set the default cache control for this Berlioz instance.
    */
@@ -119,6 +126,11 @@ public final class BerliozConfig {
    */
   private final boolean _compression;
 
+  /**
+   * The compression level to use for HTTP compression.
+   */
+  private final int _compressionLevel;
+
   /**
    * The environment.
    */
@@ -156,6 +168,7 @@ public final class BerliozConfig {
     this._fallbackStyleSheet = this.getInitParameter("fallback-stylesheet", "");
     this._transformers = this._allocation != TransformAllocation.NIL? new ConcurrentHashMap<>() : Collections.emptyMap();
     this._contentType = this.getInitParameter("content-type", "text/html;charset=utf-8");
+    this._outputType = this._contentType.startsWith(OutputType.JSON.getMediaType())? OutputType.JSON : OutputType.XML;
     if ("IDENTITY".equals(this._stylePath) && !this._contentType.contains("xml")) {
       LOGGER.warn("Servlet {} specified content type {} but output is XML", servletConfig.getServletName(), this._contentType);
     }
@@ -166,6 +179,7 @@ public final class BerliozConfig {
     this._cacheControl = this.getInitParameter("cache-control", cacheControl);
     this._controlKey = this.getInitParameter("berlioz-control", GlobalSettings.get(BerliozOption.XML_CONTROL_KEY));
     this._compression = this.getInitParameter("http-compression", GlobalSettings.has(BerliozOption.HTTP_COMPRESSION));
+    this._compressionLevel = toCompressionLevel(GlobalSettings.getInt(BerliozOption.HTTP_COMPRESSION_LEVEL));
     this._env = new HttpEnvironment(contextPath, webinfPath, this._cacheControl);
     this.etagSeed = getEtagSeed();
   }
@@ -199,6 +213,8 @@ public final class BerliozConfig {
    */
   public void resetETagSeed() {
     this.etagSeed = newEtagSeed();
+    ResponseCache.getInstance().clear();
+    FragmentCache.getInstance().clear();
   }
 
   /**
@@ -229,6 +245,20 @@ public final class BerliozConfig {
     return this._contentType;
   }
 
+  /**
+   * Returns the type of output this servlet was configured to produce.
+   *
+   * <p>This is JSON when the <code>content-type</code> initialisation parameter is
+   * <code>application/json</code>; otherwise it is XML, whether or not it is transformed.
+   *
+   * @return the type of output based on the initial content type.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public OutputType getOutputType() {
+    return this._outputType;
+  }
+
   /**
    * Indicates whether HTTP compression is enabled for the Berlioz configuration.
    *
@@ -239,6 +269,15 @@ public final class BerliozConfig {
     return this._compression;
   }
 
+  /**
+   * Returns the compression level to use for HTTP compression.
+   *
+   * @return the compression level from 0 to 9 or -1 for the default compression level.
+   */
+  public int getCompressionLevel() {
+    return this._compressionLevel;
+  }
+
   /**
    * Sets the content type.
    * @param contentType the content type.
@@ -373,6 +412,20 @@ public final class BerliozConfig {
     return (value != null)? "true".equals(value) : def;
   }
 
+  /**
+   * Returns a valid compression level.
+   *
+   * @param level The compression level specified in the global settings.
+   * @return the compression level or -1 if the level is invalid.
+   */
+  private static int toCompressionLevel(int level) {
+    if (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION) return level;
+    if (level != Deflater.DEFAULT_COMPRESSION) {
+      LOGGER.warn("Invalid HTTP compression level {}, using default", level);
+    }
+    return Deflater.DEFAULT_COMPRESSION;
+  }
+
   /**
    * Expiry date is a year from now.
    * @return One year into the future.
@@ -16,9 +16,13 @@
 package org.pageseeder.berlioz.servlet;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.servlet.RequestDispatcher;
@@ -28,20 +32,25 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.transform.TransformerException;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.BerliozException;
 import org.pageseeder.berlioz.BerliozOption;
 import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.OptionSnapshot;
 import org.pageseeder.berlioz.content.ContentStatus;
 import org.pageseeder.berlioz.content.MatchingService;
 import org.pageseeder.berlioz.content.ServiceLoader;
 import org.pageseeder.berlioz.content.ServiceRegistry;
 import org.pageseeder.berlioz.http.*;
+import org.pageseeder.berlioz.output.OutputType;
 import org.pageseeder.berlioz.servlet.XSLTransformResult.Status;
 import org.pageseeder.berlioz.util.CharsetUtils;
+import org.pageseeder.berlioz.util.CompressedOutputStream;
 import org.pageseeder.berlioz.util.EntityInfo;
+import org.pageseeder.berlioz.util.FragmentBuffer;
 import org.pageseeder.berlioz.util.MD5;
 import org.pageseeder.berlioz.util.ProfileFormat;
 import org.pageseeder.berlioz.util.ResourceCompressor;
@@ -90,9 +99,30 @@ import org.slf4j.LoggerFactory;
  * The control key is a string that must be supplied as a parameter whenever one of the admin
  * parameters is used. Use the initialisation parameters to define a control key.
  *
+ * <h3>Streaming</h3>
+ *
+ * <p>When the XSLT streaming global option is enabled, the XML content is streamed into the XSLT
+ * transformer and the results of the transformation are written directly to the response.
+ * Otherwise, the XML content and the results of the transformation are buffered.
+ *
+ * <h3>Response cache</h3>
+ *
+ * <p>When the HTTP response cache global option is set, the output of cacheable services is kept
+ * in memory and reused for as long as the Etag is unchanged. Responses served from the cache do
+ * not invoke the generators or the XSLT transformation. The output of these services is always
+ * buffered so that it can be stored.
+ *
+ * <h3>JSON</h3>
+ *
+ * <p>When all the generators of a service implement the
+ * {@link org.pageseeder.berlioz.content.UniversalContentGenerator} interface and the output is
+ * JSON, the generators write JSON directly and the XSLT templates are not used. The output is JSON
+ * if the <code>content-type</code> of the servlet is <code>application/json</code> or if the
+ * request prefers <code>application/json</code> in its <code>Accept</code> header.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 public final class BerliozServlet extends HttpServlet {
@@ -240,7 +270,6 @@ public final class BerliozServlet extends HttpServlet {
 
     // Use Berlioz config locally
     BerliozConfig config = getBerliozConfig();
-    ServiceRegistry services = getServiceRegistry();
 
     // Setup and ensure that we use UTF-8 to read data
     req.setCharacterEncoding("utf-8");
@@ -253,9 +282,10 @@ public final class BerliozServlet extends HttpServlet {
 
     // Determine the method in use.
     ServiceLoader loader = ServiceLoader.getInstance();
-    boolean profile = GlobalSettings.has(BerliozOption.PROFILE);
-    boolean serverTiming = GlobalSettings.has(BerliozOption.HTTP_SERVER_TIMING);
-    boolean serviceHeader = GlobalSettings.has(BerliozOption.HTTP_SERVICE_HEADER);
+    OptionSnapshot options = GlobalSettings.options();
+    boolean profile = options.has(BerliozOption.PROFILE);
+    boolean serverTiming = options.has(BerliozOption.HTTP_SERVER_TIMING);
+    boolean serviceHeader = options.has(BerliozOption.HTTP_SERVICE_HEADER);
 
     // Berlioz Control
     if (config.hasControl(req)) {
@@ -272,11 +302,14 @@ public final class BerliozServlet extends HttpServlet {
       if (resetEtags) { config.resetETagSeed(); }
 
       // Reload the global configuration
-      if (reload) { GlobalSettings.load(); }
+      if (reload) {
+        GlobalSettings.load();
+        options = GlobalSettings.options();
+      }
 
-      // Clear the service configuration
-      boolean clearServices = reload || isTrue(req.getParameter("reload-services"));
-      if (clearServices) { loader.clear(); }
+      // Reload the services files which have changed
+      boolean reloadServices = reload || isTrue(req.getParameter("reload-services"));
+      if (reloadServices) { loader.invalidate(); }
 
       // If profile specified on URL
       profile = profile || isTrue(req.getParameter("berlioz-profile"));
@@ -294,12 +327,15 @@ public final class BerliozServlet extends HttpServlet {
       return;
     }
 
+    // Use the same services for the whole request even if they are reloaded
+    ServiceRegistry services = getServiceRegistry().snapshot();
+
     // Start handling XML content
     String path = HttpRequestWrapper.getBerliozPath(req);
     MatchingService match = services.get(path, method);
 
     // No matching service (backward compatibility)
-    if (match == null && method == HttpMethod.POST && GlobalSettings.has(BerliozOption.HTTP_GET_VIA_POST)) {
+    if (match == null && method == HttpMethod.POST && options.has(BerliozOption.HTTP_GET_VIA_POST)) {
       match = services.get(path, HttpMethod.GET);
     }
 
@@ -337,18 +373,28 @@ public final class BerliozServlet extends HttpServlet {
     XSLTransformer transformer = config.getTransformer(match.service());
     long start = System.nanoTime();
 
+    // Generate the JSON directly if the output is JSON and all generators are universal
+    boolean universal = xml.isUniversal();
+    boolean direct = universal && negotiate(req, config) == OutputType.JSON;
+
     // Indicate that the representation may vary depending on the encoding
     if (config.enableCompression()) {
       res.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
     }
 
+    // ...and on the accepted media types when the output can be JSON
+    if (universal && config.getOutputType() != OutputType.JSON) {
+      res.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+
     // Compute the ETag for the request if cacheable and method GET or HEAD
     String etag = null;
+    String encoding = config.enableCompression()? HttpHeaderUtils.getContentEncoding(req) : null;
     boolean cacheable = code == null && match.isCacheable();
     if (cacheable && (method == HttpMethod.GET || method == HttpMethod.HEAD)) {
       String etagXML = xml.getEtag();
       if (etagXML != null) {
-        String etagXSL = transformer != null? transformer.getEtag() : null;
+        String etagXSL = direct? "json" : transformer != null? transformer.getEtag() : null;
         etag = '"'+MD5.hash(config.getETagSeed()+"~"+etagXML+"--"+etagXSL)+'"';
 
         // Update the headers (they should also be included in case of redirect)
@@ -362,7 +408,12 @@ public final class BerliozServlet extends HttpServlet {
 
         // Check if the conditions specified in the optional If headers are satisfied.
         ServiceInfo info = new ServiceInfo(etag);
-        if (!HttpHeaderUtils.checkIfHeaders(req, res, info)) return;
+        // The ETag returned with a 304 must match the variant that would be sent
+        String variant = encoding;
+        if (variant != null && !direct && transformer != null && !HttpHeaderUtils.isCompressible(transformer.getMediaType())) {
+          variant = null;
+        }
+        if (!HttpHeaderUtils.checkIfHeaders(req, res, info, variant)) return;
 
       } else {
         cacheable = false;
@@ -375,8 +426,44 @@ public final class BerliozServlet extends HttpServlet {
       res.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
     }
 
-    // Generate the XML content
-    String content = xml.generate();
+    // Serve the response from the response cache if possible
+    ResponseCache responses = ResponseCache.getInstance();
+    long budget = ResponseCache.getBudget();
+    String cacheKey = null;
+    if (etag != null && budget > 0) {
+      cacheKey = ResponseCache.toKey(match.service(), req, etag, encoding);
+      ResponseCache.Entry cached = responses.get(cacheKey, services.version());
+      if (cached != null) {
+        write(res, cached, etag, includeContent);
+        if (serverTiming) {
+          ServerTimingHeader.addMetricNano(res, "cache", "Response cache", System.nanoTime() - start);
+        }
+        return;
+      }
+    }
+
+    // Stream the XML content into the XSLT transformer if possible (unless the response is cached)
+    XSLTPipeline pipeline = null;
+    ResponseOutputStream stream = null;
+    if (transformer != null && !direct && includeContent && cacheKey == null && options.has(BerliozOption.XSLT_STREAMING)) {
+      stream = new ResponseOutputStream(res);
+      try {
+        pipeline = transformer.newPipeline(req, xml.getService(), stream);
+      } catch (TransformerException ex) {
+        LOGGER.debug("Unable to stream XML content, using buffer instead: {}", ex.getMessageAndLocation());
+      }
+    }
+
+    // Generate the XML content (or the JSON content directly)
+    FragmentBuffer content = null;
+    JSONContent json = null;
+    if (direct) {
+      json = xml.generateJSON();
+    } else if (pipeline != null) {
+      xml.generate(pipeline.writer());
+    } else {
+      content = xml.generateBuffer();
+    }
     long end = System.nanoTime();
     if (profile) {
       LOGGER.info("Content generated in {} ms", ProfileFormat.format(end - start));
@@ -394,7 +481,7 @@ public final class BerliozServlet extends HttpServlet {
     }
 
     // If errors occurred and should percolate
-    if (xml.getError() != null && !GlobalSettings.has(BerliozOption.ERROR_GENERATOR_CATCH)) {
+    if (xml.getError() != null && !options.has(BerliozOption.ERROR_GENERATOR_CATCH)) {
       sendError(req, res, status.code(), "The service failed because of errors thrown by generators", xml.getError());
       return;
     }
@@ -409,9 +496,23 @@ public final class BerliozServlet extends HttpServlet {
       return;
     }
 
+    // Write the JSON directly to the output
+    if (json != null && includeContent && cacheKey == null) {
+      write(req, res, config, json, etag);
+      return;
+    }
+
+    // Complete the transformation writing directly to the output
+    if (transformer != null && pipeline != null && stream != null) {
+      stream(req, res, config, transformer, pipeline, stream, etag, profile, serverTiming);
+      return;
+    }
+
     // Produce the output
     BerliozOutput result;
-    if (transformer != null) {
+    if (json != null) {
+      result = json;
+    } else if (transformer != null) {
       XSLTransformResult xslresult = transformer.transform(content, req, xml.getService());
       if (profile) {
         LOGGER.info("XSLT Transformation {} ms", ProfileFormat.format(xslresult.time()));
@@ -429,51 +530,251 @@ public final class BerliozServlet extends HttpServlet {
     }
 
     // Update content type from XSLT transform result (MUST be specified before the output is requested)
-    String ctype = result.getMediaType()+";charset="+result.getEncoding();
-    res.setContentType(ctype);
-    res.setCharacterEncoding(result.getEncoding()); // TODO check with different encoding
-    if (!config.getContentType().equals(ctype)) {
-      LOGGER.info("Updating content type to {}", ctype);
-      config.setContentType(ctype);
+    if (json != null) {
+      setContentType(res, result.getMediaType(), result.getEncoding());
+    } else {
+      setContentType(res, config, result.getMediaType(), result.getEncoding());
     }
 
-    // Apply Compression if necessary
-    boolean isCompressed = config.enableCompression() && HttpHeaderUtils.isCompressible(result.getMediaType());
-    if (isCompressed) {
-
-      if (HttpHeaderUtils.acceptsGZipCompression(req)) {
-        byte[] compressed = ResourceCompressor.compress(result.content(), Charset.forName(result.getEncoding()));
+    // Apply Compression if necessary (and the client accepts it)
+    Charset charset = Charset.forName(result.getEncoding());
+    boolean isCompressible = config.enableCompression() && HttpHeaderUtils.isCompressible(result.getMediaType());
+    String coding = isCompressible? HttpHeaderUtils.getContentEncoding(req) : null;
+    byte[] compressed = null;
+    if (coding != null) {
+
+      if (includeContent && cacheKey == null) {
+        // Compress straight to the output, the content length is not known
+        setContentEncoding(res, coding, etag);
+        ServletOutputStream out = res.getOutputStream();
+        CompressedOutputStream compressor = CompressedOutputStream.newInstance(out, coding, config.getCompressionLevel());
+        CharsetUtils.write(result.content(), charset, compressor);
+        compressor.finish();
+        out.flush();
+      } else {
+        // Buffer when the content length is required or the content is stored in the response cache
+        compressed = ResourceCompressor.compress(result.content(), charset, coding, config.getCompressionLevel());
         if (compressed.length > 0) {
           res.setIntHeader(HttpHeaders.CONTENT_LENGTH, compressed.length);
-          res.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
-          if (etag != null) {
-            res.setHeader(HttpHeaders.ETAG, HttpHeaderUtils.getETagForGZip(etag));
-          }
+          setContentEncoding(res, coding, etag);
           if (includeContent) {
             ServletOutputStream out = res.getOutputStream();
             out.write(compressed);
             out.flush();
           }
         } else {
-          isCompressed = false; // Compression failed
+          coding = null; // Compression failed
+          compressed = null;
         }
-      } else {
-        isCompressed = false; // Client does not accept Compression
       }
     }
 
     // Copy the uncompressed version if needed
-    if (!isCompressed) {
+    if (coding == null) {
       if (includeContent) {
         PrintWriter out = res.getWriter();
-        out.print(result.content());
+        CharSequence chars = result.content();
+        if (chars instanceof FragmentBuffer) {
+          ((FragmentBuffer)chars).writeTo(out);
+        } else {
+          out.print(chars);
+        }
         out.flush();
       } else {
         // We need to calculate when we don't include the content
-        res.setIntHeader(HttpHeaders.CONTENT_LENGTH, CharsetUtils.length(result.content(), Charset.forName(result.getEncoding())));
+        res.setIntHeader(HttpHeaders.CONTENT_LENGTH, CharsetUtils.length(result.content(), charset));
       }
     }
 
+    // Store the output in the response cache (cookies are specific to the request)
+    if (cacheKey != null && res.getStatus() == HttpServletResponse.SC_OK && xml.getError() == null
+        && !res.containsHeader("Set-Cookie")) {
+      byte[] bytes = compressed != null? compressed : result.content().toString().getBytes(charset);
+      String ctype = result.getMediaType()+";charset="+result.getEncoding();
+      responses.put(cacheKey, new ResponseCache.Entry(bytes, ctype, result.getEncoding(), coding), services.version(), budget);
+    }
+
+  }
+
+  /**
+   * Writes a response from the response cache.
+   *
+   * @param res            The HTTP servlet response.
+   * @param cached         The cached response
+   * @param etag           The etag of the response
+   * @param includeContent Whether to include the content in the response.
+   *
+   * @throws IOException For any IO exception.
+   */
+  private static void write(HttpServletResponse res, ResponseCache.Entry cached, String etag, boolean includeContent)
+      throws IOException {
+    res.setStatus(HttpServletResponse.SC_OK);
+    res.setContentType(cached.contentType());
+    res.setCharacterEncoding(cached.charset());
+    String coding = cached.coding();
+    if (coding != null) {
+      setContentEncoding(res, coding, etag);
+    }
+    res.setIntHeader(HttpHeaders.CONTENT_LENGTH, cached.length());
+    if (includeContent) {
+      ServletOutputStream out = res.getOutputStream();
+      out.write(cached.content());
+      out.flush();
+    }
+  }
+
+  /**
+   * Completes the XSLT transformation of the XML content streamed through the pipeline writing
+   * the results directly to the output.
+   *
+   * <p>If the transformation fails before the response is committed, the error is displayed in
+   * the same way as when the results are buffered.
+   *
+   * @param req          The HTTP servlet request.
+   * @param res          The HTTP servlet response.
+   * @param config       The Berlioz configuration
+   * @param transformer  The transformer that created the pipeline
+   * @param pipeline     The pipeline the XML content was written to
+   * @param stream       The output of the pipeline
+   * @param etag         The etag of the response if any
+   * @param profile      Whether profiling is enabled
+   * @param serverTiming Whether to include the server timing header
+   *
+   * @throws IOException For any IO exception.
+   */
+  private void stream(HttpServletRequest req, HttpServletResponse res, BerliozConfig config, XSLTransformer transformer,
+      XSLTPipeline pipeline, ResponseOutputStream stream, @Nullable String etag, boolean profile, boolean serverTiming)
+      throws IOException {
+
+    // Content type from the XSLT templates (MUST be specified before the output is requested)
+    String mediaType = pipeline.getMediaType();
+    setContentType(res, config, mediaType, pipeline.getEncoding());
+
+    // Apply compression if necessary
+    String coding = config.enableCompression() && HttpHeaderUtils.isCompressible(mediaType)? HttpHeaderUtils.getContentEncoding(req) : null;
+    if (coding != null) {
+      setContentEncoding(res, coding, etag);
+      stream.compress(coding, config.getCompressionLevel());
+    }
+
+    // Transform!
+    XSLTransformResult result = transformer.transform(pipeline);
+    if (profile) {
+      LOGGER.info("XSLT Transformation {} ms", ProfileFormat.format(result.time()));
+    }
+    if (serverTiming && !res.isCommitted()) {
+      ServerTimingHeader.addMetricNano(res, "xslt", "XSLT Transform", result.time());
+    }
+
+    if (result.status() == Status.ERROR) {
+      if (res.isCommitted()) {
+        LOGGER.error("XSLT transformation failed after the response was committed", result.getException());
+      } else {
+        res.reset();
+        res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        setContentType(res, config, result.getMediaType(), result.getEncoding());
+        ServletOutputStream out = res.getOutputStream();
+        out.write(result.content().toString().getBytes(Charset.forName(result.getEncoding())));
+        out.flush();
+      }
+    } else {
+      stream.finish();
+    }
+  }
+
+  /**
+   * Writes the JSON content generated directly to the output.
+   *
+   * @param req    The HTTP servlet request.
+   * @param res    The HTTP servlet response.
+   * @param config The Berlioz configuration
+   * @param json   The JSON content
+   * @param etag   The etag of the response if any
+   *
+   * @throws IOException For any IO exception.
+   */
+  private static void write(HttpServletRequest req, HttpServletResponse res, BerliozConfig config, JSONContent json,
+      @Nullable String etag) throws IOException {
+    setContentType(res, json.getMediaType(), json.getEncoding());
+    ResponseOutputStream stream = new ResponseOutputStream(res);
+    String coding = config.enableCompression()? HttpHeaderUtils.getContentEncoding(req) : null;
+    if (coding != null) {
+      setContentEncoding(res, coding, etag);
+      stream.compress(coding, config.getCompressionLevel());
+    }
+    Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+    json.writeTo(out);
+    out.flush();
+    stream.finish();
+  }
+
+  /**
+   * Returns the type of output negotiated for the specified request.
+   *
+   * <p>The output is JSON if the servlet is configured to produce JSON or if the <code>Accept</code>
+   * header of the request prefers <code>application/json</code> to the media type configured for
+   * the servlet.
+   *
+   * @param req    The HTTP servlet request.
+   * @param config The Berlioz configuration
+   *
+   * @return the type of output for the request.
+   */
+  private static OutputType negotiate(HttpServletRequest req, BerliozConfig config) {
+    if (config.getOutputType() == OutputType.JSON) return OutputType.JSON;
+    Map<String, Float> accept = HttpAcceptHeader.get(req.getHeader(HttpHeaders.ACCEPT));
+    if (accept.isEmpty()) return OutputType.XML;
+    String contentType = config.getContentType();
+    int semi = contentType.indexOf(';');
+    String mediaType = (semi >= 0? contentType.substring(0, semi) : contentType).trim();
+    String json = OutputType.JSON.getMediaType();
+    return json.equals(HttpAcceptHeader.preferred(accept, mediaType, json))? OutputType.JSON : OutputType.XML;
+  }
+
+  /**
+   * Sets the content type of the response.
+   *
+   * @param res       The HTTP servlet response.
+   * @param config    The Berlioz configuration
+   * @param mediaType The media type of the output
+   * @param encoding  The character encoding of the output
+   */
+  private static void setContentType(HttpServletResponse res, BerliozConfig config, String mediaType, String encoding) {
+    String ctype = setContentType(res, mediaType, encoding);
+    if (!config.getContentType().equals(ctype)) {
+      LOGGER.info("Updating content type to {}", ctype);
+      config.setContentType(ctype);
+    }
+  }
+
+  /**
+   * Sets the content type of the response without updating the configuration.
+   *
+   * @param res       The HTTP servlet response.
+   * @param mediaType The media type of the output
+   * @param encoding  The character encoding of the output
+   *
+   * @return the content type
+   */
+  private static String setContentType(HttpServletResponse res, String mediaType, String encoding) {
+    String ctype = mediaType+";charset="+encoding;
+    res.setContentType(ctype);
+    res.setCharacterEncoding(encoding); // TODO check with different encoding
+    return ctype;
+  }
+
+  /**
+   * Sets the content encoding of the response and updates the etag accordingly.
+   *
+   * @param res    The HTTP servlet response.
+   * @param coding The content encoding
+   * @param etag   The etag of the uncompressed response if any
+   */
+  private static void setContentEncoding(HttpServletResponse res, String coding, @Nullable String etag) {
+    res.setHeader(HttpHeaders.CONTENT_ENCODING, coding);
+    if (etag != null) {
+      res.setHeader(HttpHeaders.ETAG, HttpHeaderUtils.getETagForEncoding(etag, coding));
+    }
   }
 
   /**
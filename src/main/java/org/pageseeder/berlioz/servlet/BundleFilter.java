@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.http.HttpHeaderUtils;
+import org.pageseeder.berlioz.http.HttpHeaders;
+import org.pageseeder.berlioz.util.EntityInfo;
+import org.pageseeder.berlioz.util.GenericEntityInfo;
+import org.pageseeder.berlioz.util.MediaTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A filter serving the bundles generated by the bundler as static files.
+ *
+ * <p>Since bundle files are named after their content, they never change: they are served with
+ * an ETag derived from their name and as immutable. When the client accepts GZip and the bundler
+ * has written a compressed companion (<code>[bundle].gz</code>), the companion is served instead
+ * so that the bundle is not compressed on every request.
+ *
+ * <p>If the servlet container supports it, the file is sent by the container directly
+ * (Tomcat's sendfile); otherwise it is transferred from its file channel.
+ *
+ * <p>Requests for other files are passed on to the filter chain.
+ *
+ * <p>This filter should be mapped to the location of the bundles, for example:
+ *
+ * <pre>{@code
+ * <filter>
+ *   <filter-name>BundleFilter</filter-name>
+ *   <filter-class>org.pageseeder.berlioz.servlet.BundleFilter</filter-class>
+ * </filter>
+ * <filter-mapping>
+ *   <filter-name>BundleFilter</filter-name>
+ *   <url-pattern>/script/_/*</url-pattern>
+ *   <url-pattern>/style/_/*</url-pattern>
+ * </filter-mapping>
+ * }</pre>
+ *
+ * <p>See {@link #init} for details about configuration options.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class BundleFilter implements Filter {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BundleFilter.class);
+
+  /**
+   * Matches the name of bundle files named after their content, the group is the hash.
+   */
+  private static final Pattern BUNDLE = Pattern.compile("[^/]+-([0-9a-f]{16})(\\.min)?\\.(js|css)");
+
+  /**
+   * Request attribute set by Tomcat when sendfile is supported.
+   */
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+  /**
+   * Request attributes to use Tomcat's sendfile.
+   */
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename",
+                              SENDFILE_START = "org.apache.tomcat.sendfile.start",
+                              SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  /**
+   * One year in seconds.
+   */
+  private static final long DEFAULT_MAX_AGE = 31536000L;
+
+  /**
+   * The servlet context.
+   */
+  private @Nullable ServletContext context;
+
+  /**
+   * The cache control header for bundles.
+   */
+  private String cacheControl = cacheControl(DEFAULT_MAX_AGE);
+
+  /**
+   * Initialises the bundle filter.
+   *
+   * <p>This filter accepts the following init parameters:
+   * <ul>
+   *   <li><code>max-age</code> how long bundles can be cached in seconds (one year by default)</li>
+   * </ul>
+   *
+   * @param config The filter configuration.
+   */
+  @Override
+  public void init(FilterConfig config) {
+    this.context = config.getServletContext();
+    String maxAge = config.getInitParameter("max-age");
+    if (maxAge != null) {
+      try {
+        this.cacheControl = cacheControl(Long.parseLong(maxAge.trim()));
+      } catch (NumberFormatException ex) {
+        LOGGER.warn("Invalid 'max-age' init-parameter {} - using default", maxAge);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    this.context = null;
+  }
+
+  @Override
+  public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+      throws ServletException, IOException {
+    if (req instanceof HttpServletRequest && res instanceof HttpServletResponse) {
+      doHTTPFilter((HttpServletRequest)req, (HttpServletResponse)res, chain);
+    } else {
+      chain.doFilter(req, res);
+    }
+  }
+
+  /**
+   * Do the filtering for a HTTP request.
+   *
+   * @param req   The HTTP servlet request.
+   * @param res   The HTTP servlet response.
+   * @param chain The filter chain.
+   *
+   * @throws IOException      Should an error occurs while writing the response.
+   * @throws ServletException If thrown by the filter chain.
+   */
+  public void doHTTPFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+      throws ServletException, IOException {
+    String method = req.getMethod();
+    boolean head = "HEAD".equals(method);
+    File file = head || "GET".equals(method)? toBundleFile(req) : null;
+    if (file == null) {
+      chain.doFilter(req, res);
+      return;
+    }
+
+    String etag = etag(file.getName());
+    String mediaType = MediaTypes.getMediaType(file);
+    String contentType = mediaType != null? mediaType : "application/octet-stream";
+    res.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    res.setHeader(HttpHeaders.CACHE_CONTROL, this.cacheControl);
+
+    // Use the compressed companion if possible
+    File gz = new File(file.getPath()+".gz");
+    boolean gzip = HttpHeaderUtils.acceptsGZipCompression(req) && gz.isFile();
+    EntityInfo info = new GenericEntityInfo(file.lastModified(), contentType, etag);
+    if (!HttpHeaderUtils.checkIfHeaders(req, res, info, gzip? "gzip" : null)) return;
+    File content = file;
+    if (gzip) {
+      content = gz;
+      etag = HttpHeaderUtils.getETagForGZip(etag);
+      res.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    res.setHeader(HttpHeaders.ETAG, etag);
+
+    res.setContentType(contentType);
+    long length = content.length();
+    HttpHeaderUtils.setContentLength(res, length);
+    if (head) return;
+    if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+      // The container sends the file once the request has been processed
+      req.setAttribute(SENDFILE_FILENAME, content.getCanonicalPath());
+      req.setAttribute(SENDFILE_START, 0L);
+      req.setAttribute(SENDFILE_END, length);
+    } else {
+      transfer(content, length, res);
+    }
+  }
+
+  /**
+   * Returns the bundle file for the specified request.
+   *
+   * @param req The HTTP servlet request.
+   *
+   * @return the bundle file or <code>null</code> if the request is not for an existing bundle file.
+   */
+  private @Nullable File toBundleFile(HttpServletRequest req) {
+    ServletContext context = this.context;
+    if (context == null) return null;
+    String path = req.getRequestURI().substring(req.getContextPath().length());
+    if (!isBundlePath(path)) return null;
+    String real = context.getRealPath(path);
+    if (real == null) return null;
+    File file = new File(real);
+    return file.isFile()? file : null;
+  }
+
+  /**
+   * Indicates whether the specified path is for a bundle file named after its content.
+   *
+   * <p>Paths including relative segments or in private folders are rejected.
+   *
+   * @param path The path to the file from the root of the web application.
+   *
+   * @return <code>true</code> if the path can be served by this filter;
+   *         <code>false</code> otherwise.
+   */
+  static boolean isBundlePath(String path) {
+    if (path.contains("/.") || path.contains("\\") || path.startsWith("/WEB-INF/") || path.startsWith("/META-INF/"))
+      return false;
+    return BUNDLE.matcher(path.substring(path.lastIndexOf('/')+1)).matches();
+  }
+
+  /**
+   * Returns the entity tag of a bundle file from its name.
+   *
+   * @param name The name of the bundle file.
+   *
+   * @return the hash of the content quoted.
+   */
+  static String etag(String name) {
+    Matcher m = BUNDLE.matcher(name);
+    return m.matches()? '"'+m.group(1)+'"' : '"'+name+'"';
+  }
+
+  /**
+   * @param maxAge how long bundles can be cached in seconds.
+   *
+   * @return the value of the cache control header
+   */
+  private static String cacheControl(long maxAge) {
+    return "public, max-age="+maxAge+", immutable";
+  }
+
+  /**
+   * Transfers the content of the specified file to the response.
+   *
+   * @param file   The file to send.
+   * @param length The number of bytes to send.
+   * @param res    The HTTP servlet response.
+   *
+   * @throws IOException If thrown while reading the file or writing the response.
+   */
+  private static void transfer(File file, long length, HttpServletResponse res) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(res.getOutputStream());
+      long position = 0;
+      while (position < length) {
+        long sent = channel.transferTo(position, length - position, out);
+        if (sent <= 0) {
+          break;
+        }
+        position += sent;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.BerliozOption;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.berlioz.content.Service;
+import org.pageseeder.berlioz.util.BoundedCache;
+import org.pageseeder.berlioz.util.FragmentBuffer;
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory cache for the content rendered by cacheable generators.
+ *
+ * <p>Entries are keyed on the service, the name of the generator in the service, the output
+ * (XML or JSON), the Etag of the generator and the parameters of its request, so that a
+ * generator is only invoked again when its Etag has changed even if the Etag of the service has
+ * not.
+ *
+ * <p>The cache is bounded by the memory used by the fragments it holds, counting two bytes per
+ * character: when a new fragment would exceed the budget, the least recently used fragments are
+ * evicted. The budget is defined by the {@link BerliozOption#GENERATOR_FRAGMENT_CACHE} global
+ * option.
+ *
+ * <p>Fragments are only reused by the service instance they were created for, so reloading the
+ * services invalidates them. The cache is cleared whenever the Etag seed is reset.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class FragmentCache implements XMLWritable {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(FragmentCache.class);
+
+  /**
+   * The fragment cache shared by all Berlioz servlets.
+   */
+  private static final FragmentCache SINGLETON = new FragmentCache();
+
+  /**
+   * The cached fragments by key.
+   */
+  private final BoundedCache<String, Entry> _entries = new BoundedCache<>("FragmentCache", Entry::bytes);
+
+  /**
+   * Use the singleton instance.
+   */
+  FragmentCache() {
+  }
+
+  /**
+   * @return The fragment cache shared by all Berlioz servlets.
+   */
+  public static FragmentCache getInstance() {
+    return SINGLETON;
+  }
+
+  /**
+   * @return The maximum number of bytes the cache can use as defined in the global settings.
+   */
+  static long getBudget() {
+    return GlobalSettings.getInt(BerliozOption.GENERATOR_FRAGMENT_CACHE) * 1024L;
+  }
+
+  /**
+   * Returns the key for the content of a generator.
+   *
+   * @param service The service the generator is part of
+   * @param name    The name of the generator in the service
+   * @param json    Whether the content is JSON rather than XML
+   * @param etag    The Etag computed by the generator
+   * @param req     The content request (for its parameters)
+   *
+   * @return the corresponding key
+   */
+  static String toKey(Service service, String name, boolean json, String etag, ContentRequest req) {
+    StringBuilder key = new StringBuilder();
+    key.append(service.group()).append('/').append(service.id()).append(' ');
+    key.append(name).append(' ').append(json? "json" : "xml").append(' ').append(etag);
+    List<String> names = Collections.list(req.getParameterNames());
+    Collections.sort(names);
+    char separator = '?';
+    for (String parameter : names) {
+      key.append(separator).append(parameter).append('=').append(req.getParameter(parameter));
+      separator = '&';
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the cached fragment for the specified key.
+   *
+   * <p>The returned buffer shares the segments of the cached fragment but not its state, so it
+   * can be read or spliced independently.
+   *
+   * @param key     The key for the fragment
+   * @param service The service requesting the fragment
+   *
+   * @return the cached fragment or <code>null</code>
+   */
+  @Nullable FragmentBuffer get(String key, Service service) {
+    // Fragments generated for a service which was reloaded since are discarded
+    Entry entry = this._entries.get(key, e -> e._service == service);
+    if (entry == null) return null;
+    FragmentBuffer fragment = new FragmentBuffer();
+    fragment.splice(entry._fragment);
+    return fragment;
+  }
+
+  /**
+   * Stores the specified fragment, evicting the least recently used fragments if necessary.
+   *
+   * <p>Fragments larger than the budget are ignored. The fragment must not be written to after
+   * it has been stored.
+   *
+   * @param key      The key for the fragment
+   * @param service  The service the fragment was generated for
+   * @param fragment The content of the generator
+   * @param budget   The maximum number of bytes the cache can use
+   */
+  void put(String key, Service service, FragmentBuffer fragment, long budget) {
+    if (fragment.length() * 2L > budget) return;
+    // Only keep the segments so that the stored fragment is never modified
+    FragmentBuffer stored = new FragmentBuffer();
+    stored.splice(fragment);
+    this._entries.put(key, new Entry(service, stored), budget);
+  }
+
+  /**
+   * Removes all the fragments from the cache.
+   */
+  public void clear() {
+    int size = this._entries.size();
+    if (size > 0) {
+      LOGGER.debug("Clearing {} fragments from cache", size);
+    }
+    this._entries.clear();
+  }
+
+  /**
+   * @return The number of fragments in the cache.
+   */
+  public int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * @return The total number of bytes used by the fragments held by the cache.
+   */
+  public long bytes() {
+    return this._entries.bytes();
+  }
+
+  /**
+   * @return The number of fragments found in the cache.
+   */
+  public long hits() {
+    return this._entries.hits();
+  }
+
+  /**
+   * @return The number of times a fragment could not be found in the cache.
+   */
+  public long misses() {
+    return this._entries.misses();
+  }
+
+  /**
+   * @return The number of fragments evicted to keep within the budget.
+   */
+  public long evictions() {
+    return this._entries.evictions();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("fragment-cache");
+    xml.attribute("size", this._entries.size());
+    xml.attribute("bytes", Long.toString(this._entries.bytes()));
+    xml.attribute("hits", Long.toString(this._entries.hits()));
+    xml.attribute("misses", Long.toString(this._entries.misses()));
+    xml.attribute("evictions", Long.toString(this._entries.evictions()));
+    xml.closeElement();
+  }
+
+  @Override
+  public String toString() {
+    return this._entries.toString();
+  }
+
+  /**
+   * A cached fragment.
+   */
+  private static final class Entry {
+
+    /**
+     * The service the fragment was generated for.
+     */
+    private final Service _service;
+
+    /**
+     * The content of the generator.
+     */
+    private final FragmentBuffer _fragment;
+
+    /**
+     * @param service  The service the fragment was generated for
+     * @param fragment The content of the generator
+     */
+    Entry(Service service, FragmentBuffer fragment) {
+      this._service = service;
+      this._fragment = fragment;
+    }
+
+    /**
+     * @return The number of bytes used by the fragment, two per character.
+     */
+    long bytes() {
+      return this._fragment.length() * 2L;
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.BerliozOption;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bounded pool of threads used to invoke content generators concurrently.
+ *
+ * <p>The pool is created on first use with the number of threads specified by the
+ * {@link BerliozOption#GENERATOR_THREADS} option. When all threads are busy and the queue is full,
+ * or when the pool is shutting down, the task is rejected and the caller must invoke the generator
+ * itself.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class GeneratorExecutor {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(GeneratorExecutor.class);
+
+  /**
+   * The number of tasks that can be queued for each thread.
+   */
+  private static final int QUEUE_PER_THREAD = 16;
+
+  /**
+   * The executor service (lazily created).
+   */
+  private static volatile @Nullable ExecutorService executor = null;
+
+  /** Utility class */
+  private GeneratorExecutor() {
+  }
+
+  /**
+   * Submits the specified task to the pool of generator threads.
+   *
+   * @param task The task to execute
+   * @param <T>  The type of result
+   *
+   * @return the corresponding future
+   *
+   * @throws RejectedExecutionException If the queue is full or the pool is shutting down.
+   */
+  static <T> Future<T> submit(Callable<T> task) {
+    return get().submit(task);
+  }
+
+  /**
+   * Shuts down the pool of generator threads.
+   *
+   * <p>Tasks already submitted will complete but no new task will be accepted; a new pool is
+   * created if a task is submitted afterwards.
+   */
+  static synchronized void shutdown() {
+    ExecutorService service = executor;
+    if (service != null) {
+      LOGGER.info("Shutting down generator threads");
+      service.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * @return the executor, creating it if necessary.
+   */
+  private static ExecutorService get() {
+    ExecutorService service = executor;
+    if (service == null) {
+      synchronized (GeneratorExecutor.class) {
+        service = executor;
+        if (service == null) {
+          int threads = Math.max(1, GlobalSettings.getInt(BerliozOption.GENERATOR_THREADS));
+          LOGGER.info("Starting {} generator threads", threads);
+          ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+              new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), new GeneratorThreadFactory(),
+              new ThreadPoolExecutor.AbortPolicy());
+          pool.allowCoreThreadTimeOut(true);
+          executor = service = pool;
+        }
+      }
+    }
+    return service;
+  }
+
+  /**
+   * Creates daemon threads with a recognizable name.
+   */
+  private static final class GeneratorThreadFactory implements ThreadFactory {
+
+    /**
+     * To number the threads.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "berlioz-generator-"+this.count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
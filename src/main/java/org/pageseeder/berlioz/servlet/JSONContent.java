@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pageseeder.berlioz.util.FragmentBuffer;
+
+/**
+ * The JSON content produced by the universal generators of a service.
+ *
+ * <p>The content is a JSON object with one property for each generator using the name of the
+ * generator in the service: the JSON written by each generator is kept separately and only
+ * assembled when it is written to the output.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class JSONContent implements BerliozOutput {
+
+  /**
+   * The names of the properties.
+   */
+  private final List<String> _names = new ArrayList<>();
+
+  /**
+   * The JSON values of the properties.
+   */
+  private final List<CharSequence> _values = new ArrayList<>();
+
+  /**
+   * The total length of the values.
+   */
+  private int length = 2;
+
+  /**
+   * Creates some new empty JSON content.
+   */
+  JSONContent() {
+  }
+
+  /**
+   * Adds a property to this content.
+   *
+   * @param name  The name of the property.
+   * @param value The JSON value of the property.
+   */
+  void add(String name, CharSequence value) {
+    this._names.add(name);
+    this._values.add(value);
+    this.length += name.length() + value.length() + 4;
+  }
+
+  /**
+   * Writes the JSON content to the specified writer.
+   *
+   * @param out Where the JSON goes.
+   *
+   * @throws IOException If thrown by the writer.
+   */
+  public void writeTo(Writer out) throws IOException {
+    out.write('{');
+    for (int i = 0; i < this._names.size(); i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      quote(this._names.get(i), out);
+      out.write(':');
+      CharSequence value = this._values.get(i);
+      if (value instanceof FragmentBuffer) {
+        ((FragmentBuffer)value).writeTo(out);
+      } else {
+        out.append(value);
+      }
+    }
+    out.write('}');
+  }
+
+  /**
+   * @return The actual JSON content.
+   */
+  @Override
+  public CharSequence content() {
+    StringWriter json = new StringWriter(this.length);
+    try {
+      writeTo(json);
+    } catch (IOException ex) {
+      // Should never happen with a string writer
+      throw new UncheckedIOException(ex);
+    }
+    return json.toString();
+  }
+
+  /**
+   * @return Always <code>application/json</code>.
+   */
+  @Override
+  public String getMediaType() {
+    return "application/json";
+  }
+
+  /**
+   * @return Always <code>utf-8</code>.
+   */
+  @Override
+  public String getEncoding() {
+    return "utf-8";
+  }
+
+  /**
+   * Writes the specified name as a JSON string.
+   *
+   * @param name The name to quote
+   * @param out  Where the string goes
+   *
+   * @throws IOException If thrown by the writer.
+   */
+  private static void quote(String name, Writer out) throws IOException {
+    out.write('"');
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < ' ') {
+        out.write(String.format("\\u%04x", (int)c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.BerliozOption;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.content.Service;
+import org.pageseeder.berlioz.util.BoundedCache;
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory cache for the final output of cacheable services.
+ *
+ * <p>Entries are keyed on the service, the requested URL, the computed Etag and the content
+ * encoding negotiated with the client, so an entry can be reused for as long as the Etag of the
+ * service is unchanged.
+ *
+ * <p>The cache is bounded by the total number of bytes it holds: when a new entry would exceed
+ * the budget, the least recently used entries are evicted. The budget is defined by the
+ * {@link BerliozOption#HTTP_RESPONSE_CACHE} global option.
+ *
+ * <p>The cache is cleared whenever the Etag seed is reset, the XSLT cache is cleared or the
+ * services are reloaded.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class ResponseCache implements XMLWritable {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+
+  /**
+   * The response cache shared by all Berlioz servlets.
+   */
+  private static final ResponseCache SINGLETON = new ResponseCache();
+
+  /**
+   * The cached responses by key.
+   */
+  private final BoundedCache<String, Entry> _entries = new BoundedCache<>("ResponseCache", Entry::length);
+
+  /**
+   * The version of the service registry the entries were created with.
+   */
+  private long version = 0;
+
+  /**
+   * Use the singleton instance.
+   */
+  ResponseCache() {
+  }
+
+  /**
+   * @return The response cache shared by all Berlioz servlets.
+   */
+  public static ResponseCache getInstance() {
+    return SINGLETON;
+  }
+
+  /**
+   * @return The maximum number of bytes the cache can hold as defined in the global settings.
+   */
+  static long getBudget() {
+    return GlobalSettings.getInt(BerliozOption.HTTP_RESPONSE_CACHE) * 1024L;
+  }
+
+  /**
+   * Returns the key for the response to the specified request.
+   *
+   * @param service The service matching the request
+   * @param req     The HTTP servlet request
+   * @param etag    The Etag computed for the response
+   * @param coding  The content encoding negotiated with the client (<code>null</code> for identity)
+   *
+   * @return the corresponding key
+   */
+  static String toKey(Service service, HttpServletRequest req, String etag, @Nullable String coding) {
+    String query = req.getQueryString();
+    StringBuilder key = new StringBuilder();
+    key.append(service.group()).append('/').append(service.id()).append(' ');
+    key.append(req.getRequestURI());
+    if (query != null) {
+      key.append('?').append(query);
+    }
+    key.append(' ').append(etag).append(' ').append(coding != null? coding : "identity");
+    return key.toString();
+  }
+
+  /**
+   * Returns the cached response for the specified key.
+   *
+   * @param key     The key for the response
+   * @param version The current version of the service registry
+   *
+   * @return the cached response or <code>null</code>
+   */
+  synchronized @Nullable Entry get(String key, long version) {
+    checkVersion(version);
+    return this._entries.get(key);
+  }
+
+  /**
+   * Stores the specified response, evicting the least recently used responses if necessary.
+   *
+   * <p>Responses larger than the budget are ignored.
+   *
+   * @param key     The key for the response
+   * @param entry   The response to store
+   * @param version The current version of the service registry
+   * @param budget  The maximum number of bytes the cache can hold
+   */
+  synchronized void put(String key, Entry entry, long version, long budget) {
+    checkVersion(version);
+    this._entries.put(key, entry, budget);
+  }
+
+  /**
+   * Removes all the responses from the cache.
+   */
+  public void clear() {
+    int size = this._entries.size();
+    if (size > 0) {
+      LOGGER.debug("Clearing {} responses from cache", size);
+    }
+    this._entries.clear();
+  }
+
+  /**
+   * @return The number of responses in the cache.
+   */
+  public int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * @return The total number of bytes held by the cache.
+   */
+  public long bytes() {
+    return this._entries.bytes();
+  }
+
+  /**
+   * @return The number of responses served from the cache.
+   */
+  public long hits() {
+    return this._entries.hits();
+  }
+
+  /**
+   * @return The number of times a response could not be found in the cache.
+   */
+  public long misses() {
+    return this._entries.misses();
+  }
+
+  /**
+   * @return The number of responses evicted to keep within the budget.
+   */
+  public long evictions() {
+    return this._entries.evictions();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("response-cache");
+    xml.attribute("size", this._entries.size());
+    xml.attribute("bytes", Long.toString(this._entries.bytes()));
+    xml.attribute("hits", Long.toString(this._entries.hits()));
+    xml.attribute("misses", Long.toString(this._entries.misses()));
+    xml.attribute("evictions", Long.toString(this._entries.evictions()));
+    xml.closeElement();
+  }
+
+  @Override
+  public String toString() {
+    return this._entries.toString();
+  }
+
+  /**
+   * Clears the cache if the services have been reloaded since the entries were created.
+   *
+   * @param version The current version of the service registry
+   */
+  private void checkVersion(long version) {
+    if (version != this.version) {
+      clear();
+      this.version = version;
+    }
+  }
+
+  /**
+   * A cached response.
+   */
+  static final class Entry {
+
+    /**
+     * The bytes to write to the output.
+     */
+    private final byte[] _content;
+
+    /**
+     * The content type of the response.
+     */
+    private final String _contentType;
+
+    /**
+     * The character encoding of the response.
+     */
+    private final String _charset;
+
+    /**
+     * The content encoding of the content (<code>null</code> if not compressed).
+     */
+    private final @Nullable String _coding;
+
+    /**
+     * @param content     The bytes to write to the output
+     * @param contentType The content type of the response
+     * @param charset     The character encoding of the response
+     * @param coding      The content encoding of the content (<code>null</code> if not compressed)
+     */
+    Entry(byte[] content, String contentType, String charset, @Nullable String coding) {
+      this._content = content;
+      this._contentType = contentType;
+      this._charset = charset;
+      this._coding = coding;
+    }
+
+    /**
+     * @return The bytes to write to the output.
+     */
+    byte[] content() {
+      return this._content;
+    }
+
+    /**
+     * @return The number of bytes to write to the output.
+     */
+    int length() {
+      return this._content.length;
+    }
+
+    /**
+     * @return The content type of the response.
+     */
+    String contentType() {
+      return this._contentType;
+    }
+
+    /**
+     * @return The character encoding of the response.
+     */
+    String charset() {
+      return this._charset;
+    }
+
+    /**
+     * @return The content encoding of the content (<code>null</code> if not compressed).
+     */
+    @Nullable String coding() {
+      return this._coding;
+    }
+
+  }
+
+}
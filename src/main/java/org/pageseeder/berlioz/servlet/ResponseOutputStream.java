@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.util.CompressedOutputStream;
+
+/**
+ * An output stream which only requests the output stream of the HTTP response when the first
+ * byte is written.
+ *
+ * <p>Until then, the response can still be used to send an error or redirect, and the headers
+ * and compression can still be set.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class ResponseOutputStream extends OutputStream {
+
+  /**
+   * The HTTP servlet response.
+   */
+  private final HttpServletResponse _res;
+
+  /**
+   * The content encoding to compress the output with (<code>null</code> for no compression).
+   */
+  private @Nullable String coding = null;
+
+  /**
+   * The compression level.
+   */
+  private int level = -1;
+
+  /**
+   * The actual output stream (once opened).
+   */
+  private @Nullable OutputStream out = null;
+
+  /**
+   * @param res The HTTP servlet response to write to.
+   */
+  ResponseOutputStream(HttpServletResponse res) {
+    this._res = res;
+  }
+
+  /**
+   * Compress the output using the specified content encoding.
+   *
+   * @param coding The content encoding, either "gzip" or "deflate"
+   * @param level  The compression level
+   *
+   * @throws IllegalStateException If the output was already written to.
+   */
+  void compress(String coding, int level) {
+    if (this.out != null) throw new IllegalStateException("Output stream already in use");
+    this.coding = coding;
+    this.level = level;
+  }
+
+  /**
+   * @return <code>true</code> if the output stream of the response has been requested.
+   */
+  boolean isOpen() {
+    return this.out != null;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out().write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    out().write(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    OutputStream o = this.out;
+    if (o != null) {
+      o.flush();
+    }
+  }
+
+  /**
+   * Finishes writing compressed data if required and flushes the output.
+   *
+   * <p>The output stream of the response is not closed.
+   *
+   * @throws IOException If thrown by the underlying output stream.
+   */
+  void finish() throws IOException {
+    OutputStream o = this.out;
+    if (o instanceof CompressedOutputStream) {
+      ((CompressedOutputStream)o).finish();
+    }
+    flush();
+  }
+
+  /**
+   * Same as {@link #finish()} as the output of the response is managed by the servlet container.
+   */
+  @Override
+  public void close() throws IOException {
+    finish();
+  }
+
+  /**
+   * @return the output stream to write to, opening it if necessary.
+   */
+  private OutputStream out() throws IOException {
+    OutputStream o = this.out;
+    if (o == null) {
+      o = this._res.getOutputStream();
+      String c = this.coding;
+      if (c != null) {
+        o = CompressedOutputStream.newInstance(o, c, this.level);
+      }
+      this.out = o;
+    }
+    return o;
+  }
+
+}
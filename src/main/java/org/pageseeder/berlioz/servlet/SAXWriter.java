@@ -0,0 +1,546 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.xml.BerliozErrorHandler;
+import org.pageseeder.berlioz.xml.Xml;
+import org.pageseeder.xmlwriter.IllegalCloseElementException;
+import org.pageseeder.xmlwriter.UnclosedElementException;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * An XML writer which reports the XML as SAX events to a content handler instead of
+ * serializing it.
+ *
+ * <p>Unlike the SAX writer of the XML writer library, this writer accepts the XML produced by
+ * generators using {@link #writeXML(String)}: the fragment is parsed and its events are reported
+ * to the content handler as if they had been written using this writer.
+ *
+ * <p>Like the {@link org.pageseeder.xmlwriter.XMLWriterImpl}, this writer does not handle namespaces
+ * so that both produce the same XML.
+ *
+ * <p>The first SAX exception thrown by the content handler or the parser is recorded and any
+ * subsequent call is ignored; it is the responsibility of the caller to check for the error
+ * once the document is complete.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class SAXWriter implements XMLWriter {
+
+  /**
+   * The name of the element used to wrap fragments so that they can be parsed.
+   */
+  private static final String FRAGMENT = "berlioz-fragment";
+
+  /**
+   * The content handler receiving the events.
+   */
+  private final ContentHandler _handler;
+
+  /**
+   * The lexical handler receiving the comments and CDATA sections (may be <code>null</code>).
+   */
+  private final @Nullable LexicalHandler _lexical;
+
+  /**
+   * The names of the elements currently open.
+   */
+  private final Deque<String> _elements = new ArrayDeque<>();
+
+  /**
+   * The attributes of the element that was opened but not reported yet.
+   */
+  private final AttributesImpl _attributes = new AttributesImpl();
+
+  /**
+   * The name of the element that was opened but not reported yet.
+   */
+  private @Nullable String pending = null;
+
+  /**
+   * The parser for XML fragments (lazily created).
+   */
+  private @Nullable XMLReader reader = null;
+
+  /**
+   * The first error reported by the handler or parser.
+   */
+  private @Nullable SAXException error = null;
+
+  /**
+   * Creates a new writer reporting to the specified handler.
+   *
+   * <p>If the handler is also a lexical handler, comments and CDATA sections are reported to it.
+   *
+   * @param handler The content handler receiving the events.
+   */
+  SAXWriter(ContentHandler handler) {
+    this._handler = handler;
+    this._lexical = handler instanceof LexicalHandler? (LexicalHandler)handler : null;
+  }
+
+  /**
+   * @return the first error reported by the handler or parser; <code>null</code> if none.
+   */
+  @Nullable SAXException getError() {
+    return this.error;
+  }
+
+  /**
+   * Starts the document.
+   */
+  @Override
+  public void xmlDecl() {
+    if (this.error != null) return;
+    try {
+      this._handler.startDocument();
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  /**
+   * Does nothing as indentation is irrelevant for SAX events.
+   */
+  @Override
+  public void setIndentChars(String spaces) {
+  }
+
+  @Override
+  public void writeText(char c) {
+    writeText(new char[]{c}, 0, 1);
+  }
+
+  @Override
+  public void writeText(@Nullable String text) {
+    if (text == null) return;
+    writeText(text.toCharArray(), 0, text.length());
+  }
+
+  @Override
+  public void writeText(char[] text, int off, int len) {
+    if (this.error != null) return;
+    try {
+      startPending();
+      this._handler.characters(text, off, len);
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  @Override
+  public void writeCDATA(@Nullable String data) {
+    if (data == null || this.error != null) return;
+    LexicalHandler lexical = this._lexical;
+    try {
+      startPending();
+      if (lexical != null) {
+        lexical.startCDATA();
+      }
+      this._handler.characters(data.toCharArray(), 0, data.length());
+      if (lexical != null) {
+        lexical.endCDATA();
+      }
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  /**
+   * Parses the specified XML fragment and reports its events to the handler.
+   */
+  @Override
+  public void writeXML(@Nullable String text) {
+    if (text == null || text.isEmpty() || this.error != null) return;
+    try {
+      startPending();
+      XMLReader reader = this.reader;
+      if (reader == null) {
+        this.reader = reader = newReader();
+      }
+      reader.parse(new InputSource(new FragmentReader(text)));
+    } catch (SAXException ex) {
+      this.error = ex;
+    } catch (IOException ex) {
+      // Cannot happen when reading from memory
+      this.error = new SAXException(ex);
+    }
+  }
+
+  @Override
+  public void writeXML(char[] text, int off, int len) {
+    writeXML(new String(text, off, len));
+  }
+
+  /**
+   * Reports the comment surrounded by spaces like the XML writer.
+   *
+   * @throws IllegalArgumentException If the comment contains a double '-'.
+   */
+  @Override
+  public void writeComment(String comment) {
+    if (comment.contains("--")) throw new IllegalArgumentException("A comment must not contain '--'.");
+    LexicalHandler lexical = this._lexical;
+    if (lexical == null || this.error != null) return;
+    try {
+      startPending();
+      String data = ' '+comment+' ';
+      lexical.comment(data.toCharArray(), 0, data.length());
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  @Override
+  public void writePI(String target, String data) {
+    if (this.error != null) return;
+    try {
+      startPending();
+      this._handler.processingInstruction(target, data);
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  @Override
+  public void openElement(String name) {
+    openElement(name, false);
+  }
+
+  @Override
+  public void openElement(String name, boolean hasChildren) {
+    if (this.error != null) return;
+    try {
+      startPending();
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+    this.pending = name;
+  }
+
+  @Override
+  public void closeElement() {
+    if (this.error != null) return;
+    try {
+      startPending();
+      if (this._elements.isEmpty()) throw new IllegalCloseElementException();
+      String name = this._elements.pop();
+      this._handler.endElement("", name, name);
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  @Override
+  public void element(String name, String text) {
+    openElement(name);
+    writeText(text);
+    closeElement();
+  }
+
+  @Override
+  public void emptyElement(String name) {
+    openElement(name);
+    closeElement();
+  }
+
+  @Override
+  public void attribute(String name, String value) {
+    if (this.error != null) return;
+    if (this.pending == null) throw new IllegalArgumentException("Cannot write attribute: no open element.");
+    this._attributes.addAttribute("", name, name, "CDATA", value);
+  }
+
+  @Override
+  public void attribute(String name, int value) {
+    attribute(name, Integer.toString(value));
+  }
+
+  /**
+   * Does nothing as the events are reported immediately.
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Ends the document.
+   *
+   * @throws UnclosedElementException If an element is still open.
+   */
+  @Override
+  public void close() {
+    if (this.error != null) return;
+    try {
+      startPending();
+      if (!this._elements.isEmpty()) throw new UnclosedElementException(this._elements.peek());
+      this._handler.endDocument();
+    } catch (SAXException ex) {
+      this.error = ex;
+    }
+  }
+
+  // Namespaces are not supported (same as the XMLWriterImpl)
+  // ----------------------------------------------------------------------------------------------
+
+  @Override
+  public void openElement(String uri, String name, boolean hasChildren) {
+    throw new UnsupportedOperationException("This class does not handle namespaces.");
+  }
+
+  @Override
+  public void emptyElement(String uri, String element) {
+    throw new UnsupportedOperationException("This class does not handle namespaces");
+  }
+
+  @Override
+  public void attribute(String uri, String name, String value) {
+    throw new UnsupportedOperationException("This class does not handle namespaces");
+  }
+
+  @Override
+  public void attribute(String uri, String name, int value) {
+    throw new UnsupportedOperationException("This class does not handle namespaces");
+  }
+
+  @Override
+  public void setPrefixMapping(String uri, String prefix) {
+    throw new UnsupportedOperationException("This class does not handle namespaces");
+  }
+
+  // Private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Reports the element that was opened and its attributes.
+   *
+   * @throws SAXException If thrown by the handler
+   */
+  private void startPending() throws SAXException {
+    String name = this.pending;
+    if (name != null) {
+      this.pending = null;
+      this._elements.push(name);
+      this._handler.startElement("", name, name, this._attributes);
+      this._attributes.clear();
+    }
+  }
+
+  /**
+   * @return a new XML reader reporting the events of the fragments to the handler.
+   *
+   * @throws SAXException If the parser could not be created
+   */
+  private XMLReader newReader() throws SAXException {
+    try {
+      XMLReader reader = Xml.newSafeParser().getXMLReader();
+      reader.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      FragmentHandler handler = new FragmentHandler(this._handler, this._lexical);
+      reader.setContentHandler(handler);
+      reader.setErrorHandler(BerliozErrorHandler.getInstance());
+      if (this._lexical != null) {
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+      }
+      return reader;
+    } catch (ParserConfigurationException ex) {
+      throw new SAXException("Unable to create parser for XML fragments", ex);
+    }
+  }
+
+  /**
+   * Reads a fragment wrapped in an element so that it can be parsed as a document.
+   */
+  private static final class FragmentReader extends Reader {
+
+    private static final char[] START = ('<'+FRAGMENT+'>').toCharArray();
+
+    private static final char[] END = ("</"+FRAGMENT+'>').toCharArray();
+
+    /** The fragment */
+    private final String _text;
+
+    /** The current position in the fragment */
+    private int position = 0;
+
+    /** The number of characters read from the start tag */
+    private int start = 0;
+
+    /** The number of characters read from the end tag */
+    private int end = 0;
+
+    FragmentReader(String text) {
+      this._text = text;
+    }
+
+    @Override
+    public int read(char[] buf, int off, int len) {
+      if (len == 0) return 0;
+      int count;
+      if (this.start < START.length) {
+        count = Math.min(len, START.length - this.start);
+        System.arraycopy(START, this.start, buf, off, count);
+        this.start += count;
+      } else if (this.position < this._text.length()) {
+        count = Math.min(len, this._text.length() - this.position);
+        this._text.getChars(this.position, this.position + count, buf, off);
+        this.position += count;
+      } else if (this.end < END.length) {
+        count = Math.min(len, END.length - this.end);
+        System.arraycopy(END, this.end, buf, off, count);
+        this.end += count;
+      } else return -1;
+      return count;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * Forwards the events of a parsed fragment ignoring the document and wrapping element.
+   */
+  private static final class FragmentHandler implements ContentHandler, LexicalHandler {
+
+    /** The content handler receiving the events */
+    private final ContentHandler _handler;
+
+    /** The lexical handler receiving the comments and CDATA sections */
+    private final @Nullable LexicalHandler _lexical;
+
+    /** The depth of the current element in the fragment */
+    private int depth = 0;
+
+    FragmentHandler(ContentHandler handler, @Nullable LexicalHandler lexical) {
+      this._handler = handler;
+      this._lexical = lexical;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    @Override
+    public void startDocument() {
+      this.depth = 0;
+    }
+
+    @Override
+    public void endDocument() {
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+      this._handler.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+      this._handler.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      if (this.depth++ > 0) {
+        this._handler.startElement(uri, localName, qName, atts);
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (--this.depth > 0) {
+        this._handler.endElement(uri, localName, qName);
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+      this._handler.characters(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      this._handler.ignorableWhitespace(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+      this._handler.processingInstruction(target, data);
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+      this._handler.skippedEntity(name);
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) {
+    }
+
+    @Override
+    public void endDTD() {
+    }
+
+    @Override
+    public void startEntity(String name) {
+    }
+
+    @Override
+    public void endEntity(String name) {
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+      if (this._lexical != null) {
+        this._lexical.startCDATA();
+      }
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+      if (this._lexical != null) {
+        this._lexical.endCDATA();
+      }
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) throws SAXException {
+      if (this._lexical != null) {
+        this._lexical.comment(ch, start, length);
+      }
+    }
+  }
+
+}
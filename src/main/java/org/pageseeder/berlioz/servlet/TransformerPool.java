@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of reusable transformers created from the same XSLT templates.
+ *
+ * <p>Transformers are created on demand until the pool reaches its maximum size; beyond that,
+ * threads wait for a transformer to be released. Transformers are reset when they are released so
+ * that the parameters and error listener of one transformation are never visible to the next.
+ *
+ * <p>The pool keeps the following statistics:
+ * <ul>
+ *   <li><code>hits</code>: the number of times an idle transformer was reused</li>
+ *   <li><code>misses</code>: the number of times a new transformer had to be created</li>
+ *   <li><code>waits</code>: the number of times a thread had to wait for a transformer</li>
+ *   <li><code>wait-time</code>: the total time spent waiting in nanoseconds</li>
+ * </ul>
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class TransformerPool implements XMLWritable {
+
+  /**
+   * Displays debug information.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransformerPool.class);
+
+  /**
+   * The name of the templates (for information).
+   */
+  private final String _name;
+
+  /**
+   * The templates to create the transformers from.
+   */
+  private final Templates _templates;
+
+  /**
+   * The maximum number of transformers.
+   */
+  private final int _max;
+
+  /**
+   * Transformers ready to be used.
+   */
+  private final Queue<Transformer> _idle = new ConcurrentLinkedQueue<>();
+
+  /**
+   * One permit for each transformer that can be in use.
+   */
+  private final Semaphore _permits;
+
+  /**
+   * Number of times an idle transformer was reused.
+   */
+  private final AtomicLong _hits = new AtomicLong();
+
+  /**
+   * Number of times a transformer had to be created.
+   */
+  private final AtomicLong _misses = new AtomicLong();
+
+  /**
+   * Number of times a thread had to wait for a transformer.
+   */
+  private final AtomicLong _waits = new AtomicLong();
+
+  /**
+   * Total time spent waiting in nanoseconds.
+   */
+  private final AtomicLong _waitTime = new AtomicLong();
+
+  /**
+   * Creates a new pool.
+   *
+   * @param name      The name of the templates (for information)
+   * @param templates The templates to create the transformers from
+   * @param max       The maximum number of transformers
+   *
+   * @throws IllegalArgumentException if the maximum is less than 1
+   */
+  TransformerPool(String name, Templates templates, int max) {
+    if (max < 1) throw new IllegalArgumentException("Pool size must be at least 1");
+    this._name = name;
+    this._templates = templates;
+    this._max = max;
+    this._permits = new Semaphore(max);
+  }
+
+  /**
+   * @return the templates used to create the transformers.
+   */
+  Templates templates() {
+    return this._templates;
+  }
+
+  /**
+   * Borrows a transformer from this pool, creating it or waiting for one if necessary.
+   *
+   * <p>The transformer must be returned to the pool using {@link #release(Transformer, boolean)}.
+   *
+   * @return a transformer
+   *
+   * @throws TransformerConfigurationException If a transformer could not be created.
+   */
+  Transformer borrow() throws TransformerConfigurationException {
+    // Wait for a transformer to be released if they are all in use
+    if (!this._permits.tryAcquire()) {
+      this._waits.incrementAndGet();
+      long start = System.nanoTime();
+      try {
+        this._permits.acquire();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new TransformerConfigurationException("Interrupted while waiting for transformer", ex);
+      } finally {
+        this._waitTime.addAndGet(System.nanoTime() - start);
+      }
+    }
+    Transformer transformer = this._idle.poll();
+    if (transformer != null) {
+      this._hits.incrementAndGet();
+      return transformer;
+    }
+    // Create a new transformer
+    this._misses.incrementAndGet();
+    try {
+      return this._templates.newTransformer();
+    } catch (TransformerConfigurationException | RuntimeException ex) {
+      this._permits.release();
+      throw ex;
+    }
+  }
+
+  /**
+   * Returns a transformer borrowed from this pool.
+   *
+   * <p>The transformer is reset before it is made available again. If it cannot be reset or
+   * should not be reused, it is discarded so that a new one can be created.
+   *
+   * @param transformer The transformer to release.
+   * @param reuse       <code>false</code> to discard the transformer (for example after an error)
+   */
+  void release(Transformer transformer, boolean reuse) {
+    boolean reset = reuse;
+    if (reset) {
+      try {
+        transformer.reset();
+        transformer.clearParameters();
+      } catch (UnsupportedOperationException ex) {
+        LOGGER.debug("Transformer cannot be reset, discarding");
+        reset = false;
+      }
+    }
+    if (reset) {
+      this._idle.offer(transformer);
+    }
+    this._permits.release();
+  }
+
+  /**
+   * @return The name of the templates.
+   */
+  public String name() {
+    return this._name;
+  }
+
+  /**
+   * @return The maximum number of transformers in this pool.
+   */
+  public int max() {
+    return this._max;
+  }
+
+  /**
+   * @return The number of transformers currently in use.
+   */
+  public int inUse() {
+    return this._max - this._permits.availablePermits();
+  }
+
+  /**
+   * @return The number of idle transformers.
+   */
+  public int idle() {
+    return this._idle.size();
+  }
+
+  /**
+   * @return The number of times an idle transformer was reused.
+   */
+  public long hits() {
+    return this._hits.get();
+  }
+
+  /**
+   * @return The number of times a transformer had to be created.
+   */
+  public long misses() {
+    return this._misses.get();
+  }
+
+  /**
+   * @return The number of times a thread had to wait for a transformer.
+   */
+  public long waits() {
+    return this._waits.get();
+  }
+
+  /**
+   * @return The total time spent waiting for a transformer in nanoseconds.
+   */
+  public long waitTime() {
+    return this._waitTime.get();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("transformer-pool");
+    xml.attribute("name", this._name);
+    xml.attribute("max", this._max);
+    xml.attribute("in-use", inUse());
+    xml.attribute("idle", idle());
+    xml.attribute("hits", Long.toString(hits()));
+    xml.attribute("misses", Long.toString(misses()));
+    xml.attribute("waits", Long.toString(waits()));
+    xml.attribute("wait-time", Long.toString(waitTime()));
+    xml.closeElement();
+  }
+
+  @Override
+  public String toString() {
+    return "TransformerPool("+this._name+")[in-use="+inUse()+"/"+this._max+",idle="+idle()+",hits="+hits()+",misses="+misses()+",waits="+waits()+"]";
+  }
+}
@@ -21,6 +21,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -28,9 +34,13 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jdt.annotation.Nullable;
 import org.pageseeder.berlioz.BerliozErrorID;
 import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.BerliozOption;
 import org.pageseeder.berlioz.Beta;
+import org.pageseeder.berlioz.ErrorID;
+import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.content.Cacheable;
 import org.pageseeder.berlioz.content.ContentGenerator;
+import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.berlioz.content.ContentStatus;
 import org.pageseeder.berlioz.content.GeneratorListener;
 import org.pageseeder.berlioz.content.MatchingService;
@@ -38,11 +48,15 @@ import org.pageseeder.berlioz.content.Parameter;
 import org.pageseeder.berlioz.content.Service;
 import org.pageseeder.berlioz.content.ServiceStatusRule;
 import org.pageseeder.berlioz.content.ServiceStatusRule.CodeRule;
+import org.pageseeder.berlioz.content.UniversalContentGenerator;
 import org.pageseeder.berlioz.http.ServerTimingHeader;
+import org.pageseeder.berlioz.json.Json;
+import org.pageseeder.berlioz.output.JsonUniversalAdapter;
 import org.pageseeder.berlioz.util.CollectedError.Level;
 import org.pageseeder.berlioz.util.CompoundBerliozException;
 import org.pageseeder.berlioz.util.ErrorCollector;
 import org.pageseeder.berlioz.util.Errors;
+import org.pageseeder.berlioz.util.FragmentBuffer;
 import org.pageseeder.berlioz.util.ProfileFormat;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.pageseeder.xmlwriter.XMLWriterImpl;
@@ -52,11 +66,23 @@ import org.slf4j.LoggerFactory;
 /**
  * An XML response produced from content generators.
  *
+ * <p>The generators of a service are invoked sequentially unless the service (or the
+ * {@link BerliozOption#GENERATOR_PARALLEL} global option) indicates that they can be invoked
+ * concurrently. In that case, each generator writes into its own buffer on a separate thread and
+ * the results are assembled in the order the generators are declared so that the XML is the same.
+ *
+ * <p>When all the generators of the service implement the {@link UniversalContentGenerator}
+ * interface, the response can also be generated as JSON directly.
+ *
+ * <p>When the {@link BerliozOption#GENERATOR_FRAGMENT_CACHE} is enabled, the content of cacheable
+ * generators is kept in the {@link FragmentCache} and they are only invoked again when their
+ * Etag changes, even if other generators of the service are not cacheable.
+ *
  * <p>This class is not thread-safe.
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 public final class XMLResponse {
@@ -213,9 +239,53 @@ public final class XMLResponse {
    * @throws IOException Should an I/O error occur.
    */
   public String generate() throws IOException {
-    // Initialise the writer
-    StringWriter writer = new StringWriter();
-    XMLWriter xml = new XMLWriterImpl(writer);
+    return generateBuffer().toString();
+  }
+
+  /**
+   * Generates an XML response for the wrapped HTTP request and response objects into a fragment
+   * buffer.
+   *
+   * <p>The content of each generator is spliced into the buffer rather than copied.
+   *
+   * @return The XML content for the appropriate content generator.
+   *
+   * @throws IOException Should an I/O error occur.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public FragmentBuffer generateBuffer() throws IOException {
+    FragmentBuffer buffer = new FragmentBuffer();
+    generate(new XMLWriterImpl(buffer), buffer);
+    return buffer;
+  }
+
+  /**
+   * Generates an XML response for the wrapped HTTP request and response objects using the
+   * specified XML writer.
+   *
+   * <p>The XML declaration is written first and the XML writer is flushed once the root element
+   * has been closed, but the XML writer is left open.
+   *
+   * @param xml The XML writer to use.
+   *
+   * @throws IOException Should an I/O error occur.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public void generate(XMLWriter xml) throws IOException {
+    generate(xml, null);
+  }
+
+  /**
+   * Generates an XML response using the specified XML writer.
+   *
+   * @param xml    The XML writer to use.
+   * @param buffer The buffer the XML writer writes to, if the content of generators can be spliced.
+   *
+   * @throws IOException Should an I/O error occur.
+   */
+  private void generate(XMLWriter xml, @Nullable FragmentBuffer buffer) throws IOException {
     xml.xmlDecl();
     xml.openElement("root", true);
 
@@ -230,16 +300,64 @@ public final class XMLResponse {
     XMLResponseHeader header = new XMLResponseHeader(this._core, service, this._match.result());
     header.toXML(xml);
 
-    // Call each generator in turn
+    // Write the content of each generator in turn
+    long start = System.nanoTime();
+    List<Invocation> invocations = invocations(service, false);
     int position = 0;
-    for (HttpContentRequest request : this._requests) {
-      toXML(request, ++position, service, xml);
+    for (Invocation invocation : invocations) {
+      toXML(invocation, ++position, service, xml, buffer);
     }
+    report(service, start);
 
     // Close 'root' and finalise
     xml.closeElement();
     xml.flush();
-    return writer.toString();
+  }
+
+  /**
+   * Indicates whether all the generators of the service write their content using the universal
+   * API so that the response can be generated as JSON directly.
+   *
+   * @return <code>true</code> if the service has generators and they are all universal;
+   *         <code>false</code> otherwise.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public boolean isUniversal() {
+    if (this._requests.isEmpty()) return false;
+    for (HttpContentRequest request : this._requests) {
+      if (!(request.generator() instanceof UniversalContentGenerator)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Generates a JSON response for the wrapped HTTP request and response objects.
+   *
+   * <p>The JSON is an object with a property for each generator named after the generator in
+   * the service (camel case). Unlike the XML response, it does not include any header.
+   *
+   * @return The JSON content of the generators.
+   *
+   * @throws IllegalStateException If not all generators are universal.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public JSONContent generateJSON() {
+    Service service = this._match.service();
+    if (!isUniversal()) throw new IllegalStateException("Service "+service.id()+" has generators which are not universal");
+    long start = System.nanoTime();
+    List<Invocation> invocations = invocations(service, true);
+    JSONContent json = new JSONContent();
+    int position = 0;
+    for (Invocation invocation : invocations) {
+      Outcome outcome = complete(invocation, ++position, service);
+      FragmentBuffer result = outcome.result;
+      String name = Json.camelify(service.name(invocation.request.generator()));
+      json.add(name, result != null? result : toJSON(outcome.error));
+    }
+    report(service, start);
+    return json;
   }
 
   // Static configuration
@@ -264,17 +382,159 @@ public final class XMLResponse {
   // Private helpers
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * Indicates whether the generators of the specified service should be invoked concurrently.
+   *
+   * @param service The service
+   *
+   * @return <code>true</code> if the service has more than one generator and is parallel;
+   *         <code>false</code> otherwise.
+   */
+  private boolean isParallel(Service service) {
+    if (this._requests.size() < 2) return false;
+    Boolean parallel = service.parallel();
+    return parallel != null? parallel.booleanValue() : GlobalSettings.has(BerliozOption.GENERATOR_PARALLEL);
+  }
+
+  /**
+   * Prepares the invocation of each generator, and submits them all at once if the generators
+   * can be invoked concurrently.
+   *
+   * @param service The service
+   * @param json    Whether the generators should produce JSON.
+   *
+   * @return the invocations in the order the generators are declared.
+   */
+  private List<Invocation> invocations(Service service, boolean json) {
+    long defaultTimeout = GlobalSettings.getInt(BerliozOption.GENERATOR_TIMEOUT);
+    // The etags are only computed for the generators which are cacheable and not opted out
+    boolean fragments = FragmentCache.getBudget() > 0;
+    List<Invocation> invocations = new ArrayList<>(this._requests.size());
+    for (HttpContentRequest request : this._requests) {
+      long timeout = service.timeout(request.generator());
+      Invocation invocation = new Invocation(request, timeout >= 0? timeout : defaultTimeout, json);
+      if (fragments) {
+        lookup(invocation, service, json);
+      }
+      invocations.add(invocation);
+    }
+
+    // Start all generators at once, the etags must be computed before
+    if (isParallel(service)) {
+      for (Invocation invocation : invocations) {
+        if (invocation.request.generator() instanceof Cacheable) {
+          getETag(invocation.request);
+        }
+      }
+      for (Invocation invocation : invocations) {
+        invocation.submit();
+      }
+    }
+    return invocations;
+  }
+
+  /**
+   * Looks up the content of a cacheable generator in the fragment cache.
+   *
+   * <p>If found, the generator will not be invoked; otherwise, the invocation is given the key
+   * to store its content once it completes.
+   *
+   * @param invocation The invocation of the generator request to process.
+   * @param service    The service it is part of.
+   * @param json       Whether the generator should produce JSON.
+   */
+  private void lookup(Invocation invocation, Service service, boolean json) {
+    HttpContentRequest request = invocation.request;
+    ContentGenerator generator = request.generator();
+    if (!(generator instanceof Cacheable) || !service.fragmentCache(generator)) return;
+    String etag = getETag(request);
+    if (etag.isEmpty()) return;
+    String key = FragmentCache.toKey(service, service.name(generator), json, etag, request);
+    FragmentBuffer fragment = FragmentCache.getInstance().get(key, service);
+    if (fragment != null) {
+      invocation.cached = new Outcome(fragment, null, ContentStatus.OK, 0);
+    } else {
+      invocation.key = key;
+    }
+  }
+
+  /**
+   * Waits for the invocation of a generator to complete and updates the state of this response.
+   *
+   * @param invocation The invocation of the generator request to process.
+   * @param position   The 1-based position of the request in the service
+   * @param service    The service it is part of.
+   *
+   * @return the outcome with any error wrapped into a Berlioz exception.
+   */
+  private Outcome complete(Invocation invocation, int position, Service service) {
+    HttpContentRequest request = invocation.request;
+    ContentGenerator generator = request.generator();
+    Outcome outcome = invocation.complete();
+    ContentStatus status = outcome.status;
+    long time = outcome.time;
+    Exception error = outcome.error;
+    if (error != null) {
+      // We wrap any exception in a Berlioz Exception
+      outcome = new Outcome(null, handleError(error, generator), status, time);
+    }
+
+    // Keep the content for next time
+    String key = invocation.key;
+    FragmentBuffer result = outcome.result;
+    if (key != null && result != null && error == null && status == ContentStatus.OK) {
+      FragmentCache.getInstance().put(key, service, result, FragmentCache.getBudget());
+    }
+
+    // Update Status
+    boolean wasSet = handleStatus(status, generator, service);
+    if (wasSet && ContentStatus.isRedirect(status)) {
+      this.redirect = request.getRedirectURL();
+    }
+    if (this.serverTiming) {
+      String safeName = service.name(generator).replaceAll("[^!#$%&'*+\\-.^_`|~0-9a-zA-Z]", "_");
+      ServerTimingHeader.addMetricNano(this._core.response(), "xml"+position, "Source "+safeName, request.getProfileEtag() + time);
+    }
+
+    // Report if requested
+    GeneratorListener l = listener;
+    if (l != null) {
+      l.generate(service, generator, status, request.getProfileEtag(), time);
+    }
+    return outcome;
+  }
+
+  /**
+   * Reports the time taken to generate the content of the service to the listener if any.
+   *
+   * @param service The service
+   * @param start   When the generation of the content started in nanoseconds
+   */
+  private void report(Service service, long start) {
+    GeneratorListener l = listener;
+    if (l != null) {
+      long etag = 0;
+      for (HttpContentRequest request : this._requests) {
+        etag += request.getProfileEtag();
+      }
+      l.service(service, getStatus(), etag, System.nanoTime() - start);
+    }
+  }
+
   /**
    * Generates the XML content for one generator.
    *
-   * @param request   The generator request to process.
-   * @param position  The 1-based position of the request in the service
-   * @param service   The service it is part of.
-   * @param xml       The XML Writer to use.
+   * @param invocation The invocation of the generator request to process.
+   * @param position   The 1-based position of the request in the service
+   * @param service    The service it is part of.
+   * @param xml        The XML Writer to use.
+   * @param buffer     The buffer the XML writer writes to (may be <code>null</code>)
    *
    * @throws IOException Should an I/O error occur while writing XML.
    */
-  private void toXML(HttpContentRequest request, int position, Service service, XMLWriter xml) throws IOException {
+  private void toXML(Invocation invocation, int position, Service service, XMLWriter xml, @Nullable FragmentBuffer buffer)
+      throws IOException {
+    HttpContentRequest request = invocation.request;
     ContentGenerator generator = request.generator();
     // Generate the main element
     xml.openElement("content", true);
@@ -299,46 +559,16 @@ public final class XMLResponse {
       xml.attribute("deprecated", "true");
     }
 
-    // Let's invoke the generator
-    String result = null;
-    BerliozException error = null;
-    ContentStatus status = ContentStatus.OK;
-    long start = System.nanoTime();
-    try {
-      // Normal response
-      StringWriter writer = new StringWriter();
-      XMLWriter ok = new XMLWriterImpl(writer);
-      generator.process(request, ok);
-      result = writer.toString();
-      status = request.getStatus();
-    } catch (Exception ex) {
-      // We wrap any exception in a Berlioz Exception
-      error = handleError(ex, generator);
-      status = ContentStatus.INTERNAL_SERVER_ERROR;
-    }
-
-    long end = System.nanoTime();
-
-    // Update Status
-    boolean wasSet = handleStatus(status, generator, service);
-    if (wasSet && ContentStatus.isRedirect(status)) {
-      this.redirect = request.getRedirectURL();
-    }
-    xml.attribute("status", status.toString());
+    // Let's invoke the generator (or wait for it to complete)
+    Outcome outcome = complete(invocation, position, service);
+    FragmentBuffer result = outcome.result;
+    Exception error = outcome.error;
+    long time = outcome.time;
+    xml.attribute("status", outcome.status.toString());
     if (this._profile) {
       xml.attribute("profile-etag", ProfileFormat.format(request.getProfileEtag()));
-      xml.attribute("profile-process", ProfileFormat.format(end - start));
-      xml.attribute("profile", ProfileFormat.format(request.getProfileEtag() + end - start));
-    }
-    if (this.serverTiming) {
-      String safeName = name.replaceAll("[^!#$%&'*+\\-.^_`|~0-9a-zA-Z]", "_");
-      ServerTimingHeader.addMetricNano(this._core.response(), "xml"+position, "Source "+safeName, request.getProfileEtag() + end - start);
-    }
-
-    // Report if requested
-    GeneratorListener l = listener;
-    if (l != null) {
-      l.generate(service, generator, status, request.getProfileEtag(), end - start);
+      xml.attribute("profile-process", ProfileFormat.format(time));
+      xml.attribute("profile", ProfileFormat.format(request.getProfileEtag() + time));
     }
 
     // Write the XML
@@ -346,13 +576,67 @@ public final class XMLResponse {
       xml.openElement("berlioz-exception");
       Errors.toXML(error, xml, false);
       xml.closeElement();
-    } else {
-      xml.writeXML(result);
+    } else if (result != null && buffer != null) {
+      // Close the start tag and splice the content of the generator
+      xml.writeXML("");
+      xml.flush();
+      buffer.splice(result);
+    } else if (result != null) {
+      xml.writeXML(result.toString());
     }
 
     xml.closeElement();
   }
 
+  /**
+   * Generates the JSON content for one universal generator.
+   *
+   * <p>The content is written into an object so that the generator can write fields directly.
+   *
+   * @param generator The universal generator
+   * @param request   The content request
+   *
+   * @return The JSON object written by the generator
+   *
+   * @throws BerliozException If thrown by the generator.
+   * @throws IOException      If thrown by the generator.
+   */
+  private static FragmentBuffer toJSON(UniversalContentGenerator generator, ContentRequest request)
+      throws BerliozException, IOException {
+    FragmentBuffer buffer = new FragmentBuffer();
+    JsonUniversalAdapter json = new JsonUniversalAdapter(buffer);
+    json.startObject("content");
+    generator.process(request, json);
+    json.endObject();
+    json.flush();
+    return buffer;
+  }
+
+  /**
+   * Returns the JSON for the error thrown by a generator.
+   *
+   * @param error The error (wrapped into a Berlioz Exception)
+   *
+   * @return a JSON object with the <code>berliozException</code> property.
+   */
+  private static String toJSON(@Nullable Exception error) {
+    StringWriter writer = new StringWriter();
+    JsonUniversalAdapter json = new JsonUniversalAdapter(writer);
+    json.startObject("content");
+    json.startObject("berlioz-exception");
+    if (error instanceof BerliozException) {
+      ErrorID id = ((BerliozException)error).id();
+      if (id != null) {
+        json.field("id", id.id());
+      }
+    }
+    json.field("message", error != null? Errors.cleanMessage(error) : "No message");
+    json.endObject();
+    json.endObject();
+    json.flush();
+    return writer.toString();
+  }
+
   /**
    * Returns the list of content generator requests to process.
    *
@@ -487,4 +771,183 @@ public final class XMLResponse {
     }
     return etag != null? etag : "";
   }
+
+  /**
+   * The invocation of a generator which may run on the calling thread or on a generator thread.
+   */
+  private static final class Invocation implements Callable<Outcome> {
+
+    /**
+     * The request to process.
+     */
+    final HttpContentRequest request;
+
+    /**
+     * The timeout in milliseconds (0 for no timeout)
+     */
+    private final long _timeout;
+
+    /**
+     * Whether the generator should produce JSON rather than XML.
+     */
+    private final boolean _json;
+
+    /**
+     * The key to store the content in the fragment cache (<code>null</code> if not cacheable).
+     */
+    @Nullable String key;
+
+    /**
+     * The outcome found in the fragment cache (the generator is not invoked).
+     */
+    @Nullable Outcome cached;
+
+    /**
+     * The future result when the generator was submitted to a generator thread.
+     */
+    private @Nullable Future<Outcome> future;
+
+    /**
+     * When the invocation was submitted.
+     */
+    private long submitted;
+
+    /**
+     * Whether the generator threads rejected this invocation.
+     */
+    private boolean rejected;
+
+    /**
+     * @param request The request to process
+     * @param timeout The timeout in milliseconds (0 or less for no timeout)
+     * @param json    Whether the generator should produce JSON (it must be universal)
+     */
+    Invocation(HttpContentRequest request, long timeout, boolean json) {
+      this.request = request;
+      this._timeout = timeout;
+      this._json = json;
+    }
+
+    /**
+     * Submits this invocation to the generator threads unless its content was found in the
+     * fragment cache.
+     *
+     * <p>If the generator threads are saturated or shutting down, the invocation is not submitted
+     * and the generator is invoked by the calling thread when its outcome is requested.
+     */
+    void submit() {
+      if (this.cached != null) return;
+      this.submitted = System.nanoTime();
+      try {
+        this.future = GeneratorExecutor.submit(this);
+      } catch (RejectedExecutionException ex) {
+        LOGGER.debug("Generator threads rejected {}, invoking directly", this.request.generator().getClass().getName());
+        this.rejected = true;
+      }
+    }
+
+    /**
+     * Invokes the generator in a fragment buffer of its own.
+     *
+     * <p>Any exception thrown by the generator is caught and returned as part of the outcome.
+     */
+    @Override
+    public Outcome call() {
+      long start = System.nanoTime();
+      try {
+        FragmentBuffer result;
+        if (this._json) {
+          result = toJSON((UniversalContentGenerator)this.request.generator(), this.request);
+        } else {
+          result = new FragmentBuffer();
+          XMLWriter ok = new XMLWriterImpl(result);
+          this.request.generator().process(this.request, ok);
+          ok.flush();
+        }
+        return new Outcome(result, null, this.request.getStatus(), System.nanoTime() - start);
+      } catch (Exception ex) {
+        return new Outcome(null, ex, ContentStatus.INTERNAL_SERVER_ERROR, System.nanoTime() - start);
+      }
+    }
+
+    /**
+     * Returns the outcome of the invocation.
+     *
+     * <p>If the generator was not submitted, it is invoked directly by the calling thread unless
+     * it has a timeout; otherwise, this method waits for it to complete until it times out.
+     *
+     * <p>If the generator threads rejected the invocation, the generator is invoked directly by
+     * the calling thread and the timeout does not apply.
+     *
+     * <p>The timeout is measured from when the generator was submitted, a generator which has
+     * already completed when its outcome is requested never times out.
+     *
+     * <p>If the content was found in the fragment cache, it is returned directly.
+     *
+     * @return the outcome of the invocation
+     */
+    Outcome complete() {
+      Outcome cached = this.cached;
+      if (cached != null) return cached;
+      if (this.future == null && this._timeout > 0 && !this.rejected) {
+        submit();
+      }
+      Future<Outcome> f = this.future;
+      if (f == null) return call();
+      try {
+        if (this._timeout > 0) {
+          long remaining = TimeUnit.MILLISECONDS.toNanos(this._timeout) - (System.nanoTime() - this.submitted);
+          return f.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+        return f.get();
+      } catch (TimeoutException ex) {
+        f.cancel(true);
+        LOGGER.warn("Generator {} timed out after {} ms", this.request.generator().getClass().getName(), this._timeout);
+        BerliozException timeout = new BerliozException("Generator timed out after "+this._timeout+" ms", BerliozErrorID.GENERATOR_TIMEOUT);
+        return new Outcome(null, timeout, ContentStatus.GATEWAY_TIMEOUT, System.nanoTime() - this.submitted);
+      } catch (InterruptedException ex) {
+        f.cancel(true);
+        Thread.currentThread().interrupt();
+        return new Outcome(null, ex, ContentStatus.INTERNAL_SERVER_ERROR, System.nanoTime() - this.submitted);
+      } catch (ExecutionException ex) {
+        // Only errors can get there since exceptions are caught
+        Throwable cause = ex.getCause();
+        if (cause instanceof Error) throw (Error)cause;
+        return new Outcome(null, ex, ContentStatus.INTERNAL_SERVER_ERROR, System.nanoTime() - this.submitted);
+      }
+    }
+  }
+
+  /**
+   * The outcome of a generator invocation.
+   */
+  private static final class Outcome {
+
+    /**
+     * The XML or JSON produced by the generator if successful.
+     */
+    final @Nullable FragmentBuffer result;
+
+    /**
+     * Any exception thrown by the generator.
+     */
+    final @Nullable Exception error;
+
+    /**
+     * The status of the generator.
+     */
+    final ContentStatus status;
+
+    /**
+     * The time it took to process in nanoseconds.
+     */
+    final long time;
+
+    Outcome(@Nullable FragmentBuffer result, @Nullable Exception error, ContentStatus status, long time) {
+      this.result = result;
+      this.error = error;
+      this.status = status;
+      this.time = time;
+    }
+  }
 }
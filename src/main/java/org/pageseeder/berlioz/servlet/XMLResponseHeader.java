@@ -27,6 +27,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.pageseeder.berlioz.BerliozOption;
 import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.OptionSnapshot;
 import org.pageseeder.berlioz.content.Location;
 import org.pageseeder.berlioz.content.PathInfo;
 import org.pageseeder.berlioz.content.Service;
@@ -60,7 +61,7 @@ import org.pageseeder.xmlwriter.XMLWriter;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.6.0
  */
 public final class XMLResponseHeader implements XMLWritable {
@@ -161,7 +162,8 @@ public final class XMLResponseHeader implements XMLWritable {
   public void toXML(XMLWriter xml) throws IOException {
     HttpServletRequest req = this._core.request();
 
-    boolean compatibility = !"1.0".equals(GlobalSettings.get(BerliozOption.XML_HEADER_VERSION));
+    OptionSnapshot options = GlobalSettings.options();
+    boolean compatibility = !"1.0".equals(options.get(BerliozOption.XML_HEADER_VERSION));
 
     // start serialising
     xml.openElement("header", true);
@@ -244,8 +246,8 @@ public final class XMLResponseHeader implements XMLWritable {
     }
 
     // Nonce for use in CSP
-    if (GlobalSettings.has(BerliozOption.NONCE_ENABLE)) {
-      String attribute = GlobalSettings.get(BerliozOption.NONCE_ATTRIBUTE);
+    if (options.has(BerliozOption.NONCE_ENABLE)) {
+      String attribute = options.get(BerliozOption.NONCE_ATTRIBUTE);
       boolean useAttribute = attribute.length() > 0;
       String nonce = null;
       String source = "header";
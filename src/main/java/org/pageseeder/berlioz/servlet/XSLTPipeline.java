@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.util.Map;
+import java.util.Properties;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.TransformerHandler;
+
+import org.pageseeder.berlioz.xslt.XSLTErrorCollector;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.xml.sax.SAXException;
+
+/**
+ * A pipeline streaming the XML written by the XML response straight into the XSLT transformer.
+ *
+ * <p>The XML is reported as SAX events to a transformer handler so that it is never serialized
+ * and parsed again. The transformation starts when the document is ended and the output is
+ * written directly to the output specified when the pipeline was created.
+ *
+ * <p>Pipelines are created by {@link XSLTransformer#newPipeline(javax.servlet.http.HttpServletRequest, org.pageseeder.berlioz.content.Service, java.io.OutputStream)}
+ * and should only be used once.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class XSLTPipeline {
+
+  /**
+   * The templates used for the transformation.
+   */
+  private final Templates _templates;
+
+  /**
+   * The XSLT parameters.
+   */
+  private final Map<String, String> _parameters;
+
+  /**
+   * Collects the errors reported by the transformer.
+   */
+  private final XSLTErrorCollector _collector;
+
+  /**
+   * The XML writer reporting to the handler.
+   */
+  private final SAXWriter _writer;
+
+  /**
+   * @param templates  The templates used for the transformation
+   * @param handler    The transformer handler (its result must be set)
+   * @param parameters The XSLT parameters
+   * @param collector  Collects the errors reported by the transformer
+   */
+  XSLTPipeline(Templates templates, TransformerHandler handler, Map<String, String> parameters, XSLTErrorCollector collector) {
+    this._templates = templates;
+    this._parameters = parameters;
+    this._collector = collector;
+    this._writer = new SAXWriter(handler);
+  }
+
+  /**
+   * @return the XML writer to use to write the XML to transform.
+   */
+  XMLWriter writer() {
+    return this._writer;
+  }
+
+  /**
+   * @return The content type (MIME) as defined in the XSLT templates.
+   */
+  String getMediaType() {
+    Properties p = this._templates.getOutputProperties();
+    return p.getProperty("media-type", "text/html");
+  }
+
+  /**
+   * @return The character encoding as defined in the XSLT templates.
+   */
+  String getEncoding() {
+    Properties p = this._templates.getOutputProperties();
+    return p.getProperty("encoding", "utf-8");
+  }
+
+  /**
+   * Ends the document, which completes the transformation.
+   *
+   * @return The nano time it took to complete the transformation.
+   *
+   * @throws TransformerException If the XML could not be written or transformed.
+   */
+  long end() throws TransformerException {
+    long before = System.nanoTime();
+    this._writer.close();
+    SAXException error = this._writer.getError();
+    if (error != null) {
+      Exception wrapped = error.getException();
+      if (wrapped instanceof TransformerException) throw (TransformerException)wrapped;
+      else throw new TransformerException(error.getMessage(), error);
+    }
+    return System.nanoTime() - before;
+  }
+
+  /**
+   * @return The templates used for the transformation.
+   */
+  Templates templates() {
+    return this._templates;
+  }
+
+  /**
+   * @return The XSLT parameters.
+   */
+  Map<String, String> parameters() {
+    return this._parameters;
+  }
+
+  /**
+   * @return The errors reported by the transformer.
+   */
+  XSLTErrorCollector collector() {
+    return this._collector;
+  }
+
+}
@@ -29,7 +29,7 @@ import org.eclipse.jdt.annotation.Nullable;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 public final class XSLTransformResult implements BerliozOutput {
@@ -128,7 +128,7 @@ public final class XSLTransformResult implements BerliozOutput {
   // Immutable fields
 
   /**
-   * @return the transformed content.
+   * @return the transformed content (empty if the content was streamed).
    */
   @Override
   public CharSequence content() {
@@ -20,6 +20,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
@@ -44,6 +46,8 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -56,6 +60,7 @@ import org.pageseeder.berlioz.aeson.JSONResult;
 import org.pageseeder.berlioz.content.Service;
 import org.pageseeder.berlioz.util.CollectedError;
 import org.pageseeder.berlioz.util.Errors;
+import org.pageseeder.berlioz.util.FragmentBuffer;
 import org.pageseeder.berlioz.util.ISO8601;
 import org.pageseeder.berlioz.util.MD5;
 import org.pageseeder.berlioz.xslt.XSLTErrorCollector;
@@ -71,9 +76,16 @@ import org.xml.sax.SAXParseException;
  * <p>By default, all XSLT templates are cached, use the global property <code>berlioz.cache.xslt</code>
  * to change this behaviour.
  *
+ * <p>The XML content can either be transformed from a string or streamed into the transformer
+ * using an {@link XSLTPipeline}.
+ *
+ * <p>Cached templates are read without locking and each of them has a {@link TransformerPool}
+ * so that transformers are reused instead of being created for each request. The size of the
+ * pools is specified by the global property <code>berlioz.xslt.pool-size</code>.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 public final class XSLTransformer {
@@ -84,9 +96,9 @@ public final class XSLTransformer {
   private static final Logger LOGGER = LoggerFactory.getLogger(XSLTransformer.class);
 
   /**
-   * Maps XSLT templates to their name for easy retrieval.
+   * Maps the pool of transformers for each XSLT templates to their file for easy retrieval.
    */
-  private static final Map<File, Templates> CACHE = new ConcurrentHashMap<>();
+  private static final Map<File, TransformerPool> CACHE = new ConcurrentHashMap<>();
 
   /**
    * Identity templates for worse case scenario!
@@ -117,7 +129,7 @@ public final class XSLTransformer {
   /**
    * An etag for these templates.
    */
-  private @Nullable String etag;
+  private volatile @Nullable String etag;
 
   /**
    * Creates a new XSLT Transformer with no fallback templates.
@@ -150,17 +162,45 @@ public final class XSLTransformer {
    * @return the results of the transformation.
    */
   public XSLTransformResult transform(String content, HttpServletRequest req, Service service) {
+    return transform(new StringReader(content), req, service);
+  }
+
+  /**
+   * Transforms the specified content using XSLT reading it directly from the fragment buffer.
+   *
+   * @param content The XML content to transform.
+   * @param req     The HTTP Servlet request.
+   * @param service Required only to provide more information in the logs in case of errors.
+   *
+   * @return the results of the transformation.
+   *
+   * @since Berlioz 0.13.0
+   */
+  XSLTransformResult transform(FragmentBuffer content, HttpServletRequest req, Service service) {
+    return transform(content.reader(), req, service);
+  }
+
+  /**
+   * Transforms the XML content read from the specified reader using XSLT.
+   *
+   * @param content The reader over the XML content to transform.
+   * @param req     The HTTP Servlet request.
+   * @param service Required only to provide more information in the logs in case of errors.
+   *
+   * @return the results of the transformation.
+   */
+  private XSLTransformResult transform(Reader content, HttpServletRequest req, Service service) {
     StringWriter buffer = new StringWriter();
     long time;
-    Templates templates;
+    TransformerPool pool;
     Map<String, String> parameters = toParameters(req);
 
     try {
-      // Creates a transformer from the templates
-      templates = getTemplates(this._templates);
+      // Get the templates and their transformers
+      pool = getPool(this._templates);
 
       // Setup the source
-      StreamSource source = new StreamSource(new StringReader(content));
+      StreamSource source = new StreamSource(content);
       source.setPublicId("-//Berlioz//Service/XML/"+service.group()+"/"+service.id());
       // TODO: provide better info (identify the service)
       String uri = req.getRequestURI();
@@ -173,21 +213,82 @@ public final class XSLTransformer {
       StreamResult result = new StreamResult(buffer);
 
       // Transform!
-      time = transform(source, result, templates, parameters);
+      time = transform(source, result, pool, parameters);
 
     // very likely to be an error in the XML or a dynamic error
     } catch (TransformerException ex) {
-      String error = toXML(ex, content, parameters);
-      ClassLoader loader = XSLTransformer.class.getClassLoader();
-      URL url = loader.getResource("org/pageseeder/berlioz/xslt/failsafe-error-html.xsl");
-      Templates failsafe = toTemplates(url);
-      // Try to use the fail-safe template to present the error
-      error = transformFailSafe(error, failsafe);
-      return new XSLTransformResult(error, ex, failsafe);
+      return toErrorResult(ex, parameters);
     }
 
     // All good!
-    return new XSLTransformResult(buffer.toString(), time, templates);
+    return new XSLTransformResult(buffer.toString(), time, pool.templates());
+  }
+
+  /**
+   * Creates a new pipeline to stream the XML content into the XSLT transformer.
+   *
+   * <p>The results of the transformation are written to the specified output stream using the
+   * encoding of the templates.
+   *
+   * <p>Since the transformer handler is created from the templates, pipelines do not use the
+   * pool of transformers.
+   *
+   * @param req     The HTTP Servlet request.
+   * @param service Required only to provide more information in the logs in case of errors.
+   * @param out     The output stream receiving the results of the transformation.
+   *
+   * @return a new pipeline
+   *
+   * @throws TransformerException If the templates could not be loaded or do not support streaming.
+   *
+   * @since Berlioz 0.13.0
+   */
+  XSLTPipeline newPipeline(HttpServletRequest req, Service service, OutputStream out) throws TransformerException {
+    Templates templates = getPool(this._templates).templates();
+    TransformerFactory factory = TransformerFactory.newInstance();
+    if (!factory.getFeature(SAXTransformerFactory.FEATURE))
+      throw new TransformerConfigurationException("Transformer factory does not support SAX");
+    SAXTransformerFactory saxFactory = (SAXTransformerFactory)factory;
+    TransformerHandler handler = templates == IDENTITY_TEMPLATES? saxFactory.newTransformerHandler() : saxFactory.newTransformerHandler(templates);
+    String uri = req.getRequestURI();
+    if (uri.lastIndexOf('.') >= 0) {
+      handler.setSystemId(uri.replaceAll("\\.([a-z]+)$", ".src"));
+    }
+
+    // Transmit the properties to the transformer
+    Map<String, String> parameters = toParameters(req);
+    Transformer transformer = handler.getTransformer();
+    for (Entry<String, String> e : parameters.entrySet()) {
+      transformer.setParameter(e.getKey(), e.getValue());
+    }
+    XSLTErrorCollector listener = new XSLTErrorCollector(LOGGER);
+    transformer.setErrorListener(listener);
+
+    // Check for JSON
+    handler.setResult(JSONResult.newInstanceIfSupported(transformer, new StreamResult(out)));
+    LOGGER.debug("Streaming {} through XSLT", service.id());
+    return new XSLTPipeline(templates, handler, parameters, listener);
+  }
+
+  /**
+   * Completes the transformation of the XML streamed through the specified pipeline.
+   *
+   * <p>If successful, the results have already been written to the output of the pipeline and
+   * the content of the returned result is empty.
+   *
+   * @param pipeline The pipeline created by this transformer.
+   *
+   * @return the results of the transformation.
+   *
+   * @since Berlioz 0.13.0
+   */
+  XSLTransformResult transform(XSLTPipeline pipeline) {
+    try {
+      long time = pipeline.end();
+      return new XSLTransformResult("", time, pipeline.templates());
+    } catch (TransformerException ex) {
+      return toErrorResult(new TransformerExceptionWrapper(ex, pipeline.collector()), pipeline.parameters());
+    }
   }
 
   /**
@@ -221,12 +322,55 @@ public final class XSLTransformer {
     return this.etag;
   }
 
+  /**
+   * Returns the media type of the output as defined in the XSLT templates.
+   *
+   * @return the media type of the output or "text/html" if it cannot be determined.
+   */
+  String getMediaType() {
+    try {
+      Properties p = getPool(this._templates).templates().getOutputProperties();
+      return p.getProperty("media-type", "text/html");
+    } catch (TransformerException ex) {
+      return "text/html";
+    }
+  }
+
+  /**
+   * Returns the pool of transformers for the templates of this transformer if they are cached.
+   *
+   * @return the pool of transformers or <code>null</code> if the templates are not cached.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public @Nullable TransformerPool getPool() {
+    return CACHE.get(this._templates);
+  }
+
+  /**
+   * Returns the pools of transformers for all the templates currently cached.
+   *
+   * @return the pools of transformers for the cached templates.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static List<TransformerPool> getPools() {
+    return new ArrayList<>(CACHE.values());
+  }
+
   /**
    * Clears the internal XSLT cache.
+   *
+   * <p>Transformations in progress complete with the previous templates, the templates are
+   * loaded again with a new pool of transformers the next time they are needed.
    */
   public synchronized void clearCache() {
     LOGGER.debug("Clearing XSLT cache.");
-    CACHE.remove(this._templates);
+    TransformerPool pool = CACHE.remove(this._templates);
+    if (pool != null) {
+      LOGGER.debug("Discarding {}", pool);
+    }
+    ResponseCache.getInstance().clear();
   }
 
   /**
@@ -234,7 +378,11 @@ public final class XSLTransformer {
    */
   public static synchronized void clearAllCache() {
     LOGGER.debug("Clearing XSLT cache.");
+    for (TransformerPool pool : CACHE.values()) {
+      LOGGER.debug("Discarding {}", pool);
+    }
     CACHE.clear();
+    ResponseCache.getInstance().clear();
   }
 
 // private helpers --------------------------------------------------------------------------------
@@ -301,74 +449,100 @@ public final class XSLTransformer {
    *
    * @param source     The Source XML data.
    * @param result     The Result XHTML data.
-   * @param templates  The XSLT templates to use.
+   * @param pool       The pool of transformers for the XSLT templates to use.
    * @param parameters Parameters to transmit to the transformer for use by the stylesheet (optional)
    *
    * @return The nano time it took to process the stylesheet.
    *
    * @throws TransformerException For XSLT Transformation errors or XSLT config errors
    */
-  private static long transform(StreamSource source, StreamResult result, Templates templates, Map<String, String> parameters)
+  private static long transform(StreamSource source, StreamResult result, TransformerPool pool, Map<String, String> parameters)
     throws TransformerException {
 
-    // Create a transformer from the templates
-    Transformer transformer = templates.newTransformer();
+    // Borrow a transformer for the templates
+    Transformer transformer = pool.borrow();
+    boolean reuse = false;
+    try {
 
-    // Transmit the properties to the transformer
-    if (parameters != null) {
-      for (Entry<String, String> e : parameters.entrySet()) {
-        transformer.setParameter(e.getKey(), e.getValue());
+      // Transmit the properties to the transformer
+      if (parameters != null) {
+        for (Entry<String, String> e : parameters.entrySet()) {
+          transformer.setParameter(e.getKey(), e.getValue());
+        }
       }
-    }
 
-    // Check for JSON
-    Result r = JSONResult.newInstanceIfSupported(transformer, result);
+      // Check for JSON
+      Result r = JSONResult.newInstanceIfSupported(transformer, result);
 
-    // Process, write directly to the result
-    long before = System.nanoTime();
-    XSLTErrorCollector listener = new XSLTErrorCollector(LOGGER);
-    transformer.setErrorListener(listener);
-    try {
-      transformer.transform(source, r);
-    } catch (TransformerException ex) {
-      throw new TransformerExceptionWrapper(ex, listener);
+      // Process, write directly to the result
+      long before = System.nanoTime();
+      XSLTErrorCollector listener = new XSLTErrorCollector(LOGGER);
+      transformer.setErrorListener(listener);
+      try {
+        transformer.transform(source, r);
+      } catch (TransformerException ex) {
+        throw new TransformerExceptionWrapper(ex, listener);
+      }
+      reuse = true;
+      return System.nanoTime() - before;
+
+    } finally {
+      // Transformers are only reused after a successful transformation
+      pool.release(transformer, reuse);
     }
-    return System.nanoTime() - before;
   }
 
   // private helpers
   // ----------------------------------------------------------------------------------------------
 
   /**
-   * Returns the templates corresponding to the specified file.
+   * Returns the pool of transformers for the templates corresponding to the specified file.
    *
-   * This method uses the caching mechanism.
+   * <p>This method uses the caching mechanism: cached templates are returned without locking,
+   * the lock is only acquired to load the templates.
    *
    * @param f The path to the XSLT style sheet.
    *
-   * @return The corresponding templates
+   * @return The pool of transformers for the corresponding templates
    *
    * @throws TransformerException If the templates could not parsed.
    */
-  private synchronized Templates getTemplates(File f) throws TransformerException {
+  private TransformerPool getPool(File f) throws TransformerException {
     boolean store = GlobalSettings.has(BerliozOption.XSLT_CACHE);
-    String stylesheet = toWebPath(f.getAbsolutePath());
-    Templates templates = store? CACHE.get(f) : null;
-    if (templates == null) {
-      LOGGER.info("Loading XSLT stylesheet '{}' [caching {}]", stylesheet, store? "enabled" : "disabled");
-      // Generate the templates if necessary
-      long t0 = System.currentTimeMillis();
-      templates = toTemplates(f, this._fallback);
-      long t1 = System.currentTimeMillis();
-      LOGGER.debug("Templates loaded in {}ms", (t1 - t0));
-      // Recalculate the Etag
-      this.etag = computeEtag(f, this._fallback);
-      if (store) {
-        CACHE.put(f, templates);
-        LOGGER.info("Caching XSLT stylesheet '{}'", stylesheet);
+    TransformerPool pool = store? CACHE.get(f) : null;
+    if (pool != null) return pool;
+    synchronized (this) {
+      // Check again, the templates may have been loaded while waiting
+      pool = store? CACHE.get(f) : null;
+      if (pool == null) {
+        String stylesheet = toWebPath(f.getAbsolutePath());
+        LOGGER.info("Loading XSLT stylesheet '{}' [caching {}]", stylesheet, store? "enabled" : "disabled");
+        // Generate the templates if necessary
+        long t0 = System.currentTimeMillis();
+        Templates templates = toTemplates(f, this._fallback);
+        long t1 = System.currentTimeMillis();
+        LOGGER.debug("Templates loaded in {}ms", (t1 - t0));
+        // Recalculate the Etag
+        this.etag = computeEtag(f, this._fallback);
+        pool = new TransformerPool(stylesheet, templates, toPoolSize(GlobalSettings.getInt(BerliozOption.XSLT_POOL_SIZE)));
+        if (store) {
+          CACHE.put(f, pool);
+          LOGGER.info("Caching XSLT stylesheet '{}'", stylesheet);
+        }
       }
     }
-    return templates;
+    return pool;
+  }
+
+  /**
+   * Returns the size of the pool of transformers.
+   *
+   * @param size The size specified in the global settings.
+   *
+   * @return the specified size if positive; otherwise twice the number of processors.
+   */
+  private static int toPoolSize(int size) {
+    return size > 0? size : Runtime.getRuntime().availableProcessors() * 2;
   }
 
   /**
@@ -440,15 +614,33 @@ public final class XSLTransformer {
   // Error Handling
   // ----------------------------------------------------------------------------------------------
 
+  /**
+   * Returns the result for a failed transformation using the fail-safe templates to present the
+   * error.
+   *
+   * @param ex         An error occurring during an XSLT transformation.
+   * @param parameters The XSLT parameters passed to the transformer
+   *
+   * @return the error result.
+   */
+  private static XSLTransformResult toErrorResult(TransformerException ex, Map<String, String> parameters) {
+    String error = toXML(ex, parameters);
+    ClassLoader loader = XSLTransformer.class.getClassLoader();
+    URL url = loader.getResource("org/pageseeder/berlioz/xslt/failsafe-error-html.xsl");
+    Templates failsafe = toTemplates(url);
+    // Try to use the fail-safe template to present the error
+    error = transformFailSafe(error, failsafe);
+    return new XSLTransformResult(error, ex, failsafe);
+  }
+
   /**
    * Handles transformation errors - to be used in catch blocks.
    *
    * @param ex         An error occurring during an XSLT transformation.
-   * @param source     The XML source being transformed
    * @param parameters The XSLT parameters passed to the transformer
    * @return the error details as XML
    */
-  private static String toXML(TransformerException ex, String source, Map<String, String> parameters) {
+  private static String toXML(TransformerException ex, Map<String, String> parameters) {
     // Remove all double dash so that it may be inserted in the XML comment
     StringWriter out = new StringWriter();
     try {
@@ -27,9 +27,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Returns the statistics collected for each generator and service.
+ *
+ * <p>The times are in microseconds and include the p50, p90, p99 and p99.9 percentiles.
+ *
+ * <h3>Parameters</h3>
+ * <ul>
+ *   <li><code>reset</code>: <code>true</code> to clear the statistics</li>
+ *   <li><code>window</code>: to include the percentiles over the last minutes (up to 5)</li>
+ * </ul>
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.9.32
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 public class GetGeneratorStatistics implements ContentGenerator {
@@ -60,7 +70,23 @@ public class GetGeneratorStatistics implements ContentGenerator {
       collector.clear();
     }
 
-    collector.toXML(xml);
+    int window = toWindow(req.getParameter("window", "0"));
+    collector.toXML(xml, window);
+  }
+
+  /**
+   * @param window The value of the window parameter
+   *
+   * @return the length of the sliding window in minutes (0 if invalid)
+   */
+  private static int toWindow(String window) {
+    try {
+      int minutes = Integer.parseInt(window);
+      return Math.max(0, Math.min(minutes, StatisticsCollector.MAX_WINDOW));
+    } catch (NumberFormatException ex) {
+      LOGGER.debug("Ignoring invalid window parameter '{}'", window);
+      return 0;
+    }
   }
 
 }
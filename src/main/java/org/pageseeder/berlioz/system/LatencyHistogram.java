@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.system;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of latencies with log-linear buckets.
+ *
+ * <p>Values below 16 have their own bucket, larger values are grouped in 16 linear sub-buckets
+ * for each power of two so that the relative error of a reported value is less than 6.25%.
+ * Values larger than {@link #MAX_VALUE} are counted in the last bucket.
+ *
+ * <p>Recording a value does not allocate or lock, and the counts can be merged into a simple
+ * array to compute percentiles.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class LatencyHistogram {
+
+  /**
+   * The number of bits used for the linear sub-buckets.
+   */
+  private static final int SUB_BITS = 4;
+
+  /**
+   * The number of linear sub-buckets for each power of two.
+   */
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+
+  /**
+   * The number of powers of two covered by the histogram.
+   */
+  private static final int MAX_EXPONENT = 32;
+
+  /**
+   * The largest value that can be recorded precisely (about 71 minutes in microseconds).
+   */
+  static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+  /**
+   * The number of buckets.
+   */
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+  /**
+   * The counts for each bucket.
+   */
+  private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Records the specified value.
+   *
+   * @param value The value to record (negative values are recorded as zero)
+   */
+  void record(long value) {
+    this._counts.incrementAndGet(index(value));
+  }
+
+  /**
+   * Adds the counts of this histogram to the specified array.
+   *
+   * @param counts The array of counts with the {@link #BUCKETS} length.
+   */
+  void addTo(long[] counts) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += this._counts.get(i);
+    }
+  }
+
+  /**
+   * Resets all the counts to zero.
+   */
+  void clear() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this._counts.set(i, 0);
+    }
+  }
+
+  /**
+   * Returns a new array to hold the counts of histograms.
+   *
+   * @return a new array with the {@link #BUCKETS} length.
+   */
+  static long[] newCounts() {
+    return new long[BUCKETS];
+  }
+
+  /**
+   * Returns the bucket index for the specified value.
+   *
+   * @param value The value
+   *
+   * @return the corresponding index
+   */
+  static int index(long value) {
+    if (value < SUB_COUNT) return value < 0 ? 0 : (int)value;
+    if (value > MAX_VALUE) return BUCKETS - 1;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+    return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  /**
+   * Returns the highest value that is recorded in the specified bucket.
+   *
+   * @param index The index of the bucket
+   *
+   * @return the highest value in that bucket.
+   */
+  static long highestValue(int index) {
+    if (index < SUB_COUNT) return index;
+    int exponent = index / SUB_COUNT + SUB_BITS - 1;
+    long sub = index % SUB_COUNT;
+    long lowest = (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    return lowest + (1L << (exponent - SUB_BITS)) - 1;
+  }
+
+  /**
+   * Returns the value at the specified percentile.
+   *
+   * @param counts     The counts for each bucket
+   * @param percentile The percentile between 0 and 100
+   *
+   * @return the highest value of the bucket including the percentile or 0 if the counts are empty.
+   */
+  static long percentile(long[] counts, double percentile) {
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    if (total == 0) return 0;
+    long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) return highestValue(i);
+    }
+    return highestValue(counts.length - 1);
+  }
+
+}
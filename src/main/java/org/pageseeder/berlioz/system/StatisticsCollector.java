@@ -16,14 +16,17 @@
 package org.pageseeder.berlioz.system;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.pageseeder.berlioz.content.ContentGenerator;
 import org.pageseeder.berlioz.content.ContentStatus;
@@ -36,27 +39,56 @@ import org.pageseeder.xmlwriter.XMLWriter;
 /**
  * Collects basic statistics about generators.
  *
+ * <p>Statistics are collected for each generator class and for each service, with one sample
+ * for each request to the service covering all of its generators. In addition to the
+ * counts and times, the distribution of the times is recorded in latency histograms to report
+ * percentiles, over the whole period and over a sliding window of up to {@link #MAX_WINDOW}
+ * minutes.
+ *
+ * <p>Statistics are updated without locking so that the collector does not become a point of
+ * contention for the generators which are invoked most often.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.9.32
  */
 final class StatisticsCollector implements GeneratorListener, XMLWritable {
 
+  /**
+   * The maximum length of the sliding window in minutes.
+   */
+  static final int MAX_WINDOW = 5;
+
+  /**
+   * The percentiles reported for each phase.
+   */
+  private static final double[] PERCENTILES = new double[]{ 50, 90, 99, 99.9 };
+
+  /**
+   * The names of the attributes for each percentile.
+   */
+  private static final String[] PERCENTILE_NAMES = new String[]{ "p50", "p90", "p99", "p999" };
+
   /**
    * Singleton instance.
    */
   private static final StatisticsCollector SINGLETON = new StatisticsCollector();
 
   /**
-   * All the statistics.
+   * All the statistics by generator.
    */
   private final ConcurrentHashMap<Class<?>, BasicStats> _stats = new ConcurrentHashMap<>();
 
+  /**
+   * All the statistics by service.
+   */
+  private final ConcurrentHashMap<String, BasicStats> _services = new ConcurrentHashMap<>();
+
   /**
    * When did we start collecting statistics
    */
-  private long since = System.currentTimeMillis();
+  private volatile long since = System.currentTimeMillis();
 
   /**
    * Use <code>getInstance</code> instead.
@@ -66,16 +98,16 @@ final class StatisticsCollector implements GeneratorListener, XMLWritable {
 
   @Override
   public void generate(Service service, ContentGenerator generator, ContentStatus status, long etag, long process) {
-    BasicStats basic = this._stats.get(generator.getClass());
-
-    // Create entry if it does not exist
-    if (basic == null) {
-      basic = new BasicStats(generator.getClass().getName(), status, etag, process);
-      this._stats.put(generator.getClass(), basic);
-    } else {
-      // update
-      basic.update(status, etag, process);
-    }
+    long now = System.currentTimeMillis();
+    this._stats.computeIfAbsent(generator.getClass(), c -> new BasicStats("generator", c.getName()))
+        .update(status, etag, process, now);
+  }
+
+  @Override
+  public void service(Service service, ContentStatus status, long etag, long process) {
+    long now = System.currentTimeMillis();
+    this._services.computeIfAbsent(service.group()+'/'+service.id(), id -> new BasicStats("service", id))
+        .update(status, etag, process, now);
   }
 
   /**
@@ -83,9 +115,8 @@ final class StatisticsCollector implements GeneratorListener, XMLWritable {
    */
   public void clear() {
     this._stats.clear();
-    synchronized (this) {
-      this.since = System.currentTimeMillis();
-    }
+    this._services.clear();
+    this.since = System.currentTimeMillis();
   }
 
   /**
@@ -97,95 +128,97 @@ final class StatisticsCollector implements GeneratorListener, XMLWritable {
 
   @Override
   public void toXML(XMLWriter xml) throws IOException {
+    toXML(xml, 0);
+  }
+
+  /**
+   * Writes the statistics including the percentiles over the specified window.
+   *
+   * @param xml     The XML writer
+   * @param minutes The length of the sliding window in minutes (0 for no window)
+   *
+   * @throws IOException Only if thrown by the XML writer
+   */
+  public void toXML(XMLWriter xml, int minutes) throws IOException {
     xml.openElement("statistics");
     xml.attribute("since", ISO8601.format(this.since, ISO8601.DATETIME));
+    if (minutes > 0) {
+      xml.attribute("window", minutes);
+    }
+    long now = System.currentTimeMillis();
     for (BasicStats s : this._stats.values()) {
-      s.toXML(xml);
+      s.toXML(xml, minutes, now);
+    }
+    for (BasicStats s : this._services.values()) {
+      s.toXML(xml, minutes, now);
     }
     xml.closeElement();
   }
 
   /**
-   * Holds basic statistics about a generator.
+   * Holds basic statistics about a generator or service.
    */
-  public static final class BasicStats implements XMLWritable {
-
-    /**
-     * The class name of the generator.
-     */
-    private final String _generator;
-
-    /**
-     * The number of times the method was invoked.
-     */
-    private final Map<ContentStatus, AtomicLong> _status;
+  public static final class BasicStats {
 
     /**
-     * The number of times the method was invoked.
+     * The number of recent samples used for the average of the last times.
      */
-    private final AtomicLong _count;
+    private static final int LAST = 10;
 
     /**
-     * Total amount of time taken by the getEtag() method in microseconds.
+     * The type of statistics ("generator" or "service").
      */
-    private final AtomicLong _totalEtagTime;
+    private final String _type;
 
     /**
-     * Total amount of time taken by the process() method in microseconds.
+     * The class name of the generator or ID of the service.
      */
-    private final AtomicLong _totalProcessTime;
+    private final String _name;
 
     /**
-     * Minimum time taken by the getEtag() method in microseconds.
+     * The number of times the generator was invoked for each status.
      */
-    private final AtomicLong _minEtagTime;
+    private final Map<ContentStatus, LongAdder> _status;
 
     /**
-     * Minimum time taken by the process() method in microseconds.
+     * The number of times the method was invoked.
      */
-    private final AtomicLong _minProcessTime;
+    private final LongAdder _count = new LongAdder();
 
     /**
-     * Maximum time taken by the getEtag() method in microseconds.
+     * Times taken by the getEtag() method in microseconds.
      */
-    private final AtomicLong _maxEtagTime;
+    private final Times _etag = new Times();
 
     /**
-     * Maximum time taken by the process() method in microseconds.
+     * Times taken by the process() method in microseconds.
      */
-    private final AtomicLong _maxProcessTime;
+    private final Times _process = new Times();
 
     /**
-     * Maximum time taken by the process() method in microseconds.
+     * The number of samples recorded in the ring of last times.
      */
-    private final LinkedBlockingDeque<Long> _lastEtag = new LinkedBlockingDeque<>(10);
+    private final AtomicLong _last = new AtomicLong();
 
     /**
-     * Maximum time taken by the process() method in microseconds.
+     * Histograms for each minute of the sliding window.
      */
-    private final LinkedBlockingDeque<Long> _lastProcess = new LinkedBlockingDeque<>(10);
+    private final AtomicReferenceArray<Slot> _slots = new AtomicReferenceArray<>(MAX_WINDOW + 1);
 
     /**
-     * Creates a instance with the specified initial status and time values.
+     * Creates a instance with no values.
      *
-     * @param name    The name of the generator
-     * @param status  The first content status
-     * @param etag    The etag time in nano seconds
-     * @param process The process time in nano seconds
+     * @param type The type of statistics ("generator" or "service")
+     * @param name The name of the generator or service
      */
-    private BasicStats(String name, ContentStatus status, long etag, long process) {
-      this._generator = name;
-      this._status = Collections.synchronizedMap(new EnumMap<>(ContentStatus.class));
-      this._status.put(status, new AtomicLong(1));
-      this._count = new AtomicLong(1);
-      long e = etag / 1000;
-      this._minEtagTime = new AtomicLong(e);
-      this._maxEtagTime = new AtomicLong(e);
-      this._totalEtagTime = new AtomicLong(e);
-      long p = process / 1000;
-      this._minProcessTime = new AtomicLong(p);
-      this._maxProcessTime = new AtomicLong(p);
-      this._totalProcessTime = new AtomicLong(p);
+    private BasicStats(String type, String name) {
+      this._type = type;
+      this._name = name;
+      Map<ContentStatus, LongAdder> status = new EnumMap<>(ContentStatus.class);
+      for (ContentStatus s : ContentStatus.values()) {
+        status.put(s, new LongAdder());
+      }
+      this._status = Collections.unmodifiableMap(status);
     }
 
     /**
@@ -194,89 +227,234 @@ final class StatisticsCollector implements GeneratorListener, XMLWritable {
      * @param status  The content status
      * @param etag    The getEtag() function time in nano seconds
      * @param process The process() function time in nano seconds
+     * @param now     The current time in milliseconds
      */
-    public synchronized void update(ContentStatus status, long etag, long process) {
-      // Status
-      AtomicLong i = this._status.get(status);
-      if (i == null) {
-        this._status.put(status, new AtomicLong(1));
-      } else {
-        i.incrementAndGet();
-      }
-
-      this._count.incrementAndGet();
+    public void update(ContentStatus status, long etag, long process, long now) {
+      this._status.get(status).increment();
+      this._count.increment();
       // times in microseconds
       long e = etag / 1000;
       long p = process / 1000;
-      // min and max
-      if (e > this._maxEtagTime.get()) {
-        this._maxEtagTime.set(e);
-      }
-      if (e < this._minEtagTime.get()) {
-        this._minEtagTime.set(e);
-      }
-      if (p > this._maxProcessTime.get()) {
-        this._maxProcessTime.set(p);
-      }
-      if (p < this._minProcessTime.get()) {
-        this._minProcessTime.set(p);
-      }
-      // Total
-      this._totalEtagTime.addAndGet(e);
-      this._totalProcessTime.addAndGet(p);
-      if (this._lastEtag.remainingCapacity() == 0) {
-        this._lastEtag.pollFirst();
-      }
-      this._lastEtag.offerLast(e);
-      if (this._lastProcess.remainingCapacity() == 0) {
-        this._lastProcess.pollFirst();
-      }
-      this._lastProcess.offerLast(p);
+      long last = this._last.getAndIncrement();
+      this._etag.record(e, last);
+      this._process.record(p, last);
+      Slot slot = getSlot(now);
+      slot._etag.record(e);
+      slot._process.record(p);
     }
 
-    @Override
-    public synchronized void toXML(XMLWriter xml) throws IOException {
+    /**
+     * Writes the statistics as XML.
+     *
+     * @param xml     The XML writer
+     * @param minutes The length of the sliding window in minutes (0 for no window)
+     * @param now     The current time in milliseconds
+     *
+     * @throws IOException Only if thrown by the XML writer
+     */
+    void toXML(XMLWriter xml, int minutes, long now) throws IOException {
+      long count = this._count.sum();
+      long samples = Math.min(this._last.get(), LAST);
       xml.openElement("statistic");
-      xml.attribute("generator", this._generator);
-      xml.attribute("count", this._count.toString());
+      xml.attribute(this._type, this._name);
+      xml.attribute("count", Long.toString(count));
       // times
-      xml.attribute("min-etag",      this._minEtagTime.toString());
-      xml.attribute("min-process",   this._minProcessTime.toString());
-      xml.attribute("max-etag",      this._maxEtagTime.toString());
-      xml.attribute("max-process",   this._maxProcessTime.toString());
-      xml.attribute("total-etag",    this._totalEtagTime.toString());
-      xml.attribute("total-process", this._totalProcessTime.toString());
+      xml.attribute("min-etag",      Long.toString(this._etag.min()));
+      xml.attribute("min-process",   Long.toString(this._process.min()));
+      xml.attribute("max-etag",      Long.toString(this._etag._max.get()));
+      xml.attribute("max-process",   Long.toString(this._process._max.get()));
+      xml.attribute("total-etag",    Long.toString(this._etag._total.sum()));
+      xml.attribute("total-process", Long.toString(this._process._total.sum()));
       // compute the average
-      long avgEtag = this._totalEtagTime.longValue() / this._count.longValue();
-      long avgProcess = this._totalProcessTime.longValue() / this._count.longValue();
+      long avgEtag = count > 0 ? this._etag._total.sum() / count : 0;
+      long avgProcess = count > 0 ? this._process._total.sum() / count : 0;
       xml.attribute("avg-etag",    Long.toString(avgEtag));
       xml.attribute("avg-process", Long.toString(avgProcess));
-
-      long avgLastEtag = average(this._lastEtag);
-      long avgLastProcess = average(this._lastProcess);
-      xml.attribute("avg-last-etag",    Long.toString(avgLastEtag));
-      xml.attribute("avg-last-process", Long.toString(avgLastProcess));
+      xml.attribute("avg-last-etag",    Long.toString(this._etag.averageLast(samples)));
+      xml.attribute("avg-last-process", Long.toString(this._process.averageLast(samples)));
 
       // status
       xml.openElement("status");
-      for (Entry<ContentStatus, AtomicLong> status : this._status.entrySet()) {
-        xml.attribute(status.getKey().name().toLowerCase(), Long.toString(status.getValue().get()));
+      for (Entry<ContentStatus, LongAdder> status : this._status.entrySet()) {
+        long n = status.getValue().sum();
+        if (n > 0) {
+          xml.attribute(status.getKey().name().toLowerCase(), Long.toString(n));
+        }
       }
       xml.closeElement();
+
+      // percentiles
+      long[] counts = LatencyHistogram.newCounts();
+      this._etag._histogram.addTo(counts);
+      percentilesToXML(xml, "etag", counts, this._etag._max.get());
+      counts = LatencyHistogram.newCounts();
+      this._process._histogram.addTo(counts);
+      percentilesToXML(xml, "process", counts, this._process._max.get());
+
+      // sliding window
+      if (minutes > 0) {
+        long[] etag = LatencyHistogram.newCounts();
+        long[] process = LatencyHistogram.newCounts();
+        collect(minutes, now, etag, process);
+        xml.openElement("window");
+        xml.attribute("minutes", minutes);
+        percentilesToXML(xml, "etag", etag, this._etag._max.get());
+        percentilesToXML(xml, "process", process, this._process._max.get());
+        xml.closeElement();
+      }
       xml.closeElement();
     }
 
     /**
-     * @param times Times to average
-     * @return The average time value
+     * Returns the slot for the current minute, replacing the slot from a previous minute.
+     *
+     * @param now The current time in milliseconds
+     *
+     * @return the slot for the current minute
      */
-    private static long average(Collection<Long> times) {
-      if (times.isEmpty()) return 0;
-      long avgLastEtag = 0;
-      for (Long t : times) {
-        avgLastEtag += t;
+    private Slot getSlot(long now) {
+      long minute = TimeUnit.MILLISECONDS.toMinutes(now);
+      int i = (int)(minute % this._slots.length());
+      Slot slot = this._slots.get(i);
+      while (slot == null || slot._minute != minute) {
+        Slot fresh = new Slot(minute);
+        if (this._slots.compareAndSet(i, slot, fresh)) return fresh;
+        slot = this._slots.get(i);
       }
-      return avgLastEtag / times.size();
+      return slot;
+    }
+
+    /**
+     * Adds the counts of the slots within the window to the specified counts.
+     *
+     * @param minutes The length of the sliding window in minutes
+     * @param now     The current time in milliseconds
+     * @param etag    The counts for the etag times
+     * @param process The counts for the process times
+     */
+    private void collect(int minutes, long now, long[] etag, long[] process) {
+      long minute = TimeUnit.MILLISECONDS.toMinutes(now);
+      for (int i = 0; i < this._slots.length(); i++) {
+        Slot slot = this._slots.get(i);
+        if (slot != null && minute - slot._minute < Math.min(minutes, MAX_WINDOW)) {
+          slot._etag.addTo(etag);
+          slot._process.addTo(process);
+        }
+      }
+    }
+
+    /**
+     * Writes the percentiles for the specified counts.
+     *
+     * @param xml    The XML writer
+     * @param phase  The name of the phase
+     * @param counts The counts of the histogram
+     * @param max    The maximum time recorded
+     *
+     * @throws IOException Only if thrown by the XML writer
+     */
+    private static void percentilesToXML(XMLWriter xml, String phase, long[] counts, long max) throws IOException {
+      xml.openElement("percentiles");
+      xml.attribute("phase", phase);
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        long value = Math.min(LatencyHistogram.percentile(counts, PERCENTILES[i]), max);
+        xml.attribute(PERCENTILE_NAMES[i], Long.toString(value));
+      }
+      xml.closeElement();
+    }
+  }
+
+  /**
+   * The times taken by one of the phase of the generator.
+   */
+  private static final class Times {
+
+    /**
+     * Total amount of time in microseconds.
+     */
+    private final LongAdder _total = new LongAdder();
+
+    /**
+     * Minimum time in microseconds.
+     */
+    private final LongAccumulator _min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    /**
+     * Maximum time in microseconds.
+     */
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * The distribution of times.
+     */
+    private final LatencyHistogram _histogram = new LatencyHistogram();
+
+    /**
+     * The last times in microseconds.
+     */
+    private final AtomicLongArray _last = new AtomicLongArray(BasicStats.LAST);
+
+    /**
+     * Records the specified time.
+     *
+     * @param time The time in microseconds
+     * @param n    The sequence number of the sample
+     */
+    void record(long time, long n) {
+      this._total.add(time);
+      this._min.accumulate(time);
+      this._max.accumulate(time);
+      this._histogram.record(time);
+      this._last.set((int)(n % BasicStats.LAST), time);
+    }
+
+    /**
+     * @return The minimum time or 0 if no time was recorded
+     */
+    long min() {
+      long min = this._min.get();
+      return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    /**
+     * @param samples The number of samples recorded
+     * @return The average of the last times recorded
+     */
+    long averageLast(long samples) {
+      if (samples == 0) return 0;
+      long total = 0;
+      for (int i = 0; i < samples; i++) {
+        total += this._last.get(i);
+      }
+      return total / samples;
+    }
+  }
+
+  /**
+   * The histograms for a minute of the sliding window.
+   */
+  private static final class Slot {
+
+    /**
+     * The minute since the epoch.
+     */
+    private final long _minute;
+
+    /**
+     * The distribution of etag times.
+     */
+    private final LatencyHistogram _etag = new LatencyHistogram();
+
+    /**
+     * The distribution of process times.
+     */
+    private final LatencyHistogram _process = new LatencyHistogram();
+
+    /**
+     * @param minute The minute since the epoch
+     */
+    Slot(long minute) {
+      this._minute = minute;
     }
   }
 }
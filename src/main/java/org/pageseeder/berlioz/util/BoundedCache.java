@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An in-memory cache bounded by the number of bytes used by its values.
+ *
+ * <p>The number of bytes used by each value is computed by the function specified when the
+ * cache is created. When a new value would exceed the budget, the least recently used values are
+ * evicted; values larger than the budget are not stored.
+ *
+ * <p>The budget is specified each time a value is stored so that it can be changed in the global
+ * settings without recreating the cache.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of values
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class BoundedCache<K, V> {
+
+  /**
+   * The name of the cache (for information).
+   */
+  private final String _name;
+
+  /**
+   * The function returning the number of bytes used by a value.
+   */
+  private final ToLongFunction<V> _bytes;
+
+  /**
+   * The values in access order.
+   */
+  private final LinkedHashMap<K, V> _values = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Total number of bytes used by the values currently held.
+   */
+  private long bytes = 0;
+
+  /**
+   * Number of values found in the cache.
+   */
+  private long hits = 0;
+
+  /**
+   * Number of times a value could not be found in the cache.
+   */
+  private long misses = 0;
+
+  /**
+   * Number of values evicted to keep within the budget.
+   */
+  private long evictions = 0;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param name  The name of the cache (for information)
+   * @param bytes The function returning the number of bytes used by a value
+   */
+  public BoundedCache(String name, ToLongFunction<V> bytes) {
+    this._name = name;
+    this._bytes = bytes;
+  }
+
+  /**
+   * Returns the value for the specified key.
+   *
+   * @param key The key
+   *
+   * @return the value or <code>null</code>
+   */
+  public synchronized @Nullable V get(K key) {
+    V value = this._values.get(key);
+    if (value != null) {
+      this.hits++;
+    } else {
+      this.misses++;
+    }
+    return value;
+  }
+
+  /**
+   * Returns the value for the specified key if it is still valid.
+   *
+   * <p>A value which is no longer valid is removed and counted as a miss.
+   *
+   * @param key   The key
+   * @param valid Whether the value found for the key can be used
+   *
+   * @return the value or <code>null</code>
+   */
+  public synchronized @Nullable V get(K key, Predicate<V> valid) {
+    V value = this._values.get(key);
+    if (value != null && !valid.test(value)) {
+      this._values.remove(key);
+      this.bytes -= this._bytes.applyAsLong(value);
+      value = null;
+    }
+    if (value != null) {
+      this.hits++;
+    } else {
+      this.misses++;
+    }
+    return value;
+  }
+
+  /**
+   * Stores the specified value, evicting the least recently used values if necessary.
+   *
+   * <p>Values larger than the budget are ignored.
+   *
+   * @param key    The key
+   * @param value  The value to store
+   * @param budget The maximum number of bytes the cache can use
+   */
+  public synchronized void put(K key, V value, long budget) {
+    long size = this._bytes.applyAsLong(value);
+    if (size > budget) return;
+    V previous = this._values.put(key, value);
+    if (previous != null) {
+      this.bytes -= this._bytes.applyAsLong(previous);
+    }
+    this.bytes += size;
+    Iterator<V> eldest = this._values.values().iterator();
+    while (this.bytes > budget && eldest.hasNext()) {
+      this.bytes -= this._bytes.applyAsLong(eldest.next());
+      eldest.remove();
+      this.evictions++;
+    }
+  }
+
+  /**
+   * Removes all the values from the cache.
+   */
+  public synchronized void clear() {
+    this._values.clear();
+    this.bytes = 0;
+  }
+
+  /**
+   * @return The number of values in the cache.
+   */
+  public synchronized int size() {
+    return this._values.size();
+  }
+
+  /**
+   * @return The total number of bytes used by the values held by the cache.
+   */
+  public synchronized long bytes() {
+    return this.bytes;
+  }
+
+  /**
+   * @return The number of values found in the cache.
+   */
+  public synchronized long hits() {
+    return this.hits;
+  }
+
+  /**
+   * @return The number of times a value could not be found in the cache.
+   */
+  public synchronized long misses() {
+    return this.misses;
+  }
+
+  /**
+   * @return The number of values evicted to keep within the budget.
+   */
+  public synchronized long evictions() {
+    return this.evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return this._name+"[size="+this._values.size()+",bytes="+this.bytes+",hits="+this.hits+",misses="+this.misses+",evictions="+this.evictions+"]";
+  }
+
+}
@@ -15,11 +15,15 @@
  */
 package org.pageseeder.berlioz.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -30,7 +34,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.8.1
  */
 public final class CharsetUtils {
@@ -40,6 +44,11 @@ public final class CharsetUtils {
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(CharsetUtils.class);
 
+  /**
+   * The size of the buffer used to encode characters.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
   /** Utility class */
   private CharsetUtils() {
   }
@@ -70,4 +79,77 @@ public final class CharsetUtils {
     return length;
   }
 
+  /**
+   * Encodes the specified content using the given charset and writes it to the output stream.
+   *
+   * <p>Unlike a <code>Writer</code>, this method does not copy the whole content into a new
+   * character array, the characters are copied and encoded in small chunks.
+   *
+   * <p>Malformed input and unmappable characters are replaced.
+   *
+   * @param content The content to write
+   * @param charset The character set
+   * @param out     The output stream to write to
+   *
+   * @throws IOException If thrown by the output stream.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static void write(CharSequence content, Charset charset, OutputStream out) throws IOException {
+    CharsetEncoder encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    int length = content.length();
+    int start = 0;
+    boolean endOfInput;
+    do {
+      // Fill the buffer (it may still contain an unencoded high surrogate)
+      int end = Math.min(start + chars.remaining(), length);
+      getChars(content, start, end, chars.array(), chars.position());
+      chars.position(chars.position() + end - start);
+      chars.flip();
+      start = end;
+      endOfInput = start == length;
+      CoderResult result;
+      do {
+        result = encoder.encode(chars, bytes, endOfInput);
+        if (result.isOverflow()) {
+          out.write(bytes.array(), 0, bytes.position());
+          bytes.clear();
+        }
+      } while (result.isOverflow());
+      chars.compact();
+    } while (!endOfInput);
+    while (encoder.flush(bytes).isOverflow()) {
+      out.write(bytes.array(), 0, bytes.position());
+      bytes.clear();
+    }
+    out.write(bytes.array(), 0, bytes.position());
+  }
+
+  /**
+   * Copies characters from the specified content into the destination array.
+   *
+   * @param content The content to copy
+   * @param start   The index of the first character to copy
+   * @param end     The index after the last character to copy
+   * @param dst     The destination array
+   * @param offset  The start offset in the destination array
+   */
+  private static void getChars(CharSequence content, int start, int end, char[] dst, int offset) {
+    if (content instanceof String) {
+      ((String)content).getChars(start, end, dst, offset);
+    } else if (content instanceof StringBuilder) {
+      ((StringBuilder)content).getChars(start, end, dst, offset);
+    } else if (content instanceof FragmentBuffer) {
+      ((FragmentBuffer)content).getChars(start, end, dst, offset);
+    } else {
+      for (int i = start; i < end; i++) {
+        dst[offset + i - start] = content.charAt(i);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An output stream compressing data using the "gzip" or "deflate" HTTP content encodings with
+ * a deflater borrowed from a {@link DeflaterPool}.
+ *
+ * <p>The deflater is returned to its pool when the stream is finished, so the stream must always
+ * be finished or closed; writing to a finished stream throws an <code>IOException</code>.
+ *
+ * <p>The "gzip" format is the same as the one produced by the <code>GZIPOutputStream</code>.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class CompressedOutputStream extends DeflaterOutputStream {
+
+  /**
+   * The "gzip" content encoding.
+   */
+  public static final String GZIP = "gzip";
+
+  /**
+   * The "deflate" content encoding (ZLIB format).
+   */
+  public static final String DEFLATE = "deflate";
+
+  /**
+   * The size of the output buffer.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * GZip header: magic number, compression method (deflate), no flags, no time, no extra flags,
+   * unknown OS.
+   */
+  private static final byte[] GZIP_HEADER = new byte[]{ 0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff };
+
+  /**
+   * The pool the deflater was borrowed from.
+   */
+  private final DeflaterPool _pool;
+
+  /**
+   * The checksum of the uncompressed data for GZip only.
+   */
+  private final @Nullable CRC32 _crc;
+
+  /**
+   * Whether the stream has been finished.
+   */
+  private boolean finished = false;
+
+  /**
+   * @param out  The output stream to write the compressed data to
+   * @param pool The pool the deflater was borrowed from
+   * @param def  The deflater
+   * @param crc  The checksum for the GZip format (<code>null</code> for deflate)
+   */
+  private CompressedOutputStream(OutputStream out, DeflaterPool pool, Deflater def, @Nullable CRC32 crc) {
+    super(out, def, BUFFER_SIZE);
+    this._pool = pool;
+    this._crc = crc;
+  }
+
+  /**
+   * Creates a new compressed output stream for the specified content encoding.
+   *
+   * @param out      The output stream to write the compressed data to
+   * @param encoding The content encoding, either "gzip" or "deflate"
+   * @param level    The compression level from 0 to 9 or -1 for the default compression level
+   *
+   * @return a new compressed output stream
+   *
+   * @throws IOException If the GZip header could not be written.
+   * @throws IllegalArgumentException If the content encoding or compression level is not supported.
+   */
+  public static CompressedOutputStream newInstance(OutputStream out, String encoding, int level) throws IOException {
+    if (GZIP.equals(encoding)) {
+      out.write(GZIP_HEADER);
+      return new CompressedOutputStream(out, DeflaterPool.GZIP, DeflaterPool.GZIP.borrow(level), new CRC32());
+    } else if (DEFLATE.equals(encoding)) {
+      return new CompressedOutputStream(out, DeflaterPool.ZLIB, DeflaterPool.ZLIB.borrow(level), null);
+    } else throw new IllegalArgumentException("Unsupported content encoding: "+encoding);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (this.finished) throw new IOException("Compressed stream already finished");
+    super.write(b, off, len);
+    CRC32 crc = this._crc;
+    if (crc != null) {
+      crc.update(b, off, len);
+    }
+  }
+
+  /**
+   * Finishes writing the compressed data without closing the underlying stream and returns
+   * the deflater to its pool.
+   *
+   * @throws IOException If thrown by the underlying output stream.
+   */
+  @Override
+  public void finish() throws IOException {
+    if (this.finished) return;
+    try {
+      super.finish();
+      CRC32 crc = this._crc;
+      if (crc != null) {
+        writeInt((int)crc.getValue());
+        writeInt((int)this.def.getBytesRead());
+      }
+    } finally {
+      this.finished = true;
+      this._pool.release(this.def);
+    }
+  }
+
+  /**
+   * Writes an integer in little-endian byte order as required by the GZip trailer.
+   *
+   * @param i The integer to write.
+   *
+   * @throws IOException If thrown by the underlying output stream.
+   */
+  private void writeInt(int i) throws IOException {
+    this.out.write(i & 0xff);
+    this.out.write((i >> 8) & 0xff);
+    this.out.write((i >> 16) & 0xff);
+    this.out.write((i >> 24) & 0xff);
+  }
+
+}
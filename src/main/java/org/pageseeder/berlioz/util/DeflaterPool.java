@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * A pool of reusable deflaters.
+ *
+ * <p>Each deflater holds native memory which is only released when it is ended, so creating one
+ * for every response is expensive. Deflaters are reset when they are returned to the pool and
+ * only a limited number of idle deflaters is kept; the others are ended.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class DeflaterPool {
+
+  /**
+   * The pool of raw deflaters used for the GZip format.
+   */
+  public static final DeflaterPool GZIP = new DeflaterPool(true, Runtime.getRuntime().availableProcessors() * 2);
+
+  /**
+   * The pool of deflaters using the ZLIB format which HTTP calls "deflate".
+   */
+  public static final DeflaterPool ZLIB = new DeflaterPool(false, Runtime.getRuntime().availableProcessors() * 2);
+
+  /**
+   * Whether the deflaters omit the ZLIB header and checksum.
+   */
+  private final boolean _nowrap;
+
+  /**
+   * The maximum number of idle deflaters.
+   */
+  private final int _maxIdle;
+
+  /**
+   * Deflaters ready to be used.
+   */
+  private final Queue<Deflater> _idle = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The number of idle deflaters (the size of a concurrent queue is not a constant time operation).
+   */
+  private final AtomicInteger _idleCount = new AtomicInteger();
+
+  /**
+   * Creates a new pool.
+   *
+   * @param nowrap  Whether the deflaters omit the ZLIB header and checksum (for GZip)
+   * @param maxIdle The maximum number of idle deflaters to keep
+   */
+  public DeflaterPool(boolean nowrap, int maxIdle) {
+    this._nowrap = nowrap;
+    this._maxIdle = maxIdle;
+  }
+
+  /**
+   * Borrows a deflater from this pool.
+   *
+   * @param level The compression level from 0 to 9 or -1 for the default compression level
+   *
+   * @return a deflater ready to be used
+   *
+   * @throws IllegalArgumentException If the compression level is invalid
+   */
+  public Deflater borrow(int level) {
+    Deflater deflater = this._idle.poll();
+    if (deflater != null) {
+      this._idleCount.decrementAndGet();
+      deflater.setLevel(level);
+    } else {
+      deflater = new Deflater(level, this._nowrap);
+    }
+    return deflater;
+  }
+
+  /**
+   * Returns a deflater to this pool.
+   *
+   * <p>The deflater is reset so that it can be reused; if there are already enough idle
+   * deflaters, it is ended instead.
+   *
+   * @param deflater The deflater borrowed from this pool
+   */
+  public void release(Deflater deflater) {
+    if (this._idleCount.incrementAndGet() <= this._maxIdle) {
+      deflater.reset();
+      this._idle.offer(deflater);
+    } else {
+      this._idleCount.decrementAndGet();
+      deflater.end();
+    }
+  }
+
+  /**
+   * @return The number of idle deflaters.
+   */
+  public int idle() {
+    return this._idleCount.get();
+  }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A character buffer made of a list of segments so that fragments rendered separately can be
+ * spliced into it without being copied.
+ *
+ * <p>Characters written to this buffer are stored in chunks which are never reallocated: when a
+ * chunk is full, a new larger one is added. When a fragment is spliced, its segments are added
+ * to the list by reference.
+ *
+ * <p>Since the buffer is only ever appended to, a fragment may keep being written to after it has
+ * been spliced, only the characters written before are part of this buffer.
+ *
+ * <p>The content can be read as a <code>CharSequence</code>, written to a writer one segment at
+ * a time, or read through a reader. Sequential access by index is efficient as this buffer
+ * remembers the last segment accessed.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class FragmentBuffer extends Writer implements CharSequence {
+
+  /**
+   * The size of the first chunk.
+   */
+  private static final int MIN_CHUNK_SIZE = 256;
+
+  /**
+   * The maximum size of a chunk.
+   */
+  private static final int MAX_CHUNK_SIZE = 16384;
+
+  /**
+   * An empty chunk.
+   */
+  private static final char[] EMPTY = new char[0];
+
+  /**
+   * The character arrays of each segment.
+   */
+  private char[][] arrays = new char[8][];
+
+  /**
+   * The offset of each segment in its array.
+   */
+  private int[] offsets = new int[8];
+
+  /**
+   * The length of each segment.
+   */
+  private int[] lengths = new int[8];
+
+  /**
+   * The number of segments.
+   */
+  private int segments = 0;
+
+  /**
+   * The chunk currently written to.
+   */
+  private char[] chunk = EMPTY;
+
+  /**
+   * The start of the characters in the current chunk not yet added as a segment.
+   */
+  private int start = 0;
+
+  /**
+   * The position of the next character to write in the current chunk.
+   */
+  private int position = 0;
+
+  /**
+   * The total number of characters.
+   */
+  private int length = 0;
+
+  /**
+   * The size of the next chunk.
+   */
+  private int chunkSize = MIN_CHUNK_SIZE;
+
+  /**
+   * The index of the last segment accessed.
+   */
+  private int cursor = 0;
+
+  /**
+   * The index of the first character of the last segment accessed.
+   */
+  private int cursorStart = 0;
+
+  /**
+   * Creates a new empty buffer.
+   */
+  public FragmentBuffer() {
+  }
+
+  @Override
+  public void write(int c) {
+    if (this.position == this.chunk.length) {
+      nextChunk();
+    }
+    this.chunk[this.position++] = (char)c;
+    this.length++;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+    int from = off;
+    int remaining = len;
+    while (remaining > 0) {
+      if (this.position == this.chunk.length) {
+        nextChunk();
+      }
+      int n = Math.min(remaining, this.chunk.length - this.position);
+      System.arraycopy(cbuf, from, this.chunk, this.position, n);
+      this.position += n;
+      from += n;
+      remaining -= n;
+    }
+    this.length += len;
+  }
+
+  @Override
+  public void write(String str, int off, int len) {
+    int from = off;
+    int remaining = len;
+    while (remaining > 0) {
+      if (this.position == this.chunk.length) {
+        nextChunk();
+      }
+      int n = Math.min(remaining, this.chunk.length - this.position);
+      str.getChars(from, from + n, this.chunk, this.position);
+      this.position += n;
+      from += n;
+      remaining -= n;
+    }
+    this.length += len;
+  }
+
+  /**
+   * Splices the content of the specified fragment at the end of this buffer.
+   *
+   * <p>The segments of the fragment are shared and not copied.
+   *
+   * @param fragment The fragment to splice
+   *
+   * @throws IllegalArgumentException If the fragment is this buffer.
+   */
+  public void splice(FragmentBuffer fragment) {
+    if (fragment == this) throw new IllegalArgumentException("Cannot splice a buffer into itself");
+    seal();
+    fragment.seal();
+    for (int i = 0; i < fragment.segments; i++) {
+      addSegment(fragment.arrays[i], fragment.offsets[i], fragment.lengths[i]);
+    }
+    this.length += fragment.length;
+  }
+
+  /**
+   * Does nothing.
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Does nothing, the buffer can still be written to.
+   */
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public int length() {
+    return this.length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= this.length) throw new IndexOutOfBoundsException("index "+index+", length "+this.length);
+    seal();
+    locate(index);
+    return this.arrays[this.cursor][this.offsets[this.cursor] + index - this.cursorStart];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > this.length || start > end)
+      throw new IndexOutOfBoundsException("start "+start+", end "+end+", length "+this.length);
+    char[] chars = new char[end - start];
+    getChars(start, end, chars, 0);
+    return new String(chars);
+  }
+
+  /**
+   * Copies characters from this buffer into the destination array.
+   *
+   * @param srcBegin The index of the first character to copy
+   * @param srcEnd   The index after the last character to copy
+   * @param dst      The destination array
+   * @param dstBegin The start offset in the destination array
+   *
+   * @throws IndexOutOfBoundsException If the indexes are out of bounds.
+   */
+  public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+    if (srcBegin < 0 || srcEnd > this.length || srcBegin > srcEnd)
+      throw new IndexOutOfBoundsException("begin "+srcBegin+", end "+srcEnd+", length "+this.length);
+    if (srcBegin == srcEnd) return;
+    seal();
+    locate(srcBegin);
+    int index = srcBegin;
+    int to = dstBegin;
+    while (index < srcEnd) {
+      int i = this.cursor;
+      int from = index - this.cursorStart;
+      int n = Math.min(this.lengths[i] - from, srcEnd - index);
+      System.arraycopy(this.arrays[i], this.offsets[i] + from, dst, to, n);
+      index += n;
+      to += n;
+      if (index < srcEnd) {
+        this.cursorStart += this.lengths[i];
+        this.cursor++;
+      }
+    }
+  }
+
+  /**
+   * Writes the content of this buffer to the specified writer one segment at a time.
+   *
+   * @param out The writer to write to
+   *
+   * @throws IOException If thrown by the writer.
+   */
+  public void writeTo(Writer out) throws IOException {
+    seal();
+    for (int i = 0; i < this.segments; i++) {
+      out.write(this.arrays[i], this.offsets[i], this.lengths[i]);
+    }
+  }
+
+  /**
+   * Returns a reader over the content of this buffer.
+   *
+   * <p>The reader reads the characters in this buffer when it is read, characters written to
+   * this buffer afterwards may be read.
+   *
+   * @return a new reader over the content of this buffer.
+   */
+  public Reader reader() {
+    return new FragmentReader();
+  }
+
+  /**
+   * @return The number of segments in this buffer.
+   */
+  int segments() {
+    seal();
+    return this.segments;
+  }
+
+  @Override
+  public String toString() {
+    char[] chars = new char[this.length];
+    getChars(0, this.length, chars, 0);
+    return new String(chars);
+  }
+
+  /**
+   * Adds the characters written to the current chunk as a segment.
+   */
+  private void seal() {
+    if (this.position > this.start) {
+      addSegment(this.chunk, this.start, this.position - this.start);
+      this.start = this.position;
+    }
+  }
+
+  /**
+   * Seals the current chunk and starts writing to a new one.
+   */
+  private void nextChunk() {
+    seal();
+    this.chunk = new char[this.chunkSize];
+    this.start = 0;
+    this.position = 0;
+    this.chunkSize = Math.min(this.chunkSize * 2, MAX_CHUNK_SIZE);
+  }
+
+  /**
+   * Adds a segment to the list.
+   *
+   * @param array  The character array
+   * @param offset The offset of the segment in the array
+   * @param len    The length of the segment
+   */
+  private void addSegment(char[] array, int offset, int len) {
+    if (this.segments == this.arrays.length) {
+      int capacity = this.segments * 2;
+      this.arrays = Arrays.copyOf(this.arrays, capacity);
+      this.offsets = Arrays.copyOf(this.offsets, capacity);
+      this.lengths = Arrays.copyOf(this.lengths, capacity);
+    }
+    this.arrays[this.segments] = array;
+    this.offsets[this.segments] = offset;
+    this.lengths[this.segments] = len;
+    this.segments++;
+  }
+
+  /**
+   * Moves the cursor to the segment containing the character at the specified index.
+   *
+   * @param index the index of a character in this buffer (must be less than the length).
+   */
+  private void locate(int index) {
+    if (index < this.cursorStart) {
+      this.cursor = 0;
+      this.cursorStart = 0;
+    }
+    while (index >= this.cursorStart + this.lengths[this.cursor]) {
+      this.cursorStart += this.lengths[this.cursor];
+      this.cursor++;
+    }
+  }
+
+  /**
+   * A reader over the content of this buffer.
+   */
+  private final class FragmentReader extends Reader {
+
+    /**
+     * The index of the next character to read.
+     */
+    private int next = 0;
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+      if (len == 0) return 0;
+      int n = Math.min(len, FragmentBuffer.this.length - this.next);
+      if (n <= 0) return -1;
+      getChars(this.next, this.next + n, cbuf, off);
+      this.next += n;
+      return n;
+    }
+
+    @Override
+    public int read() {
+      if (this.next >= FragmentBuffer.this.length) return -1;
+      return charAt(this.next++);
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, FragmentBuffer.this.length - this.next));
+      this.next += (int)skipped;
+      return skipped;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -33,7 +33,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.10.7
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.6
  */
 public final class MD5 {
@@ -75,6 +75,22 @@ public final class MD5 {
     return toHex(bytes);
   }
 
+  /**
+   * Returns a hash value for the specified data.
+   *
+   * @param data The data to hash.
+   *
+   * @return The MD5 checksum value as a string.
+   *
+   * @throws UnsupportedOperationException If the MD5 algorithm is not available for that platform.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static String hash(byte[] data) throws UnsupportedOperationException {
+    MessageDigest md = getAlgorithm();
+    return toHex(md.digest(data));
+  }
+
   /**
    * Returns a hash value for the specified file content.
    *
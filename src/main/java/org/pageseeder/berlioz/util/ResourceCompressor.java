@@ -17,10 +17,8 @@ package org.pageseeder.berlioz.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.Charset;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,9 +26,11 @@ import org.slf4j.LoggerFactory;
 /**
  * A utility class to compress the contents of a resource.
  *
+ * <p>The content is compressed using pooled deflaters, see {@link CompressedOutputStream}.
+ *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.9.8 - 8 October 2012
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.8.2
  */
 public final class ResourceCompressor {
@@ -47,7 +47,7 @@ public final class ResourceCompressor {
   }
 
   /**
-   * Compresses the specified content.
+   * Compresses the specified content using GZip.
    *
    * @param content The content to compress.
    * @param charset The Character set to use to encode the char sequence.
@@ -55,32 +55,56 @@ public final class ResourceCompressor {
    * @return The compressed content or an empty array if an error occurred.
    */
   public static byte[] compress(CharSequence content, Charset charset) {
-    ByteArrayOutputStream os = new ByteArrayOutputStream(content.length());
-    byte[] compressed = null;
-    GZIPOutputStream compressor = null;
-    try {
-      compressor = new GZIPOutputStream(os);
-      Writer w = new OutputStreamWriter(compressor, charset);
-      w.write(content.toString());
-      w.close();
-      compressor.finish();
-      compressed = os.toByteArray();
+    return compress(content, charset, CompressedOutputStream.GZIP, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Compresses the specified content.
+   *
+   * @param content  The content to compress.
+   * @param charset  The Character set to use to encode the char sequence.
+   * @param encoding The content encoding, either "gzip" or "deflate"
+   * @param level    The compression level from 0 to 9 or -1 for the default compression level
+   *
+   * @return The compressed content or an empty array if an error occurred.
+   *
+   * @throws IllegalArgumentException If the content encoding or compression level is not supported.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static byte[] compress(CharSequence content, Charset charset, String encoding, int level) {
+    // Text usually compresses to less than a quarter of its size
+    ByteArrayOutputStream os = new ByteArrayOutputStream(Math.max(content.length() / 4, 256));
+    try (CompressedOutputStream out = CompressedOutputStream.newInstance(os, encoding, level)) {
+      CharsetUtils.write(content, charset, out);
     } catch (IOException ex) {
       // If an error occurs, we return a empty array
-      compressed = new byte[]{};
-    } finally {
-      // clean up and make sure the resources are released as soon as possible
-      try {
-        if (compressor != null) {
-          compressor.close();
-        }
-      } catch (IOException ex) {
-        LOGGER.error("Unable to close GZIPOutputStream stream", ex);
-      }
-      os = null;
-      compressor = null;
+      LOGGER.error("Unable to compress content", ex);
+      return new byte[]{};
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * Compresses the specified bytes.
+   *
+   * @param content  The content to compress.
+   * @param encoding The content encoding, either "gzip" or "deflate"
+   * @param level    The compression level from 0 to 9 or -1 for the default compression level
+   *
+   * @return The compressed content.
+   *
+   * @throws IOException If an error occurred while compressing the content.
+   * @throws IllegalArgumentException If the content encoding or compression level is not supported.
+   *
+   * @since Berlioz 0.13.0
+   */
+  public static byte[] compress(byte[] content, String encoding, int level) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(Math.max(content.length / 4, 256));
+    try (CompressedOutputStream out = CompressedOutputStream.newInstance(os, encoding, level)) {
+      out.write(content);
     }
-    return compressed;
+    return os.toByteArray();
   }
 
 }
@@ -50,7 +50,7 @@ import org.xml.sax.helpers.DefaultHandler;
  *
  * @author Christophe Lauret
  *
- * @version Berlioz 0.11.2
+ * @version Berlioz 0.13.0
  * @since Berlioz 0.7
  */
 public final class XMLCopy extends DefaultHandler implements ContentHandler, LexicalHandler {
@@ -224,8 +224,11 @@ public final class XMLCopy extends DefaultHandler implements ContentHandler, Lex
    *
    * <p>Any error is reported as XML on the XML writer.
    *
-   * <p>This method does not perform any caching, caching is better handled externally by
-   * generators.
+   * <p>This method does not perform any caching unless the
+   * {@link org.pageseeder.berlioz.BerliozOption#XML_COPY_CACHE} global option is enabled: the XML
+   * of a file parsed successfully is then kept in memory and written without parsing the file
+   * again until its length or last modified date changes. Changes to external entities referenced
+   * by the file are not detected.
    *
    * @param file The file.
    * @param xml  The XML writer.
@@ -236,17 +239,44 @@ public final class XMLCopy extends DefaultHandler implements ContentHandler, Lex
    * @throws IOException should an error occur when writing the XML.
    */
   public static boolean copyTo(File file, XMLWriter xml) throws IOException {
+    return copyTo(file, xml, XMLCopyCache.getBudget());
+  }
+
+  /**
+   * Copy the specified File to the given XML Writer using the XML copy cache within the
+   * specified budget.
+   *
+   * @param file   The file.
+   * @param xml    The XML writer.
+   * @param budget The maximum number of bytes the cache can use (<code>0</code> to bypass it)
+   *
+   * @return <code>true</code> if the copy was done successfully;
+   *         <code>false</code> otherwise.
+   *
+   * @throws IOException should an error occur when writing the XML.
+   */
+  static boolean copyTo(File file, XMLWriter xml, long budget) throws IOException {
     boolean ok = false;
     // load
     if (file.exists()) {
       try {
-        // writers to use
-        XMLStringWriter copy = new XMLStringWriter(NamespaceAware.No);
-
-        // copy the data
-        parse(new XMLCopy(copy), new InputSource(file.toURI().toString()));
-        copy.flush();
-        String parsed = copy.toString();
+        // check the cache before the file is parsed
+        String path = file.getAbsolutePath();
+        long modified = file.lastModified();
+        long size = file.length();
+        String parsed = budget > 0? XMLCopyCache.getInstance().get(path, modified, size) : null;
+        if (parsed == null) {
+          // writers to use
+          XMLStringWriter copy = new XMLStringWriter(NamespaceAware.No);
+
+          // copy the data
+          parse(new XMLCopy(copy), new InputSource(file.toURI().toString()));
+          copy.flush();
+          parsed = copy.toString();
+          if (budget > 0) {
+            XMLCopyCache.getInstance().put(path, modified, size, parsed, budget);
+          }
+        }
 
         // write to XML writer
         xml.writeXML(parsed);
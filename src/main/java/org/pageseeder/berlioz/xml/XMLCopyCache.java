@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.xml;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.pageseeder.berlioz.BerliozOption;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.util.BoundedCache;
+
+/**
+ * An in-memory cache of the XML of the files copied by {@link XMLCopy}.
+ *
+ * <p>Files included by generators rarely change: once a file has been parsed and found to be
+ * well-formed, the XML produced by the copy is kept so that it can be written again without
+ * parsing the file. Entries are keyed on the path of the file and are invalidated when its
+ * length or last modified date changes.
+ *
+ * <p>The cache is bounded by the memory used by the XML it holds, counting two bytes per
+ * character: when new XML would exceed the budget, the least recently used entries are evicted.
+ * The budget is defined by the {@link BerliozOption#XML_COPY_CACHE} global option, the cache is
+ * disabled by default.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+final class XMLCopyCache {
+
+  /**
+   * The XML copy cache shared by all generators.
+   */
+  private static final XMLCopyCache SINGLETON = new XMLCopyCache();
+
+  /**
+   * The cached XML by path.
+   */
+  private final BoundedCache<String, Entry> _entries = new BoundedCache<>("XMLCopyCache", Entry::bytes);
+
+  /**
+   * Use the singleton instance.
+   */
+  XMLCopyCache() {
+  }
+
+  /**
+   * @return The XML copy cache shared by all generators.
+   */
+  static XMLCopyCache getInstance() {
+    return SINGLETON;
+  }
+
+  /**
+   * @return The maximum number of bytes the cache can use as defined in the global settings.
+   */
+  static long getBudget() {
+    return GlobalSettings.getInt(BerliozOption.XML_COPY_CACHE) * 1024L;
+  }
+
+  /**
+   * Returns the XML copied from the specified file if it has not changed.
+   *
+   * <p>An entry for a previous version of the file is removed.
+   *
+   * @param path     The path to the file
+   * @param modified When the file was last modified
+   * @param size     The length of the file in bytes
+   *
+   * @return the XML or <code>null</code>
+   */
+  @Nullable String get(String path, long modified, long size) {
+    Entry entry = this._entries.get(path, e -> e._modified == modified && e._size == size);
+    return entry != null? entry._xml : null;
+  }
+
+  /**
+   * Stores the XML copied from the specified file, evicting the least recently used entries if
+   * necessary.
+   *
+   * <p>XML larger than the budget is ignored.
+   *
+   * @param path     The path to the file
+   * @param modified When the file was last modified
+   * @param size     The length of the file in bytes
+   * @param xml      The XML copied from the file
+   * @param budget   The maximum number of bytes the cache can use
+   */
+  void put(String path, long modified, long size, String xml, long budget) {
+    this._entries.put(path, new Entry(modified, size, xml), budget);
+  }
+
+  /**
+   * Removes all the entries from the cache.
+   */
+  void clear() {
+    this._entries.clear();
+  }
+
+  /**
+   * @return The number of files in the cache.
+   */
+  int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * @return The total number of bytes used by the XML held by the cache.
+   */
+  long bytes() {
+    return this._entries.bytes();
+  }
+
+  /**
+   * @return The number of files found in the cache.
+   */
+  long hits() {
+    return this._entries.hits();
+  }
+
+  /**
+   * @return The number of files which had to be parsed.
+   */
+  long misses() {
+    return this._entries.misses();
+  }
+
+  @Override
+  public String toString() {
+    return this._entries.toString();
+  }
+
+  /**
+   * The XML copied from a version of a file.
+   */
+  private static final class Entry {
+
+    /**
+     * When the file was last modified.
+     */
+    private final long _modified;
+
+    /**
+     * The length of the file in bytes.
+     */
+    private final long _size;
+
+    /**
+     * The XML copied from the file.
+     */
+    private final String _xml;
+
+    /**
+     * @param modified When the file was last modified
+     * @param size     The length of the file in bytes
+     * @param xml      The XML copied from the file
+     */
+    Entry(long modified, long size, String xml) {
+      this._modified = modified;
+      this._size = size;
+      this._xml = xml;
+    }
+
+    /**
+     * @return The number of bytes used by the XML, two per character.
+     */
+    long bytes() {
+      return this._xml.length() * 2L;
+    }
+  }
+
+}
@@ -0,0 +1,757 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An XML writer encoding the XML as UTF-8 bytes directly into a growable byte buffer.
+ *
+ * <p>The output is identical to the UTF-8 encoding of the output of the {@link XmlAppendable},
+ * but text is escaped and encoded in a single pass without intermediate strings: runs of
+ * characters which need neither escaping nor encoding are copied as they are, and the escape
+ * decisions for ASCII characters are made with lookup tables.
+ *
+ * <p>Since the buffer is only reallocated when it needs to grow, a writer can be reused by the
+ * same thread once its content has been used: call {@link #reset()} to start a new document.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author Christophe Lauret
+ *
+ * @version Berlioz 0.13.0
+ * @since Berlioz 0.13.0
+ */
+public final class XmlByteWriter implements XmlWriter {
+
+  /**
+   * The initial capacity of the buffer.
+   */
+  private static final int DEFAULT_CAPACITY = 8192;
+
+  /**
+   * ASCII characters which can be copied as they are.
+   */
+  private static final byte COPY = 0;
+
+  /**
+   * ASCII characters which must be replaced.
+   */
+  private static final byte ESCAPE = 1;
+
+  /**
+   * ASCII characters which are not allowed and are ignored.
+   */
+  private static final byte IGNORE = 2;
+
+  /**
+   * What to do with each ASCII character in text.
+   */
+  private static final byte[] TEXT = new byte[128];
+
+  /**
+   * What to do with each ASCII character in attribute values.
+   */
+  private static final byte[] ATTRIBUTE = new byte[128];
+
+  /**
+   * The replacement of the ASCII characters which must be escaped.
+   */
+  private static final byte[][] ESCAPES = new byte[128][];
+
+  static {
+    for (int c = 0; c < 0x20; c++) {
+      TEXT[c] = IGNORE;
+      ATTRIBUTE[c] = IGNORE;
+    }
+    TEXT['\n'] = TEXT['\r'] = TEXT['\t'] = COPY;
+    ATTRIBUTE['\n'] = ATTRIBUTE['\r'] = ATTRIBUTE['\t'] = COPY;
+    TEXT[0x7F] = ATTRIBUTE[0x7F] = IGNORE;
+    TEXT['<'] = TEXT['>'] = TEXT['&'] = ESCAPE;
+    ATTRIBUTE['<'] = ATTRIBUTE['&'] = ATTRIBUTE['"'] = ATTRIBUTE['\''] = ESCAPE;
+    ESCAPES['<'] = ascii("&lt;");
+    ESCAPES['>'] = ascii("&gt;");
+    ESCAPES['&'] = ascii("&amp;");
+    ESCAPES['"'] = ascii("&quot;");
+    ESCAPES['\''] = ascii("&#39;");
+  }
+
+  /**
+   * The hexadecimal digits for character references.
+   */
+  private static final byte[] HEX = ascii("0123456789abcdef");
+
+  /**
+   * The XML declaration.
+   */
+  private static final byte[] DECLARATION = ascii("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+
+  /**
+   * The indentation string or <code>null</code> for no indentation.
+   */
+  private final @Nullable String _indentChars;
+
+  /**
+   * The buffer holding the UTF-8 bytes.
+   */
+  private byte[] buf;
+
+  /**
+   * The number of bytes in the buffer.
+   */
+  private int count = 0;
+
+  /**
+   * The names of the open elements, the first one is the root node.
+   */
+  private String[] names = new String[16];
+
+  /**
+   * Whether each open element has children, the root node always has children.
+   */
+  private boolean[] children = new boolean[16];
+
+  /**
+   * Level of the depth of the xml document currently produced (the root node is 0).
+   */
+  private int depth = 0;
+
+  /**
+   * Flag to indicate that the element open tag is not finished yet.
+   */
+  private boolean isNude = false;
+
+  /**
+   * Creates a new XML writer with the default capacity.
+   */
+  public XmlByteWriter() {
+    this(new byte[DEFAULT_CAPACITY], null);
+  }
+
+  /**
+   * Creates a new XML writer.
+   *
+   * @param capacity The initial capacity of the buffer in bytes.
+   */
+  public XmlByteWriter(int capacity) {
+    this(new byte[Math.max(capacity, 16)], null);
+  }
+
+  /**
+   * Creates a new XML writer.
+   *
+   * @param buf         The buffer to use.
+   * @param indentChars The indentation string or <code>null</code>.
+   */
+  private XmlByteWriter(byte[] buf, @Nullable String indentChars) {
+    this.buf = buf;
+    this._indentChars = indentChars;
+    this.names[0] = "";
+    this.children[0] = true;
+  }
+
+  /**
+   * Returns a new writer using the specified string for indentation.
+   *
+   * <p>The string must be only composed of valid spaces characters.
+   *
+   * <p>If the string is <code>null</code> then the indentation is turned off.
+   *
+   * @see Character#isSpaceChar(char)
+   *
+   * @param spaces The indentation string to use.
+   *
+   * @return A new writer using the buffer of this writer.
+   *
+   * @throws IllegalArgumentException If the indent string is not made of spaces.
+   * @throws IllegalStateException    If the writer has already been used.
+   */
+  public XmlByteWriter withIndent(@Nullable String spaces) {
+    if (spaces != null) {
+      for (int i = 0; i < spaces.length(); i++) {
+        if (!Character.isSpaceChar(spaces.charAt(i)))
+          throw new IllegalArgumentException("Not a valid indentation string.");
+      }
+    }
+    if (this.count > 0 || this.depth > 0) throw new IllegalStateException("Writer already in use");
+    return new XmlByteWriter(this.buf, spaces);
+  }
+
+  /**
+   * Discards the content of this writer so that it can be reused, the buffer is kept.
+   */
+  public void reset() {
+    this.count = 0;
+    this.depth = 0;
+    this.isNude = false;
+    Arrays.fill(this.names, 1, this.names.length, null);
+  }
+
+  // Access to the content
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * @return The number of bytes written so far.
+   */
+  public int size() {
+    return this.count;
+  }
+
+  /**
+   * @return A copy of the bytes written so far.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(this.buf, this.count);
+  }
+
+  /**
+   * Writes the bytes written so far to the specified output stream.
+   *
+   * @param out The output stream to write to.
+   *
+   * @throws IOException If thrown by the output stream.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(this.buf, 0, this.count);
+  }
+
+  /**
+   * @return The content decoded as a string.
+   */
+  @Override
+  public String toString() {
+    return new String(this.buf, 0, this.count, StandardCharsets.UTF_8);
+  }
+
+  // Write text methods
+  // ----------------------------------------------------------------------------------------------
+
+  @Override
+  public XmlByteWriter text(char c) {
+    deNude();
+    if (c < 0x80) {
+      byte action = TEXT[c];
+      if (action == COPY) {
+        write((byte)c);
+      } else if (action == ESCAPE) {
+        write(ESCAPES[c]);
+      }
+    } else if (c >= 0xA0) {
+      reserve(3);
+      if (Character.isSurrogate(c)) {
+        this.buf[this.count++] = '?';
+      } else {
+        encode(c);
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter text(long number) {
+    deNude();
+    writeLong(number);
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter text(double number) {
+    deNude();
+    writeASCII(Double.toString(number));
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter text(String text) {
+    deNude();
+    escape(text, TEXT);
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter text(char[] text, int off, int len) {
+    return text(new String(text, off, len));
+  }
+
+  // Write XML methods
+  // ----------------------------------------------------------------------------------------------
+
+  @Override
+  public XmlByteWriter xml(String xml) {
+    deNude();
+    writeUTF8(xml);
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter xml(char[] xml, int off, int len) {
+    return xml(new String(xml, off, len));
+  }
+
+  @Override
+  public XmlByteWriter asXml(XmlWritable object) {
+    object.toXml(this);
+    return this;
+  }
+
+  // Processing Instructions, CDATA sections and comments
+  // ----------------------------------------------------------------------------------------------
+
+  @Override
+  public void declaration() {
+    write(DECLARATION);
+    if (this._indentChars != null) {
+      write((byte)'\n');
+    }
+  }
+
+  @Override
+  public XmlByteWriter comment(String comment) {
+    if (comment.indexOf("--") >= 0)
+      throw new IllegalArgumentException("A comment must not contain '--'.");
+    deNude();
+    writeASCII("<!-- ");
+    writeUTF8(comment);
+    writeASCII(" -->");
+    if (this._indentChars != null) {
+      write((byte)'\n');
+    }
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter processingInstruction(String target, @Nullable String data) {
+    deNude();
+    writeASCII("<?");
+    writeUTF8(target);
+    write((byte)' ');
+    writeUTF8(String.valueOf(data));
+    writeASCII("?>");
+    if (this._indentChars != null) {
+      write((byte)'\n');
+    }
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter cdata(String data) {
+    if (data.indexOf("]]>") >= 0)
+      throw new IllegalArgumentException("CDATA sections must not contain \']]>\'");
+    deNude();
+    writeASCII("<![CDATA[");
+    writeUTF8(data);
+    writeASCII("]]>");
+    return this;
+  }
+
+  // Attribute methods
+  // ----------------------------------------------------------------------------------------------
+
+  @Override
+  public XmlByteWriter attributes(Map<String, String> map) {
+    for (Entry<String, String> attr : map.entrySet()) {
+      attribute(attr.getKey(), attr.getValue());
+    }
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter attribute(String name, String value) {
+    startAttribute(name);
+    escape(value, ATTRIBUTE);
+    write((byte)'"');
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter attribute(String name, long value) {
+    startAttribute(name);
+    writeLong(value);
+    write((byte)'"');
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter attribute(String name, double value) {
+    startAttribute(name);
+    writeASCII(Double.toString(value));
+    write((byte)'"');
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter attribute(String name, boolean value) {
+    startAttribute(name);
+    writeASCII(value? "true\"" : "false\"");
+    return this;
+  }
+
+  // Open/close specific elements
+  // ----------------------------------------------------------------------------------------------
+
+  @Override
+  public XmlByteWriter openElement(String name) {
+    return openElement(name, false);
+  }
+
+  @Override
+  public XmlByteWriter openElement(String name, boolean hasChildren) {
+    deNude();
+    if (this.children[this.depth]) {
+      indent();
+    }
+    this.depth++;
+    if (this.depth == this.names.length) {
+      this.names = Arrays.copyOf(this.names, this.depth * 2);
+      this.children = Arrays.copyOf(this.children, this.depth * 2);
+    }
+    this.names[this.depth] = name;
+    this.children[this.depth] = hasChildren;
+    write((byte)'<');
+    writeUTF8(name);
+    this.isNude = true;
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter closeElement() throws IllegalCloseElementException {
+    if (this.depth == 0) throw new IllegalCloseElementException();
+    String name = this.names[this.depth];
+    boolean hasChildren = this.children[this.depth];
+    this.names[this.depth] = null;
+    this.depth--;
+    if (this.isNude) {
+      // this is an empty element
+      writeASCII("/>");
+      this.isNude = false;
+    } else {
+      // the element contains text
+      if (hasChildren) {
+        indent();
+      }
+      writeASCII("</");
+      int x = name.indexOf(' ');
+      writeUTF8(x < 0? name : name.substring(0, x));
+      write((byte)'>');
+    }
+    newLine();
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter emptyElement(String element) {
+    deNude();
+    indent();
+    write((byte)'<');
+    writeUTF8(element);
+    writeASCII("/>");
+    newLine();
+    return this;
+  }
+
+  @Override
+  public XmlByteWriter element(String name, String text) {
+    return openElement(name).text(text).closeElement();
+  }
+
+  @Override
+  public XmlByteWriter element(String name, long text) {
+    return openElement(name).text(text).closeElement();
+  }
+
+  @Override
+  public XmlByteWriter element(String name, double text) {
+    return openElement(name).text(text).closeElement();
+  }
+
+  /**
+   * Does nothing as the content is held in memory.
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Checks that all elements have been closed.
+   *
+   * @throws UnclosedElementException If an element has been left open.
+   */
+  @Override
+  public void close() throws UnclosedElementException {
+    if (this.depth > 0)
+      throw new UnclosedElementException(this.names[this.depth]);
+  }
+
+  // Private helpers
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Writes the end of the open element tag.
+   */
+  private void deNude() {
+    if (this.isNude) {
+      write((byte)'>');
+      if (this.children[this.depth] && this._indentChars != null) {
+        write((byte)'\n');
+      }
+      this.isNude = false;
+    }
+  }
+
+  /**
+   * Writes the name of an attribute and the opening quote.
+   *
+   * @param name The name of the attribute
+   */
+  private void startAttribute(String name) {
+    if (!this.isNude) throw new IllegalStateException("Cannot write attribute: too late!");
+    write((byte)' ');
+    writeUTF8(name);
+    writeASCII("=\"");
+  }
+
+  /**
+   * Insert the indentation for the current depth if indentation is on.
+   */
+  private void indent() {
+    String spaces = this._indentChars;
+    if (spaces != null) {
+      for (int i = 0; i < this.depth; i++) {
+        writeUTF8(spaces);
+      }
+    }
+  }
+
+  /**
+   * Writes a new line after an element if the parent has children and indentation is on.
+   */
+  private void newLine() {
+    if (this._indentChars != null && this.depth > 0 && this.children[this.depth]) {
+      write((byte)'\n');
+    }
+  }
+
+  /**
+   * Escapes and encodes the specified text.
+   *
+   * <p>Invariant: there is always enough space left in the buffer for one byte per remaining
+   * character, so that ASCII characters can be copied without checking the capacity.
+   *
+   * @param text    The text to write
+   * @param actions What to do with each ASCII character
+   */
+  private void escape(String text, byte[] actions) {
+    final int length = text.length();
+    reserve(length);
+    byte[] b = this.buf;
+    int n = this.count;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      // Fast path for runs of ASCII characters which can be copied
+      if (c < 0x80 && actions[c] == COPY) {
+        b[n++] = (byte)c;
+        continue;
+      }
+      this.count = n;
+      int remaining = length - i - 1;
+      if (c < 0x80) {
+        if (actions[c] == ESCAPE) {
+          byte[] escape = ESCAPES[c];
+          reserve(escape.length + remaining);
+          System.arraycopy(escape, 0, this.buf, this.count, escape.length);
+          this.count += escape.length;
+        }
+      } else if (c >= 0xA0) {
+        if (Character.isSurrogate(c)) {
+          int codePoint = Character.codePointAt(text, i);
+          i += Character.charCount(codePoint) - 1;
+          reserve(10 + remaining);
+          writeCharRef(codePoint);
+        } else {
+          reserve(3 + remaining);
+          encode(c);
+        }
+      }
+      b = this.buf;
+      n = this.count;
+    }
+    this.count = n;
+  }
+
+  /**
+   * Writes a hexadecimal character reference for the specified code point.
+   *
+   * @param codePoint The code point to write
+   */
+  private void writeCharRef(int codePoint) {
+    byte[] b = this.buf;
+    b[this.count++] = '&';
+    b[this.count++] = '#';
+    b[this.count++] = 'x';
+    int shift = 28;
+    while (shift > 0 && (codePoint >>> shift) == 0) {
+      shift -= 4;
+    }
+    for (; shift >= 0; shift -= 4) {
+      b[this.count++] = HEX[(codePoint >>> shift) & 0xF];
+    }
+    b[this.count++] = ';';
+  }
+
+  /**
+   * Encodes a character from the Basic Multilingual Plane which is not ASCII nor a surrogate.
+   *
+   * <p>The capacity must have been checked.
+   *
+   * @param c The character to encode
+   */
+  private void encode(char c) {
+    byte[] b = this.buf;
+    if (c < 0x800) {
+      b[this.count++] = (byte)(0xC0 | (c >> 6));
+      b[this.count++] = (byte)(0x80 | (c & 0x3F));
+    } else {
+      b[this.count++] = (byte)(0xE0 | (c >> 12));
+      b[this.count++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+      b[this.count++] = (byte)(0x80 | (c & 0x3F));
+    }
+  }
+
+  /**
+   * Encodes the specified string without escaping.
+   *
+   * <p>Unpaired surrogates are replaced by '?' as when the string is encoded by Java.
+   *
+   * @param s The string to write
+   */
+  private void writeUTF8(String s) {
+    final int length = s.length();
+    reserve(length);
+    int n = this.count;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        this.buf[n++] = (byte)c;
+        continue;
+      }
+      this.count = n;
+      int remaining = length - i - 1;
+      if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i+1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        reserve(4 + remaining);
+        byte[] b = this.buf;
+        b[this.count++] = (byte)(0xF0 | (codePoint >> 18));
+        b[this.count++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+        b[this.count++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+        b[this.count++] = (byte)(0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        this.buf[this.count++] = '?';
+      } else {
+        reserve(3 + remaining);
+        encode(c);
+      }
+      n = this.count;
+    }
+    this.count = n;
+  }
+
+  /**
+   * Writes a string known to be ASCII.
+   *
+   * @param s The string to write
+   */
+  private void writeASCII(String s) {
+    final int length = s.length();
+    reserve(length);
+    for (int i = 0; i < length; i++) {
+      this.buf[this.count++] = (byte)s.charAt(i);
+    }
+  }
+
+  /**
+   * Writes the decimal representation of the specified number.
+   *
+   * @param number The number to write
+   */
+  private void writeLong(long number) {
+    if (number == Long.MIN_VALUE) {
+      writeASCII(Long.toString(number));
+      return;
+    }
+    reserve(20);
+    long value = number;
+    if (value < 0) {
+      this.buf[this.count++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long x = value; x >= 10; x /= 10) {
+      digits++;
+    }
+    int pos = this.count + digits;
+    this.count = pos;
+    do {
+      this.buf[--pos] = (byte)('0' + (value % 10));
+      value /= 10;
+    } while (value > 0);
+  }
+
+  /**
+   * @param b The byte to write
+   */
+  private void write(byte b) {
+    reserve(1);
+    this.buf[this.count++] = b;
+  }
+
+  /**
+   * @param bytes The bytes to write
+   */
+  private void write(byte[] bytes) {
+    reserve(bytes.length);
+    System.arraycopy(bytes, 0, this.buf, this.count, bytes.length);
+    this.count += bytes.length;
+  }
+
+  /**
+   * Ensures that the specified number of bytes can be written.
+   *
+   * @param n The number of bytes to write
+   */
+  private void reserve(int n) {
+    int required = this.count + n;
+    if (required > this.buf.length) {
+      this.buf = Arrays.copyOf(this.buf, Math.max(this.buf.length * 2, required));
+    }
+  }
+
+  /**
+   * @param s An ASCII string
+   *
+   * @return The corresponding bytes
+   */
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+}
@@ -16,6 +16,8 @@
 package org.pageseeder.berlioz;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -205,4 +207,50 @@ public final class GlobalSettingsTest {
     Assert.assertEquals(2,  good.notifications);
     GlobalSettings.removeAllListeners();
   }
+
+  @Test
+  public void testOptions() {
+    GlobalSettings.setMode("undefined");
+    GlobalSettings.load();
+    OptionSnapshot options = GlobalSettings.options();
+    Assert.assertSame(options, GlobalSettings.options());
+    Assert.assertTrue(options.has(BerliozOption.XSLT_CACHE));
+    Assert.assertEquals("true", options.get(BerliozOption.XSLT_CACHE));
+    Assert.assertEquals(0, options.getInt(BerliozOption.HTTP_RESPONSE_CACHE));
+
+    // The options are replaced when the settings are reloaded
+    GlobalSettings.setMode("override1");
+    GlobalSettings.load();
+    Assert.assertNotSame(options, GlobalSettings.options());
+    Assert.assertFalse(GlobalSettings.options().has(BerliozOption.XSLT_CACHE));
+    Assert.assertTrue(options.has(BerliozOption.XSLT_CACHE));
+    GlobalSettings.setMode("default");
+    GlobalSettings.load();
+  }
+
+  @Test
+  public void testOptions_Listeners() {
+    final OptionSnapshot[] notified = new OptionSnapshot[1];
+    GlobalSettings.registerListener(() -> notified[0] = GlobalSettings.options());
+    Assert.assertTrue(GlobalSettings.load());
+    Assert.assertSame(GlobalSettings.options(), notified[0]);
+    GlobalSettings.removeAllListeners();
+  }
+
+  @Test
+  public void testOptions_Invalid() {
+    Map<String, String> settings = new HashMap<>();
+    settings.put(BerliozOption.HTTP_RESPONSE_CACHE.property(), "not_an_int");
+    settings.put(BerliozOption.XSLT_STREAMING.property(), "TRUE");
+    OptionSnapshot options = new OptionSnapshot(settings);
+    Assert.assertEquals(0, options.getInt(BerliozOption.HTTP_RESPONSE_CACHE));
+    Assert.assertEquals("not_an_int", options.get(BerliozOption.HTTP_RESPONSE_CACHE));
+    Assert.assertTrue(options.has(BerliozOption.XSLT_STREAMING));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOptions_NotBoolean() {
+    GlobalSettings.options().has(BerliozOption.HTTP_RESPONSE_CACHE);
+  }
+
 }
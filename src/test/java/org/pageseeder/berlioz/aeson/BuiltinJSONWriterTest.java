@@ -135,6 +135,55 @@ public final class BuiltinJSONWriterTest {
     Assert.assertEquals("null", json.toString());
   }
 
+  @Test
+  public void testNestedAfterValue() {
+    StringWriter json = new StringWriter();
+    newJSON(json).startObject().property("a", 1L).startObject("b").property("c", 2L).end()
+      .startArray("d").value(3L).startArray().value(4L).end().end().end();
+    Assert.assertEquals("{\"a\":1,\"b\":{\"c\":2},\"d\":[3,[4]]}", json.toString());
+  }
+
+  @Test
+  public void testControlCharacters() {
+    StringWriter json = new StringWriter();
+    newJSON(json).value("\u0000\u001f\u0010\b\f");
+    Assert.assertEquals("\"\\u0000\\u001f\\u0010\\b\\f\"", json.toString());
+  }
+
+  @Test
+  public void testCharSequence() {
+    StringWriter json = new StringWriter();
+    newJSON(json).startObject().property("a", new StringBuilder("x\"y")).end();
+    Assert.assertEquals("{\"a\":\"x\\\"y\"}", json.toString());
+  }
+
+  @Test
+  public void testDeepNesting() {
+    StringWriter json = new StringWriter();
+    JSONWriter writer = newJSON(json);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      writer.startArray();
+      expected.append('[');
+    }
+    for (int i = 0; i < 100; i++) {
+      writer.end();
+      expected.append(']');
+    }
+    Assert.assertEquals(expected.toString(), json.toString());
+  }
+
+  @Test
+  public void testLargeString() {
+    StringWriter json = new StringWriter();
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      value.append((char)('a' + i % 26));
+    }
+    newJSON(json).startArray().value(value.toString()).value(value).end();
+    Assert.assertEquals("[\""+value+"\",\""+value+"\"]", json.toString());
+  }
+
   private BuiltinJSONWriter newJSON(StringWriter json) {
     return new BuiltinJSONWriter(new PrintWriter(json));
   }
@@ -1,10 +1,16 @@
 package org.pageseeder.berlioz.aeson;
 
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.xml.sax.InputSource;
 
@@ -26,4 +32,79 @@ public class JSONSerializerTest {
     parser.parse(new InputSource(new StringReader(xml)), new JSONSerializer(System.out));
   }
 
+  @Test
+  public void testTypedValues() throws Exception {
+    String xml = "<test xmlns:json=\"http://pageseeder.org/JSON\" json:string=\"title\" json:number=\"size\" json:boolean=\"done\">"
+    + "<title>A \"quoted\"\ttitle</title>"
+    + "<size>12</size>"
+    + "<done>true</done>"
+    + "<json:array json:name=\"sizes\"><size>1</size><size>2.5</size></json:array>"
+    + "</test>";
+    Assert.assertEquals("{\"title\":\"A \\\"quoted\\\"\\ttitle\",\"size\":12,\"done\":true,\"sizes\":[1,2.5]}", serialize(xml));
+  }
+
+  @Test
+  public void testStringValues() throws Exception {
+    String xml = "<test xmlns:json=\"http://pageseeder.org/JSON\" json:string=\"title\">"
+    + "<title>A \"quoted\"\ttitle</title>"
+    + "<item><title>Nested</title></item>"
+    + "</test>";
+    Assert.assertEquals("{\"title\":\"A \\\"quoted\\\"\\ttitle\",\"item\":{\"title\":\"Nested\"}}", serialize(xml));
+  }
+
+  @Test
+  public void testDeepNesting() throws Exception {
+    StringBuilder xml = new StringBuilder();
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      xml.append("<a").append(i).append(" x=\"").append(i).append("\">");
+      json.append(i == 0? "{" : "\"a"+i+"\":{").append("\"x\":\"").append(i).append("\",");
+    }
+    json.setLength(json.length()-1);
+    for (int i = 99; i >= 0; i--) {
+      xml.append("</a").append(i).append('>');
+      json.append('}');
+    }
+    Assert.assertEquals(json.toString(), serialize(xml.toString()));
+  }
+
+  @Test
+  public void testOutputStreamUTF8() throws Exception {
+    String xml = "<test title=\"Caf\u00e9 \u2013 \ud83d\ude00\"/>";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    newParser().parse(new InputSource(new StringReader(xml)), new JSONSerializer(JSONWriterFactory.newBuiltinInstance(out)));
+    Assert.assertEquals("{\"title\":\"Caf\u00e9 \u2013 \ud83d\ude00\"}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDefaultWriter() throws Exception {
+    String xml = "<test xmlns:json=\"http://pageseeder.org/JSON\" json:string=\"title\" json:number=\"size\" a=\"x\">"
+    + "<title>A \"quoted\"\ttitle</title><size>12</size><item><title>Nested</title></item>"
+    + "</test>";
+    StringWriter json = new StringWriter();
+    newParser().parse(new InputSource(new StringReader(xml)), new JSONSerializer(json));
+    Assert.assertEquals(serialize(xml), json.toString());
+  }
+
+  @Test
+  public void testResult() throws Exception {
+    String xml = "<test xmlns:json=\"http://pageseeder.org/JSON\" json:number=\"size\" a=\"x\">"
+    + "<size>12</size><item title=\"A &amp; B\"/></test>";
+    StringWriter json = new StringWriter();
+    TransformerFactory.newInstance().newTransformer().transform(new StreamSource(new StringReader(xml)), new JSONResult(json));
+    Assert.assertEquals(serialize(xml), json.toString());
+  }
+
+  private static String serialize(String xml) throws Exception {
+    StringWriter json = new StringWriter();
+    newParser().parse(new InputSource(new StringReader(xml)), new JSONSerializer(JSONWriterFactory.newBuiltinInstance(json)));
+    return json.toString();
+  }
+
+  private static SAXParser newParser() throws Exception {
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newSAXParser();
+  }
+
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A test class for the <code>BundleIndex</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class BundleIndexTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @AfterClass
+  public static void shutdown() {
+    BundleWatcher.shutdown();
+  }
+
+  @Test
+  public void testFresh() throws IOException {
+    BundleIndex index = new BundleIndex(true, 1000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    File bundle = write("bundle.js", "var a;");
+    BundleIndex.Entry entry = index.put("a", files, Collections.emptyList(), bundle, BundleIndex.fingerprint(files));
+    Assert.assertSame(entry, index.get("a"));
+    Assert.assertEquals(bundle, entry.file());
+    Assert.assertEquals(bundle.lastModified(), entry.lastModified());
+    Assert.assertNull(index.get("b"));
+  }
+
+  @Test
+  public void testWatchModified() throws Exception {
+    BundleIndex index = new BundleIndex(true, 60000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    Assert.assertNotNull(index.get("a"));
+    write("a.js", "var a = 1;");
+    Assert.assertTrue(awaitStale(index, "a", 5000));
+  }
+
+  @Test
+  public void testWatchImport() throws Exception {
+    BundleIndex index = new BundleIndex(true, 60000);
+    List<File> files = Collections.singletonList(write("a.css", "@import url(b.css);"));
+    List<File> imports = Collections.singletonList(write("b.css", "b {}"));
+    index.put("a", files, imports, null, BundleIndex.fingerprint(files));
+    Assert.assertNotNull(index.get("a"));
+    write("b.css", "b { color: red }");
+    Assert.assertTrue(awaitStale(index, "a", 5000));
+  }
+
+  @Test
+  public void testWatchCreated() throws Exception {
+    BundleIndex index = new BundleIndex(true, 60000);
+    File missing = new File(this.folder.getRoot(), "sub/b.js");
+    List<File> files = Arrays.asList(write("a.js", "var a;"), missing);
+    index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    Assert.assertNotNull(index.get("a"));
+    write("sub/b.js", "var b;");
+    Assert.assertTrue(awaitStale(index, "a", 5000));
+  }
+
+  @Test
+  public void testWatchUnrelated() throws Exception {
+    BundleIndex index = new BundleIndex(true, 60000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    write("c.js", "var c;");
+    Assert.assertFalse(awaitStale(index, "a", 1000));
+  }
+
+  @Test
+  public void testPolling() throws IOException {
+    BundleIndex index = new BundleIndex(false, 0);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    Assert.assertNotNull(index.get("a"));
+    write("a.js", "var a = 1;");
+    Assert.assertNull(index.get("a"));
+  }
+
+  @Test
+  public void testPollingInterval() throws IOException {
+    BundleIndex index = new BundleIndex(false, 60000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    write("a.js", "var a = 1;");
+    Assert.assertNotNull(index.get("a"));
+  }
+
+  @Test
+  public void testChangedDuringBuild() throws IOException {
+    BundleIndex index = new BundleIndex(false, 60000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    long fingerprint = BundleIndex.fingerprint(files);
+    write("a.js", "var a = 1;");
+    index.put("a", files, Collections.emptyList(), null, fingerprint);
+    Assert.assertNull(index.get("a"));
+  }
+
+  @Test
+  public void testClear() throws IOException {
+    BundleIndex index = new BundleIndex(false, 60000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    BundleIndex.Entry entry = index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    index.clear();
+    Assert.assertTrue(entry.stale);
+    Assert.assertNull(index.get("a"));
+  }
+
+  @Test
+  public void testPrevious() throws IOException {
+    BundleIndex index = new BundleIndex(false, 0);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    BundleIndex.Entry entry = index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    write("a.js", "var a = 1;");
+    Assert.assertNull(index.get("a"));
+    Assert.assertSame(entry, index.previous("a"));
+    Assert.assertNull(index.previous("b"));
+  }
+
+  @Test
+  public void testRebuildOnce() throws Exception {
+    BundleIndex index = new BundleIndex(false, 60000);
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    CountDownLatch latch = new CountDownLatch(1);
+    AtomicInteger builds = new AtomicInteger();
+    Supplier<BundleIndex.Entry> build = () -> {
+      builds.incrementAndGet();
+      try {
+        latch.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      return index.put("a", files, Collections.emptyList(), null, BundleIndex.fingerprint(files));
+    };
+    CompletableFuture<BundleIndex.Entry> first = index.rebuild("a", build);
+    CompletableFuture<BundleIndex.Entry> second = index.rebuild("a", build);
+    Assert.assertSame(first, second);
+    latch.countDown();
+    Assert.assertSame(first.get(5, TimeUnit.SECONDS), index.get("a"));
+    Assert.assertEquals(1, builds.get());
+  }
+
+  private File write(String path, String content) throws IOException {
+    File f = new File(this.folder.getRoot(), path);
+    f.getParentFile().mkdirs();
+    Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return f;
+  }
+
+  /**
+   * Waits until the entry is stale or the specified time has elapsed.
+   */
+  private static boolean awaitStale(BundleIndex index, String key, long millis) throws InterruptedException {
+    for (int i = 0; i < millis / 100; i++) {
+      if (index.get(key) == null) return true;
+      Thread.sleep(100);
+    }
+    return false;
+  }
+
+}
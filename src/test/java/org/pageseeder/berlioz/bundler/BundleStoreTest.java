@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A test class for the <code>BundleStore</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class BundleStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPutGet() throws IOException {
+    File dir = this.folder.newFolder("bundles");
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    BundleStore store = new BundleStore(dir);
+    String key = store.key("a", files, true);
+    Assert.assertNull(store.get(key));
+    BundleStore.Entry entry = store.put(key, new WebBundle("a", files, true), ".js", bytes("var a;"));
+    Assert.assertSame(entry, store.get(key));
+    Assert.assertEquals(BundleStore.filename("a", ".js", true, bytes("var a;")), entry.file().getName());
+    // Loaded from the manifest
+    BundleStore.Entry loaded = new BundleStore(dir).get(key);
+    Assert.assertNotNull(loaded);
+    Assert.assertEquals(entry.file(), loaded.file());
+    // The key changes with the files
+    write("a.js", "var a = 1;");
+    Assert.assertNotEquals(key, store.key("a", files, true));
+  }
+
+  @Test
+  public void testSharedManifest() throws IOException {
+    File dir = this.folder.newFolder("bundles");
+    List<File> a = Collections.singletonList(write("a.js", "var a;"));
+    List<File> b = Collections.singletonList(write("b.js", "var b;"));
+    BundleStore node1 = new BundleStore(dir);
+    BundleStore node2 = new BundleStore(dir);
+    node1.put(node1.key("a", a, true), new WebBundle("a", a, true), ".js", bytes("var a;"));
+    node2.put(node2.key("b", b, true), new WebBundle("b", b, true), ".js", bytes("var b;"));
+    // Entries saved by both nodes are kept
+    BundleStore restarted = new BundleStore(dir);
+    Assert.assertNotNull(restarted.get(restarted.key("a", a, true)));
+    Assert.assertNotNull(restarted.get(restarted.key("b", b, true)));
+  }
+
+  @Test
+  public void testMaxVersions() throws IOException, InterruptedException {
+    File dir = this.folder.newFolder("bundles");
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    BundleStore store = new BundleStore(dir);
+    String first = null;
+    for (int i = 0; i <= BundleStore.MAX_VERSIONS; i++) {
+      String key = store.key("a", files, true)+i;
+      store.put(key, new WebBundle("a", files, true), ".js", bytes("var a = "+i+";"));
+      if (first == null) {
+        first = key;
+      }
+      Thread.sleep(2);
+    }
+    Assert.assertNull(new BundleStore(dir).get(first));
+  }
+
+  @Test
+  public void testCollect() throws IOException {
+    File dir = this.folder.newFolder("bundles");
+    List<File> files = Collections.singletonList(write("a.js", "var a;"));
+    BundleStore previous = new BundleStore(dir);
+    BundleStore.Entry entry = previous.put(previous.key("a", files, true), new WebBundle("a", files, true), ".js", bytes("var a;"));
+    File orphan = new File(dir, "a-0123456789abcdef.min.js");
+    File map = new File(dir, "a-0123456789abcdef.min.js.map");
+    File legacy = new File(dir, "a-2015-01-01-01234567.min.js");
+    File other = new File(dir, "readme.txt");
+    for (File f : new File[]{ orphan, map, legacy, other, entry.file() }) {
+      Files.write(f.toPath(), bytes("x"));
+      Assert.assertTrue(f.setLastModified(System.currentTimeMillis() - 60000));
+    }
+    BundleStore store = new BundleStore(dir, 0);
+    Assert.assertEquals(3, store.collect());
+    Assert.assertFalse(orphan.exists());
+    Assert.assertFalse(map.exists());
+    Assert.assertFalse(legacy.exists());
+    Assert.assertTrue(other.exists());
+    Assert.assertTrue(entry.file().exists());
+    Assert.assertTrue(new File(dir, BundleStore.MANIFEST).exists());
+  }
+
+  private File write(String path, String content) throws IOException {
+    File f = new File(this.folder.getRoot(), path);
+    Files.write(f.toPath(), bytes(content));
+    return f;
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+
+}
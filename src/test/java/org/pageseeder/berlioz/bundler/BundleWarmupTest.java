@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.content.ServiceLoader;
+
+/**
+ * A test class for the <code>BundleWarmup</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class BundleWarmupTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @AfterClass
+  public static void shutdown() {
+    ServiceLoader.getInstance().clear();
+    BundleWatcher.shutdown();
+  }
+
+  @Test
+  public void testWarmup() throws IOException, BerliozException {
+    write("WEB-INF/config/services.xml", "<?xml version='1.0' encoding='utf-8'?>"
+        + "<!DOCTYPE service-config PUBLIC '-//Berlioz//DTD::Services 1.0//EN' 'https://pageseeder.org/schema/berlioz/services-1.0.dtd'>"
+        + "<service-config version='1.0'><services group='test'>"
+        + service("a", true) + service("b", true) + service("c", true) + service("d", false)
+        + "</services></service-config>");
+    write("script/global.js", "var global = 1;");
+    write("script/test/a.js", "var a = 1;");
+    write("style/global.css", "body { color: black; }");
+    this.folder.newFolder("script", "_");
+    this.folder.newFolder("style", "_");
+    GlobalSettings.setup(new File(this.folder.getRoot(), "WEB-INF"));
+    ServiceLoader loader = ServiceLoader.getInstance();
+    loader.clear();
+    loader.load();
+
+    BundleWarmup warmup = BundleWarmup.warmup(loader.getDefaultRegistry(), this.folder.getRoot(), 10000);
+    Assert.assertSame(warmup, BundleWarmup.last());
+    Assert.assertTrue(warmup.isComplete());
+    Assert.assertEquals(3, warmup.services());
+    // global + group + one per service, for scripts and styles
+    Assert.assertEquals(10, warmup.bundles());
+    Assert.assertEquals(10, warmup.built());
+    Assert.assertEquals(0, warmup.failed());
+    // Bundles with existing files have been built
+    Assert.assertEquals(2, new File(this.folder.getRoot(), "script/_").list((dir, name) -> name.endsWith(".js")).length);
+    Assert.assertEquals(1, new File(this.folder.getRoot(), "style/_").list((dir, name) -> name.endsWith(".css")).length);
+  }
+
+  private static String service(String id, boolean bundles) {
+    String generator = bundles? "org.pageseeder.berlioz.bundler.GetWebBundles" : "org.pageseeder.berlioz.generator.NoContent";
+    return "<service id='"+id+"' method='get'><url pattern='/"+id+"'/>"
+        + "<generator class='"+generator+"' name='bundles'><parameter name='config' value='warmup'/></generator></service>";
+  }
+
+  private void write(String path, String content) throws IOException {
+    File f = new File(this.folder.getRoot(), path);
+    f.getParentFile().mkdirs();
+    Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -1,14 +1,43 @@
 package org.pageseeder.berlioz.bundler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 public class CSSMinTest {
 
+  /**
+   * Style sheets which must be minimized identically by the single pass and legacy minimizers.
+   */
+  private static final String[] CORPUS = {
+    "",
+    "a{}",
+    "a { color: red }",
+    "/**\n * License\n * Copyright\n */\n/** Second */ body { margin: 0px; }\np { margin: 0 }",
+    "/* Comment */\n\n   \na { color: #FFFFFF; /* inline */ background: WHITE }\r\n\r\nb{color:#aabbcc}",
+    "/**/ a { color: black }\n/*/ not closed */ b { color: #fff }",
+    "a > b ~ c + d, e   f { padding: 10px 20px 10px 20px; margin: 0px 0px 0px 0px }",
+    "input[type = \"text\"], a[href ^= http], a[href $= '.pdf'], a[title *= x], a[lang |= en] { border: 1px solid rgb(255, 0, 0) }",
+    "p { font-weight: bold; font-weight: Normal; font-family: \"Helvetica Neue\", Arial, sans-serif !important }",
+    "div { background: url(\"images/bg.png\") no-repeat 0px 0em; background-image: URL('x.png'); list-style: url(y.png) }",
+    ".x{background:url(data:image/svg+xml;charset=utf8,%3Csvg/%3E)} .y { background: url(data:image/png;base64,iVBORw0KGgo=) }",
+    "@media screen and (max-width: 600px) {\n  a { color: red; }\n  b { margin: 0px auto 0px auto; }\n}\nc { color: blue }",
+    "@font-face { font-family: 'Open Sans'; src: url('a.woff2') format('woff2'), url('a.woff') format('woff') }",
+    "@keyframes spin { from { transform: rotate(0deg) } to { transform: rotate(360deg) } }",
+    "@import url(other.css);\n@charset \"utf-8\";\na { color: rgb(0,0,0) }",
+    "i::before { content: \" \" } i::after { content: \"A;B\" } q { quotes: \"\\201C\" \"\\201D\" }",
+    "a { transition: opacity 0.3s, transform 0.3s ; color : #AbCdEf ; ; }",
+    "a{margin:0 0}b{margin:0 0 0}c{padding:1px 1px}d{box-shadow:0 0 0 1px #000000, inset 0 1px 2px rgba(0,0,0,.5)}",
+    "table{border-collapse:collapse}td , th{padding:0.5em 1em 0.5em 1em}",
+    "a { filter: progid:DXImageTransform.Microsoft.gradient(startColorstr='#80000000', endColorstr='#80000000') }",
+    "a { color: red }\nb { color"
+  };
+
   @Test public void testEmptyRule() {
     Assert.assertEquals("a{}", min("a { }"));
   }
@@ -58,11 +87,52 @@ public class CSSMinTest {
     Assert.assertEquals(x, min(x));
   }
 
+  @Test public void testRulesOnSeparateLines() {
+    StringBuilder css = new StringBuilder();
+    for (int i = 0; i < 25; i++) {
+      css.append(".r").append(i).append(" { margin: ").append(i).append("px }\n");
+    }
+    Assert.assertEquals(3, stream(css.toString()).split("\n").length - 2);
+  }
+
+  @Test public void testSpecialCommentAfterRules() {
+    Assert.assertEquals("/** A */\n\na{color:red}/** B */b{color:blue}\n", stream("/** A */ a { color: red } /** B */ b { color: blue }"));
+  }
+
+  @Test public void testStreamingMatchesLegacy() {
+    for (String css : CORPUS) {
+      Assert.assertEquals(css, legacy(css), stream(css));
+    }
+  }
+
+  @Test public void testStreamingMatchesLegacyLarge() {
+    StringBuilder css = new StringBuilder("/** Large style sheet */\n");
+    for (int i = 0; i < 500; i++) {
+      String part = CORPUS[i % (CORPUS.length-1)];
+      // Special comments after the first rule are not moved to the top
+      if (!part.contains("/**")) {
+        css.append(part.replace("a {", ".c"+i+" a {")).append('\n');
+      }
+    }
+    Assert.assertEquals(legacy(css.toString()), stream(css.toString()));
+  }
+
   private final static String min(String css) {
+    return stream(css).trim();
+  }
+
+  private final static String stream(String css) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CSSMin.minimize(new StringReader(css), out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @SuppressWarnings("deprecation")
+  private final static String legacy(String css) {
     StringReader r = new StringReader(css);
     StringWriter w = new StringWriter();
     PrintWriter out = new PrintWriter(w);
     CSSMin.minimize(r, out);
-    return w.toString().trim();
+    return w.toString();
   }
 }
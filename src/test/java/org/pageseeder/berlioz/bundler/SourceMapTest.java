@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>SourceMap</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class SourceMapTest {
+
+  private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+  @Test
+  public void testEncoding() {
+    SourceMap.Mappings mappings = new SourceMap.Mappings();
+    mappings.add(0, 0, 0, 0);
+    mappings.add(0, 4, 0, 16);
+    mappings.add(2, 1, 1, 0);
+    SourceMap map = new SourceMap();
+    map.add("a.js", mappings, 0);
+    Assert.assertEquals("{\"version\":3,\"file\":\"a.min.js\",\"sources\":[\"a.js\"],\"names\":[],\"mappings\":\"AAAA,IAAgB;;CAChB\"}",
+        map.toJSON("a.min.js"));
+  }
+
+  @Test
+  public void testLines() {
+    SourceMap.Mappings mappings = SourceMap.Mappings.lines("a\n\nb\n".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(2, mappings.size());
+    SourceMap map = new SourceMap();
+    map.add("a.js", mappings, 1);
+    map.add("b.js", mappings, 4);
+    List<int[]> segments = decode(map.toJSON("x.js"));
+    Assert.assertArrayEquals(new int[]{1, 0, 0, 0, 0}, segments.get(0));
+    Assert.assertArrayEquals(new int[]{3, 0, 0, 2, 0}, segments.get(1));
+    Assert.assertArrayEquals(new int[]{4, 0, 1, 0, 0}, segments.get(2));
+    Assert.assertArrayEquals(new int[]{6, 0, 1, 2, 0}, segments.get(3));
+  }
+
+  @Test
+  public void testMinimized() throws IOException, ParsingException {
+    String script = "var a = 1;\nfunction f(x) {\n  // comment\n  return x + 'é';\n}\n";
+    SourceMap.Mappings mappings = new SourceMap.Mappings();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JSMin(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), out, mappings).jsmin();
+    String minimized = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    Assert.assertEquals("\nvar a=1;function f(x){return x+'é';}", minimized);
+    SourceMap map = new SourceMap();
+    map.add("a.js", mappings, 0);
+    List<int[]> segments = decode(map.toJSON("a.min.js"));
+    String[] lines = minimized.split("\n", -1);
+    String[] source = script.split("\n", -1);
+    // Every segment maps a token to the same token in the source
+    for (int[] s : segments) {
+      String token = lines[s[0]].substring(s[1], s[1]+1);
+      Assert.assertEquals(token, source[s[3]].substring(s[4], s[4]+1));
+    }
+    Assert.assertTrue(contains(segments, new int[]{1, 22, 0, 3, 2}));
+    Assert.assertTrue(contains(segments, new int[]{1, 31, 0, 3, 13}));
+  }
+
+  private static boolean contains(List<int[]> segments, int[] segment) {
+    for (int[] s : segments) {
+      if (Arrays.equals(s, segment)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Decodes the mappings of a source map as absolute [line, column, source, source line, source column].
+   */
+  private static List<int[]> decode(String json) {
+    String mappings = json.substring(json.indexOf("\"mappings\":\"")+12, json.lastIndexOf('"'));
+    List<int[]> segments = new ArrayList<>();
+    int[] values = new int[5];
+    int line = 0;
+    for (String l : mappings.split(";", -1)) {
+      values[1] = 0;
+      if (!l.isEmpty()) {
+        for (String segment : l.split(",")) {
+          int i = 0;
+          int field = 1;
+          while (i < segment.length()) {
+            int value = 0;
+            int shift = 0;
+            int digit;
+            do {
+              digit = BASE64.indexOf(segment.charAt(i++));
+              value += (digit & 0x1F) << shift;
+              shift += 5;
+            } while ((digit & 0x20) != 0);
+            values[field++] += (value & 1) == 1? -(value >> 1) : value >> 1;
+          }
+          values[0] = line;
+          segments.add(values.clone());
+        }
+      }
+      line++;
+    }
+    return segments;
+  }
+
+}
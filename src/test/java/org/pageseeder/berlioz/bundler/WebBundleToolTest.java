@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.bundler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A test class for the <code>WebBundleTool</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class WebBundleToolTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testBundleScripts() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = Arrays.asList(write("a.js", "var a = 1;"), write("b.min.js", "var b=2;"));
+    WebBundleTool tool = new WebBundleTool(bundles);
+    File bundle = tool.bundleScripts(files, "test", true);
+    Assert.assertNotNull(bundle);
+    Assert.assertEquals("\nvar a=1;\nvar b=2;\n", read(bundle));
+    Assert.assertEquals(bundle, tool.getBundle(files, "test", true));
+  }
+
+  @Test
+  public void testBundleScriptsWithSourceMap() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = Arrays.asList(write("a.js", "var a = 1;"), write("b.min.js", "var b=2;"));
+    WebBundleTool tool = new WebBundleTool(bundles);
+    tool.setSourceMaps(true);
+    File bundle = tool.bundleScripts(files, "test", true);
+    Assert.assertNotNull(bundle);
+    Assert.assertEquals("\nvar a=1;\nvar b=2;\n//# sourceMappingURL="+bundle.getName()+".map\n", read(bundle));
+    File map = new File(bundles, bundle.getName()+".map");
+    Assert.assertTrue(map.exists());
+    Assert.assertEquals("{\"version\":3,\"file\":\""+bundle.getName()+"\",\"sources\":[\"../a.js\",\"../b.min.js\"],"
+        + "\"names\":[],\"mappings\":\";AAAA,KAAM,CAAE;ACAR\"}", read(map));
+    // Not the same bundle as without source maps
+    File unmapped = new WebBundleTool(bundles).bundleScripts(files, "test", true);
+    Assert.assertNotNull(unmapped);
+    Assert.assertNotEquals(bundle, unmapped);
+    Assert.assertEquals("\nvar a=1;\nvar b=2;\n", read(unmapped));
+  }
+
+  @Test
+  public void testPrecompress() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = Arrays.asList(write("a.css", "a { color: red; }"));
+    WebBundleTool tool = new WebBundleTool(bundles);
+    tool.setPrecompress(true);
+    File bundle = tool.bundleStyles(files, "test", true);
+    Assert.assertNotNull(bundle);
+    File gz = new File(bundles, bundle.getName()+".gz");
+    Assert.assertTrue(gz.exists());
+    try (InputStream in = new GZIPInputStream(new FileInputStream(gz))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+        out.write(buffer, 0, n);
+      }
+      Assert.assertEquals(read(bundle), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testMinimizedScriptsReused() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = Arrays.asList(write("a.js", "var reused = 1;"), write("b.js", "var changed = 1;"));
+    WebBundleTool tool = new WebBundleTool(bundles);
+    Assert.assertNotNull(tool.bundleScripts(files, "test", true));
+    ScriptCache cache = ScriptCache.getInstance();
+    long hits = cache.hits();
+    long misses = cache.misses();
+    write("b.js", "var changed = 22;");
+    File bundle = tool.bundleScripts(files, "test", true);
+    Assert.assertNotNull(bundle);
+    Assert.assertEquals("\nvar reused=1;\n\nvar changed=22;\n", read(bundle));
+    // Only the file which has changed is minimized again
+    Assert.assertEquals(hits + 1, cache.hits());
+    Assert.assertEquals(misses + 1, cache.misses());
+  }
+
+  @Test
+  public void testBundleStyles() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = Arrays.asList(write("a.css", "a { color: red; }"), write("b.css", "b { color: blue; }"));
+    WebBundleTool tool = new WebBundleTool(bundles);
+    File bundle = tool.bundleStyles(files, "test", true);
+    Assert.assertNotNull(bundle);
+    Assert.assertEquals("a{color:red}b{color:blue}", read(bundle).replaceAll("\\s", ""));
+  }
+
+  @Test
+  public void testBundleStylesImportingMinimized() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    write("lib.min.css", "x{color:blue}");
+    List<File> files = Arrays.asList(write("a.css", "a { color: red; }"), write("b.css", "@import url(lib.min.css);\nb { color: red; }"));
+    File bundle = new WebBundleTool(bundles).bundleStyles(files, "test", true);
+    Assert.assertNotNull(bundle);
+    String css = read(bundle);
+    Assert.assertTrue(css.contains("a { color: red; }"));
+    Assert.assertTrue(css.contains("x{color:blue}"));
+    Assert.assertTrue(css.contains("b { color: red; }"));
+  }
+
+  @Test
+  public void testBundleStylesDataURIs() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    Files.write(new File(this.folder.getRoot(), "icon.png").toPath(), new byte[]{1, 2, 3});
+    List<File> files = Arrays.asList(write("a.css", "a { background: url('icon.png?v=1') } b { background: url(icon.png) }"),
+        write("b.css", "c { background: url(img/a$b.svg); } d { background: url(http://example.org/x.png) }"));
+    DataURICache cache = DataURICache.getInstance();
+    long misses = cache.misses();
+    File bundle = new WebBundleTool(bundles).bundleStyles(files, "test", false);
+    Assert.assertNotNull(bundle);
+    Assert.assertEquals("a { background: url(data:image/png;base64,AQID?v=1) } b { background: url(data:image/png;base64,AQID) }\n\n"
+        + "c { background: url(../img/a$b.svg); } d { background: url(http://example.org/x.png) }\n\n", read(bundle));
+    // The image was only encoded once
+    Assert.assertEquals(misses + 1, cache.misses());
+  }
+
+  @Test
+  public void testReuseAfterRestart() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = Arrays.asList(write("a.css", "@import url(c.css);"), write("c.css", "c { color: red; }"));
+    File bundle = new WebBundleTool(bundles).bundleStyles(files, "test", true);
+    Assert.assertNotNull(bundle);
+    Assert.assertTrue(bundle.setLastModified(1000000000000L));
+    // Another tool using the same location reuses the same bundle without regenerating it
+    WebBundleTool tool = new WebBundleTool(bundles);
+    Assert.assertEquals(bundle, tool.bundleStyles(files, "test", true));
+    Assert.assertEquals(1000000000000L, bundle.lastModified());
+    Assert.assertEquals(1, tool.getImports(files).size());
+  }
+
+  @Test
+  public void testContentAddressed() throws IOException {
+    File bundles = this.folder.newFolder("bundles");
+    WebBundleTool tool = new WebBundleTool(bundles);
+    File a = tool.bundleScripts(Arrays.asList(write("a.js", "var a = 1;")), "test", true);
+    File b = tool.bundleScripts(Arrays.asList(write("b.js", "var a  =  1;")), "test", true);
+    File c = tool.bundleScripts(Arrays.asList(write("c.js", "var c = 1;")), "test", true);
+    Assert.assertNotNull(a);
+    Assert.assertEquals(a, b);
+    Assert.assertNotEquals(a, c);
+    Assert.assertTrue(a.getName().matches("test-[0-9a-f]{16}\\.min\\.js"));
+  }
+
+  @Test
+  public void testConcurrentBuilds() throws Exception {
+    File bundles = this.folder.newFolder("bundles");
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      files.add(write("s"+i+".js", "function f"+i+"(x) {\n  return x + "+i+";\n}\n"));
+    }
+    WebBundleTool tool = new WebBundleTool(bundles);
+    ExecutorService requests = Executors.newFixedThreadPool(8);
+    try {
+      List<Callable<File>> tasks = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        tasks.add(() -> tool.bundleScripts(files, "concurrent", true));
+      }
+      File expected = null;
+      for (Future<File> f : requests.invokeAll(tasks)) {
+        if (expected == null) {
+          expected = f.get();
+        }
+        Assert.assertNotNull(f.get());
+        Assert.assertEquals(expected, f.get());
+      }
+    } finally {
+      requests.shutdown();
+    }
+    // No partially written or temporary file left
+    Assert.assertArrayEquals(new String[]{ BundleStore.MANIFEST, tool.getBundle(files, "concurrent", true).getName() },
+        sorted(bundles.list()));
+  }
+
+  private File write(String path, String content) throws IOException {
+    File f = new File(this.folder.getRoot(), path);
+    Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return f;
+  }
+
+  private static String[] sorted(String[] names) {
+    Arrays.sort(names);
+    return names;
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+}
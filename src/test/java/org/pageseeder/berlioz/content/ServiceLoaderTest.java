@@ -1,15 +1,25 @@
 package org.pageseeder.berlioz.content;
 
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.pageseeder.berlioz.BerliozException;
 import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.http.HttpMethod;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 public class ServiceLoaderTest {
 
   File webinf = new File("./src/test/resources/org/pageseeder/berlioz");
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testLoad() throws BerliozException {
     ServiceLoader loader = ServiceLoader.getInstance();
@@ -18,4 +28,131 @@ public class ServiceLoaderTest {
     System.err.println(loader.getDefaultRegistry().getServices());
   }
 
+  @Test
+  public void testLoadParallel() throws BerliozException {
+    ServiceLoader loader = ServiceLoader.getInstance();
+    GlobalSettings.setup(webinf);
+    loader.load(new File(webinf, "config/services-parallel.xml"));
+    MatchingService parallel = loader.getDefaultRegistry().get("/parallel", HttpMethod.GET);
+    Assert.assertNotNull(parallel);
+    Service service = parallel.service();
+    Assert.assertEquals(Boolean.TRUE, service.parallel());
+    Assert.assertEquals(250, service.timeout(service.generators().get(0)));
+    Assert.assertEquals(-1, service.timeout(service.generators().get(1)));
+    Assert.assertTrue(service.fragmentCache(service.generators().get(0)));
+    Assert.assertFalse(service.fragmentCache(service.generators().get(1)));
+    MatchingService sequential = loader.getDefaultRegistry().get("/sequential", HttpMethod.GET);
+    Assert.assertNotNull(sequential);
+    Assert.assertNull(sequential.service().parallel());
+  }
+
+  @Test
+  public void testReloadUnchanged() throws Exception {
+    ServiceLoader loader = setupServices();
+    Service a = getService(loader, "/a");
+    Service b = getService(loader, "/b");
+    loader.invalidate();
+    Assert.assertFalse(loader.loadIfRequired());
+    Assert.assertSame(a, getService(loader, "/a"));
+    Assert.assertSame(b, getService(loader, "/b"));
+  }
+
+  @Test
+  public void testReloadChanged() throws Exception {
+    ServiceLoader loader = setupServices();
+    Service a = getService(loader, "/a");
+    Service b = getService(loader, "/b");
+    long version = loader.getDefaultRegistry().version();
+    writeServices("services!b.xml", service("b", "/b", "name='x'") + service("c", "/c", "name='y'"));
+    loader.invalidate();
+    Assert.assertTrue(loader.loadIfRequired());
+    Assert.assertTrue(loader.getDefaultRegistry().version() > version);
+    // Services from unchanged files are kept
+    Assert.assertSame(a, getService(loader, "/a"));
+    // Services from changed files are rebuilt but unchanged generators are reused
+    Service b2 = getService(loader, "/b");
+    Assert.assertNotSame(b, b2);
+    Assert.assertSame(b.generators().get(0), b2.generators().get(0));
+    Assert.assertNotNull(getService(loader, "/c"));
+  }
+
+  @Test
+  public void testReloadGeneratorChanged() throws Exception {
+    ServiceLoader loader = setupServices();
+    Service b = getService(loader, "/b");
+    writeServices("services!b.xml", service("b", "/b", "name='z'"));
+    loader.invalidate();
+    Assert.assertTrue(loader.loadIfRequired());
+    Service b2 = getService(loader, "/b");
+    Assert.assertNotSame(b.generators().get(0), b2.generators().get(0));
+    Assert.assertEquals("z", b2.name(b2.generators().get(0)));
+  }
+
+  @Test
+  public void testReloadRemoved() throws Exception {
+    ServiceLoader loader = setupServices();
+    ServiceRegistry snapshot = loader.getDefaultRegistry().snapshot();
+    Files.delete(new File(this.folder.getRoot(), "config/services!b.xml").toPath());
+    loader.invalidate();
+    Assert.assertTrue(loader.loadIfRequired());
+    Assert.assertNotNull(loader.getDefaultRegistry().get("/a", HttpMethod.GET));
+    Assert.assertNull(loader.getDefaultRegistry().get("/b", HttpMethod.GET));
+    // Snapshots are not affected
+    Assert.assertNotNull(snapshot.get("/b", HttpMethod.GET));
+  }
+
+  @Test
+  public void testReloadError() throws Exception {
+    ServiceLoader loader = setupServices();
+    Service a = getService(loader, "/a");
+    writeFile("services!b.xml", "<service");
+    loader.invalidate();
+    try {
+      loader.loadIfRequired();
+      Assert.fail("The services should not be loaded");
+    } catch (BerliozException ex) {
+      // The services remain available
+      Assert.assertSame(a, getService(loader, "/a"));
+      Assert.assertNotNull(loader.getDefaultRegistry().get("/b", HttpMethod.GET));
+    }
+  }
+
+  private ServiceLoader setupServices() throws IOException, BerliozException {
+    this.folder.newFolder("config");
+    writeServices("services.xml", service("a", "/a", "name='a'"));
+    writeServices("services!b.xml", service("b", "/b", "name='x'"));
+    GlobalSettings.setup(this.folder.getRoot());
+    ServiceLoader loader = ServiceLoader.getInstance();
+    loader.clear();
+    Assert.assertTrue(loader.loadIfRequired());
+    return loader;
+  }
+
+  private static Service getService(ServiceLoader loader, String url) {
+    MatchingService match = loader.getDefaultRegistry().get(url, HttpMethod.GET);
+    Assert.assertNotNull(match);
+    return match.service();
+  }
+
+  private static String service(String id, String pattern, String generator) {
+    return "<service id='"+id+"' method='get'><url pattern='"+pattern+"'/>"
+        + "<generator class='org.pageseeder.berlioz.generator.NoContent' "+generator+"/></service>";
+  }
+
+  private void writeServices(String name, String services) throws IOException {
+    writeFile(name, "<?xml version='1.0' encoding='utf-8'?>"
+        + "<!DOCTYPE service-config PUBLIC '-//Berlioz//DTD::Services 1.0//EN' 'https://pageseeder.org/schema/berlioz/services-1.0.dtd'>"
+        + "<service-config version='1.0'><services group='test'>"+services+"</services></service-config>");
+  }
+
+  private void writeFile(String name, String content) throws IOException {
+    File file = new File(this.folder.getRoot(), "config/"+name);
+    long modified = file.exists()? file.lastModified() : 0;
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    // Ensure that the change is detected even if the file system has a coarse resolution
+    if (modified != 0) {
+      file.setLastModified(modified + 2000);
+    }
+  }
+
 }
@@ -0,0 +1,72 @@
+package org.pageseeder.berlioz.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.berlioz.content.ServiceRegistry.Registration;
+import org.pageseeder.berlioz.furi.URIPattern;
+import org.pageseeder.berlioz.http.HttpMethod;
+
+/**
+ * A test class for the <code>ServiceRegistry</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class ServiceRegistryTest {
+
+  @Test
+  public void testRegister() {
+    ServiceRegistry registry = new ServiceRegistry();
+    registry.register(service("a"), new URIPattern("/a"), HttpMethod.GET);
+    registry.register(service("b"), new URIPattern("/b"), HttpMethod.POST);
+    Assert.assertEquals("a", registry.get("/a", HttpMethod.GET).service().id());
+    Assert.assertEquals("b", registry.get("/b", HttpMethod.POST).service().id());
+    Assert.assertNull(registry.get("/b", HttpMethod.GET));
+  }
+
+  @Test
+  public void testRegisterAll() {
+    ServiceRegistry registry = new ServiceRegistry();
+    long version = registry.version();
+    List<Registration> registrations = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      registrations.add(new Registration(service("s"+i), new URIPattern("/s/"+i), HttpMethod.GET));
+    }
+    registry.register(registrations);
+    Assert.assertNotEquals(version, registry.version());
+    Assert.assertEquals(100, registry.getServices(HttpMethod.GET).size());
+    Assert.assertEquals("s42", registry.get("/s/42", HttpMethod.GET).service().id());
+  }
+
+  @Test
+  public void testRegisterConcurrently() throws InterruptedException {
+    ServiceRegistry registry = new ServiceRegistry();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int n = t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 25; i++) {
+          registry.register(service("s"+n+"-"+i), new URIPattern("/s/"+n+"/"+i), HttpMethod.GET);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals(100, registry.getServices(HttpMethod.GET).size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshotReadOnly() {
+    ServiceRegistry registry = new ServiceRegistry();
+    registry.snapshot().register(service("a"), new URIPattern("/a"), HttpMethod.GET);
+  }
+
+  private static Service service(String id) {
+    return new Service.Builder().id(id).rule(ServiceStatusRule.DEFAULT_RULE).build();
+  }
+
+}
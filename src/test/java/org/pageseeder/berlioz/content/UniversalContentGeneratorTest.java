@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.content;
+
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.berlioz.output.JsonUniversalAdapter;
+import org.pageseeder.berlioz.output.UniversalWriter;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+/**
+ * A test class for the <code>UniversalContentGenerator</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class UniversalContentGeneratorTest {
+
+  private static final UniversalContentGenerator GENERATOR = new UniversalContentGenerator() {
+    @Override
+    public void process(ContentRequest req, UniversalWriter out) {
+      out.startObject("user-info");
+      out.field("first-name", "Bob");
+      out.field("age", 42L);
+      out.endObject();
+    }
+  };
+
+  @Test
+  public void testXML() throws Exception {
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    xml.openElement("content");
+    GENERATOR.process(null, xml);
+    xml.closeElement();
+    Assert.assertEquals("<content><user-info first-name=\"Bob\" age=\"42\"/></content>", xml.toString());
+  }
+
+  @Test
+  public void testJSON() throws Exception {
+    StringWriter out = new StringWriter();
+    JsonUniversalAdapter json = new JsonUniversalAdapter(out);
+    json.startObject("content");
+    GENERATOR.process(null, json);
+    json.endObject();
+    json.flush();
+    Assert.assertEquals("{\"userInfo\":{\"firstName\":\"Bob\",\"age\":42}}", out.toString());
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.furi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.berlioz.furi.URIResolver.MatchRule;
+
+/**
+ * A test class for the <code>URIPatternIndex</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class URIPatternIndexTest {
+
+  private static final List<String> PATTERNS = Arrays.asList(
+      "/home",
+      "/group/{groupid}/list",
+      "/group/{groupid}/home",
+      "/group/{groupid}/add",
+      "/group/home",
+      "/document/{+document}",
+      "/document/history/{+document}",
+      "/{+document}",
+      "/doc-{id}.html",
+      "/doc-{id}.{ext}",
+      "/api/{version}/user/{id}",
+      "/api/v1/user/{id}",
+      "/api/v1/{+path}",
+      "{+any}",
+      "/search{?q,page}",
+      "/about",
+      "/about/{page}",
+      "/about/team"
+  );
+
+  private static final List<String> URLS = Arrays.asList(
+      "/home", "/home/", "/group/1892/home", "/group/home", "/group/1892/list", "/group/x/unknown",
+      "/document/history/dir/doc.xml", "/document/dir/doc.xml", "/dir/doc.xml", "/doc-12.html",
+      "/doc-12.pdf", "/api/v1/user/12", "/api/v2/user/12", "/api/v1/thing/1/2", "/search?q=a",
+      "/about", "/about/team", "/about/me", "", "/", "nothing", "/abou"
+  );
+
+  @Test
+  public void testEmpty() {
+    URIPatternIndex index = new URIPatternIndex(Collections.<URIPattern>emptyList());
+    Assert.assertEquals(0, index.size());
+    Assert.assertNull(index.find("/home"));
+    Assert.assertNull(index.resolve("/home"));
+  }
+
+  @Test
+  public void testFind_Best() {
+    List<URIPattern> patterns = new ArrayList<>();
+    patterns.add(new URIPattern("/document/{+document}"));
+    patterns.add(new URIPattern("/document/history/{+document}"));
+    patterns.add(new URIPattern("/{+document}"));
+    URIPatternIndex index = new URIPatternIndex(patterns);
+    Assert.assertEquals(new URIPattern("/document/history/{+document}"), index.find("/document/history/dir/doc.xml"));
+    Assert.assertEquals(new URIPattern("/document/{+document}"), index.find("/document/dir/doc.xml"));
+    Assert.assertEquals(new URIPattern("/{+document}"), index.find("/dir/doc.xml"));
+  }
+
+  @Test
+  public void testFind_SameScore() {
+    // Both patterns have the same score, the first one wins
+    List<URIPattern> patterns = new ArrayList<>();
+    patterns.add(new URIPattern("/{a}/x"));
+    patterns.add(new URIPattern("/x/{b}"));
+    Assert.assertSame(patterns.get(0), new URIPatternIndex(patterns).find("/x/x"));
+    Collections.reverse(patterns);
+    Assert.assertSame(patterns.get(0), new URIPatternIndex(patterns).find("/x/x"));
+  }
+
+  @Test
+  public void testResolve() {
+    List<URIPattern> patterns = new ArrayList<>();
+    patterns.add(new URIPattern("/group/{groupid}/list"));
+    patterns.add(new URIPattern("/group/{groupid}/home"));
+    URIResolveResult result = new URIPatternIndex(patterns).resolve("/group/1892/home");
+    Assert.assertNotNull(result);
+    Assert.assertEquals(URIResolveResult.Status.RESOLVED, result.getStatus());
+    Assert.assertEquals(patterns.get(1), result.getURIPattern());
+    Assert.assertEquals("1892", result.get("groupid"));
+  }
+
+  @Test
+  public void testSameAsResolver() {
+    List<URIPattern> patterns = new ArrayList<>();
+    for (String p : PATTERNS) {
+      patterns.add(new URIPattern(p));
+    }
+    // Try every ordering since order matters for patterns with the same score
+    for (int i = 0; i < patterns.size(); i++) {
+      Collections.rotate(patterns, 1);
+      assertSameAsResolver(patterns);
+      Collections.reverse(patterns);
+      assertSameAsResolver(patterns);
+    }
+  }
+
+  private static void assertSameAsResolver(List<URIPattern> patterns) {
+    URIPatternIndex index = new URIPatternIndex(patterns);
+    for (String url : URLS) {
+      URIPattern expected = new URIResolver(url).find(patterns, MatchRule.BEST_MATCH);
+      Assert.assertSame("Matching "+url, expected, index.find(url));
+    }
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.http;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>HttpAcceptHeader</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class HttpAcceptHeaderTest {
+
+  @Test
+  public void testAccepts() {
+    Assert.assertTrue(HttpAcceptHeader.accepts("gzip, deflate, br", "gzip"));
+    Assert.assertTrue(HttpAcceptHeader.accepts("gzip, deflate, br", "deflate"));
+    Assert.assertTrue(HttpAcceptHeader.accepts("deflate, gzip;q=0.5", "gzip"));
+    Assert.assertFalse(HttpAcceptHeader.accepts("deflate, gzip;q=0", "gzip"));
+    Assert.assertFalse(HttpAcceptHeader.accepts("br", "gzip"));
+    Assert.assertTrue(HttpAcceptHeader.accepts("text/*", "text/html"));
+  }
+
+  @Test
+  public void testQuality() {
+    Map<String, Float> accept = HttpAcceptHeader.get("deflate;q=0.8, gzip;q=0.5, *;q=0.1");
+    Assert.assertEquals(0.8f, HttpAcceptHeader.quality(accept, "deflate"), 0.0f);
+    Assert.assertEquals(0.5f, HttpAcceptHeader.quality(accept, "gzip"), 0.0f);
+    Assert.assertEquals(0.1f, HttpAcceptHeader.quality(accept, "br"), 0.0f);
+    Assert.assertEquals(0.0f, HttpAcceptHeader.quality(HttpAcceptHeader.get("gzip"), "br"), 0.0f);
+  }
+
+  @Test
+  public void testPreferred() {
+    String json = "application/json";
+    String html = "text/html";
+    Assert.assertEquals(json, HttpAcceptHeader.preferred(HttpAcceptHeader.get("application/json"), html, json));
+    Assert.assertEquals(json, HttpAcceptHeader.preferred(HttpAcceptHeader.get("text/html;q=0.1, application/json"), html, json));
+    Assert.assertEquals(json, HttpAcceptHeader.preferred(HttpAcceptHeader.get("application/json, */*"), html, json));
+    Assert.assertEquals(html, HttpAcceptHeader.preferred(HttpAcceptHeader.get("text/html,application/xhtml+xml,*/*;q=0.8"), html, json));
+    Assert.assertEquals(html, HttpAcceptHeader.preferred(HttpAcceptHeader.get("*/*"), html, json));
+    Assert.assertEquals(html, HttpAcceptHeader.preferred(HttpAcceptHeader.get("application/json-seq, text/*;q=0.5"), html, json));
+    Assert.assertEquals(html, HttpAcceptHeader.preferred(HttpAcceptHeader.get("application/*;q=0.5, text/html"), html, json));
+    Assert.assertEquals(json, HttpAcceptHeader.preferred(HttpAcceptHeader.get("application/json;charset=utf-8, text/html;q=0.9"), html, json));
+    Assert.assertNull(HttpAcceptHeader.preferred(HttpAcceptHeader.get("image/png"), html, json));
+    Assert.assertNull(HttpAcceptHeader.preferred(HttpAcceptHeader.get("application/json;q=0"), json));
+  }
+
+}
@@ -327,4 +327,51 @@ public abstract class JsonWriterTestBase {
     Assert.assertEquals("{\"a\":1,\"b\":2,\"c\":3}", json.toString());
   }
 
+  @Test
+  public void testObjectWithArrayOfObjects() {
+    StringWriter json = new StringWriter();
+    newJsonWriter(json)
+        .startObject()
+        .field("count", 2L)
+        .startArray("items")
+        .startObject().field("id", 0L).endObject()
+        .startObject().field("id", 1L).startObject("a").endObject().endObject()
+        .endArray()
+        .startObject("b").endObject()
+        .endObject()
+        .flush();
+    Assert.assertEquals("{\"count\":2,\"items\":[{\"id\":0},{\"id\":1,\"a\":{}}],\"b\":{}}", json.toString());
+  }
+
+  @Test
+  public void testPreEncodedNames() {
+    JsonName id = Json.toName("item-id");
+    Assert.assertEquals("itemId", id.value());
+    Assert.assertSame(id, Json.toName("item-id"));
+    JsonName quoted = JsonName.of("a\"b");
+    StringWriter json = new StringWriter();
+    newJsonWriter(json)
+        .startObject()
+        .field(Json.toName("count"), 2L)
+        .field(JsonName.of("ok"), true)
+        .field(JsonName.of("ratio"), 0.5)
+        .field(quoted, "c")
+        .startArray(Json.toName("items"))
+        .startObject().field(id, 0L).startObject(Json.toName("a")).endObject().endObject()
+        .startObject().name(id).value(1L).endObject()
+        .endArray()
+        .endObject()
+        .flush();
+    Assert.assertEquals("{\"count\":2,\"ok\":true,\"ratio\":0.5,\"a\\\"b\":\"c\",\"items\":[{\"itemId\":0,\"a\":{}},{\"itemId\":1}]}", json.toString());
+  }
+
+  @Test
+  public void testNameCacheOverflow() {
+    for (int i = 0; i < 5000; i++) {
+      Assert.assertEquals("key"+i, Json.toName("key-"+i).value());
+    }
+    JsonName name = Json.toName("last-name");
+    Assert.assertSame(name, Json.toName("last-name"));
+  }
+
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>BundleFilter</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class BundleFilterTest {
+
+  @Test
+  public void testIsBundlePath() {
+    Assert.assertTrue(BundleFilter.isBundlePath("/script/_/global-0123456789abcdef.min.js"));
+    Assert.assertTrue(BundleFilter.isBundlePath("/style/_/global-0123456789abcdef.css"));
+    Assert.assertFalse(BundleFilter.isBundlePath("/script/_/global-0123456789abcdef.min.js.map"));
+    Assert.assertFalse(BundleFilter.isBundlePath("/script/_/global-0123456789abcdef.min.js.gz"));
+    Assert.assertFalse(BundleFilter.isBundlePath("/script/_/global.js"));
+    Assert.assertFalse(BundleFilter.isBundlePath("/script/../WEB-INF/a-0123456789abcdef.js"));
+    Assert.assertFalse(BundleFilter.isBundlePath("/WEB-INF/a-0123456789abcdef.js"));
+  }
+
+  @Test
+  public void testETag() {
+    Assert.assertEquals("\"0123456789abcdef\"", BundleFilter.etag("global-0123456789abcdef.min.js"));
+    Assert.assertEquals("\"0123456789abcdef\"", BundleFilter.etag("global-0123456789abcdef.css"));
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.GlobalSettings;
+import org.pageseeder.berlioz.content.MatchingService;
+import org.pageseeder.berlioz.content.Service;
+import org.pageseeder.berlioz.content.ServiceLoader;
+import org.pageseeder.berlioz.http.HttpMethod;
+import org.pageseeder.berlioz.util.FragmentBuffer;
+
+/**
+ * A test class for the <code>FragmentCache</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class FragmentCacheTest {
+
+  private static Service service;
+
+  private static Service other;
+
+  @BeforeClass
+  public static void loadServices() throws BerliozException {
+    File webinf = new File("./src/test/resources/org/pageseeder/berlioz");
+    GlobalSettings.setup(webinf);
+    ServiceLoader loader = ServiceLoader.getInstance();
+    loader.load(new File(webinf, "config/services-parallel.xml"));
+    service = getService(loader, "/parallel");
+    other = getService(loader, "/sequential");
+  }
+
+  @Test
+  public void testHitsAndMisses() throws IOException {
+    FragmentCache cache = new FragmentCache();
+    Assert.assertNull(cache.get("a", service));
+    cache.put("a", service, newFragment("<a/>"), 100);
+    FragmentBuffer fragment = cache.get("a", service);
+    Assert.assertNotNull(fragment);
+    Assert.assertEquals("<a/>", fragment.toString());
+    Assert.assertEquals(1, cache.hits());
+    Assert.assertEquals(1, cache.misses());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(8, cache.bytes());
+  }
+
+  @Test
+  public void testFragmentsAreIndependent() throws IOException {
+    FragmentCache cache = new FragmentCache();
+    FragmentBuffer original = newFragment("<a/>");
+    cache.put("a", service, original, 100);
+    // Writing to the fragments afterwards does not affect the cached content
+    original.write("<b/>");
+    FragmentBuffer first = cache.get("a", service);
+    Assert.assertNotNull(first);
+    first.write("<c/>");
+    FragmentBuffer second = cache.get("a", service);
+    Assert.assertNotNull(second);
+    Assert.assertEquals("<a/>", second.toString());
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    FragmentCache cache = new FragmentCache();
+    cache.put("a", service, newFragment(40), 200);
+    cache.put("b", service, newFragment(40), 200);
+    // Use 'a' so that 'b' is the least recently used
+    Assert.assertNotNull(cache.get("a", service));
+    cache.put("c", service, newFragment(40), 200);
+    Assert.assertEquals(1, cache.evictions());
+    Assert.assertEquals(160, cache.bytes());
+    Assert.assertNull(cache.get("b", service));
+    Assert.assertNotNull(cache.get("a", service));
+    Assert.assertNotNull(cache.get("c", service));
+  }
+
+  @Test
+  public void testTooLarge() throws IOException {
+    FragmentCache cache = new FragmentCache();
+    cache.put("a", service, newFragment(40), 200);
+    cache.put("b", service, newFragment(101), 200);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertNull(cache.get("b", service));
+  }
+
+  @Test
+  public void testOtherService() throws IOException {
+    FragmentCache cache = new FragmentCache();
+    cache.put("a", service, newFragment(10), 100);
+    Assert.assertNull(cache.get("a", other));
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  public void testClear() throws IOException {
+    FragmentCache cache = new FragmentCache();
+    cache.put("a", service, newFragment(10), 100);
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+  }
+
+  private static Service getService(ServiceLoader loader, String path) {
+    MatchingService match = loader.getDefaultRegistry().get(path, HttpMethod.GET);
+    Assert.assertNotNull(match);
+    return match.service();
+  }
+
+  private static FragmentBuffer newFragment(int length) throws IOException {
+    StringBuilder s = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      s.append('x');
+    }
+    return newFragment(s.toString());
+  }
+
+  private static FragmentBuffer newFragment(String content) throws IOException {
+    FragmentBuffer fragment = new FragmentBuffer();
+    fragment.write(content);
+    return fragment;
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.berlioz.util.FragmentBuffer;
+
+/**
+ * A test class for the <code>JSONContent</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class JSONContentTest {
+
+  @Test
+  public void testEmpty() {
+    JSONContent json = new JSONContent();
+    Assert.assertEquals("{}", json.content().toString());
+    Assert.assertEquals("application/json", json.getMediaType());
+    Assert.assertEquals("utf-8", json.getEncoding());
+  }
+
+  @Test
+  public void testContent() throws IOException {
+    JSONContent json = new JSONContent();
+    json.add("items", "{\"count\":2}");
+    json.add("user", "{\"name\":\"Bob \\\"B\\\"\"}");
+    String expected = "{\"items\":{\"count\":2},\"user\":{\"name\":\"Bob \\\"B\\\"\"}}";
+    Assert.assertEquals(expected, json.content().toString());
+    StringWriter out = new StringWriter();
+    json.writeTo(out);
+    Assert.assertEquals(expected, out.toString());
+  }
+
+  @Test
+  public void testFragmentValues() throws IOException {
+    FragmentBuffer items = new FragmentBuffer();
+    items.write("{\"count\":2}");
+    JSONContent json = new JSONContent();
+    json.add("items", items);
+    json.add("user", "{}");
+    String expected = "{\"items\":{\"count\":2},\"user\":{}}";
+    Assert.assertEquals(expected, json.content().toString());
+    StringWriter out = new StringWriter();
+    json.writeTo(out);
+    Assert.assertEquals(expected, out.toString());
+  }
+
+  @Test
+  public void testQuoteNames() {
+    JSONContent json = new JSONContent();
+    json.add("a\"b\\c\n", "1");
+    Assert.assertEquals("{\"a\\\"b\\\\c\\u000a\":1}", json.content().toString());
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>ResponseCache</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class ResponseCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    ResponseCache cache = new ResponseCache();
+    Assert.assertNull(cache.get("a", 1));
+    ResponseCache.Entry a = newEntry(10);
+    cache.put("a", a, 1, 100);
+    Assert.assertSame(a, cache.get("a", 1));
+    Assert.assertEquals(1, cache.hits());
+    Assert.assertEquals(1, cache.misses());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(10, cache.bytes());
+  }
+
+  @Test
+  public void testReplace() {
+    ResponseCache cache = new ResponseCache();
+    cache.put("a", newEntry(10), 1, 100);
+    cache.put("a", newEntry(20), 1, 100);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(20, cache.bytes());
+  }
+
+  @Test
+  public void testEviction() {
+    ResponseCache cache = new ResponseCache();
+    cache.put("a", newEntry(40), 1, 100);
+    cache.put("b", newEntry(40), 1, 100);
+    // Use 'a' so that 'b' is the least recently used
+    Assert.assertNotNull(cache.get("a", 1));
+    cache.put("c", newEntry(40), 1, 100);
+    Assert.assertEquals(1, cache.evictions());
+    Assert.assertEquals(80, cache.bytes());
+    Assert.assertNull(cache.get("b", 1));
+    Assert.assertNotNull(cache.get("a", 1));
+    Assert.assertNotNull(cache.get("c", 1));
+  }
+
+  @Test
+  public void testTooLarge() {
+    ResponseCache cache = new ResponseCache();
+    cache.put("a", newEntry(40), 1, 100);
+    cache.put("b", newEntry(101), 1, 100);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(0, cache.evictions());
+    Assert.assertNull(cache.get("b", 1));
+  }
+
+  @Test
+  public void testVersion() {
+    ResponseCache cache = new ResponseCache();
+    cache.put("a", newEntry(10), 1, 100);
+    Assert.assertNull(cache.get("a", 2));
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  public void testClear() {
+    ResponseCache cache = new ResponseCache();
+    cache.put("a", newEntry(10), 1, 100);
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+    Assert.assertNull(cache.get("a", 1));
+  }
+
+  private static ResponseCache.Entry newEntry(int length) {
+    return new ResponseCache.Entry(new byte[length], "text/html;charset=utf-8", "utf-8", null);
+  }
+
+}
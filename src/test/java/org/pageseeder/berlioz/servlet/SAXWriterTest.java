@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.pageseeder.xmlwriter.XMLWriterImpl;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A test class for the <code>SAXWriter</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class SAXWriterTest {
+
+  @Test
+  public void testSameAsXMLWriter() throws Exception {
+    assertSameXML(w -> {
+      w.openElement("root", true);
+      w.attribute("a", "x&y");
+      w.attribute("b", 1);
+      w.element("e", "<text>");
+      w.writeText('!');
+      w.emptyElement("empty");
+      w.writeComment(" comment ");
+      w.writePI("pi", "data");
+      w.closeElement();
+    });
+  }
+
+  @Test
+  public void testWriteXML() throws Exception {
+    assertSameXML(w -> {
+      w.openElement("root", true);
+      w.openElement("content", true);
+      w.attribute("name", "a");
+      w.writeXML("<x y='1'>text<z/></x><x/> tail &amp; more<!--c--><![CDATA[<cdata>]]>");
+      w.closeElement();
+      w.openElement("content", true);
+      w.writeXML("<p:x xmlns:p='urn:p'><p:y p:a='2'/></p:x>");
+      w.closeElement();
+      w.openElement("content", true);
+      w.writeXML("");
+      w.closeElement();
+      w.closeElement();
+    });
+  }
+
+  @Test
+  public void testMalformedXML() {
+    StringWriter out = new StringWriter();
+    SAXWriter w = new SAXWriter(newIdentityHandler(out));
+    w.xmlDecl();
+    w.openElement("root", true);
+    w.writeXML("<x>");
+    w.closeElement();
+    w.close();
+    Assert.assertTrue(w.getError() instanceof SAXParseException);
+  }
+
+  private static void assertSameXML(Script script) throws IOException, TransformerException {
+    // Serialized by the XML writer then parsed
+    StringWriter buffer = new StringWriter();
+    XMLWriter xml = new XMLWriterImpl(buffer);
+    xml.xmlDecl();
+    script.write(xml);
+    xml.flush();
+    StringWriter expected = new StringWriter();
+    TransformerFactory.newInstance().newTransformer().transform(new StreamSource(new StringReader(buffer.toString())), new StreamResult(expected));
+
+    // Reported as SAX events
+    StringWriter actual = new StringWriter();
+    SAXWriter sax = new SAXWriter(newIdentityHandler(actual));
+    sax.xmlDecl();
+    script.write(sax);
+    sax.close();
+    Assert.assertNull(sax.getError());
+    Assert.assertEquals(expected.toString(), actual.toString());
+  }
+
+  private static TransformerHandler newIdentityHandler(StringWriter out) {
+    try {
+      TransformerHandler handler = ((SAXTransformerFactory)TransformerFactory.newInstance()).newTransformerHandler();
+      handler.getTransformer().setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+      handler.setResult(new StreamResult(out));
+      return handler;
+    } catch (TransformerException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private interface Script {
+    void write(XMLWriter xml) throws IOException;
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.servlet;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>TransformerPool</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class TransformerPoolTest {
+
+  private static final String XSLT = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+      + "<xsl:output method='text'/><xsl:param name='p' select=\"'default'\"/>"
+      + "<xsl:template match='/'><xsl:value-of select='$p'/></xsl:template></xsl:stylesheet>";
+
+  @Test
+  public void testHitsAndMisses() throws TransformerException {
+    TransformerPool pool = new TransformerPool("test", newTemplates(), 2);
+    Transformer t1 = pool.borrow();
+    Transformer t2 = pool.borrow();
+    Assert.assertNotSame(t1, t2);
+    Assert.assertEquals(2, pool.misses());
+    Assert.assertEquals(2, pool.inUse());
+    pool.release(t1, true);
+    pool.release(t2, true);
+    Assert.assertEquals(0, pool.inUse());
+    Assert.assertEquals(2, pool.idle());
+    Transformer t3 = pool.borrow();
+    Assert.assertTrue(t3 == t1 || t3 == t2);
+    Assert.assertEquals(1, pool.hits());
+    Assert.assertEquals(2, pool.misses());
+    Assert.assertEquals(0, pool.waits());
+  }
+
+  @Test
+  public void testReset() throws TransformerException {
+    TransformerPool pool = new TransformerPool("test", newTemplates(), 1);
+    Transformer t = pool.borrow();
+    t.setParameter("p", "value");
+    Assert.assertEquals("value", transform(t));
+    pool.release(t, true);
+    t = pool.borrow();
+    Assert.assertEquals(1, pool.hits());
+    Assert.assertNull(t.getParameter("p"));
+    Assert.assertEquals("default", transform(t));
+  }
+
+  @Test
+  public void testDiscard() throws TransformerException {
+    TransformerPool pool = new TransformerPool("test", newTemplates(), 1);
+    Transformer t1 = pool.borrow();
+    pool.release(t1, false);
+    Assert.assertEquals(0, pool.idle());
+    Assert.assertEquals(0, pool.inUse());
+    Transformer t2 = pool.borrow();
+    Assert.assertNotSame(t1, t2);
+    Assert.assertEquals(2, pool.misses());
+  }
+
+  @Test(timeout = 5000)
+  public void testWait() throws Exception {
+    TransformerPool pool = new TransformerPool("test", newTemplates(), 1);
+    Transformer t = pool.borrow();
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicReference<Transformer> borrowed = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      started.countDown();
+      try {
+        borrowed.set(pool.borrow());
+      } catch (TransformerException ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+    thread.start();
+    started.await();
+    while (pool.waits() == 0) {
+      Thread.sleep(1);
+    }
+    // Discarding the transformer must not leave the other thread waiting
+    pool.release(t, false);
+    thread.join();
+    Assert.assertNotNull(borrowed.get());
+    Assert.assertEquals(1, pool.waits());
+    Assert.assertTrue(pool.waitTime() > 0);
+  }
+
+  private static Templates newTemplates() throws TransformerException {
+    return TransformerFactory.newInstance().newTemplates(new StreamSource(new StringReader(XSLT)));
+  }
+
+  private static String transform(Transformer t) throws TransformerException {
+    StringWriter out = new StringWriter();
+    t.transform(new StreamSource(new StringReader("<x/>")), new StreamResult(out));
+    return out.toString();
+  }
+
+}
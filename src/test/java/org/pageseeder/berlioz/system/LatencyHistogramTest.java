@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.system;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>LatencyHistogram</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testIndex() {
+    int previous = -1;
+    for (long v = 0; v < 100000; v++) {
+      int index = LatencyHistogram.index(v);
+      Assert.assertTrue(index == previous || index == previous + 1);
+      Assert.assertTrue(v <= LatencyHistogram.highestValue(index));
+      previous = index;
+    }
+    Assert.assertEquals(0, LatencyHistogram.index(-5));
+    Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(LatencyHistogram.MAX_VALUE));
+    Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    Assert.assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.BUCKETS - 1));
+  }
+
+  @Test
+  public void testPrecision() {
+    for (long v = 1; v < LatencyHistogram.MAX_VALUE; v = v * 3 + 1) {
+      long highest = LatencyHistogram.highestValue(LatencyHistogram.index(v));
+      Assert.assertTrue((highest - v) <= v / 16);
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    long[] counts = LatencyHistogram.newCounts();
+    histogram.addTo(counts);
+    assertWithin(500, LatencyHistogram.percentile(counts, 50));
+    assertWithin(900, LatencyHistogram.percentile(counts, 90));
+    assertWithin(990, LatencyHistogram.percentile(counts, 99));
+    assertWithin(999, LatencyHistogram.percentile(counts, 99.9));
+    Assert.assertEquals(1, LatencyHistogram.percentile(counts, 0));
+  }
+
+  @Test
+  public void testEmpty() {
+    long[] counts = LatencyHistogram.newCounts();
+    new LatencyHistogram().addTo(counts);
+    Assert.assertEquals(0, LatencyHistogram.percentile(counts, 99));
+  }
+
+  @Test
+  public void testConcurrentRecord() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          histogram.record(i % 100);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long[] counts = LatencyHistogram.newCounts();
+    histogram.addTo(counts);
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    Assert.assertEquals(40000, total);
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    Assert.assertTrue("Expected "+expected+" but was "+actual, actual >= expected && actual <= expected + expected / 16);
+  }
+
+}
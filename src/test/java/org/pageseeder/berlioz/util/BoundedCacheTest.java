@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>BoundedCache</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class BoundedCacheTest {
+
+  private static BoundedCache<String, String> newCache() {
+    return new BoundedCache<>("Test", s -> s.length() * 2L);
+  }
+
+  @Test
+  public void testGetPut() {
+    BoundedCache<String, String> cache = newCache();
+    Assert.assertNull(cache.get("a"));
+    cache.put("a", "aaaa", 100);
+    Assert.assertEquals("aaaa", cache.get("a"));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(8, cache.bytes());
+    Assert.assertEquals(1, cache.hits());
+    Assert.assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testReplace() {
+    BoundedCache<String, String> cache = newCache();
+    cache.put("a", "aaaa", 100);
+    cache.put("a", "aa", 100);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(4, cache.bytes());
+  }
+
+  @Test
+  public void testEviction() {
+    BoundedCache<String, String> cache = newCache();
+    cache.put("a", "aaaa", 20);
+    cache.put("b", "bbbb", 20);
+    // Access 'a' so that 'b' is the least recently used
+    cache.get("a");
+    cache.put("c", "cccc", 20);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(16, cache.bytes());
+    Assert.assertNotNull(cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertNotNull(cache.get("c"));
+    Assert.assertEquals(1, cache.evictions());
+  }
+
+  @Test
+  public void testTooLarge() {
+    BoundedCache<String, String> cache = newCache();
+    cache.put("a", "aaaaaaaaaaa", 20);
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  public void testInvalid() {
+    BoundedCache<String, String> cache = newCache();
+    cache.put("a", "aaaa", 100);
+    Assert.assertNull(cache.get("a", v -> v.startsWith("b")));
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+    Assert.assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testClear() {
+    BoundedCache<String, String> cache = newCache();
+    cache.put("a", "aaaa", 100);
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+    Assert.assertEquals("Test[size=0,bytes=0,hits=0,misses=0,evictions=0]", cache.toString());
+  }
+
+}
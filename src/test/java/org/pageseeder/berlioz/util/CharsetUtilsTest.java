@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>CharsetUtils</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class CharsetUtilsTest {
+
+  @Test
+  public void testWrite() throws IOException {
+    assertWrite("", StandardCharsets.UTF_8);
+    assertWrite("Hello world", StandardCharsets.UTF_8);
+    assertWrite("Ça été très ± cool", StandardCharsets.ISO_8859_1);
+  }
+
+  @Test
+  public void testWriteLarge() throws IOException {
+    // Surrogate pairs and multibyte characters straddle the internal buffers
+    StringBuilder s = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      s.append(i % 3 == 0 ? "a😀" : "é€");
+    }
+    assertWrite(s.toString(), StandardCharsets.UTF_8);
+    assertWrite(s, StandardCharsets.UTF_8);
+    assertWrite(new StringBuffer(s), StandardCharsets.UTF_16);
+    FragmentBuffer fragments = new FragmentBuffer();
+    fragments.append(s);
+    assertWrite(fragments, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testWriteUnmappable() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CharsetUtils.write("a€b", StandardCharsets.US_ASCII, out);
+    Assert.assertEquals("a?b", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+  }
+
+  private static void assertWrite(CharSequence content, Charset charset) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CharsetUtils.write(content, charset, out);
+    Assert.assertArrayEquals(content.toString().getBytes(charset), out.toByteArray());
+    Assert.assertEquals(out.size(), CharsetUtils.length(content, charset));
+  }
+
+}
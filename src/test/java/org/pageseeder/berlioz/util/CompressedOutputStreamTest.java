@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>CompressedOutputStream</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class CompressedOutputStreamTest {
+
+  private static final String TEXT = "<html><body><p>Compress me! Compress me! Compress me! éèê</p></body></html>";
+
+  @Test
+  public void testGZip() throws IOException {
+    byte[] compressed = ResourceCompressor.compress(TEXT, StandardCharsets.UTF_8, CompressedOutputStream.GZIP, Deflater.BEST_SPEED);
+    Assert.assertEquals(TEXT, new String(readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSameAsGZIPOutputStream() throws IOException {
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(expected)) {
+      gzip.write(TEXT.getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] actual = ResourceCompressor.compress(TEXT, StandardCharsets.UTF_8);
+    // The OS byte of the header depends on the JDK
+    Assert.assertArrayEquals(Arrays.copyOfRange(expected.toByteArray(), 10, expected.size()), Arrays.copyOfRange(actual, 10, actual.length));
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    byte[] compressed = ResourceCompressor.compress(TEXT, StandardCharsets.UTF_8, CompressedOutputStream.DEFLATE, Deflater.DEFAULT_COMPRESSION);
+    Assert.assertEquals(TEXT, new String(readAll(new InflaterInputStream(new ByteArrayInputStream(compressed))), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+    // Each deflater is reset when returned to the pool so the output must always be the same
+    byte[] first = ResourceCompressor.compress(TEXT, StandardCharsets.UTF_8);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertArrayEquals(first, ResourceCompressor.compress(TEXT, StandardCharsets.UTF_8));
+    }
+    Assert.assertTrue(DeflaterPool.GZIP.idle() > 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterFinish() throws IOException {
+    CompressedOutputStream out = CompressedOutputStream.newInstance(new ByteArrayOutputStream(), CompressedOutputStream.GZIP, -1);
+    out.write(1);
+    out.finish();
+    out.write(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupported() throws IOException {
+    CompressedOutputStream.newInstance(new ByteArrayOutputStream(), "br", -1);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+}
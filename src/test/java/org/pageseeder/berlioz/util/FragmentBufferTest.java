@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>FragmentBuffer</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class FragmentBufferTest {
+
+  @Test
+  public void testEmpty() throws IOException {
+    FragmentBuffer buffer = new FragmentBuffer();
+    Assert.assertEquals(0, buffer.length());
+    Assert.assertEquals("", buffer.toString());
+    Assert.assertEquals(-1, buffer.reader().read());
+    Assert.assertEquals(0, buffer.segments());
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    FragmentBuffer buffer = new FragmentBuffer();
+    buffer.write('<');
+    buffer.write("root>");
+    buffer.write("<a/></root>".toCharArray(), 0, 4);
+    buffer.append("</root>");
+    Assert.assertEquals("<root><a/></root>", buffer.toString());
+    Assert.assertEquals(17, buffer.length());
+    Assert.assertEquals('a', buffer.charAt(7));
+    Assert.assertEquals("<a/>", buffer.subSequence(6, 10).toString());
+  }
+
+  @Test
+  public void testWriteLarge() throws IOException {
+    StringBuilder expected = new StringBuilder();
+    FragmentBuffer buffer = new FragmentBuffer();
+    for (int i = 0; i < 5000; i++) {
+      String s = "<item id=\""+i+"\">Été</item>";
+      expected.append(s);
+      buffer.write(s);
+    }
+    Assert.assertEquals(expected.toString(), buffer.toString());
+    Assert.assertTrue(buffer.segments() > 1);
+    for (int i = 0; i < expected.length(); i += 97) {
+      Assert.assertEquals(expected.charAt(i), buffer.charAt(i));
+    }
+    // Backwards
+    for (int i = expected.length() - 1; i >= 0; i -= 1013) {
+      Assert.assertEquals(expected.charAt(i), buffer.charAt(i));
+    }
+    StringWriter out = new StringWriter();
+    buffer.writeTo(out);
+    Assert.assertEquals(expected.toString(), out.toString());
+    Assert.assertEquals(expected.toString(), read(buffer.reader()));
+  }
+
+  @Test
+  public void testSplice() throws IOException {
+    FragmentBuffer fragment = new FragmentBuffer();
+    fragment.write("<a>content</a>");
+    FragmentBuffer buffer = new FragmentBuffer();
+    buffer.write("<root><content>");
+    buffer.splice(fragment);
+    buffer.write("</content><content>");
+    buffer.splice(fragment);
+    buffer.write("</content></root>");
+    Assert.assertEquals("<root><content><a>content</a></content><content><a>content</a></content></root>", buffer.toString());
+    Assert.assertEquals(buffer.toString().length(), buffer.length());
+    // Writing to the fragment does not affect what was spliced
+    fragment.write("<b/>");
+    Assert.assertEquals("<a>content</a><b/>", fragment.toString());
+    Assert.assertEquals("<root><content><a>content</a></content><content><a>content</a></content></root>", buffer.toString());
+    Assert.assertEquals(5, buffer.segments());
+  }
+
+  @Test
+  public void testSpliceLarge() throws IOException {
+    StringBuilder expected = new StringBuilder();
+    FragmentBuffer buffer = new FragmentBuffer();
+    for (int i = 0; i < 20; i++) {
+      FragmentBuffer fragment = new FragmentBuffer();
+      for (int j = 0; j < i * 200; j++) {
+        fragment.write("<p>"+j+"</p>");
+        expected.append("<p>").append(j).append("</p>");
+      }
+      buffer.splice(fragment);
+      buffer.write("<hr/>");
+      expected.append("<hr/>");
+    }
+    Assert.assertEquals(expected.toString(), buffer.toString());
+    Assert.assertEquals(expected.toString(), read(buffer.reader()));
+    char[] chars = new char[100];
+    buffer.getChars(5000, 5100, chars, 0);
+    Assert.assertEquals(expected.substring(5000, 5100), new String(chars));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSpliceSelf() {
+    FragmentBuffer buffer = new FragmentBuffer();
+    buffer.splice(buffer);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testCharAtOutOfBounds() throws IOException {
+    FragmentBuffer buffer = new FragmentBuffer();
+    buffer.write("abc");
+    buffer.charAt(3);
+  }
+
+  private static String read(Reader reader) throws IOException {
+    StringBuilder s = new StringBuilder();
+    char[] chars = new char[1000];
+    int n;
+    while ((n = reader.read(chars)) != -1) {
+      s.append(chars, 0, n);
+    }
+    return s.toString();
+  }
+
+}
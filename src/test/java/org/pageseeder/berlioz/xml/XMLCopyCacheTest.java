@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+/**
+ * A test class for the <code>XMLCopyCache</code> used when copying files with <code>XMLCopy</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class XMLCopyCacheTest {
+
+  private static final long BUDGET = 1024 * 1024L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void clear() {
+    XMLCopyCache.getInstance().clear();
+  }
+
+  @Test
+  public void testCopyIsCached() throws IOException {
+    File file = write("test.xml", "<test a='1'><!--comment--><b>x &amp; y</b></test>");
+    XMLCopyCache cache = XMLCopyCache.getInstance();
+    long misses = cache.misses();
+    long hits = cache.hits();
+    String first = copy(file);
+    Assert.assertEquals("<test a=\"1\"><!-- comment --><b>x &amp; y</b></test>", first);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(misses+1, cache.misses());
+    Assert.assertEquals(first, copy(file));
+    Assert.assertEquals(hits+1, cache.hits());
+    Assert.assertEquals(first.length() * 2L, cache.bytes());
+  }
+
+  @Test
+  public void testChangedFileIsParsedAgain() throws IOException {
+    File file = write("test.xml", "<test/>");
+    Assert.assertEquals("<test/>", copy(file));
+    write("test.xml", "<changed/>");
+    Assert.assertEquals("<changed/>", copy(file));
+    Assert.assertEquals(1, XMLCopyCache.getInstance().size());
+    Assert.assertEquals("<changed/>".length() * 2L, XMLCopyCache.getInstance().bytes());
+  }
+
+  @Test
+  public void testErrorIsNotCached() throws IOException {
+    File file = write("error.xml", "<test>");
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    Assert.assertFalse(XMLCopy.copyTo(file, xml, BUDGET));
+    Assert.assertEquals(0, XMLCopyCache.getInstance().size());
+    xml = new XMLStringWriter(NamespaceAware.No);
+    Assert.assertFalse(XMLCopy.copyTo(file, xml, BUDGET));
+    xml.flush();
+    Assert.assertTrue(xml.toString().startsWith("<no-data error=\"parsing\""));
+  }
+
+  @Test
+  public void testDisabledByDefault() throws IOException {
+    File file = write("test.xml", "<test/>");
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    Assert.assertTrue(XMLCopy.copyTo(file, xml));
+    Assert.assertEquals(0, XMLCopyCache.getInstance().size());
+  }
+
+  @Test
+  public void testBudget() {
+    // Two bytes per character, so 20 bytes fit two entries of 4 characters
+    XMLCopyCache cache = new XMLCopyCache();
+    cache.put("a", 1, 4, "<a/>", 20);
+    cache.put("b", 1, 4, "<b/>", 20);
+    Assert.assertEquals("<a/>", cache.get("a", 1, 4));
+    cache.put("c", 1, 4, "<c/>", 20);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertNull(cache.get("b", 1, 4));
+    Assert.assertEquals("<a/>", cache.get("a", 1, 4));
+    Assert.assertEquals("<c/>", cache.get("c", 1, 4));
+    cache.put("d", 1, 11, "<dddddddd/>", 20);
+    Assert.assertNull(cache.get("d", 1, 11));
+    Assert.assertEquals(16, cache.bytes());
+  }
+
+  @Test
+  public void testInvalidation() {
+    XMLCopyCache cache = new XMLCopyCache();
+    cache.put("a", 1, 4, "<a/>", 100);
+    Assert.assertNull(cache.get("a", 2, 4));
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.bytes());
+  }
+
+  private File write(String name, String content) throws IOException {
+    File file = new File(this.folder.getRoot(), name);
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static String copy(File file) throws IOException {
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    Assert.assertTrue(XMLCopy.copyTo(file, xml, BUDGET));
+    xml.flush();
+    return xml.toString();
+  }
+
+}
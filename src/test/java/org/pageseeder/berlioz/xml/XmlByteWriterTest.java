@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.berlioz.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A test class for the <code>XmlByteWriter</code>.
+ *
+ * @author Christophe Lauret
+ */
+public class XmlByteWriterTest {
+
+  @Test
+  public void testText() {
+    assertSameAsAppendable(xml -> xml.openElement("a").text("Tom & <Jerry> \"'").closeElement());
+    assertSameAsAppendable(xml -> xml.openElement("a").text("café € 😀 \ud83d").closeElement());
+    assertSameAsAppendable(xml -> xml.openElement("a").text("\u0000\u0001\t\n\r\u007f\u0085 ").closeElement());
+    assertSameAsAppendable(xml -> xml.openElement("a").text('<').text('é').text('\u0001').text(-42L).text(3.5).closeElement());
+    assertSameAsAppendable(xml -> xml.openElement("a").text("xx<yy".toCharArray(), 1, 3).closeElement());
+    assertSameAsAppendable(xml -> xml.element("a", Long.MIN_VALUE).element("b", 0L).element("c", 1234567890123L));
+  }
+
+  @Test
+  public void testAttributes() {
+    assertSameAsAppendable(xml -> xml.openElement("a")
+        .attribute("s", "Tom & <Jerry> \"'é😀\u0002")
+        .attribute("l", -7L)
+        .attribute("d", 0.25)
+        .attribute("b", true)
+        .closeElement());
+  }
+
+  @Test
+  public void testMarkup() {
+    assertSameAsAppendable(xml -> {
+      xml.declaration();
+      xml.processingInstruction("pi", "x=é");
+      xml.openElement("root type='x'", true);
+      xml.comment("A comment é");
+      xml.cdata("<cdata>");
+      xml.xml("<raw>é😀</raw>");
+      xml.emptyElement("empty");
+      xml.element("text", "value");
+      xml.closeElement();
+    });
+  }
+
+  @Test
+  public void testIndent() {
+    Consumer<XmlWriter> document = xml -> {
+      xml.declaration();
+      xml.openElement("root", true);
+      xml.openElement("items", true);
+      xml.attribute("count", 2);
+      xml.element("item", "a");
+      xml.openElement("item", true).emptyElement("empty").closeElement();
+      xml.closeElement();
+      xml.emptyElement("empty");
+      xml.openElement("nude", true).closeElement();
+      xml.closeElement();
+    };
+    StringBuilder expected = new StringBuilder();
+    document.accept(new XmlAppendable<>(expected).withIndent("  "));
+    XmlByteWriter actual = new XmlByteWriter().withIndent("  ");
+    document.accept(actual);
+    Assert.assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void testRandomText() {
+    Random random = new Random(7);
+    char[] alphabet = "abc <>&\"'\t\n\u0000\u001f\u007f\u0090é߿ࠀ￿𐀀".toCharArray();
+    for (int t = 0; t < 200; t++) {
+      char[] chars = new char[random.nextInt(64)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String s = new String(chars);
+      assertSameAsAppendable(xml -> xml.openElement("a").attribute("v", s).text(s).closeElement());
+    }
+  }
+
+  @Test
+  public void testGrowth() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      text.append("<é😀>");
+    }
+    assertSameAsAppendable(xml -> xml.openElement("a").attribute("v", text.toString()).text(text.toString()).closeElement());
+    XmlByteWriter xml = new XmlByteWriter(16);
+    xml.element("a", text.toString());
+    Assert.assertEquals(xml.size(), xml.toByteArray().length);
+  }
+
+  @Test
+  public void testWriteTo() throws IOException {
+    XmlByteWriter xml = new XmlByteWriter();
+    xml.element("a", "é");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xml.writeTo(out);
+    Assert.assertArrayEquals("<a>é</a>".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+  }
+
+  @Test
+  public void testReset() {
+    XmlByteWriter xml = new XmlByteWriter();
+    xml.openElement("a").text("x");
+    xml.reset();
+    Assert.assertEquals(0, xml.size());
+    xml.element("b", "y");
+    Assert.assertEquals("<b>y</b>", xml.toString());
+  }
+
+  @Test(expected = UnclosedElementException.class)
+  public void testClose() {
+    new XmlByteWriter().openElement("a").close();
+  }
+
+  @Test(expected = IllegalCloseElementException.class)
+  public void testCloseElement() {
+    new XmlByteWriter().closeElement();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAttributeTooLate() {
+    new XmlByteWriter().openElement("a").text("x").attribute("b", "c");
+  }
+
+  private static void assertSameAsAppendable(Consumer<XmlWriter> document) {
+    StringBuilder expected = new StringBuilder();
+    document.accept(new XmlAppendable<>(expected));
+    XmlByteWriter actual = new XmlByteWriter(16);
+    document.accept(actual);
+    Assert.assertArrayEquals(expected.toString().getBytes(StandardCharsets.UTF_8), actual.toByteArray());
+  }
+
+}